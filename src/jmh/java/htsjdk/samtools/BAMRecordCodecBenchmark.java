@@ -0,0 +1,103 @@
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of synthetic paired-end records with {@link BAMRecordCodec}. Scores are per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BAMRecordCodecBenchmark {
+    static final int RECORD_COUNT = 10_000;
+
+    @Param({"100", "150"})
+    public int readLength;
+
+    private BAMRecordCodec encoder;
+    private BAMRecordCodec decoder;
+    private List<SAMRecord> records;
+    private byte[] encoded;
+    private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() {
+        records = createRecords(RECORD_COUNT, readLength);
+        final SAMFileHeader header = records.get(0).getHeader();
+        encoder = new BAMRecordCodec(header);
+        encoder.setOutputStream(encodeBuffer);
+        decoder = new BAMRecordCodec(header);
+        encode();
+        encoded = encodeBuffer.toByteArray();
+    }
+
+    /**
+     * @return recordCount coordinate-shuffled paired-end records, spread over the builder's default contigs
+     */
+    static List<SAMRecord> createRecords(final int recordCount, final int readLength) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        builder.setReadLength(readLength);
+        final Random random = new Random(42);
+        for (int i = 0; i < recordCount / 2; i++) {
+            final int start = 1 + random.nextInt(10_000_000);
+            builder.addPair("read" + i, random.nextInt(8), start, start + random.nextInt(500));
+        }
+        return new ArrayList<>(builder.getRecords());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public int encode() {
+        encodeBuffer.reset();
+        for (final SAMRecord record : records) {
+            encoder.encode(record);
+        }
+        return encodeBuffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void decode(final Blackhole blackhole) {
+        decoder.setInputStream(new ByteArrayInputStream(encoded));
+        SAMRecord record;
+        while ((record = decoder.decode()) != null) {
+            blackhole.consume(record);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void decodeAndAccessFields(final Blackhole blackhole) {
+        decoder.setInputStream(new ByteArrayInputStream(encoded));
+        SAMRecord record;
+        while ((record = decoder.decode()) != null) {
+            blackhole.consume(record.getReadName());
+            blackhole.consume(record.getCigar());
+            blackhole.consume(record.getReadBases());
+            blackhole.consume(record.getBaseQualities());
+            blackhole.consume(record.getAttributes());
+        }
+    }
+}
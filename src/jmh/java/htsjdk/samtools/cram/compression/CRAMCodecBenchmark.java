@@ -0,0 +1,140 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.fqzcomp.FQZCompDecode;
+import htsjdk.samtools.cram.compression.nametokenisation.NameTokenisationDecode;
+import htsjdk.samtools.cram.compression.nametokenisation.NameTokenisationEncode;
+import htsjdk.samtools.cram.compression.rans.RANSParams;
+import htsjdk.samtools.cram.compression.rans.rans4x8.RANS4x8Decode;
+import htsjdk.samtools.cram.compression.rans.rans4x8.RANS4x8Encode;
+import htsjdk.samtools.cram.compression.rans.rans4x8.RANS4x8Params;
+import htsjdk.samtools.cram.compression.rans.ransnx16.RANSNx16Decode;
+import htsjdk.samtools.cram.compression.rans.ransnx16.RANSNx16Encode;
+import htsjdk.samtools.cram.compression.rans.ransnx16.RANSNx16Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * CRAM 3.1 block codecs (rANS 4x8, rANS Nx16, fqzcomp and the name tokeniser) on the hts-specs interop streams.
+ * Only fqzcomp decoding is measured since htsjdk has no fqzcomp encoder. Scores are per stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CRAMCodecBenchmark {
+    private static final Path CODECS_DIR = Paths.get("src/test/resources/htsjdk/hts-specs/test/cram/codecs");
+
+    private final RANS4x8Encode rans4x8Encode = new RANS4x8Encode();
+    private final RANS4x8Decode rans4x8Decode = new RANS4x8Decode();
+    private final RANSNx16Encode ransNx16Encode = new RANSNx16Encode();
+    private final RANSNx16Decode ransNx16Decode = new RANSNx16Decode();
+    private final NameTokenisationEncode nameEncode = new NameTokenisationEncode();
+    private final NameTokenisationDecode nameDecode = new NameTokenisationDecode();
+
+    private byte[] qualities;
+    private byte[] names;
+    private byte[] rans4x8Order1;
+    private byte[] ransNx16Order1;
+    private byte[] fqzcomp;
+    private byte[] tokenisedNames;
+
+    @Setup
+    public void setup() throws IOException {
+        qualities = gunzip(CODECS_DIR.resolve("gzip/q8.gz"));
+        // the name tokeniser separates names with NAME_SEPARATOR rather than the newlines of the interop files
+        names = gunzip(CODECS_DIR.resolve("gzip/01.names.gz"));
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == '\n') {
+                names[i] = NameTokenisationDecode.NAME_SEPARATOR;
+            }
+        }
+        rans4x8Order1 = toArray(rans4x8Encode.compress(CompressionUtils.wrap(qualities), new RANS4x8Params(RANSParams.ORDER.ONE)));
+        ransNx16Order1 = toArray(ransNx16Encode.compress(CompressionUtils.wrap(qualities), new RANSNx16Params(RANSNx16Params.ORDER_FLAG_MASK)));
+        fqzcomp = Files.readAllBytes(CODECS_DIR.resolve("fqzcomp/q8.1"));
+        tokenisedNames = toArray(compressNames());
+    }
+
+    private static byte[] gunzip(final Path path) throws IOException {
+        try (final InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Benchmark
+    public ByteBuffer compressRans4x8Order0() {
+        return rans4x8Encode.compress(CompressionUtils.wrap(qualities), new RANS4x8Params(RANSParams.ORDER.ZERO));
+    }
+
+    @Benchmark
+    public ByteBuffer compressRans4x8Order1() {
+        return rans4x8Encode.compress(CompressionUtils.wrap(qualities), new RANS4x8Params(RANSParams.ORDER.ONE));
+    }
+
+    @Benchmark
+    public ByteBuffer uncompressRans4x8Order1() {
+        return rans4x8Decode.uncompress(CompressionUtils.wrap(rans4x8Order1));
+    }
+
+    @Benchmark
+    public ByteBuffer compressRansNx16Order1() {
+        return ransNx16Encode.compress(CompressionUtils.wrap(qualities), new RANSNx16Params(RANSNx16Params.ORDER_FLAG_MASK));
+    }
+
+    @Benchmark
+    public ByteBuffer compressRansNx16Order1x32() {
+        return ransNx16Encode.compress(CompressionUtils.wrap(qualities),
+                new RANSNx16Params(RANSNx16Params.ORDER_FLAG_MASK | RANSNx16Params.N32_FLAG_MASK));
+    }
+
+    @Benchmark
+    public ByteBuffer uncompressRansNx16Order1() {
+        return ransNx16Decode.uncompress(CompressionUtils.wrap(ransNx16Order1));
+    }
+
+    @Benchmark
+    public ByteBuffer uncompressFqzcomp() {
+        return FQZCompDecode.uncompress(CompressionUtils.wrap(fqzcomp));
+    }
+
+    @Benchmark
+    public ByteBuffer compressNames() {
+        return nameEncode.compress(CompressionUtils.wrap(names), false, NameTokenisationDecode.NAME_SEPARATOR);
+    }
+
+    @Benchmark
+    public byte[] uncompressNames() {
+        return nameDecode.uncompress(CompressionUtils.wrap(tokenisedNames), NameTokenisationDecode.NAME_SEPARATOR);
+    }
+}
@@ -0,0 +1,104 @@
+package htsjdk.samtools.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BGZF compression and decompression of 16MB of synthetic SAM-like text, serially and with a thread pool.
+ * Scores are per 16MB buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockCompressedStreamBenchmark {
+    private static final int UNCOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    @Param({"1", "5"})
+    public int compressionLevel;
+
+    /** 0 compresses and decompresses on the benchmark thread */
+    @Param({"0", "4"})
+    public int threads;
+
+    private ExecutorService executor;
+    private byte[] uncompressed;
+    private byte[] compressed;
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    @Setup
+    public void setup() throws IOException {
+        executor = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+        final Random random = new Random(42);
+        final StringBuilder text = new StringBuilder(UNCOMPRESSED_SIZE + 1024);
+        final char[] bases = {'A', 'C', 'G', 'T'};
+        for (int i = 0; text.length() < UNCOMPRESSED_SIZE; i++) {
+            text.append("read").append(i).append("\t99\tchr1\t").append(random.nextInt(1_000_000)).append("\t60\t100M\t=\t")
+                    .append(random.nextInt(1_000_000)).append("\t300\t");
+            for (int j = 0; j < 100; j++) {
+                text.append(bases[random.nextInt(4)]);
+            }
+            text.append('\t');
+            for (int j = 0; j < 100; j++) {
+                text.append((char) ('!' + 20 + random.nextInt(21)));
+            }
+            text.append('\n');
+        }
+        uncompressed = text.substring(0, UNCOMPRESSED_SIZE).getBytes(StandardCharsets.US_ASCII);
+        compressed = compress();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(UNCOMPRESSED_SIZE / 2);
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(out, (File) null, compressionLevel);
+        bcos.setCompressionExecutor(executor, 2 * threads);
+        bcos.write(uncompressed);
+        bcos.close();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(compressed);
+        long total = 0;
+        try (final BlockCompressedInputStream bcis = executor == null ?
+                new BlockCompressedInputStream(in) :
+                new ParallelBlockCompressedInputStream(in, executor, 2 * threads)) {
+            int n;
+            while ((n = bcis.read(readBuffer)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,75 @@
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinate sorting of synthetic records with {@link SortingCollection}, either entirely in memory or spilling
+ * several runs to disk. Scores are per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SortingCollectionBenchmark {
+    private static final int RECORD_COUNT = 200_000;
+
+    /** RECORD_COUNT sorts in memory, smaller values spill RECORD_COUNT / maxRecordsInRam runs to disk */
+    @Param({"200000", "20000"})
+    public int maxRecordsInRam;
+
+    private SAMFileHeader header;
+    private List<SAMRecord> records;
+
+    @Setup
+    public void setup() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        builder.setReadLength(100);
+        final Random random = new Random(42);
+        for (int i = 0; i < RECORD_COUNT / 2; i++) {
+            final int start = 1 + random.nextInt(10_000_000);
+            builder.addPair("read" + i, random.nextInt(8), start, start + random.nextInt(500));
+        }
+        header = builder.getHeader();
+        records = new ArrayList<>(builder.getRecords());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void sort(final Blackhole blackhole) {
+        final SortingCollection<SAMRecord> sorter = SortingCollection.newInstance(SAMRecord.class,
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), maxRecordsInRam);
+        for (final SAMRecord record : records) {
+            sorter.add(record);
+        }
+        try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+            }
+        }
+        sorter.cleanup();
+    }
+}
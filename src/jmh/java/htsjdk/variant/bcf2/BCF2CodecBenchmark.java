@@ -0,0 +1,80 @@
+package htsjdk.variant.bcf2;
+
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of an uncompressed BCF stream with {@link BCF2Codec}, with and without materializing the lazily decoded
+ * genotypes. Scores are per file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCF2CodecBenchmark {
+    private static final File VCF = new File(
+            "src/test/resources/htsjdk/variant/ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+
+    private byte[] bcf;
+
+    @Setup
+    public void setup() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final VCFFileReader reader = new VCFFileReader(VCF, false);
+             final VariantContextWriter writer = new VariantContextWriterBuilder()
+                     .setOutputBCFStream(out)
+                     .unsetOption(Options.INDEX_ON_THE_FLY)
+                     .build()) {
+            writer.writeHeader(reader.getFileHeader());
+            for (final VariantContext vc : reader) {
+                writer.add(vc);
+            }
+        }
+        bcf = out.toByteArray();
+    }
+
+    @Benchmark
+    public void decodeSitesOnly(final Blackhole blackhole) {
+        final BCF2Codec codec = new BCF2Codec();
+        final PositionalBufferedStream in = new PositionalBufferedStream(new ByteArrayInputStream(bcf));
+        codec.readHeader(in);
+        while (!codec.isDone(in)) {
+            blackhole.consume(codec.decode(in).getAttributes());
+        }
+    }
+
+    @Benchmark
+    public void decodeWithGenotypes(final Blackhole blackhole) {
+        final BCF2Codec codec = new BCF2Codec();
+        final PositionalBufferedStream in = new PositionalBufferedStream(new ByteArrayInputStream(bcf));
+        codec.readHeader(in);
+        while (!codec.isDone(in)) {
+            for (final Genotype genotype : codec.decode(in).getGenotypes()) {
+                blackhole.consume(genotype.getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.tribble.readers.LineIteratorImpl;
+import htsjdk.tribble.readers.SynchronousLineReader;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of VCF data lines with {@link VCFCodec}, with and without materializing the genotypes.
+ * Scores are per file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VCFCodecBenchmark {
+    @Param({
+            "src/test/resources/htsjdk/variant/HiSeq.10000.vcf",
+            "src/test/resources/htsjdk/variant/ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf"
+    })
+    public String vcf;
+
+    private VCFCodec codec;
+    private List<String> lines;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = new VCFCodec();
+        try (final InputStream in = new FileInputStream(vcf)) {
+            codec.readActualHeader(new LineIteratorImpl(new SynchronousLineReader(in)));
+        }
+        lines = new ArrayList<>();
+        for (final String line : Files.readAllLines(Paths.get(vcf), StandardCharsets.UTF_8)) {
+            if (!line.startsWith(VCFHeader.METADATA_INDICATOR) && !line.startsWith(VCFHeader.HEADER_INDICATOR)) {
+                lines.add(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeSitesOnly(final Blackhole blackhole) {
+        for (final String line : lines) {
+            final VariantContext vc = codec.decode(line);
+            blackhole.consume(vc.getAttributes());
+        }
+    }
+
+    @Benchmark
+    public void decodeWithGenotypes(final Blackhole blackhole) {
+        for (final String line : lines) {
+            final VariantContext vc = codec.decode(line);
+            for (final Genotype genotype : vc.getGenotypes()) {
+                blackhole.consume(genotype.getType());
+            }
+        }
+    }
+}
@@ -203,6 +203,7 @@ public abstract class VCFDecoder implements VariantsDecoder {
             throw new HtsjdkUnsupportedOperationException("VCF reader from stream not implemented");
         }
         final IOPath variantsIOPath = variantsResource.getIOPath().get();
+        vcfCodec.setFieldSelection(decoderOptions.getFieldSelection().orElse(null));
         final Optional<IOPath> indexIOPath = getIndexIOPath(inputBundle);
 
         //TODO: this resolves the index automatically. it should check to make sure the provided index
@@ -2,6 +2,7 @@ package htsjdk.beta.plugin.variants;
 
 import htsjdk.beta.plugin.HtsDecoderOptions;
 import htsjdk.annotations.InternalAPI;
+import htsjdk.variant.vcf.VCFFieldSelection;
 
 import java.nio.channels.SeekableByteChannel;
 import java.util.Optional;
@@ -11,6 +12,7 @@ public class VariantsDecoderOptions implements HtsDecoderOptions {
     //TODO: replace these with a prefetch size args, and use a local channel wrapper implementation
     private Function<SeekableByteChannel, SeekableByteChannel> variantsChannelTransformer;
     private Function<SeekableByteChannel, SeekableByteChannel> indexChannelTransformer;
+    private VCFFieldSelection fieldSelection;
 
     // Temporary channel wrapper implementation.
 
@@ -64,4 +66,25 @@ public class VariantsDecoderOptions implements HtsDecoderOptions {
         return this;
     }
 
+    /**
+     * Get the INFO and FORMAT fields, and the samples, decoded from the variants.
+     *
+     * @return the fields decoded from the variants if only some of them are, otherwise Optional.empty()
+     */
+    public Optional<VCFFieldSelection> getFieldSelection() {
+        return Optional.ofNullable(fieldSelection);
+    }
+
+    /**
+     * Set the INFO and FORMAT fields, and the samples, decoded from the variants. The other fields and samples are
+     * skipped without being decoded.
+     *
+     * @param fieldSelection the fields to decode. may be null, to decode all of them.
+     * @return updated VariantsDecoderOptions
+     */
+    public VariantsDecoderOptions setFieldSelection(final VCFFieldSelection fieldSelection) {
+        this.fieldSelection = fieldSelection;
+        return this;
+    }
+
 }
@@ -24,6 +24,7 @@
 package htsjdk.samtools;
 
 
+import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.*;
 import htsjdk.samtools.util.zip.InflaterFactory;
@@ -69,6 +70,9 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
     // For creating BAMRecords
     private SAMRecordFactory samRecordFactory;
 
+    // If non-null, records are decoded into released records rather than newly allocated ones.
+    private BAMRecordPool mRecordPool = null;
+
     /**
      * Use the caching index reader implementation rather than the disk-hit-per-file model.
      */
@@ -126,7 +130,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             throws IOException {
         mIndexFile = indexFile;
         mIsSeekable = false;
-        mCompressedInputStream = useAsynchronousIO ? new AsyncBlockCompressedInputStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
+        mCompressedInputStream = useAsynchronousIO ? newAsyncBlockCompressedInputStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
         mStream = new BinaryCodec(new DataInputStream(mCompressedInputStream));
         this.eagerDecode = eagerDecode;
         this.mValidationStringency = validationStringency;
@@ -173,7 +177,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(file, inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory),
+        this(useAsynchronousIO ? newAsyncBlockCompressedInputStream(new SeekableFileStream(file), inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory),
                 indexFile!=null ? indexFile : SamFiles.findIndex(file), eagerDecode, useAsynchronousIO, file.getAbsolutePath(), validationStringency, samRecordFactory);
 
         if (mIndexFile != null && mIndexFile.lastModified() < file.lastModified() - 5000) {
@@ -224,7 +228,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(useAsynchronousIO ? newAsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
                 indexFile, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
@@ -267,10 +271,30 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(useAsynchronousIO ? newAsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
                 indexStream, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
+    /**
+     * Creates the read-ahead stream used for asynchronous I/O: blocks are inflated in parallel on the shared pool if
+     * {@link Defaults#BGZF_DECOMPRESSION_THREADS} is set, otherwise on a single read-ahead thread.
+     */
+    private static BlockCompressedInputStream newAsyncBlockCompressedInputStream(final InputStream stream, final InflaterFactory inflaterFactory) {
+        return Defaults.BGZF_DECOMPRESSION_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(stream, inflaterFactory, ParallelBlockCompressedInputStream.getDefaultExecutor(),
+                        ParallelBlockCompressedInputStream.DEFAULT_READ_AHEAD_BLOCKS) :
+                new AsyncBlockCompressedInputStream(stream, inflaterFactory);
+    }
+
+    /**
+     * Creates the seekable read-ahead stream used for asynchronous I/O, see {@link #newAsyncBlockCompressedInputStream(InputStream, InflaterFactory)}.
+     */
+    private static BlockCompressedInputStream newAsyncBlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory) {
+        return Defaults.BGZF_DECOMPRESSION_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(strm, inflaterFactory) :
+                new AsyncBlockCompressedInputStream(strm, inflaterFactory);
+    }
+
     /**
      * Prepare to read BAM from a compressed stream (seekable)
      * @param compressedInputStream source of bytes
@@ -463,6 +487,18 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
+    /**
+     * Recycle records once they have been released, rather than allocating a new record for every record read.
+     * @param releaseOnNext if true, each record is released when the next record is requested from the
+     *                      {@link SamReader}'s iterator; otherwise records are only recycled after an explicit call
+     *                      to {@link BAMRecord#release()}. Releasing on next takes precedence if both are enabled.
+     */
+    void enableRecordRecycling(final boolean releaseOnNext) {
+        if (mRecordPool == null || releaseOnNext) {
+            mRecordPool = new BAMRecordPool(releaseOnNext);
+        }
+    }
+
     @Override
     public void close() {
         if (mCompressedInputStream != null) {
@@ -829,6 +865,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
          */
         BAMFileIterator(final boolean advance) {
             this.bamRecordCodec = new BAMRecordCodec(getFileHeader(), samRecordFactory);
+            this.bamRecordCodec.setRecordPool(mRecordPool);
             this.bamRecordCodec.setInputStream(BAMFileReader.this.mStream.getInputStream(),
                     BAMFileReader.this.mStream.getInputFileName());
 
@@ -1074,12 +1111,21 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                 final SAMRecord record = wrappedIterator.next();
                 switch (iteratorFilter.compareToFilter(record)) {
                     case MATCHES_FILTER: return record;
-                    case STOP_ITERATION: return null;
-                    case CONTINUE_ITERATION: break; // keep looping
+                    case STOP_ITERATION: release(record); return null;
+                    case CONTINUE_ITERATION: release(record); break; // keep looping
                     default: throw new SAMException("Unexpected return from compareToFilter");
                 }
             }
         }
+
+        /**
+         * Records that are filtered out are never seen by the caller, so they can be recycled straight away.
+         */
+        private void release(final SAMRecord record) {
+            if (record instanceof BAMRecord) {
+                ((BAMRecord) record).release();
+            }
+        }
     }
 
     private class BAMFileIndexUnmappedIterator extends BAMFileIterator  {
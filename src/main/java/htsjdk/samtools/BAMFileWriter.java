@@ -37,6 +37,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * Concrete implementation of SAMFileWriter for writing gzipped BAM files.
@@ -47,6 +49,8 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     private BAMRecordCodec bamRecordCodec = null;
     private final BlockCompressedOutputStream blockCompressedOutputStream;
     private BAMIndexer bamIndexer = null;
+    // alignments written but not yet indexed, with their unresolved start and stop file pointers
+    private final Queue<UnindexedAlignment> unindexedAlignments = new ArrayDeque<>();
 
     protected BAMFileWriter(final File path) {
         blockCompressedOutputStream = new BlockCompressedOutputStream(path);
@@ -129,19 +133,32 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         prepareToWriteAlignments();
 
         if (bamIndexer != null) {
+            // the file pointers are resolved once their blocks have been written, so that they don't wait for
+            // blocks being compressed in parallel
+            final long startOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+            bamRecordCodec.encode(alignment);
+            final long stopOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+            unindexedAlignments.add(new UnindexedAlignment(
+                    new BAMIndexer.AlignmentIndexKeys(alignment), startOffset, stopOffset));
+            indexResolvableAlignments();
+        } else {
+            bamRecordCodec.encode(alignment);
+        }
+    }
+
+    private void indexResolvableAlignments() {
+        while (bamIndexer != null && !unindexedAlignments.isEmpty() &&
+                blockCompressedOutputStream.isResolvable(unindexedAlignments.peek().stopOffset)) {
+            final UnindexedAlignment unindexed = unindexedAlignments.poll();
             try {
-                final long startOffset = blockCompressedOutputStream.getFilePointer();
-                bamRecordCodec.encode(alignment);
-                final long stopOffset = blockCompressedOutputStream.getFilePointer();
-                // set the alignment's SourceInfo and then prepare its index information
-                alignment.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(startOffset, stopOffset))));
-                bamIndexer.processAlignment(alignment);
+                final long startOffset = blockCompressedOutputStream.resolveFilePointer(unindexed.startOffset);
+                final long stopOffset = blockCompressedOutputStream.resolveFilePointer(unindexed.stopOffset);
+                bamIndexer.processAlignment(unindexed.indexKeys, new Chunk(startOffset, stopOffset));
             } catch (Exception e) {
                 bamIndexer = null;
-                throw new SAMException("Exception when processing alignment for BAM index " + alignment, e);
+                unindexedAlignments.clear();
+                throw new SAMException("Exception when processing alignment for BAM index at " + unindexed.indexKeys, e);
             }
-        } else {
-            bamRecordCodec.encode(alignment);
         }
     }
 
@@ -153,6 +170,7 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     @Override
     protected void finish() {
         outputBinaryCodec.close();
+        indexResolvableAlignments();
             try {
                 if (bamIndexer != null) {
                     bamIndexer.finish();
@@ -212,4 +230,17 @@ public class BAMFileWriter extends SAMFileWriterImpl {
             throw new RuntimeIOException(ioe);
         }
     }
+
+    private static final class UnindexedAlignment {
+        // the index keys rather than the alignment, which the caller may reuse once it has been written
+        private final BAMIndexer.AlignmentIndexKeys indexKeys;
+        private final long startOffset;
+        private final long stopOffset;
+
+        private UnindexedAlignment(final BAMIndexer.AlignmentIndexKeys indexKeys, final long startOffset, final long stopOffset) {
+            this.indexKeys = indexKeys;
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+        }
+    }
 }
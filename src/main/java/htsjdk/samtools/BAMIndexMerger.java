@@ -111,7 +111,7 @@ public final class BAMIndexMerger extends IndexMerger<AbstractBAMFileIndex> {
         return new CachingBamFileIndexOptimizedForMerging(stream, dictionary);
     }
 
-    private static BAMIndexContent mergeBAMIndexContent(final int referenceSequence,
+    static BAMIndexContent mergeBAMIndexContent(final int referenceSequence,
                                                         final List<BAMIndexContent> bamIndexContentList, final long[] offsets) {
         final List<BinningIndexContent.BinList> binLists = new ArrayList<>();
         final List<BAMIndexMetaData> metaDataList = new ArrayList<>();
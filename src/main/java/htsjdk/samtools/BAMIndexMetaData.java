@@ -136,11 +136,17 @@ public class BAMIndexMetaData {
         if (rec.getFileSource() == null) {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
-        final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
+        recordMetaData(((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk(), rec.getReadUnmappedFlag());
+    }
+
+    /**
+     * Extract relevant metadata from a record with coordinates, given the chunk of the file that it occupies
+     */
+    void recordMetaData(final Chunk newChunk, final boolean readUnmapped) {
         final long start = newChunk.getChunkStart();
         final long end = newChunk.getChunkEnd();
 
-        if (rec.getReadUnmappedFlag()) {
+        if (readUnmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
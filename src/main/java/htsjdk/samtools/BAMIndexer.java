@@ -29,6 +29,7 @@ import java.io.File;
 import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Class for both constructing BAM index content and writing it out.
@@ -100,6 +101,22 @@ public class BAMIndexer {
      *                     with that value and an appropriate output.
       */
     private BAMIndexer(final SAMFileHeader fileHeader, Function<Integer, BinaryBAMIndexWriter> createWriter, final boolean fillInUninitializedValues) {
+        this(checkSortOrder(fileHeader).getSequenceDictionary(), createWriter.apply(fileHeader.getSequenceDictionary().size()), fillInUninitializedValues);
+    }
+
+    /*
+     * Prepare to index part of a BAM, whose sort order has already been checked.
+     *
+     * @param sequenceDictionary sequence dictionary of the bam file.
+     * @param outputWriter receives the index content of every reference, including those with no records in this part.
+     */
+    BAMIndexer(final SAMSequenceDictionary sequenceDictionary, final BAMIndexWriter outputWriter, final boolean fillInUninitializedValues) {
+        numReferences = sequenceDictionary.size();
+        indexBuilder = new BAMIndexBuilder(sequenceDictionary, fillInUninitializedValues);
+        this.outputWriter = outputWriter;
+    }
+
+    static SAMFileHeader checkSortOrder(final SAMFileHeader fileHeader) {
         if (fileHeader.getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
             if (fileHeader.getSortOrder() == SAMFileHeader.SortOrder.unsorted) {
                 log.warn("For indexing, the BAM file is required to be coordinate sorted. Attempting to index \"unsorted\" BAM file.");
@@ -108,9 +125,7 @@ public class BAMIndexer {
                 throw new SAMException("Indexing requires a coordinate-sorted input BAM.");
             }
         }
-        numReferences = fileHeader.getSequenceDictionary().size();
-        indexBuilder = new BAMIndexBuilder(fileHeader.getSequenceDictionary(), fillInUninitializedValues);
-        outputWriter = createWriter.apply(numReferences);
+        return fileHeader;
     }
 
     /**
@@ -122,17 +137,42 @@ public class BAMIndexer {
      */
     public void processAlignment(final SAMRecord rec) {
         try {
-            final int reference = rec.getReferenceIndex();
-            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
-                // process any completed references
-                advanceToReference(reference);
-            }
-            indexBuilder.processAlignment(rec);
+            processAlignment(new AlignmentIndexKeys(rec), () -> {
+                final SAMFileSource source = rec.getFileSource();
+                if (source == null) {
+                    throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
+                }
+                return ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+            });
         } catch (final Exception e) {
             throw new SAMException("Exception creating BAM index for record " + rec, e);
         }
     }
 
+    /**
+     * Record any index information for an alignment record, given the fields of the record that are needed to
+     * index it and the chunk of the file that the record occupies.
+     *
+     * @param keys the index keys of the record
+     * @param chunk the virtual file offsets of the start and the end of the record
+     */
+    void processAlignment(final AlignmentIndexKeys keys, final Chunk chunk) {
+        try {
+            processAlignment(keys, () -> chunk);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating BAM index for record at " + keys, e);
+        }
+    }
+
+    private void processAlignment(final AlignmentIndexKeys keys, final Supplier<Chunk> chunk) {
+        final int reference = keys.referenceIndex;
+        if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+            // process any completed references
+            advanceToReference(reference);
+        }
+        indexBuilder.processAlignment(keys, chunk);
+    }
+
     /**
      * After all the alignment records have been processed, finish is called.
      * Writes any final information and closes the output file.
@@ -217,45 +257,47 @@ public class BAMIndexer {
         /**
          * Record any index information for a given BAM record
          *
-         * @param rec The BAM record. Requires rec.getFileSource() is non-null.
+         * @param keys the index keys of the BAM record
+         * @param chunk supplies the virtual file offsets of the record, which are required for records with
+         *              coordinates
          */
-        public void processAlignment(final SAMRecord rec) {
+        public void processAlignment(final AlignmentIndexKeys keys, final Supplier<Chunk> chunk) {
 
-            // metadata
-            indexStats.recordMetaData(rec);
-
-            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+            if (keys.alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                // metadata
+                indexStats.incrementNoCoordinateRecordCount();
                 return; // do nothing for records without coordinates, but count them
             }
 
+            final Chunk recordChunk = chunk.get();
+
+            // metadata
+            indexStats.recordMetaData(recordChunk, keys.readUnmapped);
+
             // various checks
-            final int reference = rec.getReferenceIndex();
+            final int reference = keys.referenceIndex;
             if (reference != currentReference) {
                 throw new SAMException("Unexpected reference " + reference +
-                        " when constructing index for " + currentReference + " for record " + rec);
+                        " when constructing index for " + currentReference + " for record at " + keys);
             }
 
             binningIndexBuilder.processFeature(new BinningIndexBuilder.FeatureToBeIndexed() {
                 @Override
                 public int getStart() {
-                    return rec.getAlignmentStart();
+                    return keys.alignmentStart;
                 }
 
                 @Override
                 public int getEnd() {
-                    return rec.getAlignmentEnd();
+                    return keys.alignmentEnd;
                 }
 
                 @Override
-                public Integer getIndexingBin() { return rec.computeIndexingBin(); }
+                public Integer getIndexingBin() { return keys.indexingBin; }
 
                 @Override
                 public Chunk getChunk() {
-                    final SAMFileSource source = rec.getFileSource();
-                    if (source == null) {
-                        throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
-                    }
-                    return ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+                    return recordChunk;
                 }
             });
 
@@ -300,6 +342,36 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * The fields of an alignment record that are needed to index it. They are taken from the record when it is
+     * written, so that a writer need not hold on to the record until the file offsets of the record are known.
+     */
+    static final class AlignmentIndexKeys {
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final int alignmentEnd;
+        private final int indexingBin;
+        private final boolean readUnmapped;
+
+        AlignmentIndexKeys(final SAMRecord rec) {
+            referenceIndex = rec.getReferenceIndex();
+            alignmentStart = rec.getAlignmentStart();
+            readUnmapped = rec.getReadUnmappedFlag();
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                alignmentEnd = SAMRecord.NO_ALIGNMENT_START;
+                indexingBin = 0;
+            } else {
+                alignmentEnd = rec.getAlignmentEnd();
+                indexingBin = rec.computeIndexingBin();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return referenceIndex + ":" + alignmentStart + "-" + alignmentEnd;
+        }
+    }
+
     /**
      * Generates a BAM index file from an input BAM file
      *
@@ -23,10 +23,12 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import static htsjdk.samtools.SAMTag.CG;
 
@@ -67,14 +69,20 @@ public class BAMRecord extends SAMRecord {
      */
     private byte[] mRestOfBinaryData = null;
 
+    /**
+     * Number of bytes of mRestOfBinaryData that hold this record, which are fewer than its length if the buffer has
+     * been recycled from a longer record.
+     */
+    private int mRestOfBinaryDataLength;
+
     // Various lengths are stored, because they are in the fixed-length part of the BAMRecord, and it is
     // more efficient to remember them than decode the element they store the length of.
     // The length becomes invalid if the element is changed with a set() method.
     private int mReadLength = 0;
     private boolean mReadLengthValid = true;
-    private final short mReadNameLength;
+    private short mReadNameLength;
     private boolean mReadNameLengthValid = true;
-    private final int mCigarLength;
+    private int mCigarLength;
     private boolean mCigarLengthValid = true;
 
     // Whether or not the getter needs to decode the corresponding element.
@@ -82,12 +90,24 @@ public class BAMRecord extends SAMRecord {
     private boolean mAttributesDecoded = false;
     private boolean mCigarDecoded = false;
 
+    /**
+     * Alignment end computed from the binary cigar, or NO_ALIGNMENT_START if it has not been computed since the
+     * alignment start last changed.
+     */
+    private int mBinaryAlignmentEnd = NO_ALIGNMENT_START;
+
     /**
      * If any of the properties set from mRestOfBinaryData have been overridden by calls to setters,
      * this is set to true, indicating that mRestOfBinaryData cannot be used to write this record to disk.
      */
     private boolean mBinaryDataStale;
 
+    /**
+     * The pool to which this record is returned when it is released, or null if it was not allocated from a pool.
+     */
+    private BAMRecordPool mPool = null;
+    private boolean mReleased = false;
+
     /**
      * Create a new BAM Record. If the reference sequence index or mate reference sequence index are any value other
      * than NO_ALIGNMENT_REFERENCE_INDEX (-1), then the specified index values must exist in the sequence dictionary
@@ -107,6 +127,50 @@ public class BAMRecord extends SAMRecord {
                         final int insertSize,
                         final byte[] restOfData) {
         super(header);
+        initialize(referenceID, coordinate, readNameLength, mappingQuality, cigarLen, flags, readLen,
+                mateReferenceID, mateCoordinate, insertSize, restOfData, restOfData == null ? 0 : restOfData.length);
+    }
+
+    /**
+     * Reuse this record for another record read from a BAM file, as if it had been newly constructed.
+     * @param restOfData buffer holding the variable-length part of the record in its first restOfDataLength bytes.
+     */
+    void reinitialize(final SAMFileHeader header,
+                      final int referenceID,
+                      final int coordinate,
+                      final short readNameLength,
+                      final short mappingQuality,
+                      final int cigarLen,
+                      final int flags,
+                      final int readLen,
+                      final int mateReferenceID,
+                      final int mateCoordinate,
+                      final int insertSize,
+                      final byte[] restOfData,
+                      final int restOfDataLength) {
+        super.reinitialize(header);
+        mReadLengthValid = true;
+        mReadNameLengthValid = true;
+        mCigarLengthValid = true;
+        mAttributesDecoded = false;
+        mCigarDecoded = false;
+        mReleased = false;
+        initialize(referenceID, coordinate, readNameLength, mappingQuality, cigarLen, flags, readLen,
+                mateReferenceID, mateCoordinate, insertSize, restOfData, restOfDataLength);
+    }
+
+    private void initialize(final int referenceID,
+                            final int coordinate,
+                            final short readNameLength,
+                            final short mappingQuality,
+                            final int cigarLen,
+                            final int flags,
+                            final int readLen,
+                            final int mateReferenceID,
+                            final int mateCoordinate,
+                            final int insertSize,
+                            final byte[] restOfData,
+                            final int restOfDataLength) {
         setReferenceIndex(referenceID);
         setAlignmentStart(coordinate);
         mReadNameLength = readNameLength;
@@ -118,6 +182,7 @@ public class BAMRecord extends SAMRecord {
         setMateAlignmentStart(mateCoordinate);
         setInferredInsertSize(insertSize);
         mRestOfBinaryData = restOfData;
+        mRestOfBinaryDataLength = restOfDataLength;
 
         // Set these to null in order to mark them as being candidates for lazy initialization.
         // If this is not done, they will have non-null defaults.
@@ -152,13 +217,107 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public byte[] getVariableBinaryRepresentation() {
+        assertNotReleased();
         if (mBinaryDataStale) {
             return null;
         }
+        if (mRestOfBinaryData != null && mRestOfBinaryData.length != mRestOfBinaryDataLength) {
+            // the buffer has been recycled from a longer record
+            return Arrays.copyOf(mRestOfBinaryData, mRestOfBinaryDataLength);
+        }
         // This may have been set to null by eagerDecode()
         return mRestOfBinaryData;
     }
 
+    /**
+     * Returns this record to the pool from which it was allocated, so that it and the buffer holding its undecoded
+     * fields can be reused for a record read later, rather than allocating new ones. This only has an effect for
+     * records read by a {@link SamReader} opened with {@link SamReaderFactory.Option#RECYCLE_RELEASED_RECORDS} or
+     * {@link SamReaderFactory.Option#REUSE_RECORDS}.
+     * <p>
+     * The caller must hold the only reference to the record, and must not use it after it has been released: its
+     * contents may be overwritten at any time. When Java assertions are enabled, released records are not reused,
+     * so that references that are retained by mistake can be found: the accessors of the fields decoded from the
+     * variable-length part of the record then throw an {@link IllegalStateException}. These are the read name, bases
+     * and qualities, their lengths, the cigar and the values derived from it ({@link #getCigarLength()},
+     * {@link #getCigarElementOperator(int)}, {@link #getCigarElementLength(int)}, {@link #getAlignmentEnd()},
+     * {@link #getUnclippedStart()} and {@link #getUnclippedEnd()}), the attributes, and the binary representation.
+     * The accessors of the fixed-length fields, such as the flags, reference indices, alignment starts, mapping
+     * quality and insert size, are not checked: on a released record they return its last values, or those of the
+     * record that reuses it.
+     *
+     * @throws IllegalStateException if the record has already been released
+     */
+    public void release() {
+        if (mPool != null) {
+            assertNotReleased();
+            mReleased = true;
+            mPool.release(this);
+        }
+    }
+
+    /**
+     * Releases this record if it was read with {@link SamReaderFactory.Option#REUSE_RECORDS}, and so is no longer
+     * valid once the next record has been requested from the iterator that returned it.
+     */
+    void releaseIfReused() {
+        if (isReleasedOnNext() && !mReleased) {
+            release();
+        }
+    }
+
+    boolean isReleasedOnNext() {
+        return mPool != null && mPool.isReleasedOnNext();
+    }
+
+    /**
+     * Writes the variable-length part of this record as it was read, if it is still valid, without copying it.
+     * @return false if the variable-length part has to be encoded from the decoded fields instead
+     */
+    boolean writeVariableBinaryRepresentation(final BinaryCodec codec) {
+        assertNotReleased();
+        if (mBinaryDataStale || mRestOfBinaryData == null) {
+            return false;
+        }
+        codec.writeBytes(mRestOfBinaryData, 0, mRestOfBinaryDataLength);
+        return true;
+    }
+
+    void setPool(final BAMRecordPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * @return a buffer of at least the given length in which to read the variable-length part of a record, reusing
+     * this record's buffer if it is long enough
+     */
+    byte[] getRecyclableBuffer(final int length) {
+        return mRestOfBinaryData != null && mRestOfBinaryData.length >= length ? mRestOfBinaryData : new byte[length];
+    }
+
+    /**
+     * Guards the accessors of the fields that are decoded from mRestOfBinaryData, which is recycled once the record
+     * has been released.
+     */
+    private void assertNotReleased() {
+        if (mReleased) {
+            throw new IllegalStateException("BAM record was used after it was released to be recycled");
+        }
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        final BAMRecord newRecord = (BAMRecord) super.clone();
+        if (mPool != null) {
+            // the copy must not share a buffer that will be recycled
+            newRecord.mPool = null;
+            if (mRestOfBinaryData != null) {
+                newRecord.mRestOfBinaryData = Arrays.copyOf(mRestOfBinaryData, mRestOfBinaryDataLength);
+            }
+        }
+        return newRecord;
+    }
+
     /**
      * Depending on the concrete implementation, the binary file size of attributes may be known without
      * computing them all.
@@ -167,11 +326,12 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public int getAttributesBinarySize() {
+        assertNotReleased();
         if (mBinaryDataStale || mRestOfBinaryData == null) {
             return -1;
         }
         final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
-        return mRestOfBinaryData.length - tagsOffset;
+        return mRestOfBinaryDataLength - tagsOffset;
     }
 
     @Override
@@ -181,9 +341,16 @@ public class BAMRecord extends SAMRecord {
         mReadNameLengthValid = false;
     }
 
+    @Override
+    public void setAlignmentStart(final int value) {
+        super.setAlignmentStart(value);
+        mBinaryAlignmentEnd = NO_ALIGNMENT_START;
+    }
+
     @Override
     public void setCigar(final Cigar cigar) {
         super.setCigar(cigar);
+        mBinaryAlignmentEnd = NO_ALIGNMENT_START;
         mBinaryDataStale = true;
         mCigarLengthValid = false;
         mCigarDecoded = true;
@@ -192,6 +359,7 @@ public class BAMRecord extends SAMRecord {
     @Override
     public void setCigarString(final String value) {
         super.setCigarString(value);
+        mBinaryAlignmentEnd = NO_ALIGNMENT_START;
         mBinaryDataStale = true;
         mCigarLengthValid = false;
         mCigarDecoded = true;
@@ -239,6 +407,7 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public int getReadLength() {
+        assertNotReleased();
         if (mReadLengthValid) {
             return mReadLength;
         }
@@ -247,6 +416,7 @@ public class BAMRecord extends SAMRecord {
 
     @Override
     public String getReadName() {
+        assertNotReleased();
         String result = super.getReadName();
         if (mRestOfBinaryData != null && result == null) {
             result = decodeReadName();
@@ -260,6 +430,7 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public int getReadNameLength() {
+        assertNotReleased();
         if (mReadNameLengthValid) {
             return mReadNameLength - 1;
         }
@@ -268,6 +439,7 @@ public class BAMRecord extends SAMRecord {
 
     @Override
     public Cigar getCigar() {
+        assertNotReleased();
         if (mRestOfBinaryData != null && !mCigarDecoded) {
             final int cigarOffset = readNameSize();
             final ByteBuffer byteBuffer = ByteBuffer.wrap(mRestOfBinaryData, cigarOffset, cigarSize());
@@ -354,19 +526,107 @@ public class BAMRecord extends SAMRecord {
     }
 
     /**
-     * Avoids decoding CIGAR in order to get length.
+     * Avoids decoding CIGAR in order to get length, unless it is the sentinel for a long cigar.
      */
     @Override
     public int getCigarLength() {
-        if (mCigarLengthValid) {
+        assertNotReleased();
+        if (mCigarLengthValid && isBinaryCigarValid()) {
             return mCigarLength;
         } else {
             return super.getCigarLength();
         }
     }
 
+    /**
+     * Avoids decoding CIGAR in order to get the operator of an element.
+     */
+    @Override
+    public CigarOperator getCigarElementOperator(final int index) {
+        assertNotReleased();
+        if (!canReadBinaryCigar()) {
+            return super.getCigarElementOperator(index);
+        }
+        return CigarOperator.binaryToEnum(getBinaryCigarElement(index) & 0xf);
+    }
+
+    /**
+     * Avoids decoding CIGAR in order to get the length of an element.
+     */
+    @Override
+    public int getCigarElementLength(final int index) {
+        assertNotReleased();
+        if (!canReadBinaryCigar()) {
+            return super.getCigarElementLength(index);
+        }
+        return getBinaryCigarElement(index) >>> 4;
+    }
+
+    /**
+     * Avoids decoding CIGAR in order to get the alignment end, which is computed once, as it is for a decoded CIGAR.
+     */
+    @Override
+    public int getAlignmentEnd() {
+        assertNotReleased();
+        if (getReadUnmappedFlag() || !canReadBinaryCigar()) {
+            return super.getAlignmentEnd();
+        }
+        if (mBinaryAlignmentEnd == NO_ALIGNMENT_START) {
+            int referenceLength = 0;
+            for (int i = 0; i < mCigarLength; i++) {
+                final int cigarElement = getBinaryCigarElement(i);
+                if (CigarOperator.binaryToEnum(cigarElement & 0xf).consumesReferenceBases()) {
+                    referenceLength += cigarElement >>> 4;
+                }
+            }
+            mBinaryAlignmentEnd = getAlignmentStart() + referenceLength - 1;
+        }
+        return mBinaryAlignmentEnd;
+    }
+
+    /**
+     * Avoids decoding CIGAR in order to get the unclipped start.
+     */
+    @Override
+    public int getUnclippedStart() {
+        assertNotReleased();
+        if (!canReadBinaryCigar()) {
+            return super.getUnclippedStart();
+        }
+        int unclippedStart = getAlignmentStart();
+        for (int i = 0; i < mCigarLength; i++) {
+            final int cigarElement = getBinaryCigarElement(i);
+            if (!CigarOperator.binaryToEnum(cigarElement & 0xf).isClipping()) {
+                break;
+            }
+            unclippedStart -= cigarElement >>> 4;
+        }
+        return unclippedStart;
+    }
+
+    /**
+     * Avoids decoding CIGAR in order to get the unclipped end.
+     */
+    @Override
+    public int getUnclippedEnd() {
+        assertNotReleased();
+        if (!canReadBinaryCigar()) {
+            return super.getUnclippedEnd();
+        }
+        int unclippedEnd = getAlignmentEnd();
+        for (int i = mCigarLength - 1; i >= 0; i--) {
+            final int cigarElement = getBinaryCigarElement(i);
+            if (!CigarOperator.binaryToEnum(cigarElement & 0xf).isClipping()) {
+                break;
+            }
+            unclippedEnd += cigarElement >>> 4;
+        }
+        return unclippedEnd;
+    }
+
     @Override
     public byte[] getReadBases() {
+        assertNotReleased();
         byte[] result = super.getReadBases();
         if (mRestOfBinaryData != null && result == null) {
             result = decodeReadBases();
@@ -377,6 +637,7 @@ public class BAMRecord extends SAMRecord {
 
     @Override
     public byte[] getBaseQualities() {
+        assertNotReleased();
         byte[] ret = super.getBaseQualities();
         if (mRestOfBinaryData != null && ret == null) {
             ret = decodeBaseQualities();
@@ -385,16 +646,57 @@ public class BAMRecord extends SAMRecord {
         return ret;
     }
 
+    /**
+     * If the attributes have not been decoded yet, avoids decoding all of them in order to get the value of a
+     * single scalar or string attribute.
+     */
     @Override
     public Object getAttribute(final short tag) {
+        assertNotReleased();
+        if (canReadBinaryAttribute(tag)) {
+            final int typeOffset = findBinaryAttribute(tag);
+            if (typeOffset == -1) {
+                return null;
+            }
+            final byte tagType = mRestOfBinaryData[typeOffset];
+            // arrays are decoded with the rest of the attributes, so that changes made to them in place are retained
+            if (tagType != 'B' && tagType != 'H') {
+                return BinaryTagCodec.readSingleValue(mRestOfBinaryData, typeOffset, getValidationStringency());
+            }
+        }
         if (!mAttributesDecoded) {
             decodeAttributes();
         }
         return super.getAttribute(tag);
     }
 
+    /**
+     * Avoids decoding the attributes in order to determine whether one is present.
+     */
+    @Override
+    public boolean hasAttribute(final String tag) {
+        return hasAttribute(SAMTag.makeBinaryTag(tag));
+    }
+
+    /**
+     * Avoids decoding the attributes in order to determine whether one is present.
+     */
+    @Override
+    public boolean hasAttribute(final SAMTag tag) {
+        return hasAttribute(tag.getBinaryTag());
+    }
+
+    private boolean hasAttribute(final short tag) {
+        assertNotReleased();
+        if (canReadBinaryAttribute(tag)) {
+            return findBinaryAttribute(tag) != -1;
+        }
+        return getAttribute(tag) != null;
+    }
+
     @Override
     protected SAMBinaryTagAndValue getBinaryAttributes() {
+        assertNotReleased();
         if (!mAttributesDecoded) {
             decodeAttributes();
         }
@@ -408,7 +710,7 @@ public class BAMRecord extends SAMRecord {
 
         mAttributesDecoded = true;
         final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
-        final int tagsSize = mRestOfBinaryData.length - tagsOffset;
+        final int tagsSize = mRestOfBinaryDataLength - tagsOffset;
         final SAMBinaryTagAndValue attributes = BinaryTagCodec.readTags(mRestOfBinaryData, tagsOffset, tagsSize, getValidationStringency());
         setAttributes(attributes);
 
@@ -453,6 +755,66 @@ public class BAMRecord extends SAMRecord {
         }
     }
 
+    /**
+     * @return true if the given attribute can be read from mRestOfBinaryData without decoding the others. This is
+     * not the case once the attributes have been decoded, as they may have been changed since, or for the CG tag,
+     * which is removed when a long cigar is decoded.
+     */
+    private boolean canReadBinaryAttribute(final short tag) {
+        return !mAttributesDecoded && tag != CG.getBinaryTag();
+    }
+
+    /**
+     * @return the offset in mRestOfBinaryData of the type of the value of the given tag, or -1 if it is not present
+     */
+    private int findBinaryAttribute(final short tag) {
+        final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
+        return BinaryTagCodec.findTag(mRestOfBinaryData, tagsOffset, mRestOfBinaryDataLength - tagsOffset, tag);
+    }
+
+    /**
+     * @return true if the cigar can be read from mRestOfBinaryData, which is not the case once it has been
+     * decoded, as it may have been changed since, or if it is a sentinel for a long cigar stored in the CG tag
+     */
+    private boolean isBinaryCigarValid() {
+        if (mRestOfBinaryData == null || mCigarDecoded) {
+            return false;
+        }
+        if (mCigarLength == LONG_CIGAR_SENTINEL_LENGTH) {
+            final int first = getBinaryCigarElement(0);
+            final int second = getBinaryCigarElement(1);
+            return !(CigarOperator.binaryToEnum(first & 0xf) == CigarOperator.S &&
+                    CigarOperator.binaryToEnum(second & 0xf) == CigarOperator.N &&
+                    ((first >>> 4) == mReadLength || mReadLength == 0));
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the cigar elements can be read from mRestOfBinaryData without decoding the cigar. This is not
+     * the case if decoding the cigar would validate it, so that an invalid cigar is reported whichever accessor is
+     * used first.
+     */
+    private boolean canReadBinaryCigar() {
+        final boolean validatedWhenDecoded = getHeader() != null &&
+                getValidationStringency() != ValidationStringency.SILENT && !getReadUnmappedFlag();
+        return !validatedWhenDecoded && isBinaryCigarValid();
+    }
+
+    /**
+     * @return the cigar element at the given index, encoded as an unsigned int
+     */
+    private int getBinaryCigarElement(final int index) {
+        if (index < 0 || index >= mCigarLength) {
+            throw new IndexOutOfBoundsException("Cigar element index " + index + " out of bounds for length " + mCigarLength);
+        }
+        final int offset = readNameSize() + index * CIGAR_SIZE_MULTIPLIER;
+        return (mRestOfBinaryData[offset] & 0xff) |
+                (mRestOfBinaryData[offset + 1] & 0xff) << 8 |
+                (mRestOfBinaryData[offset + 2] & 0xff) << 16 |
+                (mRestOfBinaryData[offset + 3] & 0xff) << 24;
+    }
+
     /* methods for computing disk size of variably-sized elements, in order to locate
      * elements in mRestOfBinaryData */
 
@@ -45,6 +45,8 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
     private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(binaryCodec);
     private final SAMRecordFactory samRecordFactory;
 
+    private BAMRecordPool recordPool = null;
+
     private boolean isReferenceSizeWarningShowed = false;
 
     public BAMRecordCodec(final SAMFileHeader header) {
@@ -62,6 +64,15 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         return new BAMRecordCodec(this.header, this.samRecordFactory);
     }
 
+    /**
+     * Decode records into records released to the given pool, when there are any, and allocate new records from
+     * the pool otherwise.
+     * @param pool pool of records to recycle, or null to allocate a new record for every record decoded.
+     */
+    void setRecordPool(final BAMRecordPool pool) {
+        this.recordPool = pool;
+    }
+
     /**
      * Sets the output stream that records will be written to.
      */
@@ -161,10 +172,14 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         this.binaryCodec.writeInt(alignment.getMateReferenceIndex());
         this.binaryCodec.writeInt(alignment.getMateAlignmentStart() - 1);
         this.binaryCodec.writeInt(alignment.getInferredInsertSize());
-        final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
-        if (variableLengthBinaryBlock != null) {
+        // A BAMRecord writes its own block, which may be held in a longer recycled buffer, without copying it.
+        final boolean variableLengthBlockWritten = alignment instanceof BAMRecord &&
+                ((BAMRecord) alignment).writeVariableBinaryRepresentation(this.binaryCodec);
+        final byte[] variableLengthBinaryBlock = variableLengthBlockWritten ? null : alignment.getVariableBinaryRepresentation();
+        if (variableLengthBlockWritten) {
             // Don't need to encode variable-length block, because it is unchanged from
             // when the record was read from a BAM file.
+        } else if (variableLengthBinaryBlock != null) {
             this.binaryCodec.writeBytes(variableLengthBinaryBlock);
         } else {
             if (alignment.getReadLength() != alignment.getBaseQualities().length &&
@@ -278,11 +293,23 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         final int mateReferenceID = this.binaryCodec.readInt();
         final int mateCoordinate = this.binaryCodec.readInt() + 1;
         final int insertSize = this.binaryCodec.readInt();
-        final byte[] restOfRecord = new byte[recordLength - BAMFileConstants.FIXED_BLOCK_SIZE];
-        this.binaryCodec.readBytes(restOfRecord);
-        final BAMRecord ret = this.samRecordFactory.createBAMRecord(
-                header, referenceID, coordinate, readNameLength, mappingQuality,
-                bin, cigarLen, flags, readLen, mateReferenceID, mateCoordinate, insertSize, restOfRecord);
+        final int restOfRecordLength = recordLength - BAMFileConstants.FIXED_BLOCK_SIZE;
+        final BAMRecord recycled = this.recordPool == null ? null : this.recordPool.acquire();
+        final BAMRecord ret;
+        if (recycled != null) {
+            final byte[] restOfRecord = recycled.getRecyclableBuffer(restOfRecordLength);
+            this.binaryCodec.readBytes(restOfRecord, 0, restOfRecordLength);
+            recycled.reinitialize(header, referenceID, coordinate, readNameLength, mappingQuality,
+                    cigarLen, flags, readLen, mateReferenceID, mateCoordinate, insertSize, restOfRecord, restOfRecordLength);
+            ret = recycled;
+        } else {
+            final byte[] restOfRecord = new byte[restOfRecordLength];
+            this.binaryCodec.readBytes(restOfRecord);
+            ret = this.samRecordFactory.createBAMRecord(
+                    header, referenceID, coordinate, readNameLength, mappingQuality,
+                    bin, cigarLen, flags, readLen, mateReferenceID, mateCoordinate, insertSize, restOfRecord);
+            ret.setPool(this.recordPool);
+        }
 
         if (null != header) {
             // don't reset a null header as this will clobber the reference and mate reference indices
@@ -0,0 +1,50 @@
+package htsjdk.samtools;
+
+import java.util.ArrayDeque;
+
+/**
+ * Holds released {@link BAMRecord}s, together with the buffers for their variable-length data, so that a
+ * {@link BAMRecordCodec} can decode later records into them rather than allocating new ones.
+ *
+ * When Java assertions are enabled, released records are never handed out again. Since a released record throws an
+ * {@link IllegalStateException} when it is used, any code that holds on to a record after it has been released
+ * fails loudly, rather than silently seeing the contents of a later record.
+ */
+final class BAMRecordPool {
+    /** Maximum number of released records held, beyond which released records are left to the garbage collector. */
+    static final int MAX_POOLED_RECORDS = 1024;
+
+    private final ArrayDeque<BAMRecord> released = new ArrayDeque<>();
+    private final boolean releasedOnNext;
+    private final boolean detectRetainedRecords;
+
+    /**
+     * @param releasedOnNext whether each record is released when the next record is read from the iterator that
+     *                       returned it, rather than by an explicit call to {@link BAMRecord#release()}
+     */
+    BAMRecordPool(final boolean releasedOnNext) {
+        this(releasedOnNext, BAMRecordPool.class.desiredAssertionStatus());
+    }
+
+    BAMRecordPool(final boolean releasedOnNext, final boolean detectRetainedRecords) {
+        this.releasedOnNext = releasedOnNext;
+        this.detectRetainedRecords = detectRetainedRecords;
+    }
+
+    boolean isReleasedOnNext() {
+        return releasedOnNext;
+    }
+
+    /**
+     * @return a released record to be reinitialized, or null if there is none
+     */
+    synchronized BAMRecord acquire() {
+        return released.pollLast();
+    }
+
+    synchronized void release(final BAMRecord record) {
+        if (!detectRetainedRecords && released.size() < MAX_POOLED_RECORDS) {
+            released.addLast(record);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the virtual file offset of an alignment record that starts near a given position of a BAM file, without
+ * reading the file from the start, so that a BAM file with no splitting index can be processed in parallel splits.
+ *
+ * The first BGZF block starting at or after the position is found from its header, and each offset in its
+ * uncompressed data is then tried in turn as the start of a record, until one is found at which a chain of records
+ * with plausible fixed-length fields begins. Since this is a guess, callers must check that the split before it
+ * really ends at the guessed record, as {@link ParallelBAMIndexer} does.
+ */
+final class BAMSplitGuesser {
+    // number of consecutive records that must be plausible for an offset to be accepted, when there are enough
+    // records in the blocks that are read
+    private static final int RECORDS_TO_CHECK = 3;
+
+    private final SeekableStream in;
+    private final int numReferences;
+    private final long fileLength;
+    private final byte[] blockHeader = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+    // uncompressed data of the candidate block and the one after it
+    private final byte[] uncompressed = new byte[2 * BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+    private final ByteBuffer uncompressedBuffer = ByteBuffer.wrap(uncompressed).order(ByteOrder.LITTLE_ENDIAN);
+
+    BAMSplitGuesser(final SeekableStream in, final int numReferences) throws IOException {
+        this.in = in;
+        this.numReferences = numReferences;
+        this.fileLength = in.length();
+    }
+
+    /**
+     * @param position offset in the BAM file from which to search
+     * @return the virtual file offset of the first record that appears to start in the first block at or after the
+     * given position whose data contains the start of a record, or -1 if none was found before the end of the file
+     */
+    long guessNextRecordStart(final long position) throws IOException {
+        long blockAddress = nextBlockAddress(position);
+        while (blockAddress != -1) {
+            final int blockSize = readBlockSize(blockAddress);
+            final int dataLength = readUncompressed(blockAddress);
+            final int uncompressedBlockLength = readUncompressedBlockLength(blockAddress, blockSize);
+            for (int offset = 0; offset < uncompressedBlockLength; offset++) {
+                if (isPlausibleRecordChain(offset, dataLength)) {
+                    return BlockCompressedFilePointerUtil.makeFilePointer(blockAddress, offset);
+                }
+            }
+            blockAddress = blockAddress + blockSize < fileLength ? blockAddress + blockSize : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the address of the first block at or after position, which is recognised by a valid BGZF header that
+     * is followed by another one (or by the end of the file), or -1 if there is none
+     */
+    private long nextBlockAddress(final long position) throws IOException {
+        for (long address = position; address + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH <= fileLength; address++) {
+            final int blockSize = readBlockSize(address);
+            if (blockSize > 0 && (address + blockSize == fileLength || readBlockSize(address + blockSize) > 0)) {
+                return address;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the total size of the block at the given address, or -1 if there is no valid block header there
+     */
+    private int readBlockSize(final long address) throws IOException {
+        if (address + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH > fileLength) {
+            return -1;
+        }
+        in.seek(address);
+        if (in.read(blockHeader, 0, blockHeader.length) != blockHeader.length) {
+            return -1;
+        }
+        final ByteBuffer header = ByteBuffer.wrap(blockHeader).order(ByteOrder.LITTLE_ENDIAN);
+        if (blockHeader[0] != BlockCompressedStreamConstants.GZIP_ID1 ||
+                (blockHeader[1] & 0xFF) != BlockCompressedStreamConstants.GZIP_ID2 ||
+                blockHeader[2] != BlockCompressedStreamConstants.GZIP_CM_DEFLATE ||
+                (blockHeader[3] & BlockCompressedStreamConstants.GZIP_FLG) == 0 ||
+                header.getShort(10) != BlockCompressedStreamConstants.GZIP_XLEN ||
+                blockHeader[12] != BlockCompressedStreamConstants.BGZF_ID1 ||
+                blockHeader[13] != BlockCompressedStreamConstants.BGZF_ID2 ||
+                header.getShort(14) != BlockCompressedStreamConstants.BGZF_LEN) {
+            return -1;
+        }
+        final int blockSize = (header.getShort(BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) & 0xFFFF) + 1;
+        return address + blockSize <= fileLength ? blockSize : -1;
+    }
+
+    /**
+     * @return the uncompressed length of the block, from its footer
+     */
+    private int readUncompressedBlockLength(final long address, final int blockSize) throws IOException {
+        final byte[] isize = new byte[4];
+        in.seek(address + blockSize - isize.length);
+        if (in.read(isize, 0, isize.length) != isize.length) {
+            return 0;
+        }
+        return ByteBuffer.wrap(isize).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    /**
+     * Reads the uncompressed data of the block at the given address and, when it fits, of the block after it.
+     * @return the number of uncompressed bytes read
+     */
+    private int readUncompressed(final long address) throws IOException {
+        // a new stream each time, since the headers are read from the underlying stream in between; it is not
+        // closed, as that would close the underlying stream
+        final BlockCompressedInputStream blockIn = new BlockCompressedInputStream(in);
+        blockIn.seek(BlockCompressedFilePointerUtil.makeFilePointer(address, 0));
+        int length = 0;
+        int n;
+        while (length < uncompressed.length && (n = blockIn.read(uncompressed, length, uncompressed.length - length)) > 0) {
+            length += n;
+        }
+        return length;
+    }
+
+    private boolean isPlausibleRecordChain(final int offset, final int dataLength) {
+        int recordOffset = offset;
+        for (int i = 0; i < RECORDS_TO_CHECK; i++) {
+            final int blockSize = plausibleRecordBlockSize(recordOffset, dataLength);
+            if (blockSize == -1) {
+                return false;
+            }
+            recordOffset += 4 + blockSize;
+            if (recordOffset + 4 + BAMFileConstants.FIXED_BLOCK_SIZE > dataLength) {
+                // the first record has been checked in full, and there is no more data to check
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the block_size of the record at the given offset, or -1 if its fields, and its read name and cigar
+     * if they lie within the data, are not those of a valid record
+     */
+    private int plausibleRecordBlockSize(final int offset, final int dataLength) {
+        if (offset + 4 + BAMFileConstants.FIXED_BLOCK_SIZE > dataLength) {
+            return -1;
+        }
+        final ByteBuffer data = uncompressedBuffer;
+        final int blockSize = data.getInt(offset);
+        final int referenceIndex = data.getInt(offset + 4);
+        final int position = data.getInt(offset + 8);
+        final int readNameLength = data.get(offset + 12) & 0xFF;
+        final int cigarLength = data.getShort(offset + 16) & 0xFFFF;
+        final int readLength = data.getInt(offset + 20);
+        final int mateReferenceIndex = data.getInt(offset + 24);
+        final int matePosition = data.getInt(offset + 28);
+        if (blockSize < BAMFileConstants.FIXED_BLOCK_SIZE ||
+                referenceIndex < -1 || referenceIndex >= numReferences ||
+                mateReferenceIndex < -1 || mateReferenceIndex >= numReferences ||
+                position < -1 || matePosition < -1 ||
+                readNameLength < 1 || readLength < 0 ||
+                (long) BAMFileConstants.FIXED_BLOCK_SIZE + readNameLength + 4L * cigarLength + (readLength + 1L) / 2 + readLength > blockSize) {
+            return -1;
+        }
+        // the read name must be printable and null-terminated
+        final int readNameOffset = offset + 4 + BAMFileConstants.FIXED_BLOCK_SIZE;
+        if (readNameOffset + readNameLength > dataLength) {
+            return -1;
+        }
+        for (int i = 0; i < readNameLength - 1; i++) {
+            final byte b = uncompressed[readNameOffset + i];
+            if (b < '!' || b > '~') {
+                return -1;
+            }
+        }
+        if (uncompressed[readNameOffset + readNameLength - 1] != 0) {
+            return -1;
+        }
+        final int cigarOffset = readNameOffset + readNameLength;
+        for (int i = 0; i < cigarLength && cigarOffset + 4 * i + 4 <= dataLength; i++) {
+            if ((data.getInt(cigarOffset + 4 * i) & 0xF) > CigarOperator.values().length - 1) {
+                return -1;
+            }
+        }
+        return blockSize;
+    }
+}
@@ -31,6 +31,8 @@ import org.apache.commons.compress.utils.CountingOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * Class for writing SAMRecords in BAM format to an output stream.
@@ -41,8 +43,8 @@ public class BAMStreamWriter {
     private final BAMRecordCodec bamRecordCodec;
     private final BAMIndexer bamIndexer;
     private final SBIIndexWriter sbiIndexWriter;
-    private SAMRecord previousSamRecord;
-    private Chunk previousSamRecordChunk;
+    // records written but not yet indexed, with their unresolved start and stop file pointers
+    private final Queue<UnindexedRecord> unindexedRecords = new ArrayDeque<>();
 
     /**
      * Create a BAMStreamWriter for writing. All output streams should be uncompressed streams, since this class
@@ -82,20 +84,30 @@ public class BAMStreamWriter {
     }
 
     public void writeAlignment(final SAMRecord alignment) {
-        if (bamIndexer != null && previousSamRecord != null) {
-            // index the previous record since we know it's not the last one (which needs special
-            // handling, see the close method)
-            previousSamRecord.setFileSource(new SAMFileSource(null, new BAMFileSpan(previousSamRecordChunk)));
-            bamIndexer.processAlignment(previousSamRecord);
+        // the file pointers are resolved once their blocks have been written, so that they don't wait for
+        // blocks being compressed in parallel
+        final long startOffset = compressedOut.getUnresolvedFilePointer();
+        bamRecordCodec.encode(alignment);
+        final long stopOffset = compressedOut.getUnresolvedFilePointer();
+        // the index keys are taken now, since the caller may reuse the alignment once it has been written
+        unindexedRecords.add(new UnindexedRecord(
+                bamIndexer == null ? null : new BAMIndexer.AlignmentIndexKeys(alignment), startOffset, stopOffset));
+        // index the records before the last one, since we know they're not the last one (which needs special
+        // handling, see the finish method)
+        while (unindexedRecords.size() > 1 && compressedOut.isResolvable(unindexedRecords.peek().stopOffset)) {
+            final UnindexedRecord record = unindexedRecords.poll();
+            indexRecord(record, compressedOut.resolveFilePointer(record.startOffset),
+                    compressedOut.resolveFilePointer(record.stopOffset));
         }
-        final long startOffset = compressedOut.getFilePointer();
+    }
+
+    private void indexRecord(final UnindexedRecord record, final long startOffset, final long stopOffset) {
         if (sbiIndexWriter != null) {
             sbiIndexWriter.processRecord(startOffset);
         }
-        bamRecordCodec.encode(alignment);
-        final long stopOffset = compressedOut.getFilePointer();
-        previousSamRecord = alignment;
-        previousSamRecordChunk = new Chunk(startOffset, stopOffset);
+        if (bamIndexer != null) {
+            bamIndexer.processAlignment(record.indexKeys, new Chunk(startOffset, stopOffset));
+        }
     }
 
     /**
@@ -111,25 +123,37 @@ public class BAMStreamWriter {
 
         long finalVirtualOffset = compressedOut.getFilePointer();
 
-        long dataFileLength = countingOut.getBytesWritten();
-        if (sbiIndexWriter != null) {
-            sbiIndexWriter.finish(finalVirtualOffset, dataFileLength);
-        }
-
-        // Adjust the end of the chunk in previousSamRecordChunk so that it is a valid virtual offset
+        // Set the end of the chunk of the last record to finalVirtualOffset so that it is a valid virtual offset
         // the flush operation (above) forces the final block to be written out, and makes sure
         // that finalVirtualOffset has an uncompressed offset of 0, which is always valid even after
         // concatenating BGZF files and shifting their virtual offsets.
         // If we didn't do this then we would have an invalid virtual file pointer if a BGZF file
         // were concatenated following this one.
-        if (bamIndexer != null && previousSamRecord != null) {
-            previousSamRecordChunk =
-                    new Chunk(previousSamRecordChunk.getChunkStart(), finalVirtualOffset);
-            previousSamRecord.setFileSource(new SAMFileSource(null, new BAMFileSpan(previousSamRecordChunk)));
-            bamIndexer.processAlignment(previousSamRecord);
+        while (!unindexedRecords.isEmpty()) {
+            final UnindexedRecord record = unindexedRecords.poll();
+            indexRecord(record, compressedOut.resolveFilePointer(record.startOffset),
+                    unindexedRecords.isEmpty() ? finalVirtualOffset : compressedOut.resolveFilePointer(record.stopOffset));
         }
+
+        long dataFileLength = countingOut.getBytesWritten();
+        if (sbiIndexWriter != null) {
+            sbiIndexWriter.finish(finalVirtualOffset, dataFileLength);
+        }
+
         if (bamIndexer != null) {
             bamIndexer.finish();
         }
     }
+
+    private static final class UnindexedRecord {
+        private final BAMIndexer.AlignmentIndexKeys indexKeys;
+        private final long startOffset;
+        private final long stopOffset;
+
+        private UnindexedRecord(final BAMIndexer.AlignmentIndexKeys indexKeys, final long startOffset, final long stopOffset) {
+            this.indexKeys = indexKeys;
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+        }
+    }
 }
@@ -305,6 +305,88 @@ public class BinaryTagCodec {
         return head;
     }
 
+    /**
+     * Finds a tag in the binary representation of a record's attributes without decoding any of their values.
+     * @param binaryRep Byte buffer containing file representation of tags.
+     * @param offset Where in binaryRep tags start.
+     * @param length How many bytes in binaryRep are tag storage.
+     * @param tag The binary tag to find.
+     * @return the offset in binaryRep of the type of the tag's value, or -1 if the tag is not present.
+     */
+    static int findTag(final byte[] binaryRep, final int offset, final int length, final short tag) {
+        final int end = offset + length;
+        int position = offset;
+        while (position < end) {
+            final short currentTag = (short) ((binaryRep[position] & 0xff) | (binaryRep[position + 1] & 0xff) << 8);
+            if (currentTag == tag) {
+                return position + 2;
+            }
+            position = skipValue(binaryRep, position + 2);
+        }
+        return -1;
+    }
+
+    /**
+     * Read a value of non-array type.
+     * @param binaryRep Byte buffer containing file representation of tags.
+     * @param typeOffset Offset in binaryRep of the type of the value, as returned by {@link #findTag}.
+     * @return Value in in-memory Object form.
+     */
+    static Object readSingleValue(final byte[] binaryRep, final int typeOffset,
+                                  final ValidationStringency validationStringency) {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(binaryRep, typeOffset + 1, binaryRep.length - typeOffset - 1);
+        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        return readSingleValue(binaryRep[typeOffset], byteBuffer, validationStringency);
+    }
+
+    /**
+     * @param typeOffset Offset in binaryRep of the type of a value.
+     * @return the offset in binaryRep of the byte after the value.
+     */
+    private static int skipValue(final byte[] binaryRep, final int typeOffset) {
+        final byte tagType = binaryRep[typeOffset];
+        final int valueOffset = typeOffset + 1;
+        switch (tagType) {
+            case 'Z':
+            case 'H':
+                int position = valueOffset;
+                while (binaryRep[position] != 0) {
+                    position++;
+                }
+                // Skip over the null terminator
+                return position + 1;
+            case 'B':
+                final int count = (binaryRep[valueOffset + 1] & 0xff) |
+                        (binaryRep[valueOffset + 2] & 0xff) << 8 |
+                        (binaryRep[valueOffset + 3] & 0xff) << 16 |
+                        (binaryRep[valueOffset + 4] & 0xff) << 24;
+                return valueOffset + 5 + count * getValueSize(binaryRep[valueOffset]);
+            default:
+                return valueOffset + getValueSize(tagType);
+        }
+    }
+
+    /**
+     * @return the size in bytes of a value of the given fixed-size type.
+     */
+    private static int getValueSize(final byte tagType) {
+        switch (tagType) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag type: " + (char)tagType);
+        }
+    }
+
     /**
      * Read value of specified non-array type.
      * @param tagType What type to read.
@@ -5,15 +5,41 @@ import htsjdk.samtools.cram.build.CramIO;
 import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.structure.*;
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class for writing SAMRecords into a series of CRAM containers on an output stream, with an optional index.
+ *
+ * Containers are encoded on the calling thread unless an encoding executor has been supplied via
+ * {@link #setEncodingExecutor(ExecutorService, int)}, or the {@code samjdk.cram_encoding_threads} property is set
+ * (see {@link Defaults#CRAM_ENCODING_THREADS}). In that case the slices of completed containers are encoded and
+ * compressed concurrently on the executor, but containers are still written to the output stream, and indexed,
+ * in order, so the output is byte-identical to serial encoding.
  */
 public class CRAMContainerStreamWriter {
+    private static ExecutorService defaultEncodingExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool, of {@link Defaults#CRAM_ENCODING_THREADS} threads, used to encode
+     * containers by writers that are not given an executor
+     */
+    private static synchronized ExecutorService getDefaultEncodingExecutor() {
+        if (defaultEncodingExecutor == null) {
+            defaultEncodingExecutor = Executors.newFixedThreadPool(Defaults.CRAM_ENCODING_THREADS, new DaemonThreadFactory());
+        }
+        return defaultEncodingExecutor;
+    }
+
     private final OutputStream outputStream;
     private final String outputStreamIdentifier;
     private final SAMFileHeader samFileHeader;
@@ -22,6 +48,12 @@ public class CRAMContainerStreamWriter {
 
     private long streamOffset = 0;
 
+    // Only used when containers are encoded in parallel, see setEncodingExecutor()
+    private ExecutorService encodingExecutor = null;
+    private int maxContainersInFlight = 0;
+    private final Deque<Future<Container>> pendingContainers = new ArrayDeque<>();
+    private boolean alignmentsWritten = false;
+
     /**
      * Create a CRAMContainerStreamWriter for writing SAM records into a series of CRAM
      * containers on output stream, with an optional index.
@@ -89,6 +121,30 @@ public class CRAMContainerStreamWriter {
         this.cramIndexer = indexer;
         this.outputStreamIdentifier = outputIdentifier;
         this.containerFactory = new ContainerFactory(samFileHeader, encodingStrategy, referenceSource);
+        if (Defaults.CRAM_ENCODING_THREADS > 0) {
+            setEncodingExecutor(getDefaultEncodingExecutor(), 2 * Defaults.CRAM_ENCODING_THREADS);
+        }
+    }
+
+    /**
+     * Encode the slices of completed containers concurrently on the given executor. Containers are still written
+     * to the output stream in order. The {@link htsjdk.samtools.cram.ref.CRAMReferenceSource} used by this writer
+     * must be safe to use from multiple threads.
+     *
+     * @param executor executor used to encode containers, or null to encode on the calling thread. The executor
+     *                 is not shut down when this writer is finished.
+     * @param maxContainersInFlight maximum number of containers being encoded or waiting to be written at any time
+     * @throws IllegalStateException if alignments have already been written
+     */
+    public void setEncodingExecutor(final ExecutorService executor, final int maxContainersInFlight) {
+        if (alignmentsWritten) {
+            throw new IllegalStateException("Cannot change the encoding executor after alignments have been written");
+        }
+        if (executor != null && maxContainersInFlight < 1) {
+            throw new IllegalArgumentException("maxContainersInFlight must be positive: " + maxContainersInFlight);
+        }
+        this.encodingExecutor = executor;
+        this.maxContainersInFlight = maxContainersInFlight;
     }
 
     /**
@@ -96,12 +152,45 @@ public class CRAMContainerStreamWriter {
      * @param alignment must not be null
      */
     public void writeAlignment(final SAMRecord alignment) {
+        alignmentsWritten = true;
+        if (encodingExecutor != null) {
+            final Future<Container> container = containerFactory.getNextContainer(alignment, encodingExecutor);
+            if (container != null) {
+                pendingContainers.add(container);
+                writePendingContainers(maxContainersInFlight - 1);
+            }
+            return;
+        }
         final Container container = containerFactory.getNextContainer(alignment, streamOffset);
         if (container != null) {
             writeContainer(container);
         }
     }
 
+    /**
+     * Write containers that have been encoded in parallel, in order, until no more than maxPending remain. Also
+     * writes any further containers that are already encoded.
+     */
+    private void writePendingContainers(final int maxPending) {
+        while (!pendingContainers.isEmpty() &&
+                (pendingContainers.size() > maxPending || pendingContainers.peekFirst().isDone())) {
+            final Container container;
+            try {
+                container = pendingContainers.removeFirst().get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeIOException("Interrupted waiting for CRAM container to be encoded", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeIOException("Failed to encode CRAM container", e.getCause());
+            }
+            container.setContainerByteOffset(streamOffset);
+            writeContainer(container);
+        }
+    }
+
     /**
      * Write a CRAM file header and the previously provided SAM header to the stream.
      */
@@ -126,9 +215,17 @@ public class CRAMContainerStreamWriter {
      */
     public void finish(final boolean writeEOFContainer) {
         try {
-            final Container container = containerFactory.getFinalContainer(streamOffset);
-            if (container != null) {
-                writeContainer(container);
+            if (encodingExecutor != null) {
+                final Future<Container> container = containerFactory.getFinalContainer(encodingExecutor);
+                if (container != null) {
+                    pendingContainers.add(container);
+                }
+                writePendingContainers(0);
+            } else {
+                final Container container = containerFactory.getFinalContainer(streamOffset);
+                if (container != null) {
+                    writeContainer(container);
+                }
             }
             if (writeEOFContainer) {
                 CramIO.writeCramEOF(CramVersions.DEFAULT_CRAM_VERSION, outputStream);
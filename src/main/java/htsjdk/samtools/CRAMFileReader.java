@@ -19,6 +19,7 @@ import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SamReader.Type;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.*;
@@ -27,7 +28,10 @@ import htsjdk.utils.ValidationUtils;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * {@link htsjdk.samtools.BAMFileReader BAMFileReader} analogue for CRAM files.
@@ -41,12 +45,16 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
     private InputStream inputStream;
     private DeferredCloseSeekableStream deferredCloseSeekableStream;
     private CRAMIterator iterator;
+    // when this reader has no file to open new streams on, the last iterator created over the stream it was given,
+    // which must stop reading ahead before another iterator repositions the stream
+    private CRAMIterator sharedStreamIterator;
     private BAMIndex mIndex;
     private File mIndexFile;
     private boolean mEnableIndexCaching;
     private boolean mEnableIndexMemoryMapping;
 
     private ValidationStringency validationStringency;
+    private Set<CRAMRecordField> skippedFields = EnumSet.noneOf(CRAMRecordField.class);
 
     private final static Log log = Log.getInstance(CRAMFileReader.class);
 
@@ -198,7 +206,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
                                  final ValidationStringency validationStringency) throws IOException {
         this.inputStream = inputStream;
         this.validationStringency = validationStringency;
-        iterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
+        iterator = newIterator(new CRAMIterator(inputStream, referenceSource, validationStringency));
         if (indexInputStream != null) {
             SeekableStream baiStream = SamIndexes.asBaiSeekableStreamOrNull(indexInputStream, iterator.getSAMFileHeader().getSequenceDictionary());
             if (null != baiStream)  {
@@ -293,7 +301,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
 
         // create an input stream that reads the source cram stream only within the coordinate pairs:
         final SeekableStream seekableStream = getSeekableStreamOrFailWithRTE();
-        return new CRAMIterator(seekableStream, referenceSource, validationStringency, null, coordinateArray);
+        return newIterator(new CRAMIterator(seekableStream, referenceSource, validationStringency, null, coordinateArray));
     }
 
     @Override
@@ -306,9 +314,9 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         }
         try {
             if (cramFile != null) {
-                iterator = new CRAMIterator(new BufferedInputStream(new FileInputStream(cramFile)), referenceSource, validationStringency);
+                iterator = newIterator(new CRAMIterator(new BufferedInputStream(new FileInputStream(cramFile)), referenceSource, validationStringency));
             } else {
-                iterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
+                iterator = newIterator(new CRAMIterator(inputStream, referenceSource, validationStringency));
             }
             return iterator;
         } catch (final IOException e) {
@@ -373,7 +381,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         final SeekableStream seekableStream = getSeekableStreamOrFailWithRTE();
         try {
             seekableStream.seek(0);
-            iterator = new CRAMIterator(seekableStream, referenceSource, validationStringency);
+            iterator = newIterator(new CRAMIterator(seekableStream, referenceSource, validationStringency));
             seekableStream.seek(startOfLastLinearBin >>> 16);
             boolean atAlignments;
             do {
@@ -407,6 +415,10 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
                 deferredCloseSeekableStream = new DeferredCloseSeekableStream((SeekableStream) inputStream);
             }
             seekableStream = deferredCloseSeekableStream;
+            // the stream is about to be repositioned for a new iterator, so the previous one must stop reading it
+            if (sharedStreamIterator != null) {
+                sharedStreamIterator.stopReadingAhead();
+            }
         }
         return seekableStream;
     }
@@ -492,6 +504,41 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         return Type.CRAM_TYPE;
     }
 
+    /**
+     * Leave fields that aren't needed out of the records returned by this reader's iterators, including those of
+     * the current iterator, from the next container on. For instance, coverage or flag statistics can be computed
+     * from records without read bases or base qualities, which are then decoded without fetching reference bases.
+     *
+     * @param skippedFields the fields of the records that are not needed
+     */
+    public void setSkippedFields(final Set<CRAMRecordField> skippedFields) {
+        ValidationUtils.nonNull(skippedFields, "skippedFields");
+        this.skippedFields = skippedFields.isEmpty() ?
+                EnumSet.noneOf(CRAMRecordField.class) :
+                EnumSet.copyOf(skippedFields);
+        if (iterator != null) {
+            iterator.setSkippedFields(this.skippedFields);
+        }
+    }
+
+    public Set<CRAMRecordField> getSkippedFields() {
+        return Collections.unmodifiableSet(skippedFields);
+    }
+
+    void skipField(final CRAMRecordField field) {
+        final Set<CRAMRecordField> fields = EnumSet.of(field);
+        fields.addAll(skippedFields);
+        setSkippedFields(fields);
+    }
+
+    private CRAMIterator newIterator(final CRAMIterator cramIterator) {
+        cramIterator.setSkippedFields(skippedFields);
+        if (cramFile == null) {
+            sharedStreamIterator = cramIterator;
+        }
+        return cramIterator;
+    }
+
     @Override
     void enableFileSource(final SamReader reader, final boolean enabled) {
         if (iterator != null) {
@@ -552,13 +599,13 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
          */
         protected void initializeIterator(final QueryInterval[] queryIntervals, final long[] coordinates) {
             if (coordinates != null && coordinates.length != 0) {
-                unfilteredIterator = new CRAMIterator(
+                unfilteredIterator = newIterator(new CRAMIterator(
                         getSeekableStreamOrFailWithRTE(),
                         referenceSource,
                         validationStringency,
                         queryIntervals,
                         coordinates
-                );
+                ));
                 getNextRecord(); // advance to the first record that matches the filter criteria
             }
         }
@@ -27,18 +27,51 @@ import htsjdk.samtools.seekablestream.SeekableStream;
 import java.io.Closeable;
 import java.io.InputStream;
 import java.util.*;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.utils.ValidationUtils;
 
+/**
+ * Iterator over the records of a CRAM stream.
+ *
+ * By default, containers are read and their slices decoded on the calling thread. If a decoding executor is set,
+ * either explicitly with {@link #setDecodingExecutor(ExecutorService, int)} or through
+ * {@link Defaults#CRAM_DECODING_THREADS}, containers are instead read ahead on a dedicated background thread and their
+ * slices are decoded concurrently on the executor, while records are still returned in stream order. In that case
+ * the {@link CRAMReferenceSource} must be safe to use from multiple threads.
+ */
 public class CRAMIterator implements SAMRecordIterator, Closeable {
+    private static ExecutorService defaultDecodingExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool, of {@link Defaults#CRAM_DECODING_THREADS} threads, used to decode slices
+     * by iterators that are not given an executor
+     */
+    private static synchronized ExecutorService getDefaultDecodingExecutor() {
+        if (defaultDecodingExecutor == null) {
+            defaultDecodingExecutor = Executors.newFixedThreadPool(Defaults.CRAM_DECODING_THREADS, new DaemonThreadFactory());
+        }
+        return defaultDecodingExecutor;
+    }
+
     private final CountingInputStream countingInputStream;
     private final CramContainerIterator containerIterator;
     private final CramHeader cramHeader;
     private final SAMFileHeader samFileHeader;
+    private final CRAMReferenceSource referenceSource;
     private final CRAMReferenceRegion cramReferenceRegion;
     private final QueryInterval[] queryIntervals;
 
-    private ValidationStringency validationStringency;
+    private volatile ValidationStringency validationStringency;
+    private volatile Set<CRAMRecordField> skippedFields = EnumSet.noneOf(CRAMRecordField.class);
     private List<SAMRecord> samRecords;
     private Container container;
     private SamReader mReader;
@@ -56,6 +89,14 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
     private long samRecordIndex;
     private Iterator<SAMRecord> samRecordIterator = Collections.EMPTY_LIST.iterator();
 
+    private ExecutorService decodingExecutor = null;
+    private int readAheadContainers = 0;
+    // started on the first call to nextContainer(), since callers may reposition the stream after construction
+    private ContainerDecodingPipeline decodingPipeline = null;
+    private boolean iterationStarted = false;
+    // set when containers read ahead were discarded by stopReadingAhead(), past which this iterator cannot continue
+    private boolean readAheadDiscarded = false;
+
     public CRAMIterator(final InputStream inputStream,
                         final CRAMReferenceSource referenceSource,
                         final ValidationStringency validationStringency) {
@@ -64,11 +105,13 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
         this.validationStringency = validationStringency;
         samFileHeader = containerIterator.getSamFileHeader();
+        this.referenceSource = referenceSource;
         cramReferenceRegion = new CRAMReferenceRegion(referenceSource, samFileHeader.getSequenceDictionary());
         cramHeader = containerIterator.getCramHeader();
         firstContainerOffset = this.countingInputStream.getCount();
         samRecords = new ArrayList<>(new CRAMEncodingStrategy().getReadsPerSlice());
         this.queryIntervals = null;
+        initDefaultDecodingExecutor();
     }
 
     public CRAMIterator(final SeekableStream seekableStream,
@@ -81,14 +124,49 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
         this.validationStringency = validationStringency;
         samFileHeader = containerIterator.getSamFileHeader();
+        this.referenceSource = referenceSource;
         cramReferenceRegion = new CRAMReferenceRegion(referenceSource, samFileHeader.getSequenceDictionary());
         cramHeader = containerIterator.getCramHeader();
         firstContainerOffset = this.countingInputStream.getCount();
         samRecords = new ArrayList<>(new CRAMEncodingStrategy().getReadsPerSlice());
         this.queryIntervals = queryIntervals;
+        initDefaultDecodingExecutor();
+    }
+
+    private void initDefaultDecodingExecutor() {
+        if (Defaults.CRAM_DECODING_THREADS > 0) {
+            setDecodingExecutor(getDefaultDecodingExecutor(), 2 * Defaults.CRAM_DECODING_THREADS);
+        }
+    }
+
+    /**
+     * Decode slices concurrently on the given executor, reading containers ahead on a dedicated background thread.
+     * Must be called before iteration starts.
+     *
+     * @param executor executor on which slices are decoded, or null to decode slices on the calling thread. It is
+     *                 not shut down when this iterator is closed.
+     * @param readAheadContainers maximum number of containers read ahead of the container being iterated over
+     */
+    public void setDecodingExecutor(final ExecutorService executor, final int readAheadContainers) {
+        if (iterationStarted) {
+            throw new IllegalStateException("Cannot set the decoding executor after iteration has started");
+        }
+        ValidationUtils.validateArg(executor == null || readAheadContainers > 0,
+                () -> "readAheadContainers must be positive: " + readAheadContainers);
+        this.decodingExecutor = executor;
+        this.readAheadContainers = readAheadContainers;
     }
 
     private BAMIteratorFilter.FilteringIteratorState nextContainer() {
+        iterationStarted = true;
+        if (readAheadDiscarded) {
+            throw new IllegalStateException(
+                    "Cannot continue iterating after the containers read ahead of this iterator were discarded, " +
+                    "since another iterator of its reader has repositioned the stream they share");
+        }
+        if (decodingExecutor != null) {
+            return nextDecodedContainer();
+        }
         if (containerIterator != null) {
             if (!containerIterator.hasNext()) {
                 samRecords.clear();
@@ -100,8 +178,7 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
                 return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
             }
         } else {
-            final long containerByteOffset = countingInputStream.getCount();
-            container = new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
+            container = readContainerFromStream();
             if (container.isEOF()) {
                 samRecords.clear();
                 return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
@@ -113,7 +190,8 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
                     validationStringency,
                     cramReferenceRegion,
                     compressorCache,
-                    getSAMFileHeader());
+                    getSAMFileHeader(),
+                    skippedFields);
             samRecordIterator = samRecords.iterator();
             return BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
         } else {
@@ -121,6 +199,32 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         }
     }
 
+    private Container readContainerFromStream() {
+        final long containerByteOffset = countingInputStream.getCount();
+        return new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
+    }
+
+    /**
+     * Takes the next container that matches the query, and its decoded records, from the decoding pipeline.
+     */
+    private BAMIteratorFilter.FilteringIteratorState nextDecodedContainer() {
+        if (decodingPipeline == null) {
+            decodingPipeline = new ContainerDecodingPipeline();
+        }
+        final PendingContainer pending = decodingPipeline.take();
+        if (pending.isEndOfStream()) {
+            if (pending.container != null) {
+                container = pending.container;
+            }
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        container = pending.container;
+        samRecords = pending.getSAMRecords();
+        samRecordIterator = samRecords.iterator();
+        return BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
+    }
+
     private boolean containerMatchesQuery(final Container container) {
         if (queryIntervals == null) {
             return true;
@@ -229,6 +333,9 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
     @Override
     public void close() {
+        if (decodingPipeline != null) {
+            decodingPipeline.close();
+        }
         samRecords.clear();
         try {
             if (countingInputStream != null) {
@@ -237,6 +344,22 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         } catch (final RuntimeIOException e) { }
     }
 
+    /**
+     * Stops reading containers ahead on the background thread, if they are, so that the stream can be repositioned
+     * by another iterator sharing it. If iteration has not started, it continues on the calling thread from the
+     * current position of the stream, as it would have without a decoding executor. Otherwise, the containers read
+     * ahead are discarded, and this iterator returns the records of its current container and then throws an
+     * {@link IllegalStateException}, unless it has already reached the end of the stream.
+     */
+    void stopReadingAhead() {
+        if (decodingPipeline == null) {
+            decodingExecutor = null;
+        } else if (!decodingPipeline.isFinished()) {
+            decodingPipeline.close();
+            readAheadDiscarded = true;
+        }
+    }
+
     public long getFirstContainerOffset() {
         return firstContainerOffset;
     }
@@ -258,6 +381,23 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         this.validationStringency = validationStringency;
     }
 
+    public Set<CRAMRecordField> getSkippedFields() {
+        return Collections.unmodifiableSet(skippedFields);
+    }
+
+    /**
+     * Leave fields that the caller doesn't need out of the records decoded from now on, so that, for instance,
+     * records can be decoded without fetching reference bases when their read bases aren't needed.
+     *
+     * @param skippedFields the fields of the records that are not needed
+     */
+    public void setSkippedFields(final Set<CRAMRecordField> skippedFields) {
+        ValidationUtils.nonNull(skippedFields, "skippedFields");
+        this.skippedFields = skippedFields.isEmpty() ?
+                EnumSet.noneOf(CRAMRecordField.class) :
+                EnumSet.copyOf(skippedFields);
+    }
+
     public SamReader getFileSource() {
         return mReader;
     }
@@ -270,4 +410,192 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         return samFileHeader;
     }
 
+    /**
+     * A container read by the pipeline, along with the decoding of each of its slices, or the end of the stream.
+     */
+    private static final class PendingContainer {
+        private final Container container;
+        private final List<Future<List<SAMRecord>>> slices;
+        private final Throwable error;
+
+        PendingContainer(final Container container, final List<Future<List<SAMRecord>>> slices, final Throwable error) {
+            this.container = container;
+            this.slices = slices;
+            this.error = error;
+        }
+
+        boolean isEndOfStream() {
+            return slices == null && error == null;
+        }
+
+        /**
+         * Waits for all slices to be decoded, and rethrows any failure on the calling thread.
+         */
+        List<SAMRecord> getSAMRecords() {
+            rethrow(error);
+            final List<SAMRecord> records = new ArrayList<>(container.getContainerHeader().getNumberOfRecords());
+            for (final Future<List<SAMRecord>> slice : slices) {
+                try {
+                    records.addAll(slice.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted waiting for CRAM slices to be decoded", e);
+                } catch (final ExecutionException e) {
+                    rethrow(e.getCause());
+                }
+            }
+            return records;
+        }
+
+        private static void rethrow(final Throwable t) {
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    /**
+     * Reads containers on a dedicated background thread, skipping those that don't match the query, and submits
+     * their slices for decoding as they are read. At most readAheadContainers containers are queued ahead of the
+     * consumer.
+     */
+    private final class ContainerDecodingPipeline {
+        private final BlockingQueue<PendingContainer> queue = new ArrayBlockingQueue<>(readAheadContainers);
+        private final ExecutorService executor = decodingExecutor;
+        // each slice being decoded needs its own reference region and compressors, which are borrowed from this
+        // pool rather than kept per thread, since the executor's threads outlive the pipeline
+        private final Queue<SliceDecodingResources> idleResources = new ConcurrentLinkedQueue<>();
+        private final Thread readerThread;
+        // the reader thread is stopped with this flag rather than interrupted, since an interrupt would close the
+        // channel of a stream it may be reading, which can be shared with other iterators of the same reader
+        private volatile boolean stopped = false;
+        /** The last item taken, once it is the end of the stream or a failure. */
+        private PendingContainer last = null;
+
+        ContainerDecodingPipeline() {
+            readerThread = new Thread(this::readContainers, CRAMIterator.class.getSimpleName() + "-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        private void readContainers() {
+            try {
+                while (!stopped) {
+                    final Container next;
+                    if (containerIterator != null) {
+                        next = containerIterator.hasNext() ? containerIterator.next() : null;
+                    } else {
+                        next = readContainerFromStream();
+                    }
+                    if (next == null || next.isEOF()) {
+                        enqueue(new PendingContainer(next, null, null));
+                        return;
+                    }
+                    if (containerMatchesQuery(next)) {
+                        final ValidationStringency stringency = validationStringency;
+                        final Set<CRAMRecordField> skipped = skippedFields;
+                        final List<Future<List<SAMRecord>>> slices = new ArrayList<>(next.getSlices().size());
+                        for (final Slice slice : next.getSlices()) {
+                            slices.add(executor.submit(() -> decodeSlice(slice, stringency, skipped)));
+                        }
+                        enqueue(new PendingContainer(next, slices, null));
+                    }
+                }
+            } catch (final Throwable t) {
+                enqueue(new PendingContainer(null, null, t));
+            }
+        }
+
+        // waits for space in the queue even if interrupted, since the consumer waits for what is queued
+        private void enqueue(final PendingContainer pending) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(pending);
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private List<SAMRecord> decodeSlice(final Slice slice, final ValidationStringency stringency,
+                                            final Set<CRAMRecordField> skipped) {
+            SliceDecodingResources resources = idleResources.poll();
+            if (resources == null) {
+                resources = new SliceDecodingResources();
+            }
+            try {
+                return slice.getSAMRecords(
+                        stringency, resources.referenceRegion, resources.compressorCache, samFileHeader, skipped);
+            } finally {
+                idleResources.add(resources);
+            }
+        }
+
+        PendingContainer take() {
+            if (last != null) {
+                return last;
+            }
+            final PendingContainer next;
+            try {
+                next = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for CRAM containers to be read", e);
+            }
+            if (next.isEndOfStream() || next.error != null) {
+                last = next;
+            }
+            return next;
+        }
+
+        /**
+         * @return true if the end of the stream or a failure has been taken, after which nothing more is read
+         */
+        boolean isFinished() {
+            return last != null;
+        }
+
+        void close() {
+            stopped = true;
+            // the reader thread checks the flag between containers, so wait for it to finish the container it is
+            // reading, taking what it queues so that it is never left waiting for space in the queue
+            boolean interrupted = false;
+            boolean readerRunning = true;
+            while (readerRunning) {
+                readerRunning = readerThread.isAlive();
+                PendingContainer pending;
+                while ((pending = queue.poll()) != null) {
+                    if (pending.slices != null) {
+                        pending.slices.forEach(slice -> slice.cancel(false));
+                    }
+                }
+                if (readerRunning) {
+                    try {
+                        readerThread.join(10);
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            idleResources.clear();
+        }
+    }
+
+    private final class SliceDecodingResources {
+        private final CRAMReferenceRegion referenceRegion =
+                new CRAMReferenceRegion(referenceSource, samFileHeader.getSequenceDictionary());
+        private final CompressorCache compressorCache = new CompressorCache();
+    }
 }
@@ -41,6 +41,71 @@ public class Defaults {
     /** Compression level to be used for writing BAM and other block-compressed outputs.  Default = 5. */
     public static final int COMPRESSION_LEVEL;
 
+    /**
+     * Number of threads in the shared pool used to deflate BGZF blocks in parallel when writing BAM and other
+     * block-compressed outputs.  If 0, blocks are deflated on the writing thread.  Default = 0.
+     */
+    public static final int BGZF_COMPRESSION_THREADS;
+
+    /**
+     * Number of threads in the shared pool used to inflate BGZF blocks in parallel when reading BAM files with
+     * asynchronous I/O enabled.  If 0, the single read-ahead thread of asynchronous I/O is used instead.  Default = 0.
+     */
+    public static final int BGZF_DECOMPRESSION_THREADS;
+
+    /**
+     * Number of threads in the shared pool used to decode CRAM slices in parallel when iterating through CRAM files.
+     * If 0, slices are decoded on the reading thread.  Default = 0.
+     */
+    public static final int CRAM_DECODING_THREADS;
+
+    /**
+     * Number of threads in the shared pool used to encode CRAM slices in parallel when writing CRAM files.
+     * If 0, slices are encoded on the writing thread.  Default = 0.
+     */
+    public static final int CRAM_ENCODING_THREADS;
+
+    /**
+     * Maximum number of data blocks of an htsget response downloaded concurrently by
+     * {@link htsjdk.samtools.HtsgetBAMFileReader}.  If 1, blocks are downloaded one after the other.  Default = 4.
+     */
+    public static final int HTSGET_DOWNLOAD_THREADS;
+
+    /**
+     * Number of threads in the shared pool used to decode the lines of VCF text files in parallel when iterating
+     * through them with {@link htsjdk.variant.vcf.VCFFileReader} or {@link htsjdk.variant.vcf.VCFIteratorBuilder}.
+     * If 0, lines are decoded on the reading thread.  Default = 0.
+     */
+    public static final int VCF_DECODING_THREADS;
+
+    /**
+     * Should the genotypes of BCF2 files be decoded into packed, per-sample columns, rather than into a list of
+     * {@link htsjdk.variant.variantcontext.Genotype}s?  Genotypes are then only created when they are accessed one
+     * by one, which saves time and memory for files with many samples.  Default = false.
+     */
+    public static final boolean COLUMNAR_GENOTYPES;
+
+    /**
+     * Should {@link htsjdk.samtools.util.SortingCollection}s whose comparator provides a primitive sort key keep
+     * their records encoded in off-heap buffers, rather than as objects on the heap?  Default = false.
+     */
+    public static final boolean SORTING_COLLECTION_OFF_HEAP;
+
+    /**
+     * Should indexed, uncompressed fasta files on the default file system be memory-mapped when opened through
+     * {@link htsjdk.samtools.reference.ReferenceSequenceFileFactory}?  Default = false.
+     */
+    public static final boolean USE_MEMORY_MAPPED_FASTA;
+
+    /**
+     * Maximum number of bytes cached by the {@link htsjdk.samtools.seekablestream.SeekableCachingStream} with which
+     * {@link htsjdk.samtools.seekablestream.SeekableStreamFactory} wraps each stream it opens over http(s), ftp or a
+     * non-local {@link java.nio.file.Path}.  The property is given in bytes, without a unit suffix, e.g.
+     * -Dsamjdk.seekable_stream_cache_size=67108864 for 64 MiB.  If 0, streams are not wrapped.
+     * Default = 33554432 (32 MiB).
+     */
+    public static final long SEEKABLE_STREAM_CACHE_SIZE;
+
     /** Buffer size, in bytes, used whenever reading/writing files or streams.  Default = 128k. */
     public static final int BUFFER_SIZE;
 
@@ -124,6 +189,16 @@ public class Defaults {
         USE_ASYNC_IO_WRITE_FOR_SAMTOOLS = getBooleanProperty("use_async_io_write_samtools", false);
         USE_ASYNC_IO_WRITE_FOR_TRIBBLE = getBooleanProperty("use_async_io_write_tribble", false);
         COMPRESSION_LEVEL = getIntProperty("compression_level", 5);
+        BGZF_COMPRESSION_THREADS = getIntProperty("bgzf_compression_threads", 0);
+        BGZF_DECOMPRESSION_THREADS = getIntProperty("bgzf_decompression_threads", 0);
+        CRAM_DECODING_THREADS = getIntProperty("cram_decoding_threads", 0);
+        CRAM_ENCODING_THREADS = getIntProperty("cram_encoding_threads", 0);
+        HTSGET_DOWNLOAD_THREADS = getIntProperty("htsget_download_threads", 4);
+        VCF_DECODING_THREADS = getIntProperty("vcf_decoding_threads", 0);
+        COLUMNAR_GENOTYPES = getBooleanProperty("columnar_genotypes", false);
+        SORTING_COLLECTION_OFF_HEAP = getBooleanProperty("sorting_collection_off_heap", false);
+        USE_MEMORY_MAPPED_FASTA = getBooleanProperty("use_memory_mapped_fasta", false);
+        SEEKABLE_STREAM_CACHE_SIZE = getLongProperty("seekable_stream_cache_size", 32L * 1024 * 1024);
         DEFAULT_SAM_EXTENSION = getStringProperty("default_sam_type", "bam");
         DEFAULT_VCF_EXTENSION = getStringProperty("default_vcf_type", "vcf");
         BUFFER_SIZE = getIntProperty("buffer_size", 1024 * 128);
@@ -155,6 +230,16 @@ public class Defaults {
         result.put("USE_ASYNC_IO_WRITE_FOR_SAMTOOLS", USE_ASYNC_IO_WRITE_FOR_SAMTOOLS);
         result.put("USE_ASYNC_IO_WRITE_FOR_TRIBBLE", USE_ASYNC_IO_WRITE_FOR_TRIBBLE);
         result.put("COMPRESSION_LEVEL", COMPRESSION_LEVEL);
+        result.put("BGZF_COMPRESSION_THREADS", BGZF_COMPRESSION_THREADS);
+        result.put("BGZF_DECOMPRESSION_THREADS", BGZF_DECOMPRESSION_THREADS);
+        result.put("CRAM_DECODING_THREADS", CRAM_DECODING_THREADS);
+        result.put("CRAM_ENCODING_THREADS", CRAM_ENCODING_THREADS);
+        result.put("HTSGET_DOWNLOAD_THREADS", HTSGET_DOWNLOAD_THREADS);
+        result.put("VCF_DECODING_THREADS", VCF_DECODING_THREADS);
+        result.put("COLUMNAR_GENOTYPES", COLUMNAR_GENOTYPES);
+        result.put("SORTING_COLLECTION_OFF_HEAP", SORTING_COLLECTION_OFF_HEAP);
+        result.put("USE_MEMORY_MAPPED_FASTA", USE_MEMORY_MAPPED_FASTA);
+        result.put("SEEKABLE_STREAM_CACHE_SIZE", SEEKABLE_STREAM_CACHE_SIZE);
         result.put("BUFFER_SIZE", BUFFER_SIZE);
         result.put("NON_ZERO_BUFFER_SIZE", NON_ZERO_BUFFER_SIZE);
         result.put("REFERENCE_FASTA", REFERENCE_FASTA);
@@ -202,6 +287,12 @@ public class Defaults {
         return Integer.parseInt(value);
     }
 
+    /** Gets a long system property, prefixed with "samjdk." using the default if the property does not exist. */
+    private static long getLongProperty(final String name, final long def) {
+        final String value = getStringProperty(name, Long.toString(def));
+        return Long.parseLong(value);
+    }
+
     /** Gets a File system property, prefixed with "samjdk." using the default if the property does not exist. */
     private static File getFileProperty(final String name, final String def) {
         final String value = getStringProperty(name, def);
@@ -5,6 +5,7 @@ import htsjdk.samtools.filter.SamRecordFilter;
 import htsjdk.samtools.util.*;
 import htsjdk.samtools.util.htsget.*;
 import htsjdk.samtools.util.zip.InflaterFactory;
+import htsjdk.utils.ValidationUtils;
 
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -49,6 +50,9 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
 
     private boolean usePOSTRequest;
 
+    // Maximum number of data blocks of a response downloaded at the same time
+    private int mDownloadParallelism = Defaults.HTSGET_DOWNLOAD_THREADS;
+
     /**
      * Instantiate an HtsgetBAMFileReader from an HtsgetInputResource,
      * attempting to convert it to an https resource then a http resource if the server does not support https
@@ -134,7 +138,7 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
 
         final HtsgetRequest req = new HtsgetRequest(this.mSource).withDataClass(HtsgetClass.header);
         // Request only the header and use it to construct a SAMFileHeader for this reader
-        try (final InputStream headerStream = req.getResponse().getDataStream()) {
+        try (final InputStream headerStream = this.getDataStream(req.getResponse())) {
             final BinaryCodec headerCodec = new BinaryCodec(
                 new DataInputStream(this.mUseAsynchronousIO
                     ? new AsyncBlockCompressedInputStream(headerStream, this.mInflaterFactory)
@@ -260,6 +264,18 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
         this.usePOSTRequest = use;
     }
 
+    /**
+     * Set the maximum number of data blocks of each htsget response that are downloaded at the same time, for
+     * subsequent iterator or query requests. The data is still returned in order. Defaults to
+     * {@link Defaults#HTSGET_DOWNLOAD_THREADS}.
+     *
+     * @param parallelism maximum number of concurrent downloads, 1 to download blocks one after the other
+     */
+    public void setDownloadParallelism(final int parallelism) {
+        ValidationUtils.validateArg(parallelism > 0, "parallelism must be positive");
+        this.mDownloadParallelism = parallelism;
+    }
+
     /**
      * Prepare to iterate through the SAMRecords in file order.
      * Unlike file-based BAM readers, multiple iterators may be open at the same time
@@ -431,7 +447,7 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
             throw new IllegalStateException("Expected format of response to be BAM but received + " + resp.getFormat());
         }
 
-        final InputStream stream = resp.getDataStream();
+        final InputStream stream = this.getDataStream(resp);
         final BlockCompressedInputStream compressedInputStream = this.mUseAsynchronousIO
             ? new AsyncBlockCompressedInputStream(stream, this.mInflaterFactory)
             : new BlockCompressedInputStream(stream, this.mInflaterFactory);
@@ -448,6 +464,15 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
         return compressedInputStream;
     }
 
+    /**
+     * @return a stream over the data of the response, whose blocks are downloaded concurrently if there are several
+     */
+    private InputStream getDataStream(final HtsgetResponse resp) {
+        return this.mDownloadParallelism > 1 && resp.getBlocks().size() > 1
+            ? new HtsgetConcurrentDataStream(resp.getBlocks(), this.mDownloadParallelism, HtsgetConcurrentDataStream.DEFAULT_MAX_BUFFERED_BYTES)
+            : resp.getDataStream();
+    }
+
     public static URI convertHtsgetUriToHttps(final URI uri) throws URISyntaxException {
         return new URI("https", uri.getUserInfo(), uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
     }
@@ -0,0 +1,249 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.DaemonThreadFactory;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.htsget.HtsgetResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stream over the data of an htsget response, like {@link HtsgetResponse#getDataStream()}, whose blocks are
+ * downloaded concurrently and returned in order.
+ *
+ * Each block is downloaded by a task on a thread pool owned by this stream, in chunks that are buffered until they
+ * are read. Once the buffered chunks of all blocks add up to the maximum number of buffered bytes, only the block
+ * being read continues downloading, until it too has buffered that many bytes, so that at most about twice the
+ * maximum is ever held in memory. The pool is not shared between streams because its tasks wait for the reader of
+ * their own stream.
+ */
+final class HtsgetConcurrentDataStream extends InputStream {
+    /** Default maximum number of downloaded bytes held in memory before being read. */
+    static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final List<HtsgetResponse.Block> blocks;
+    private final BlockData[] blockData;
+    private final long maxBufferedBytes;
+    private final ExecutorService executor;
+
+    // guards the fields below, and the contents of blockData
+    private final Object lock = new Object();
+    private long bufferedBytes = 0;
+    private int currentBlock = 0;
+    private boolean closed = false;
+
+    // only accessed by the reading thread
+    private byte[] currentChunk = null;
+    private int currentChunkOffset = 0;
+
+    /**
+     * @param blocks the data blocks of an htsget response
+     * @param parallelism the maximum number of blocks to download at the same time
+     * @param maxBufferedBytes the number of downloaded bytes held in memory, above which only the block being read
+     *                         continues downloading
+     */
+    HtsgetConcurrentDataStream(final List<HtsgetResponse.Block> blocks, final int parallelism, final long maxBufferedBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (maxBufferedBytes < 1) {
+            throw new IllegalArgumentException("maxBufferedBytes must be positive: " + maxBufferedBytes);
+        }
+        this.blocks = blocks;
+        this.blockData = new BlockData[blocks.size()];
+        this.maxBufferedBytes = maxBufferedBytes;
+        for (int i = 0; i < blockData.length; i++) {
+            blockData[i] = new BlockData();
+        }
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, blocks.size())), new DaemonThreadFactory());
+        // tasks are started in block order, so the block being read has always been started
+        for (int i = 0; i < blockData.length; i++) {
+            final int blockIndex = i;
+            executor.execute(() -> download(blockIndex));
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return currentChunk[currentChunkOffset++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        final int n = Math.min(length, currentChunk.length - currentChunkOffset);
+        System.arraycopy(currentChunk, currentChunkOffset, buffer, offset, n);
+        currentChunkOffset += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return currentChunk == null ? 0 : currentChunk.length - currentChunkOffset;
+    }
+
+    @Override
+    public void close() {
+        currentChunk = null;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (final BlockData data : blockData) {
+                data.chunks.clear();
+            }
+            lock.notifyAll();
+        }
+        // interrupt downloads blocked on their connection
+        executor.shutdownNow();
+    }
+
+    /**
+     * Make sure there is an unread byte in the current chunk, moving on to the next chunk, and to the next block,
+     * as necessary.
+     *
+     * @return false at the end of the last block
+     */
+    private boolean ensureChunk() throws IOException {
+        if (currentChunk != null && currentChunkOffset < currentChunk.length) {
+            return true;
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (currentChunk != null) {
+                bufferedBytes -= currentChunk.length;
+                blockData[currentBlock].bufferedBytes -= currentChunk.length;
+                currentChunk = null;
+                lock.notifyAll();
+            }
+            while (currentBlock < blockData.length) {
+                final BlockData data = blockData[currentBlock];
+                while (data.chunks.isEmpty() && !data.finished) {
+                    try {
+                        lock.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for htsget data block");
+                    }
+                }
+                if (!data.chunks.isEmpty()) {
+                    currentChunk = data.chunks.remove();
+                    currentChunkOffset = 0;
+                    return true;
+                }
+                if (data.error != null) {
+                    throw data.error;
+                }
+                currentBlock++;
+                // the next block may now download past the limit
+                lock.notifyAll();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Download the block with the given index into its chunks, waiting while too many bytes are buffered.
+     */
+    private void download(final int blockIndex) {
+        final BlockData data = blockData[blockIndex];
+        InputStream in = null;
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!closed && bufferedBytes >= maxBufferedBytes &&
+                            (blockIndex != currentBlock || data.bufferedBytes >= maxBufferedBytes)) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+                if (in == null) {
+                    in = blocks.get(blockIndex).getData();
+                }
+                final byte[] chunk = readChunk(in);
+                synchronized (lock) {
+                    if (chunk == null) {
+                        data.finished = true;
+                        lock.notifyAll();
+                        return;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    data.chunks.add(chunk);
+                    data.bufferedBytes += chunk.length;
+                    bufferedBytes += chunk.length;
+                    lock.notifyAll();
+                }
+            }
+        } catch (final InterruptedException e) {
+            // closed while waiting
+        } catch (final IOException | RuntimeException e) {
+            synchronized (lock) {
+                data.error = e instanceof RuntimeException ?
+                        (RuntimeException) e :
+                        new RuntimeIOException("Could not retrieve data from block " + blockIndex, e);
+                data.finished = true;
+                lock.notifyAll();
+            }
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (final IOException e) {
+                    // the data has already been read, or is no longer wanted
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the next chunk of up to {@link #CHUNK_SIZE} bytes of the stream, or null at its end
+     */
+    private static byte[] readChunk(final InputStream in) throws IOException {
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int length = 0;
+        int n;
+        while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length < buffer.length) {
+            final byte[] chunk = new byte[length];
+            System.arraycopy(buffer, 0, chunk, 0, length);
+            return chunk;
+        }
+        return buffer;
+    }
+
+    /** The downloaded, unread data of a block. */
+    private static final class BlockData {
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private long bufferedBytes = 0;
+        private boolean finished = false;
+        private RuntimeException error = null;
+    }
+}
@@ -0,0 +1,285 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.DaemonThreadFactory;
+import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Creates a BAM index (.bai) by indexing splits of a BAM file in parallel, and merging the index content of the
+ * splits as {@link BAMIndexMerger} does. The index is byte-for-byte identical to the one created by
+ * {@link BAMIndexer#createIndex(SamReader, Path)}.
+ *
+ * The splits start at record boundaries, which are taken from the splitting index (.sbi) of the BAM file if it has
+ * one, and are otherwise found by {@link BAMSplitGuesser}. Records are not fully decoded: only their fixed-length
+ * fields and cigar are read, into recycled records, to compute their bins and chunks. Each split is checked to end
+ * exactly where the next one starts; if a guessed split start turns out not to be a record boundary, the file is
+ * indexed serially instead.
+ *
+ * Unlike {@link BAMIndexer#createIndex(SamReader, Path)}, records are not validated as they are indexed.
+ */
+public final class ParallelBAMIndexer {
+    private static final Log log = Log.getInstance(ParallelBAMIndexer.class);
+
+    /** Splits are made no smaller than this, in bytes, so that small files are not split needlessly. */
+    static final long MIN_SPLIT_SIZE = 1 << 20;
+
+    private final Path bamFile;
+    private final long minSplitSize;
+    private final SAMFileHeader header;
+    private final int numReferences;
+
+    private ParallelBAMIndexer(final Path bamFile, final long minSplitSize) {
+        this.bamFile = bamFile;
+        this.minSplitSize = minSplitSize;
+        this.header = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).getFileHeader(bamFile);
+        this.numReferences = header.getSequenceDictionary().size();
+    }
+
+    /**
+     * Index the given BAM file in parallel, writing the index next to it with the usual .bai extension.
+     *
+     * @param bamFile the BAM file to index
+     * @param parallelism the number of splits to index concurrently
+     */
+    public static void createIndex(final Path bamFile, final int parallelism) {
+        createIndex(bamFile, IOUtil.addExtension(bamFile, FileExtensions.BAI_INDEX), parallelism);
+    }
+
+    /**
+     * Index the given BAM file in parallel.
+     *
+     * @param bamFile the BAM file to index
+     * @param output the index file to write
+     * @param parallelism the number of splits to index concurrently
+     */
+    public static void createIndex(final Path bamFile, final Path output, final int parallelism) {
+        try (final OutputStream out = Files.newOutputStream(output)) {
+            createIndex(bamFile, out, parallelism);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing BAM index " + output, e);
+        }
+    }
+
+    /**
+     * Index the given BAM file in parallel.
+     *
+     * @param bamFile the BAM file to index
+     * @param output the stream to which to write the index, which is closed when the index has been written
+     * @param parallelism the number of splits to index concurrently
+     */
+    public static void createIndex(final Path bamFile, final OutputStream output, final int parallelism) {
+        createIndex(bamFile, output, parallelism, MIN_SPLIT_SIZE);
+    }
+
+    // visible for testing, so that small files can be split
+    static void createIndex(final Path bamFile, final OutputStream output, final int parallelism, final long minSplitSize) {
+        ValidationUtils.nonNull(bamFile, "bamFile");
+        ValidationUtils.validateArg(parallelism > 0, "parallelism must be positive");
+        new ParallelBAMIndexer(bamFile, minSplitSize).createIndex(output, parallelism);
+    }
+
+    private void createIndex(final OutputStream output, final int parallelism) {
+        BAMIndexer.checkSortOrder(header);
+        final long[] splitStarts = findSplitStarts(parallelism);
+        List<SplitIndex> splitIndexes = indexSplits(splitStarts, parallelism);
+        if (splitIndexes == null) {
+            log.warn("Guessed splits of " + bamFile + " do not start at record boundaries; indexing serially.");
+            splitIndexes = indexSplits(new long[]{splitStarts[0]}, 1);
+        }
+
+        final long[] offsets = new long[splitIndexes.size()];
+        try (final BinaryBAMIndexWriter writer = new BinaryBAMIndexWriter(numReferences, output)) {
+            for (int ref = 0; ref < numReferences; ref++) {
+                final List<BAMIndexContent> contents = new ArrayList<>(splitIndexes.size());
+                for (final SplitIndex splitIndex : splitIndexes) {
+                    contents.add(splitIndex.contents[ref]);
+                }
+                // the virtual file offsets of every split are already those of the whole file, so are not shifted
+                writer.writeReference(BAMIndexMerger.mergeBAMIndexContent(ref, contents, offsets));
+            }
+            writer.writeNoCoordinateRecordCount(splitIndexes.stream().mapToLong(s -> s.noCoordinateRecordCount).sum());
+        }
+    }
+
+    /**
+     * @return the virtual file offsets of the records at which splits start, in increasing order, the first being
+     * the first record in the file
+     */
+    private long[] findSplitStarts(final int parallelism) {
+        try (final SeekableStream in = new SeekablePathStream(bamFile)) {
+            final long firstRecord = SAMUtils.findVirtualOffsetOfFirstRecordInBam(in);
+            final long fileLength = in.length();
+            final long splitSize = Math.max(minSplitSize, fileLength / parallelism + 1);
+            if (parallelism == 1 || fileLength <= splitSize) {
+                return new long[]{firstRecord};
+            }
+
+            final Path sbiFile = IOUtil.addExtension(bamFile, FileExtensions.SBI);
+            if (Files.exists(sbiFile)) {
+                final SBIIndex sbiIndex = SBIIndex.load(sbiFile);
+                if (sbiIndex.dataFileLength() == fileLength) {
+                    return sbiIndex.split(splitSize).stream().mapToLong(Chunk::getChunkStart).toArray();
+                }
+                log.warn("Ignoring splitting index " + sbiFile + ", which is for a file of a different length.");
+            }
+
+            final BAMSplitGuesser guesser = new BAMSplitGuesser(in, numReferences);
+            final List<Long> splitStarts = new ArrayList<>();
+            splitStarts.add(firstRecord);
+            for (long position = splitSize; position < fileLength; position += splitSize) {
+                final long splitStart = guesser.guessNextRecordStart(position);
+                if (splitStart == -1) {
+                    break;
+                }
+                if (splitStart > splitStarts.get(splitStarts.size() - 1)) {
+                    splitStarts.add(splitStart);
+                }
+            }
+            return splitStarts.stream().mapToLong(Long::longValue).toArray();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error splitting BAM file " + bamFile, e);
+        }
+    }
+
+    /**
+     * @return the index content of each split, or null if a split other than the first fails or does not end at the
+     * start of the next one
+     */
+    private List<SplitIndex> indexSplits(final long[] splitStarts, final int parallelism) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, splitStarts.length), new DaemonThreadFactory());
+        try {
+            final List<Future<SplitIndex>> futures = new ArrayList<>(splitStarts.length);
+            for (int i = 0; i < splitStarts.length; i++) {
+                final long splitStart = splitStarts[i];
+                final long splitEnd = i + 1 < splitStarts.length ? splitStarts[i + 1] : Long.MAX_VALUE;
+                futures.add(executor.submit(() -> indexSplit(splitStart, splitEnd)));
+            }
+            final List<SplitIndex> splitIndexes = new ArrayList<>(splitStarts.length);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    splitIndexes.add(futures.get(i).get());
+                } catch (final ExecutionException e) {
+                    // a split that does not start at a record can fail to decode in any way; the serial fallback
+                    // reports the error if the file itself is bad
+                    if (i > 0) {
+                        return null;
+                    }
+                    throw e;
+                }
+            }
+            int lastReference = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+            for (int i = 0; i < splitIndexes.size(); i++) {
+                final SplitIndex splitIndex = splitIndexes.get(i);
+                if (i + 1 < splitIndexes.size() && splitIndex.end != splitStarts[i + 1]) {
+                    return null;
+                }
+                // each split checks the order of its own records, as BAMIndexer does
+                if (splitIndex.firstReference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    if (splitIndex.firstReference < lastReference) {
+                        throw new SAMException("Unexpected reference " + splitIndex.firstReference +
+                                " when constructing index for " + lastReference);
+                    }
+                    lastReference = splitIndex.lastReference;
+                }
+            }
+            return splitIndexes;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted while indexing " + bamFile, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SAMException("Error indexing " + bamFile, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Index the records that start at or after splitStart and before splitEnd.
+     */
+    private SplitIndex indexSplit(final long splitStart, final long splitEnd) throws IOException {
+        final SplitIndex splitIndex = new SplitIndex();
+        final BAMIndexer indexer = new BAMIndexer(header.getSequenceDictionary(), splitIndex, false);
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setRecordPool(new BAMRecordPool(false, false));
+        try (final BlockCompressedInputStream in = new BlockCompressedInputStream(new SeekablePathStream(bamFile))) {
+            in.seek(splitStart);
+            codec.setInputStream(in, bamFile.toString());
+            while (true) {
+                final long recordStart = in.getFilePointer();
+                if (recordStart >= splitEnd) {
+                    splitIndex.end = recordStart;
+                    break;
+                }
+                final SAMRecord record = codec.decode();
+                if (record == null) {
+                    splitIndex.end = recordStart;
+                    break;
+                }
+                // the same chunk as the file source of a record read by a SamReader
+                record.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(recordStart, in.getFilePointer()))));
+                final int reference = record.getReferenceIndex();
+                if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    if (splitIndex.firstReference == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                        splitIndex.firstReference = reference;
+                    }
+                    splitIndex.lastReference = reference;
+                }
+                indexer.processAlignment(record);
+                ((BAMRecord) record).release();
+            }
+        }
+        indexer.finish();
+        return splitIndex;
+    }
+
+    /**
+     * Collects the index content of each reference for one split.
+     */
+    private final class SplitIndex implements BAMIndexWriter {
+        private final BAMIndexContent[] contents = new BAMIndexContent[numReferences];
+        private int nextReference = 0;
+        private long noCoordinateRecordCount;
+        private long end;
+        private int firstReference = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        private int lastReference = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+
+        @Override
+        public void writeReference(final BAMIndexContent content) {
+            if (content != null) {
+                // the indexer reuses its metadata for the next reference, so keep a copy of it
+                contents[nextReference] = new BAMIndexContent(content.getReferenceSequence(), content.getBins(),
+                        content.getMetaData().shift(0), content.getLinearIndex());
+            }
+            nextReference++;
+        }
+
+        @Override
+        public void writeNoCoordinateRecordCount(final Long count) {
+            noCoordinateRecordCount = count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
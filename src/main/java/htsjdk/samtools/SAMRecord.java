@@ -216,6 +216,34 @@ public class SAMRecord implements HtsRecord, Cloneable, Locatable, Serializable
         mHeader = header;
     }
 
+    /**
+     * Restores every field to the state of a newly constructed record, so that a record can be recycled rather than
+     * allocated for each record read.
+     */
+    void reinitialize(final SAMFileHeader header) {
+        mReadName = null;
+        mReadBases = NULL_SEQUENCE;
+        mBaseQualities = NULL_QUALS;
+        mReferenceName = NO_ALIGNMENT_REFERENCE_NAME;
+        mAlignmentStart = NO_ALIGNMENT_START;
+        mAlignmentEnd = NO_ALIGNMENT_START;
+        mMappingQuality = NO_MAPPING_QUALITY;
+        mCigarString = NO_ALIGNMENT_CIGAR;
+        mCigar = null;
+        mAlignmentBlocks = null;
+        mFlags = 0;
+        mMateReferenceName = NO_ALIGNMENT_REFERENCE_NAME;
+        mMateAlignmentStart = 0;
+        mInferredInsertSize = 0;
+        mAttributes = null;
+        mReferenceIndex = null;
+        mMateReferenceIndex = null;
+        mValidationStringency = ValidationStringency.SILENT;
+        mFileSource = null;
+        mHeader = header;
+        transientAttributes = null;
+    }
+
     public String getReadName() {
         return mReadName;
     }
@@ -838,6 +866,26 @@ public class SAMRecord implements HtsRecord, Cloneable, Locatable, Serializable
         return getCigar().numCigarElements();
     }
 
+    /**
+     * This method is preferred over getCigar().getCigarElement(index).getOperator(), because for BAMRecord it
+     * avoids decoding the cigar.
+     * @param index index of the cigar element, which must be less than {@link #getCigarLength()}.
+     * @return the operator of the cigar element.
+     */
+    public CigarOperator getCigarElementOperator(final int index) {
+        return getCigar().getCigarElement(index).getOperator();
+    }
+
+    /**
+     * This method is preferred over getCigar().getCigarElement(index).getLength(), because for BAMRecord it
+     * avoids decoding the cigar.
+     * @param index index of the cigar element, which must be less than {@link #getCigarLength()}.
+     * @return the length of the cigar element.
+     */
+    public int getCigarElementLength(final int index) {
+        return getCigar().getCigarElement(index).getLength();
+    }
+
     /**
      * For setting the Cigar string when changed. Note that this nulls the
      * indexing bin, which would need to be recomputed on write (if needed).
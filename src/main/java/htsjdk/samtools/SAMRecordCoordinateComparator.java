@@ -23,6 +23,8 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.SortingCollection;
+
 import java.io.Serializable;
 
 /**
@@ -40,7 +42,7 @@ import java.io.Serializable;
  * if A < B && B < C, then A < C
  *
  */
-public class SAMRecordCoordinateComparator implements SAMRecordComparator, Serializable {
+public class SAMRecordCoordinateComparator implements SAMRecordComparator, SortingCollection.KeyedComparator<SAMRecord>, Serializable {
     private static final long serialVersionUID = 1L;
 
     @Override
@@ -70,6 +72,19 @@ public class SAMRecordCoordinateComparator implements SAMRecordComparator, Seria
         else return (samRecord1.getReadNegativeStrandFlag()? 1: -1);
     }
 
+    /**
+     * Packs the reference index, alignment start and strand into a key that orders records as
+     * {@link #compare(SAMRecord, SAMRecord)} does, up to the comparison of read names.  Unmapped records with no
+     * reference sort last, regardless of their alignment start.
+     */
+    @Override
+    public long sortKey(final SAMRecord samRecord) {
+        final int refIndex = samRecord.getReferenceIndex();
+        final long reference = refIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? Integer.MAX_VALUE : refIndex;
+        final long start = refIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? 0 : samRecord.getAlignmentStart();
+        return reference << 32 | start << 1 | (samRecord.getReadNegativeStrandFlag() ? 1 : 0);
+    }
+
     private int compareInts(int i1, int i2) {
         if (i1 < i2) return -1;
         else if (i1 > i2) return 1;
@@ -468,7 +468,8 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
                             throw new SAMFormatException("Multiple SAMRecord with read name " + rec.getReadName() +
                                     " for " + (firstOfPair ? "second" : "first") + " end.");
                         }
-                        mateRec = next;
+                        // a record read with REUSE_RECORDS is overwritten by the records read after it
+                        mateRec = next instanceof BAMRecord && ((BAMRecord) next).isReleasedOnNext() ? next.deepCopy() : next;
                     }
                 }
                 return mateRec;
@@ -575,6 +576,8 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
 
         private final CloseableIterator<SAMRecord> wrappedIterator;
         private SAMSortOrderChecker checker;
+        // released when the next record is requested, if it was read with SamReaderFactory.Option.REUSE_RECORDS
+        private BAMRecord lastReturned;
 
         public AssertingIterator(final CloseableIterator<SAMRecord> iterator) {
             wrappedIterator = iterator;
@@ -598,6 +601,11 @@ public interface SamReader extends Iterable<SAMRecord>, Closeable {
                             result.getSAMString().trim(), checker.getSortOrder()));
                 }
             }
+            if (lastReturned != null) {
+                // only after the sort check, which compares with the previous record
+                lastReturned.releaseIfReused();
+            }
+            lastReturned = result instanceof BAMRecord ? (BAMRecord) result : null;
             return result;
         }
 
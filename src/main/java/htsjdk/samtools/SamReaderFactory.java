@@ -26,6 +26,7 @@ package htsjdk.samtools;
 
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.sra.SRAAccession;
 import htsjdk.samtools.util.*;
@@ -641,6 +642,145 @@ public abstract class SamReaderFactory {
             void applyTo(final HtsgetBAMFileReader underlyingReader, final SamReader reader) {
                 underlyingReader.enableCrcChecking(true);
             }
+        },
+
+        /**
+         * BAM {@link htsjdk.samtools.SamReader}s decode records into records that have been released with
+         * {@link BAMRecord#release()}, reusing their buffers, rather than allocating a new record for each record read.
+         * A record must not be used after it has been released; use {@link SAMRecord#deepCopy()} to keep a copy of it.
+         * <p/>
+         * When Java assertions are enabled, released records are not reused, and any use of a released record throws an
+         * {@link IllegalStateException}, so that records that are used after being released can be found.
+         */
+        RECYCLE_RELEASED_RECORDS {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.enableRecordRecycling(false);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final HtsgetBAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+        },
+
+        /**
+         * BAM {@link htsjdk.samtools.SamReader}s' iterators reuse records and their buffers for streaming, rather than
+         * allocating a new record for each record read. A record returned by an iterator is only valid until the next
+         * call to that iterator's next() method, after which its contents may be overwritten; use
+         * {@link SAMRecord#deepCopy()} to keep a copy of a record.
+         * <p/>
+         * When Java assertions are enabled, records are not reused, and any use of a record after the next record has
+         * been requested throws an {@link IllegalStateException}, so that records that are retained by mistake can be
+         * found. Takes precedence over {@link #RECYCLE_RELEASED_RECORDS}.
+         */
+        REUSE_RECORDS {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.enableRecordRecycling(true);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final HtsgetBAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+        },
+
+        /**
+         * CRAM {@link htsjdk.samtools.SamReader}s decode records without their read bases, for callers that only need their
+         * alignments, flags or tags, such as coverage or flag statistics jobs. No reference bases are fetched, and the
+         * records have {@link SAMRecord#NULL_SEQUENCE} as bases.
+         *
+         * @see CRAMRecordField#READ_BASES
+         */
+        CRAM_SKIP_READ_BASES {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.skipField(CRAMRecordField.READ_BASES);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final HtsgetBAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+        },
+
+        /**
+         * CRAM {@link htsjdk.samtools.SamReader}s decode records without their base qualities, which are then
+         * {@link SAMRecord#NULL_QUALS}.
+         *
+         * @see CRAMRecordField#BASE_QUALITIES
+         */
+        CRAM_SKIP_BASE_QUALITIES {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.skipField(CRAMRecordField.BASE_QUALITIES);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final HtsgetBAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
         };
 
         public static final EnumSet<Option> DEFAULTS = EnumSet.noneOf(Option.class);
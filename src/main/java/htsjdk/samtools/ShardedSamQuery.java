@@ -0,0 +1,516 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.filter.FilteringSamIterator;
+import htsjdk.samtools.filter.SamRecordFilter;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Query of an indexed SAM/BAM/CRAM file that is split into shards which can be read in parallel.
+ *
+ * The query is either a set of intervals, as for {@link SamReader#query(QueryInterval[], boolean)}, or the whole
+ * genome, optionally followed by the unplaced unmapped reads. Intervals are split, and gathered, into shards of
+ * about the same number of compressed bytes, as estimated from the file's index (.bai, .csi or .crai), at
+ * boundaries that are multiples of the 16kb windows of the linear index. Each shard is read with its own
+ * {@link SamReader}, and so its own stream, obtained from the given supplier, and each record matching the query is
+ * returned by exactly one shard, so that the records of all the shards, in shard order, are those that
+ * {@link SamReader#query(QueryInterval[], boolean)} returns, in the same order.
+ *
+ * The records can be processed per shard with {@link #processShards(ShardProcessor)}, which runs the shards on a
+ * thread pool of {@link #setParallelism(int)} threads, or as a parallel {@link #stream()}.
+ */
+public final class ShardedSamQuery {
+    // granularity of the linear index, at multiples of which intervals are split
+    private static final int SPLIT_GRANULARITY = 1 << 14;
+    // shards per thread by default, so that shards whose estimated size is off do not leave threads idle
+    private static final int DEFAULT_SHARDS_PER_THREAD = 4;
+
+    private final Supplier<SamReader> readerSupplier;
+    private final QueryInterval[] intervals;
+    private final boolean contained;
+    private final boolean includeUnmapped;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int numberOfShards = 0;
+
+    // computed by getShards()
+    private List<Shard> shards = null;
+    private SplitInterval[] splitIntervals = null;
+
+    /**
+     * A query of the given intervals, which must be optimized as for {@link SamReader#query(QueryInterval[], boolean)}.
+     *
+     * @param readerSupplier supplies a new reader of the indexed file for each shard, for example
+     *                       {@code () -> SamReaderFactory.makeDefault().open(path)}
+     * @param intervals the intervals to query
+     * @param contained if true, only records contained in the intervals are returned, otherwise those overlapping them
+     */
+    public ShardedSamQuery(final Supplier<SamReader> readerSupplier, final QueryInterval[] intervals, final boolean contained) {
+        this(readerSupplier, intervals, contained, false);
+        ValidationUtils.nonNull(intervals, "intervals");
+        QueryInterval.assertIntervalsOptimized(intervals);
+    }
+
+    private ShardedSamQuery(final Supplier<SamReader> readerSupplier, final QueryInterval[] intervals,
+                            final boolean contained, final boolean includeUnmapped) {
+        ValidationUtils.nonNull(readerSupplier, "readerSupplier");
+        this.readerSupplier = readerSupplier;
+        this.intervals = intervals;
+        this.contained = contained;
+        this.includeUnmapped = includeUnmapped;
+    }
+
+    /**
+     * A query of all the records placed on the reference sequences of the file.
+     *
+     * @param readerSupplier supplies a new reader of the indexed file for each shard
+     * @param includeUnmapped if true, a last shard returns the unplaced unmapped records, as
+     *                        {@link SamReader#queryUnmapped()} does
+     */
+    public static ShardedSamQuery wholeGenome(final Supplier<SamReader> readerSupplier, final boolean includeUnmapped) {
+        return new ShardedSamQuery(readerSupplier, null, false, includeUnmapped);
+    }
+
+    /**
+     * @param parallelism number of shards read at the same time by {@link #processShards(ShardProcessor)}, by
+     *                    default the number of available processors
+     */
+    public ShardedSamQuery setParallelism(final int parallelism) {
+        ValidationUtils.validateArg(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param numberOfShards number of shards, of about the same size, into which to split the query, by default four
+     *                       times the parallelism; there may be fewer if the query is too small to split so finely
+     */
+    public ShardedSamQuery setNumberOfShards(final int numberOfShards) {
+        ValidationUtils.validateArg(numberOfShards > 0, "numberOfShards must be positive");
+        ValidationUtils.validateArg(shards == null, "the query has already been split into shards");
+        this.numberOfShards = numberOfShards;
+        return this;
+    }
+
+    /**
+     * @return the shards of the query, in coordinate order, with the shard of unmapped records last if there is one
+     */
+    public synchronized List<Shard> getShards() {
+        if (shards == null) {
+            try (final SamReader reader = readerSupplier.get()) {
+                if (!reader.hasIndex()) {
+                    throw new SAMException("A sharded query requires an indexed file: " + reader.getResourceDescription());
+                }
+                splitIntoShards(reader.getFileHeader().getSequenceDictionary(), reader.indexing().getIndex());
+            } catch (final IOException e) {
+                throw new SAMException("Error closing reader", e);
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Open an iterator over the records of a shard, with a new reader that is closed with the iterator.
+     *
+     * @param shard one of the shards of this query
+     * @return the records of the shard, in coordinate order
+     */
+    public CloseableIterator<SAMRecord> iterator(final Shard shard) {
+        ValidationUtils.validateArg(getShards().get(shard.index) == shard, "shard is not one of this query's shards");
+        final SamReader reader = readerSupplier.get();
+        try {
+            if (shard.isUnmapped()) {
+                return new ReaderClosingIterator(reader.queryUnmapped(), reader);
+            }
+            final SAMRecordIterator iterator = reader.queryOverlapping(shard.intervals);
+            return new ReaderClosingIterator(new FilteringSamIterator(iterator, new SamRecordFilter() {
+                @Override
+                public boolean filterOut(final SAMRecord record) {
+                    return !isOwnedBy(record, shard);
+                }
+
+                @Override
+                public boolean filterOut(final SAMRecord first, final SAMRecord second) {
+                    return filterOut(first) || filterOut(second);
+                }
+            }), reader);
+        } catch (final RuntimeException e) {
+            CloserUtil.close(reader);
+            throw e;
+        }
+    }
+
+    /**
+     * Processes the records of each shard with the given processor, on a pool of {@link #setParallelism(int)}
+     * threads.
+     *
+     * @return the results of the processor, in shard order
+     */
+    public <T> List<T> processShards(final ShardProcessor<T> processor) {
+        ValidationUtils.nonNull(processor, "processor");
+        final List<Shard> shards = getShards();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, shards.size())), new DaemonThreadFactory());
+        try {
+            final List<Future<T>> futures = new ArrayList<>(shards.size());
+            for (final Shard shard : shards) {
+                futures.add(executor.submit(() -> {
+                    try (final CloseableIterator<SAMRecord> records = iterator(shard)) {
+                        return processor.process(shard, records);
+                    }
+                }));
+            }
+            final List<T> results = new ArrayList<>(shards.size());
+            for (final Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted while processing shards", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SAMException("Error processing shard", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return a parallel, ordered stream of the records of all the shards, which is split by shard. The stream
+     * should be closed, to close the readers of shards that have not been read to the end.
+     */
+    public Stream<SAMRecord> stream() {
+        final Set<CloseableIterator<SAMRecord>> openIterators = ConcurrentHashMap.newKeySet();
+        return StreamSupport.stream(new ShardSpliterator(getShards(), 0, getShards().size(), openIterators), true)
+                .onClose(() -> openIterators.forEach(CloseableIterator::close));
+    }
+
+    /**
+     * @return true if the record matches the query and is returned by the given shard rather than another one
+     */
+    private boolean isOwnedBy(final SAMRecord record, final Shard shard) {
+        // the first interval that the record can match, since the intervals do not overlap
+        int low = 0;
+        int high = splitIntervals.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final SplitInterval interval = splitIntervals[mid];
+            if (interval.interval.referenceIndex < record.getReferenceIndex() ||
+                    (interval.interval.referenceIndex == record.getReferenceIndex() && interval.interval.end < record.getAlignmentStart())) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == splitIntervals.length) {
+            return false;
+        }
+        final SplitInterval interval = splitIntervals[low];
+        final BAMIteratorFilter.IntervalComparison comparison =
+                BAMQueryMultipleIntervalsIteratorFilter.compareIntervalToRecord(interval.interval, record);
+        if (comparison != BAMIteratorFilter.IntervalComparison.CONTAINED &&
+                (contained || comparison != BAMIteratorFilter.IntervalComparison.OVERLAPPING)) {
+            return false;
+        }
+        // a record that matches an interval is returned by the shard of the part of the interval in which it
+        // starts, or of its first part if it starts before the interval
+        return interval.shardAt(Math.max(record.getAlignmentStart(), interval.interval.start)) == shard.index;
+    }
+
+    private void splitIntoShards(final SAMSequenceDictionary dictionary, final BAMIndex index) {
+        final QueryInterval[] queryIntervals;
+        if (intervals == null) {
+            queryIntervals = dictionary.getSequences().stream()
+                    .map(s -> new QueryInterval(s.getSequenceIndex(), 1, Integer.MAX_VALUE))
+                    .toArray(QueryInterval[]::new);
+        } else {
+            // an end <= 0 is the end of the reference sequence
+            queryIntervals = Arrays.stream(intervals)
+                    .map(i -> i.end <= 0 ? new QueryInterval(i.referenceIndex, i.start, Integer.MAX_VALUE) : i)
+                    .toArray(QueryInterval[]::new);
+        }
+
+        long totalBytes = 0;
+        for (final QueryInterval interval : queryIntervals) {
+            totalBytes += estimateBytes(index, interval.referenceIndex, interval.start, interval.end);
+        }
+        final int targetShards = numberOfShards > 0 ? numberOfShards : DEFAULT_SHARDS_PER_THREAD * parallelism;
+        final long targetBytes = Math.max(1, totalBytes / targetShards);
+
+        final List<Shard> shards = new ArrayList<>();
+        final List<QueryInterval> shardIntervals = new ArrayList<>();
+        long shardBytes = 0;
+        long totalShardedBytes = 0;
+        splitIntervals = new SplitInterval[queryIntervals.length];
+        for (int i = 0; i < queryIntervals.length; i++) {
+            final QueryInterval interval = queryIntervals[i];
+            // intervals are split no further than the end of their sequence, but the last part is queried to the end
+            // of the interval
+            final int end = Math.min(interval.end, Math.max(interval.start, dictionary.getSequence(interval.referenceIndex).getSequenceLength()));
+            final List<Integer> partStarts = new ArrayList<>();
+            final List<Integer> partShards = new ArrayList<>();
+            int start = interval.start;
+            while (start <= end) {
+                // the part fills the rest of the current shard
+                final long room = Math.max(1, (shards.size() + 1) * targetBytes - totalShardedBytes);
+                final int splitEnd = nextPartEnd(index, interval.referenceIndex, start, end, room);
+                final int partEnd = splitEnd == end ? interval.end : splitEnd;
+                final long bytes = estimateBytes(index, interval.referenceIndex, start, splitEnd);
+                partStarts.add(start);
+                partShards.add(shards.size());
+                // parts of the same interval in the same shard are queried as one interval
+                final QueryInterval last = shardIntervals.isEmpty() ? null : shardIntervals.get(shardIntervals.size() - 1);
+                if (last != null && last.referenceIndex == interval.referenceIndex && last.end == start - 1) {
+                    shardIntervals.set(shardIntervals.size() - 1, new QueryInterval(last.referenceIndex, last.start, partEnd));
+                } else {
+                    shardIntervals.add(new QueryInterval(interval.referenceIndex, start, partEnd));
+                }
+                shardBytes += bytes;
+                totalShardedBytes += bytes;
+                // shards end where the running total passes a multiple of the target, so that the sizes of the
+                // parts do not add up to make later shards too small
+                if (totalShardedBytes >= (shards.size() + 1) * targetBytes) {
+                    shards.add(new Shard(shards.size(), shardIntervals.toArray(new QueryInterval[0]), shardBytes, false));
+                    shardIntervals.clear();
+                    shardBytes = 0;
+                }
+                if (splitEnd == end) {
+                    break;
+                }
+                start = splitEnd + 1;
+            }
+            splitIntervals[i] = new SplitInterval(interval,
+                    partStarts.stream().mapToInt(Integer::intValue).toArray(),
+                    partShards.stream().mapToInt(Integer::intValue).toArray());
+        }
+        if (!shardIntervals.isEmpty()) {
+            shards.add(new Shard(shards.size(), shardIntervals.toArray(new QueryInterval[0]), shardBytes, false));
+        }
+        if (includeUnmapped) {
+            shards.add(new Shard(shards.size(), new QueryInterval[0], 0, true));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * @return the end of the part of an interval from start to end that starts at start, which is the end of the
+     * interval if it is not much bigger than targetBytes, or otherwise the end of the largest number of linear index
+     * windows whose estimated size is within targetBytes
+     */
+    private static int nextPartEnd(final BAMIndex index, final int referenceIndex, final int start, final int end, final long targetBytes) {
+        if ((long) end - start < SPLIT_GRANULARITY || estimateBytes(index, referenceIndex, start, end) <= targetBytes + targetBytes / 2) {
+            return end;
+        }
+        // the number of windows from start
+        long low = 1;
+        long high = ((long) end - start) / SPLIT_GRANULARITY;
+        while (low < high) {
+            final long mid = (low + high + 1) >>> 1;
+            if (estimateBytes(index, referenceIndex, start, (int) (start + mid * SPLIT_GRANULARITY - 1)) <= targetBytes) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return (int) (start + low * SPLIT_GRANULARITY - 1);
+    }
+
+    /**
+     * @return the number of compressed bytes of the file to be read to query the given interval, according to the index
+     */
+    private static long estimateBytes(final BAMIndex index, final int referenceIndex, final int start, final int end) {
+        final BAMFileSpan span = index.getSpanOverlapping(referenceIndex, start, end);
+        if (span == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (final Chunk chunk : span.getChunks()) {
+            // compressed block addresses; a chunk within a single block is counted as one byte
+            bytes += (chunk.getChunkEnd() >>> 16) - (chunk.getChunkStart() >>> 16) + 1;
+        }
+        return bytes;
+    }
+
+    /**
+     * A shard of a query, which is read with its own reader.
+     */
+    public static final class Shard {
+        private final int index;
+        private final QueryInterval[] intervals;
+        private final long estimatedBytes;
+        private final boolean unmapped;
+
+        private Shard(final int index, final QueryInterval[] intervals, final long estimatedBytes, final boolean unmapped) {
+            this.index = index;
+            this.intervals = intervals;
+            this.estimatedBytes = estimatedBytes;
+            this.unmapped = unmapped;
+        }
+
+        /** @return the position of this shard in the shards of its query */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the intervals queried for this shard, from which records that belong to another shard are
+         * filtered out, or an empty array for the shard of unmapped records
+         */
+        public QueryInterval[] getIntervals() {
+            return intervals.clone();
+        }
+
+        /** @return the number of compressed bytes of the file read for this shard, as estimated from the index */
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /** @return true if this is the shard of unplaced unmapped records */
+        public boolean isUnmapped() {
+            return unmapped;
+        }
+
+        @Override
+        public String toString() {
+            return "Shard " + index + (unmapped ? " (unmapped)" : " " + Arrays.toString(intervals)) + ", ~" + estimatedBytes + " bytes";
+        }
+    }
+
+    /**
+     * Processes the records of a shard.
+     */
+    @FunctionalInterface
+    public interface ShardProcessor<T> {
+        /**
+         * @param shard the shard
+         * @param records its records, in coordinate order, which are only valid during the call
+         * @return the result for the shard
+         */
+        T process(Shard shard, Iterator<SAMRecord> records);
+    }
+
+    /**
+     * An interval of the query, with the starts of its parts and the shards they belong to.
+     */
+    private static final class SplitInterval {
+        private final QueryInterval interval;
+        private final int[] partStarts;
+        private final int[] partShards;
+
+        private SplitInterval(final QueryInterval interval, final int[] partStarts, final int[] partShards) {
+            this.interval = interval;
+            this.partStarts = partStarts;
+            this.partShards = partShards;
+        }
+
+        private int shardAt(final int position) {
+            final int i = Arrays.binarySearch(partStarts, position);
+            return partShards[i >= 0 ? i : -i - 2];
+        }
+    }
+
+    private static final class ReaderClosingIterator implements CloseableIterator<SAMRecord> {
+        private final CloseableIterator<SAMRecord> iterator;
+        private final SamReader reader;
+
+        private ReaderClosingIterator(final CloseableIterator<SAMRecord> iterator, final SamReader reader) {
+            this.iterator = iterator;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public SAMRecord next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            iterator.close();
+            CloserUtil.close(reader);
+        }
+    }
+
+    /**
+     * Splits by shard, and reads the records of each shard in turn.
+     */
+    private final class ShardSpliterator implements Spliterator<SAMRecord> {
+        private final List<Shard> shards;
+        private final Set<CloseableIterator<SAMRecord>> openIterators;
+        private int nextShard;
+        private final int endShard;
+        private CloseableIterator<SAMRecord> current = null;
+
+        private ShardSpliterator(final List<Shard> shards, final int startShard, final int endShard,
+                                 final Set<CloseableIterator<SAMRecord>> openIterators) {
+            this.shards = shards;
+            this.nextShard = startShard;
+            this.endShard = endShard;
+            this.openIterators = openIterators;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super SAMRecord> action) {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    openIterators.remove(current);
+                    current = null;
+                }
+                if (nextShard == endShard) {
+                    return false;
+                }
+                current = iterator(shards.get(nextShard++));
+                openIterators.add(current);
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<SAMRecord> trySplit() {
+            if (current != null || endShard - nextShard < 2) {
+                return null;
+            }
+            final int middle = (nextShard + endShard) >>> 1;
+            final ShardSpliterator prefix = new ShardSpliterator(shards, nextShard, middle, openIterators);
+            nextShard = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
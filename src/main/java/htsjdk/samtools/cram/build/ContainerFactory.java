@@ -25,6 +25,12 @@ import htsjdk.samtools.cram.structure.*;
 import htsjdk.utils.ValidationUtils;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Aggregates SAMRecord objects into one or more {@link Container}s, composed of one or more {@link Slice}s.
@@ -63,6 +69,12 @@ import java.util.*;
  * remaining reads mapped to the previous sequence, plus some subsequent records are accumulated until
  * MINIMUM_SINGLE_REFERENCE_SLICE_THRESHOLD is hit, and the resulting MULTI_REFERENCE slice will be emitted into
  * it's own container.
+ *
+ * Alternatively, the slices of each Container can be encoded and compressed on an {@link ExecutorService} by
+ * using {@link #getNextContainer(SAMRecord, ExecutorService)} and {@link #getFinalContainer(ExecutorService)},
+ * which return future Containers. Compression headers are still created in order, on the calling thread, since
+ * the tag encodings chosen for one container carry over to subsequent ones. The byte offset of these Containers
+ * is unknown until they are written, and must be set by the caller with {@link Container#setContainerByteOffset}.
  */
 public final class ContainerFactory {
     private final CRAMEncodingStrategy encodingStrategy;
@@ -73,6 +85,11 @@ public final class ContainerFactory {
     private final boolean coordinateSorted;
     private final List<SAMRecord> sliceSAMRecords;
 
+    // used to compute slice MD5s on threads encoding slices for future containers, each region being borrowed
+    // for the encoding of one container's slices
+    private final Queue<CRAMReferenceRegion> idleReferenceRegions = new ConcurrentLinkedQueue<>();
+    private final CRAMReferenceSource referenceSource;
+
     private long globalRecordCounter = 0;
     private int currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
 
@@ -91,6 +108,7 @@ public final class ContainerFactory {
         compressionHeaderFactory = new CompressionHeaderFactory(encodingStrategy);
         sliceFactory = new SliceFactory(encodingStrategy, referenceSource, samFileHeader, globalRecordCounter);
         sliceSAMRecords = new ArrayList<>(this.encodingStrategy.getReadsPerSlice());
+        this.referenceSource = referenceSource;
     }
 
     /**
@@ -101,7 +119,24 @@ public final class ContainerFactory {
      * @return a {@link Container} if the threshold for emitting a {@link Container} has been reached, otherwise null
      */
     public final Container getNextContainer(final SAMRecord samRecord, final long containerByteOffset) {
-        Container container = null;
+        return getNextContainer(samRecord, () -> makeContainer(containerByteOffset));
+    }
+
+    /**
+     * Add a new {@link SAMRecord} object to the factory, obtaining a future {@link Container} if one is returned.
+     * The slices of the Container are encoded on the given executor. The Container's byte offset is not set.
+     *
+     * @param samRecord the next SAMRecord to be written
+     * @param executor the executor on which to encode the Container's slices
+     * @return a future {@link Container} if the threshold for emitting a {@link Container} has been reached,
+     * otherwise null
+     */
+    public final Future<Container> getNextContainer(final SAMRecord samRecord, final ExecutorService executor) {
+        return getNextContainer(samRecord, () -> makeContainer(executor));
+    }
+
+    private <T> T getNextContainer(final SAMRecord samRecord, final Supplier<T> containerMaker) {
+        T container = null;
 
         if (samRecord.getHeader() == null) {
             samRecord.setHeaderStrict(samFileHeader);
@@ -122,7 +157,7 @@ public final class ContainerFactory {
                     currentReferenceContextID,
                     nextRecordIndex,
                     sliceFactory.getNumberOfSliceEntries())) {
-                container = makeContainer(containerByteOffset);
+                container = containerMaker.get();
             }
             currentReferenceContextID = nextRecordIndex;
         } else {
@@ -140,13 +175,28 @@ public final class ContainerFactory {
      * @return a {@link Container} if any record have been accumulated, otherwise null
      */
     public Container getFinalContainer(final long containerByteOffset) {
+        return getFinalContainer(() -> makeContainer(containerByteOffset));
+    }
+
+    /**
+     * Obtain a future {@link Container} from any remaining accumulated SAMRecords, if any. The slices of the
+     * Container are encoded on the given executor. The Container's byte offset is not set.
+     *
+     * @param executor the executor on which to encode the Container's slices
+     * @return a future {@link Container} if any record have been accumulated, otherwise null
+     */
+    public Future<Container> getFinalContainer(final ExecutorService executor) {
+        return getFinalContainer(() -> makeContainer(executor));
+    }
+
+    private <T> T getFinalContainer(final Supplier<T> containerMaker) {
         // write a final slice, if any, and a final container, if there are any slices
         if (sliceSAMRecords.size() > 0) {
             sliceFactory.createNewSliceEntry(currentReferenceContextID, sliceSAMRecords);
             sliceSAMRecords.clear();
         }
         if (sliceFactory.getNumberOfSliceEntries() != 0) {
-            final Container container = makeContainer(containerByteOffset);
+            final T container = containerMaker.get();
             currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
             return container;
         }
@@ -220,4 +270,39 @@ public final class ContainerFactory {
         return container;
     }
 
+    /**
+     * Create the compression header for a Container on the calling thread, and submit the creation of its
+     * Slices, and of the Container itself, to the executor.
+     *
+     * @param executor the executor on which to encode the Container's slices
+     * @return the future Container, with its byte offset unset
+     */
+    private Future<Container> makeContainer(final ExecutorService executor) {
+        ValidationUtils.validateArg(
+                sliceFactory.getNumberOfSliceEntries() != 0,
+                "must have slice entries to create a container");
+
+        final List<CRAMCompressionRecord> containerRecords = sliceFactory.getCRAMRecordsForAllSlices();
+        final CompressionHeader compressionHeader = compressionHeaderFactory.createCompressionHeader(
+                containerRecords,
+                coordinateSorted);
+        // the next compression header will add its tag encodings to the shared encoding map
+        compressionHeader.detachEncodingMap();
+        final Function<CRAMReferenceRegion, List<Slice>> slices = sliceFactory.detachSlices(compressionHeader, 0);
+        final long containerRecordCounter = globalRecordCounter;
+        globalRecordCounter += containerRecords.size();
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    CRAMReferenceRegion referenceRegion = idleReferenceRegions.poll();
+                    if (referenceRegion == null) {
+                        referenceRegion = new CRAMReferenceRegion(referenceSource, samFileHeader.getSequenceDictionary());
+                    }
+                    try {
+                        return new Container(compressionHeader, slices.apply(referenceRegion), 0, containerRecordCounter);
+                    } finally {
+                        idleReferenceRegions.add(referenceRegion);
+                    }
+                },
+                executor);
+    }
 }
@@ -36,6 +36,7 @@ import htsjdk.samtools.cram.structure.CompressionHeader;
 import htsjdk.samtools.cram.structure.Slice;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -44,10 +45,15 @@ import java.util.stream.Collectors;
  * the provided {@link CRAMEncodingStrategy} object.
  */
 public final class SliceFactory {
+    // the number of reference bases fetched at a time for the records of coordinate sorted input, which are then
+    // compared to the reference without fetching it again until a record is aligned past the fetched bases
+    private static final int REFERENCE_WINDOW_SIZE = 1 << 20;
+
     private final CRAMEncodingStrategy encodingStrategy;
 
     private final List<SliceStagingEntry> cramRecordSliceEntries;
     private final CRAMReferenceRegion cramReferenceRegion;
+    private final SAMSequenceDictionary sequenceDictionary;
 
     private long sliceRecordCounter;
     private final int maxRecordsPerSlice;
@@ -69,6 +75,7 @@ public final class SliceFactory {
             final long globalRecordCounter) {
         this.encodingStrategy = cramEncodingStrategy;
         this.cramReferenceRegion = new CRAMReferenceRegion(cramReferenceSource, samFileHeader.getSequenceDictionary());
+        this.sequenceDictionary = samFileHeader.getSequenceDictionary();
         minimumSingleReferenceSliceThreshold = encodingStrategy.getMinimumSingleReferenceSliceSize();
         maxRecordsPerSlice = this.encodingStrategy.getReadsPerSlice();
         this.coordinateSorted = samFileHeader.getSortOrder() == SAMFileHeader.SortOrder.coordinate;
@@ -129,8 +136,37 @@ public final class SliceFactory {
     public List<Slice> createSlices(
             final CompressionHeader compressionHeader,
             final long containerByteOffset) {
-        final List<Slice> slices = new ArrayList<>(cramRecordSliceEntries.size());
-        for (final SliceStagingEntry sliceStagingEntry : cramRecordSliceEntries) {
+        final List<Slice> slices = createSlices(cramRecordSliceEntries, compressionHeader, containerByteOffset, cramReferenceRegion);
+        cramRecordSliceEntries.clear();
+        return slices;
+    }
+
+    /**
+     * Returns a task that creates a set of Slices using the records accumulated by the factory, and resets the
+     * factory state, so that the Slices can be encoded on another thread while this factory accumulates records
+     * for subsequent slices.
+     *
+     * @param compressionHeader the compression header to use to create the Slices. Its encoding map must not
+     *                          be modified while the task runs (see {@link CompressionHeader#detachEncodingMap()}).
+     * @param containerByteOffset the container byte offset to use for the newly created Slices
+     * @return a function that creates the Slices, using the {@link CRAMReferenceRegion} it is given to compute
+     * the reference MD5 of single reference slices
+     */
+    public Function<CRAMReferenceRegion, List<Slice>> detachSlices(
+            final CompressionHeader compressionHeader,
+            final long containerByteOffset) {
+        final List<SliceStagingEntry> sliceStagingEntries = new ArrayList<>(cramRecordSliceEntries);
+        cramRecordSliceEntries.clear();
+        return region -> createSlices(sliceStagingEntries, compressionHeader, containerByteOffset, region);
+    }
+
+    private static List<Slice> createSlices(
+            final List<SliceStagingEntry> sliceStagingEntries,
+            final CompressionHeader compressionHeader,
+            final long containerByteOffset,
+            final CRAMReferenceRegion cramReferenceRegion) {
+        final List<Slice> slices = new ArrayList<>(sliceStagingEntries.size());
+        for (final SliceStagingEntry sliceStagingEntry : sliceStagingEntries) {
             final Slice slice = new Slice(
                     sliceStagingEntry.getRecords(),
                     compressionHeader,
@@ -144,7 +180,6 @@ public final class SliceFactory {
              }
             slices.add(slice);
         }
-        cramRecordSliceEntries.clear();
         return slices;
     }
 
@@ -154,17 +189,20 @@ public final class SliceFactory {
         long recordIndex = sliceRecordCounter;
         final List<CRAMCompressionRecord> cramCompressionRecords = new ArrayList<>();
         for (final SAMRecord samRecord : samRecords) {
-            int referenceIndex = samRecord.getReferenceIndex();
             byte[] referenceBases = null;
-            if (referenceIndex != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
-                cramReferenceRegion.fetchReferenceBases(referenceIndex);
+            int referenceOffset = 0;
+            if (samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX &&
+                    !samRecord.getReadUnmappedFlag()) {
+                fetchReferenceBases(samRecord);
                 referenceBases = cramReferenceRegion.getCurrentReferenceBases();
+                referenceOffset = cramReferenceRegion.getRegionStart();
             }
             final CRAMCompressionRecord cramCompressionRecord = new CRAMCompressionRecord(
                     CramVersions.DEFAULT_CRAM_VERSION,
                     encodingStrategy,
                     samRecord,
                     referenceBases,
+                    referenceOffset,
                     recordIndex++,
                     readGroupNameToID);
             cramCompressionRecords.add(cramCompressionRecord);
@@ -172,6 +210,36 @@ public final class SliceFactory {
         return cramCompressionRecords;
     }
 
+    /**
+     * Fetch the reference bases spanning the alignment of a mapped record into the reference region, unless the
+     * region already spans it. For coordinate sorted input, the bases of the following records are fetched along
+     * with them, rather than the whole contig, so that a cache of reference regions is used as such. The whole
+     * contig is still fetched for a record aligned past the end of its contig.
+     */
+    private void fetchReferenceBases(final SAMRecord samRecord) {
+        final int referenceIndex = samRecord.getReferenceIndex();
+        final SAMSequenceRecord sequenceRecord = sequenceDictionary.getSequence(referenceIndex);
+        if (sequenceRecord == null) {
+            throw new IllegalArgumentException(String.format("Reference sequence index %d not found", referenceIndex));
+        }
+        final int contigLength = sequenceRecord.getSequenceLength();
+        final int zeroBasedStart = samRecord.getAlignmentStart() - 1;
+        final int zeroBasedEnd = Math.max(samRecord.getAlignmentEnd(), zeroBasedStart + 1);
+        if (zeroBasedEnd > contigLength) {
+            cramReferenceRegion.fetchReferenceBases(referenceIndex);
+            return;
+        }
+        if (cramReferenceRegion.getReferenceIndex() == referenceIndex &&
+                cramReferenceRegion.getRegionStart() <= zeroBasedStart &&
+                cramReferenceRegion.getRegionStart() + cramReferenceRegion.getRegionLength() >= zeroBasedEnd) {
+            return;
+        }
+        final int length = coordinateSorted ?
+                Math.min(Math.max(zeroBasedEnd - zeroBasedStart, REFERENCE_WINDOW_SIZE), contigLength - zeroBasedStart) :
+                zeroBasedEnd - zeroBasedStart;
+        cramReferenceRegion.fetchReferenceBasesByRegion(referenceIndex, zeroBasedStart, length);
+    }
+
     /**
      * Decide if the current records should be flushed based on the current reference context, the reference context
      * for the next record to be written, and the number of records seen so far.
@@ -1,22 +1,15 @@
 package htsjdk.samtools.cram.compression.nametokenisation;
 
-import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.compression.CompressionUtils;
-import htsjdk.samtools.cram.compression.nametokenisation.tokens.EncodeToken;
 import htsjdk.samtools.cram.compression.range.RangeEncode;
 import htsjdk.samtools.cram.compression.range.RangeParams;
 import htsjdk.samtools.cram.compression.rans.ransnx16.RANSNx16Encode;
 import htsjdk.samtools.cram.compression.rans.ransnx16.RANSNx16Params;
-import htsjdk.samtools.cram.structure.CRAMEncodingStrategy;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A very naive implementation of a name tokenization encoder.
@@ -27,19 +20,25 @@ import java.util.regex.Pattern;
  * - detect and encode for streams that are all match, as mentioned in the spec ("if a byte stream of token types
  *   is entirely MATCH apart from the very first value it is discarded. It is possible to regenerate this during decode
  *   by observing the other byte streams.")
+ *
+ * Each name is tokenised in place in the input buffer and its tokens are appended directly to the byte streams of
+ * their positions, so the only per-name state kept is the tokens of the previous name, against which the next name
+ * is diffed. The token and stream buffers are reused from one call to the next, so an encoder instance must not be
+ * shared between threads.
  */
 public class NameTokenisationEncode {
-    private final static String READ_NAME_TOK_REGEX = "([a-zA-Z0-9]{1,9})|([^a-zA-Z0-9]+)";
-    private final static Pattern READ_NAME_PATTERN = Pattern.compile(READ_NAME_TOK_REGEX);
-
-    private final static String DIGITS0_REGEX = "^0+[0-9]*$";
-    private final static Pattern DIGITS0_PATTERN = Pattern.compile(DIGITS0_REGEX);
-
-    private final static String DIGITS_REGEX = "^[0-9]+$";
-    private final static Pattern DIGITS_PATTERN = Pattern.compile(DIGITS_REGEX);
-
-    private int maxPositions; // the maximum number of tokenised columns seen across all names
-    private int maxStringValueLength; // longest *String* value for any token
+    // the longest alphanumeric token; longer alphanumeric runs are split into several tokens
+    private static final int MAX_ALPHANUMERIC_TOKEN_LENGTH = 9;
+
+    // the byte streams of each token position, indexed by token type, created as needed and reused across calls
+    private final List<TokenStream[]> streamsByPosition = new ArrayList<>();
+    // the tokens of the previous and current names
+    private NameTokens previousName = new NameTokens();
+    private NameTokens currentName = new NameTokens();
+    // the number of DIGITS tokens that could have been DELTA tokens (or DIGITS0 tokens that could have been
+    // DELTA0 tokens) so far, by token position
+    private int[] tokenFrequencies = new int[NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION];
+    private final NameIndex nameIndex = new NameIndex();
 
     /**
      * Compress the input buffer of read names.
@@ -49,14 +48,6 @@ public class NameTokenisationEncode {
      * @return the compressed buffer
      */
     public ByteBuffer compress(final ByteBuffer inBuffer, final boolean useArith, final byte nameSeparator) {
-        // strictly speaking, keeping this list isn't necessary, but since the first thing that we need to write
-        // to the output stream is the number of names, we have to scan the entire input anyway to count them,
-        // so just extract them while we're scanning
-        final List<String> namesToEncode = extractInputNames(
-                inBuffer,
-                CRAMEncodingStrategy.DEFAULT_READS_PER_SLICE,
-                nameSeparator);
-        final int numNames = namesToEncode.size();
         final int uncompressedDataSize = Integer.max(0, inBuffer.limit());
 
         // pre-allocate the output buffer; we don't know how big it will be. instead of implementing a wrapper around
@@ -65,34 +56,55 @@ public class NameTokenisationEncode {
         final int outputLen = (inBuffer.limit() * 2) + 10000; // include a constant in case input is empty
         final ByteBuffer outBuffer = CompressionUtils.allocateByteBuffer(outputLen);
         outBuffer.putInt(uncompressedDataSize);
-        outBuffer.putInt(numNames);
+        outBuffer.putInt(0); // the number of names, which is filled in once they have been counted
         outBuffer.put((byte)(useArith == true ? 1 : 0));
 
-        // note that using a map with a read name key is a little sketchy here, since read names can be duplicates;
-        // but its fine since it doesn't really matter which index is recorded here - any one will suffice
-        final HashMap<String, Integer> nameIndexMap = new HashMap<>();
-        final int[] tokenFrequencies = new int[256]; // DELTA vs DIGIT frequency
-        // keep track of the list of encoded tokens for each name
-        final List<List<EncodeToken>> encodedTokensByName = new ArrayList<>(numNames);
-
-        for (int nameIndex = 0; nameIndex < numNames; nameIndex++) {
-            encodedTokensByName.add(
-                    tokeniseName(
-                            namesToEncode.get(nameIndex),
-                            nameIndex,
-                            encodedTokensByName,
-                            nameIndexMap,
-                            tokenFrequencies)
-            );
+        // tokenise the names in place, in the backing array of the input buffer if there is one
+        final byte[] names;
+        final int namesOffset;
+        if (inBuffer.hasArray()) {
+            names = inBuffer.array();
+            namesOffset = inBuffer.arrayOffset() + inBuffer.position();
+        } else {
+            names = new byte[inBuffer.remaining()];
+            inBuffer.duplicate().get(names);
+            namesOffset = 0;
+        }
+        final int namesEnd = namesOffset + inBuffer.remaining();
+        inBuffer.position(inBuffer.limit());
+
+        for (final TokenStream[] streams : streamsByPosition) {
+            for (final TokenStream stream : streams) {
+                if (stream != null) {
+                    stream.clear();
+                }
+            }
+        }
+        Arrays.fill(tokenFrequencies, 0);
+        nameIndex.clear(names);
+        previousName.clear();
+
+        // only names that are terminated by the separator are encoded
+        int numNames = 0;
+        int numPositions = 0;
+        for (int nameStart = namesOffset, i = namesOffset; i < namesEnd; i++) {
+            if (names[i] == nameSeparator) {
+                tokeniseName(names, nameStart, i, numNames);
+                numPositions = Math.max(numPositions, currentName.size);
+                final NameTokens tokens = previousName;
+                previousName = currentName;
+                currentName = tokens;
+                numNames++;
+                nameStart = i + 1;
+            }
         }
+        outBuffer.putInt(4, numNames);
 
-        for (int position = 0; position < maxPositions; position++) {
-            final List<ByteBuffer> streamsForPosition = distributeTokensForPosition(
-                    encodedTokensByName,
-                    position,
-                    numNames);
-            serializeTokenStreams(streamsForPosition, outBuffer, useArith);
+        for (int position = 0; position < numPositions; position++) {
+            serializeTokenStreams(streamsByPosition.get(position), outBuffer, useArith);
         }
+        // don't keep the caller's names reachable from the encoder until its next call
+        nameIndex.release();
 
         // set the limit to current position (important because we initially dramatically over-allocated the buffer,
         // so make sure the caller doesn't go past the actual limit), and reset position to '0'
@@ -100,231 +112,137 @@ public class NameTokenisationEncode {
         return outBuffer;
     }
 
-    // return the encoded token list for a single name
-    private List<EncodeToken> tokeniseName(
-            final String name,
-            final int nameIndex,
-            final List<List<EncodeToken>> encodedTokensByName,
-            final HashMap<String, Integer> nameIndexMap,
-            final int[] tokenFrequencies) {
+    // tokenise the name in names[nameStart, nameEnd) into currentName, appending the encoded tokens to the streams
+    private void tokeniseName(final byte[] names, final int nameStart, final int nameEnd, final int nameIndex) {
+        final NameTokens tokens = currentName;
+        tokens.clear();
 
-        if (nameIndexMap.containsKey(name)) {
+        final int duplicateOf = this.nameIndex.putIfAbsent(nameStart, nameEnd - nameStart, nameIndex);
+        if (duplicateOf >= 0) {
             // duplicate name, there is no need to tokenise the name, just encode the index of the duplicate
-            final String duplicateIndex = String.valueOf(nameIndex - nameIndexMap.get(name));
-            return List.of(new EncodeToken(TokenStreams.TOKEN_DUP, duplicateIndex));
+            getStream(0, TokenStreams.TOKEN_TYPE).put(TokenStreams.TOKEN_DUP);
+            getStream(0, TokenStreams.TOKEN_DUP).putInt(nameIndex - duplicateOf);
+            tokens.add(TokenStreams.TOKEN_DUP, 0, 0, 0);
+            return;
         }
 
-        final List<EncodeToken> encodedTokens = new ArrayList<>(NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION);
-
         // if this name is the first name, the diff value must be 0; otherwise for now use a naive
         // strategy and only/always diff against the (immediately) preceding name
-        encodedTokens.add(0, new EncodeToken(TokenStreams.TOKEN_DIFF, String.valueOf(nameIndex == 0 ? 0 : 1)));
-        nameIndexMap.put(name, nameIndex);
+        getStream(0, TokenStreams.TOKEN_TYPE).put(TokenStreams.TOKEN_DIFF);
+        getStream(0, TokenStreams.TOKEN_DIFF).putInt(nameIndex == 0 ? 0 : 1);
+        tokens.add(TokenStreams.TOKEN_DIFF, 0, 0, 0);
+
+        // tokenise the current name into runs of up to 9 alphanumeric characters and runs of other characters
+        final NameTokens previousTokens = previousName;
+        for (int position = 1, tokenStart = nameStart; tokenStart < nameEnd; position++) {
+            final boolean alphanumeric = isAlphanumeric(names[tokenStart]);
+            boolean digits = true;
+            int tokenEnd = tokenStart;
+            while (tokenEnd < nameEnd && isAlphanumeric(names[tokenEnd]) == alphanumeric &&
+                    (!alphanumeric || tokenEnd - tokenStart < MAX_ALPHANUMERIC_TOKEN_LENGTH)) {
+                digits &= isDigit(names[tokenEnd]);
+                tokenEnd++;
+            }
+            final int tokenLength = tokenEnd - tokenStart;
 
-        // tokenise the current name
-        final Matcher matcher = READ_NAME_PATTERN.matcher(name);
-        for (int i = 1; matcher.find(); i++) {
             byte type = TokenStreams.TOKEN_STRING;
-            final String fragmentValue = matcher.group(); // absolute value of the token
-            String relativeValue = fragmentValue; // relative value of the token (comparing to prev name's token at the same token position)
-
-            if (DIGITS0_PATTERN.matcher(fragmentValue).matches()) {
-                type = TokenStreams.TOKEN_DIGITS0;
-            } else if (DIGITS_PATTERN.matcher(fragmentValue).matches()) {
-                type = TokenStreams.TOKEN_DIGITS;
-            } else if (fragmentValue.length() == 1) {
+            int value = 0; // the numeric value of DIGITS and DIGITS0 tokens
+            if (alphanumeric && digits) {
+                type = names[tokenStart] == '0' ? TokenStreams.TOKEN_DIGITS0 : TokenStreams.TOKEN_DIGITS;
+                for (int i = tokenStart; i < tokenEnd; i++) {
+                    value = value * 10 + (names[i] - '0');
+                }
+            } else if (tokenLength == 1) {
                 type = TokenStreams.TOKEN_CHAR;
             }
+            final int actualValue = value;
 
             // compare the current token with token from the previous name (this naive implementation always
             // compares against last name only)
-            final int prevNameIndex = nameIndex - 1;
-            if (prevNameIndex >= 0 && encodedTokensByName.get(prevNameIndex).size() > i) {
+            if (position < previousTokens.size) {
                 //there exists a token at the corresponding position of the previous name
-                final EncodeToken prevToken = encodedTokensByName.get(prevNameIndex).get(i);
-                if (prevToken.getActualValue().equals(fragmentValue)) {
+                final byte previousType = previousTokens.types[position];
+                final int previousLength = previousTokens.lengths[position];
+                if (previousType != TokenStreams.TOKEN_END && previousLength == tokenLength &&
+                        Arrays.equals(names, tokenStart, tokenEnd,
+                                names, previousTokens.starts[position], previousTokens.starts[position] + previousLength)) {
                     // identical to the previous name's token in this position
                     type = TokenStreams.TOKEN_MATCH;
-                    relativeValue = null;
-                } else if (type==TokenStreams.TOKEN_DIGITS &&
-                        (prevToken.getTokenType() == TokenStreams.TOKEN_DIGITS || prevToken.getTokenType() == TokenStreams.TOKEN_DELTA)) {
-                    int d = Integer.parseInt(relativeValue) - Integer.parseInt(prevToken.getActualValue());
-                    tokenFrequencies[i]++;
-                    if (d >= 0 && d < 256 && tokenFrequencies[i] > nameIndex / 2) {
-                        type = TokenStreams.TOKEN_DELTA;
-                        relativeValue = String.valueOf(d);
-                    }
-                } else if (type == TokenStreams.TOKEN_DIGITS0 &&
-                        prevToken.getActualValue().length() == relativeValue.length() &&
-                        (prevToken.getTokenType() == TokenStreams.TOKEN_DIGITS0 || prevToken.getTokenType() == TokenStreams.TOKEN_DELTA0)) {
-                    int d = Integer.parseInt(relativeValue) - Integer.parseInt(prevToken.getActualValue());
-                    tokenFrequencies[i]++;
-                    if (d >= 0 && d < 256 && tokenFrequencies[i] > nameIndex / 2) {
-                        type = TokenStreams.TOKEN_DELTA0;
-                        relativeValue = String.valueOf(d);
+                } else if ((type == TokenStreams.TOKEN_DIGITS &&
+                        (previousType == TokenStreams.TOKEN_DIGITS || previousType == TokenStreams.TOKEN_DELTA)) ||
+                        (type == TokenStreams.TOKEN_DIGITS0 && previousLength == tokenLength &&
+                        (previousType == TokenStreams.TOKEN_DIGITS0 || previousType == TokenStreams.TOKEN_DELTA0))) {
+                    final int d = value - previousTokens.values[position];
+                    if (++getTokenFrequencies(position)[position] > nameIndex / 2 && d >= 0 && d < 256) {
+                        type = type == TokenStreams.TOKEN_DIGITS ? TokenStreams.TOKEN_DELTA : TokenStreams.TOKEN_DELTA0;
+                        value = d;
                     }
                 }
             }
-            encodedTokens.add(new EncodeToken(type, fragmentValue, relativeValue));
-            if (type == TokenStreams.TOKEN_STRING) {
-                // update our longest value length, adding one for the null terminator we'll embed in the stream
-                maxStringValueLength = Math.max(maxStringValueLength, fragmentValue.length() + 1);
-            }
-        }
-
-        encodedTokens.add(new EncodeToken(TokenStreams.TOKEN_END));
-
-        // keep track of the longest list of encoded tokens (this is basically the number of columns/fragments)
-        // for use by downstream buffer allocations
-        final int currMaxPositions = encodedTokens.size();
-        if (maxPositions < currMaxPositions) {
-            maxPositions = currMaxPositions;
-        }
-
-        return encodedTokens;
-    }
-
-    // extract the individual names from the input buffer and return in a list
-    private static List<String> extractInputNames(
-            final ByteBuffer inBuffer,
-            final int preAllocationSize,
-            final byte nameSeparator) {
-        final List<String> names = new ArrayList(preAllocationSize);
-        for (int lastPosition = inBuffer.position(); inBuffer.hasRemaining();) {
-            final byte currentByte = inBuffer.get();
-            if (currentByte == nameSeparator) {
-                final int length = inBuffer.position() - lastPosition;
-                final byte[] bytes = new byte[length];
-                inBuffer.position(lastPosition);
-                inBuffer.get(bytes, 0, length);  // consume the string + the terminator
-                names.add(new String(
-                        bytes,
-                        0,
-                        length - 1, // don't include the separator in the string
-                        StandardCharsets.UTF_8));
-                lastPosition = inBuffer.position();
-            }
-        }
-        return names;
-    }
 
-    // go through all names, appending the encoded token for the current position to the appropriate byte stream
-    // NOTE: the calling code relies on the fact that on return, the position of each ByteBuffer corresponds
-    // to the location of the end of the stream
-    private List<ByteBuffer> distributeTokensForPosition(
-            final List<List<EncodeToken>> tokenAccumulator,
-            final int tokenPosition,
-            final int numNames) {
-        // create a list, but don't preallocate the actual ByteBuffers until we actually need them (except
-        // for the TOKEN_TYPE stream, which we'll need for sure), since this list can be quite sparse
-        final List<ByteBuffer> tokenStreams = Arrays.asList(new ByteBuffer[TokenStreams.TOTAL_TOKEN_TYPES]);
-        // we need 1 byte per name (so, numNames) for the type stream; the distance values go in the
-        // individual streams (dup or diff)
-        getByteBufferFor(tokenStreams, TokenStreams.TOKEN_TYPE, numNames);
-
-        // for each name, push the name's encoded token for this position on to the end of the appropriate byte stream
-        for (int n = 0; n < numNames; n++) {
-            final List<EncodeToken> tokensForName = tokenAccumulator.get(n);
-            if (tokenPosition > 0 && tokensForName.get(0).getTokenType() == TokenStreams.TOKEN_DUP) {
-                // there is nothing more to do for this name, since it's a duplicate of a previous name
-                // (the index of which was written to the (dup) stream when position 0 was (previously) processed
-                continue;
-            }
-            if (tokensForName.size() <= tokenPosition) {
-                // no encoded token for this position for this name
-                continue;
-            }
-
-            // write the token type for this name/position to the TOKEN_TYPE stream
-            final EncodeToken encodeToken = tokensForName.get(tokenPosition);
-            final byte type = encodeToken.getTokenType();
-            tokenStreams.get(TokenStreams.TOKEN_TYPE).put(type);
-
-            // now write out the associated value for any token type that has one
-            // whenever we allocate a new bytebuffer, size it according to the max that it can ever
-            // be; this might be over-allocating, but that's better than under-allocating, and the
-            // stream will be trimmed when it is written out
+            // write the token type for this name/position to the TOKEN_TYPE stream, and the value of any token
+            // type that has one to the stream for that type
+            getStream(position, TokenStreams.TOKEN_TYPE).put(type);
             switch (type) {
-                case TokenStreams.TOKEN_DIFF:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DIFF, numNames * 4)
-                            .putInt(Integer.parseInt(encodeToken.getRelativeValue()));
-                    break;
-
-                case TokenStreams.TOKEN_DUP:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DUP, numNames * 4)
-                            .putInt(Integer.parseInt(encodeToken.getRelativeValue()));
-                    break;
-
                 case TokenStreams.TOKEN_STRING:
-                    writeString(
-                            getByteBufferFor(tokenStreams, TokenStreams.TOKEN_STRING, numNames * maxStringValueLength),
-                            encodeToken.getRelativeValue()
-                    );
+                    getStream(position, TokenStreams.TOKEN_STRING).put(names, tokenStart, tokenLength).put((byte) 0);
                     break;
 
                 case TokenStreams.TOKEN_CHAR:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_CHAR, numNames * 1)
-                            .put((byte) encodeToken.getRelativeValue().charAt(0));
+                    getStream(position, TokenStreams.TOKEN_CHAR).put(names[tokenStart]);
                     break;
 
                 case TokenStreams.TOKEN_DIGITS:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DIGITS, numNames * 4)
-                            .putInt(Integer.parseInt(encodeToken.getRelativeValue()));
+                    getStream(position, TokenStreams.TOKEN_DIGITS).putInt(value);
                     break;
 
                 case TokenStreams.TOKEN_DIGITS0:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DIGITS0, numNames * 4)
-                            .putInt(Integer.parseInt(encodeToken.getRelativeValue()));
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DZLEN, numNames)
-                        .put((byte) encodeToken.getRelativeValue().length());
+                    getStream(position, TokenStreams.TOKEN_DIGITS0).putInt(value);
+                    getStream(position, TokenStreams.TOKEN_DZLEN).put((byte) tokenLength);
                     break;
 
                 case TokenStreams.TOKEN_DELTA:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DELTA, numNames * 1)
-                            .put((byte)Integer.parseInt(encodeToken.getRelativeValue()));
-                    break;
-
                 case TokenStreams.TOKEN_DELTA0:
-                    getByteBufferFor(tokenStreams, TokenStreams.TOKEN_DELTA0, numNames * 1)
-                            .put((byte)Integer.parseInt(encodeToken.getRelativeValue()));
-                    break;
-
-                case TokenStreams.TOKEN_NOP:
-                case TokenStreams.TOKEN_MATCH:
-                case TokenStreams.TOKEN_END:
-                    // noop - token types with no associated value
+                    getStream(position, type).put((byte) value);
                     break;
 
                 default:
-                    throw new CRAMException("Invalid token type: " + type);
-            }
-        }
-        // since we've over-allocated these streams,we need to set the limit on these streams so that the downstream
-        // consumer doesn't try to consume the entire stream,
-        for (int i = 0; i < TokenStreams.TOTAL_TOKEN_TYPES; i++) {
-            if (tokenStreams.get(i) != null) {
-                tokenStreams.get(i).limit(tokenStreams.get(i).position());
+                    // TOKEN_MATCH has no associated value
+                    break;
             }
+            tokens.add(type, tokenStart, tokenLength, actualValue);
+            tokenStart = tokenEnd;
         }
 
-        return tokenStreams;
+        getStream(tokens.size, TokenStreams.TOKEN_TYPE).put(TokenStreams.TOKEN_END);
+        tokens.add(TokenStreams.TOKEN_END, 0, 0, 0);
     }
 
-    // since we don't want to allocate a ByteBuffer that we'll never use, allocate them just-in-time
-    // as need
-    private ByteBuffer getByteBufferFor(
-            final List<ByteBuffer> tokenStreams,
-            final int tokenType,
-            final int requiredSize) {
-        if (tokenStreams.get(tokenType) == null) {
-            tokenStreams.set(tokenType, CompressionUtils.allocateByteBuffer(requiredSize));
+    private static boolean isAlphanumeric(final byte b) {
+        return isDigit(b) || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private int[] getTokenFrequencies(final int position) {
+        if (position >= tokenFrequencies.length) {
+            tokenFrequencies = Arrays.copyOf(tokenFrequencies, Math.max(position + 1, tokenFrequencies.length * 2));
         }
-        return tokenStreams.get(tokenType);
+        return tokenFrequencies;
     }
 
-    private static void writeString(final ByteBuffer tokenStreamBuffer, final String val) {
-        tokenStreamBuffer.put(val.getBytes());
-        tokenStreamBuffer.put((byte) 0);
+    // since most positions use only a few token types, allocate the streams just-in-time as needed
+    private TokenStream getStream(final int position, final int tokenType) {
+        while (streamsByPosition.size() <= position) {
+            streamsByPosition.add(new TokenStream[TokenStreams.TOTAL_TOKEN_TYPES]);
+        }
+        final TokenStream[] streams = streamsByPosition.get(position);
+        if (streams[tokenType] == null) {
+            streams[tokenType] = new TokenStream();
+        }
+        return streams[tokenType];
     }
 
     private static ByteBuffer tryCompress(final ByteBuffer nameTokenStream, final boolean useArith) {
@@ -392,20 +310,165 @@ public class NameTokenisationEncode {
     }
 
     private void serializeTokenStreams(
-            final List<ByteBuffer> tokenStreams,
+            final TokenStream[] tokenStreams,
             final ByteBuffer outBuffer,
             final boolean useArith) {
-        // Compress and serialise the non-null tokenStreams
+        // Compress and serialise the non-empty tokenStreams
         for (int tokenStreamType = 0; tokenStreamType <= TokenStreams.TOKEN_END; tokenStreamType++) {
-            final ByteBuffer tokenBytes = tokenStreams.get(tokenStreamType);
-            if (tokenBytes != null && tokenBytes.position() > 0) {
+            final TokenStream tokenStream = tokenStreams[tokenStreamType];
+            if (tokenStream != null && tokenStream.length > 0) {
                 // if this encoder was aware of duplicate streams, we would need to detect and encode them
                 // here, and set the DUP_PREVIOUS_STREAM_FLAG_MASK bit
                 outBuffer.put((byte) (tokenStreamType | (tokenStreamType == 0 ? TokenStreams.NEW_POSITION_FLAG_MASK : 0)));
-                final ByteBuffer tempOutByteBuffer = tryCompress(tokenBytes, useArith);
+                final ByteBuffer tempOutByteBuffer = tryCompress(tokenStream.toByteBuffer(), useArith);
                 CompressionUtils.writeUint7(tempOutByteBuffer.limit(), outBuffer);
                 outBuffer.put(tempOutByteBuffer);
             }
         }
     }
-}
\ No newline at end of file
+
+    // a growable byte stream of the values of one token type at one token position
+    private static final class TokenStream {
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        TokenStream put(final byte b) {
+            ensureCapacity(1);
+            bytes[length++] = b;
+            return this;
+        }
+
+        TokenStream put(final byte[] src, final int offset, final int count) {
+            ensureCapacity(count);
+            System.arraycopy(src, offset, bytes, length, count);
+            length += count;
+            return this;
+        }
+
+        // little-endian, as the decoder reads it
+        TokenStream putInt(final int i) {
+            ensureCapacity(4);
+            bytes[length++] = (byte) i;
+            bytes[length++] = (byte) (i >> 8);
+            bytes[length++] = (byte) (i >> 16);
+            bytes[length++] = (byte) (i >> 24);
+            return this;
+        }
+
+        // returns the stream in the state that tryCompress expects: limited to the stream and positioned at its end
+        ByteBuffer toByteBuffer() {
+            final ByteBuffer buffer = CompressionUtils.wrap(bytes);
+            buffer.limit(length);
+            buffer.position(length);
+            return buffer;
+        }
+
+        private void ensureCapacity(final int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + count, bytes.length * 2));
+            }
+        }
+    }
+
+    // the tokens of one name, by position: their type, location in the input, and the numeric value of DIGITS and
+    // DIGITS0 tokens (including those that are encoded as DELTA, DELTA0 or MATCH tokens)
+    private static final class NameTokens {
+        private byte[] types = new byte[NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION];
+        private int[] starts = new int[NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION];
+        private int[] lengths = new int[NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION];
+        private int[] values = new int[NameTokenisationDecode.DEFAULT_POSITION_ALLOCATION];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(final byte type, final int start, final int length, final int value) {
+            if (size == types.length) {
+                final int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            types[size] = type;
+            starts[size] = start;
+            lengths[size] = length;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    // an open-addressing hash table from the distinct names, by their location in the input, to the index of their
+    // first occurrence
+    private static final class NameIndex {
+        private byte[] names;
+        private int[] starts = new int[1024];
+        private int[] lengths = new int[1024];
+        private int[] indices = new int[1024]; // the name index + 1, so that 0 marks an empty slot
+        private int size;
+
+        void clear(final byte[] names) {
+            this.names = names;
+            Arrays.fill(indices, 0);
+            size = 0;
+        }
+
+        void release() {
+            names = null;
+        }
+
+        // returns the index of the first occurrence of the name, or -1 if it is new, in which case it is added
+        int putIfAbsent(final int start, final int length, final int index) {
+            final int mask = indices.length - 1;
+            for (int slot = hash(start, length) & mask; ; slot = (slot + 1) & mask) {
+                if (indices[slot] == 0) {
+                    starts[slot] = start;
+                    lengths[slot] = length;
+                    indices[slot] = index + 1;
+                    if (++size > indices.length / 2) {
+                        grow();
+                    }
+                    return -1;
+                }
+                if (lengths[slot] == length &&
+                        Arrays.equals(names, starts[slot], starts[slot] + length, names, start, start + length)) {
+                    return indices[slot] - 1;
+                }
+            }
+        }
+
+        private int hash(final int start, final int length) {
+            int hash = 1;
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + names[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private void grow() {
+            final int[] oldStarts = starts;
+            final int[] oldLengths = lengths;
+            final int[] oldIndices = indices;
+            starts = new int[oldIndices.length * 2];
+            lengths = new int[oldIndices.length * 2];
+            indices = new int[oldIndices.length * 2];
+            final int mask = indices.length - 1;
+            for (int i = 0; i < oldIndices.length; i++) {
+                if (oldIndices[i] != 0) {
+                    int slot = hash(oldStarts[i], oldLengths[i]) & mask;
+                    while (indices[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    starts[slot] = oldStarts[i];
+                    lengths[slot] = oldLengths[i];
+                    indices[slot] = oldIndices[i];
+                }
+            }
+        }
+    }
+}
@@ -1,51 +1,253 @@
 package htsjdk.samtools.cram.compression.rans;
 
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+
 import java.nio.ByteBuffer;
+import java.util.function.Function;
 
 public abstract class RANSDecode {
-    private ArithmeticDecoder[] D;
-    private RANSDecodingSymbol[][] decodingSymbols;
-
-    // GETTERS
-    protected ArithmeticDecoder[] getD() {
-        return D;
-    }
-
-    protected RANSDecodingSymbol[][] getDecodingSymbols() {
-        return decodingSymbols;
-    }
+    // The decoding tables take 1.5MB, so they are kept for each thread rather than allocated for each decoder;
+    // this also makes the decoders safe to share between threads.
+    private static final ThreadLocal<RANSDecodingTables> TABLES = ThreadLocal.withInitial(RANSDecodingTables::new);
 
     // This method assumes that inBuffer is already rewound.
     // It uncompresses the data in the inBuffer, leaving it consumed.
     // Returns a rewound ByteBuffer containing the uncompressed data.
     public abstract ByteBuffer uncompress(final ByteBuffer inBuffer);
 
-    // Lazy initialization of working memory for the decoder
-    protected void initializeRANSDecoder() {
-        if (D == null) {
-            D = new ArithmeticDecoder[Constants.NUMBER_OF_SYMBOLS];
-            for (int i = 0; i < Constants.NUMBER_OF_SYMBOLS; i++) {
-                D[i] = new ArithmeticDecoder();
+    /**
+     * Uncompresses the data in the inBuffer, leaving it consumed, into outBuffer from its position, which is advanced
+     * past the uncompressed data. This lets callers that know an upper bound of the uncompressed size decode many
+     * blocks into the same buffer.
+     *
+     * @return the number of uncompressed bytes
+     * @throws CRAMException if the remaining space of outBuffer is smaller than the uncompressed data
+     */
+    public abstract int uncompress(final ByteBuffer inBuffer, final ByteBuffer outBuffer);
+
+    // Working memory of the decoder, cleared of the tables of the previous block
+    protected RANSDecodingTables initializeRANSDecoder() {
+        final RANSDecodingTables tables = TABLES.get();
+        tables.reset();
+        return tables;
+    }
+
+    /**
+     * Returns the view of the remaining space of outBuffer, from its position, in which to uncompress outSize bytes.
+     */
+    protected static ByteBuffer outputSlice(final ByteBuffer outBuffer, final int outSize) {
+        if (outBuffer.remaining() < outSize) {
+            throw new CRAMException(String.format(
+                    "The output buffer has %d bytes remaining, but %d are required to uncompress the rANS stream",
+                    outBuffer.remaining(), outSize));
+        }
+        final ByteBuffer outSlice = CompressionUtils.slice(outBuffer);
+        outSlice.limit(outSize);
+        return outSlice;
+    }
+
+    /**
+     * Copies the uncompressed data, from position 0 to the limit of decoded, into outBuffer, unless decoded is the
+     * view returned by {@link #outputSlice(ByteBuffer, int)}, and advances the position of outBuffer past it.
+     *
+     * @return the number of uncompressed bytes
+     */
+    protected static int transferTo(final ByteBuffer decoded, final ByteBuffer outBuffer) {
+        final int outSize = decoded.limit();
+        final boolean inPlace = decoded.hasArray() && outBuffer.hasArray() && decoded.array() == outBuffer.array() &&
+                decoded.arrayOffset() == outBuffer.arrayOffset() + outBuffer.position();
+        if (!inPlace) {
+            final ByteBuffer source = decoded.duplicate();
+            source.rewind();
+            outputSlice(outBuffer, outSize).put(source);
+        }
+        outBuffer.position(outBuffer.position() + outSize);
+        return outSize;
+    }
+
+    /**
+     * Runs decoder on a heap copy of inBuffer if it is not backed by an array, as the decoding loops read the input
+     * array directly, and consumes inBuffer as much as the copy was.
+     */
+    protected static <T> T withArrayInput(final ByteBuffer inBuffer, final Function<ByteBuffer, T> decoder) {
+        if (inBuffer.hasArray()) {
+            return decoder.apply(inBuffer);
+        }
+        final ByteBuffer inCopy = CompressionUtils.allocateByteBuffer(inBuffer.remaining());
+        inCopy.put(inBuffer.duplicate());
+        inCopy.rewind();
+        final T result = decoder.apply(inCopy);
+        inBuffer.position(inBuffer.position() + inCopy.position());
+        return result;
+    }
+
+    /**
+     * Decodes the outSize symbols of an order-0 stream with nStates interleaved rANS states, which are read first,
+     * from the input array of inBuffer into outBuffer, which must be backed by an array, from index 0.
+     * The symbols that do not fill a whole round of the states are decoded by the first states, in order.
+     *
+     * @param renormalize16 true to renormalize the states 16 bits at a time (rANS Nx16), false for 8 bits (rANS 4x8)
+     */
+    protected static void uncompressOrder0(
+            final RANSDecodingTables tables,
+            final int nStates,
+            final boolean renormalize16,
+            final ByteBuffer inBuffer,
+            final ByteBuffer outBuffer,
+            final int outSize) {
+        final byte[] in = inBuffer.array();
+        int inPosition = inBuffer.arrayOffset() + inBuffer.position();
+        final byte[] out = outBuffer.array();
+        final int outOffset = outBuffer.arrayOffset();
+        final int[] states = tables.states;
+        inPosition = readStates(states, nStates, in, inPosition);
+
+        final byte[] reverseLookup = tables.reverseLookup;
+        final int[] frequencies = tables.frequencies;
+        final int[] cumulativeFrequencies = tables.cumulativeFrequencies;
+        final int mask = Constants.TOTAL_FREQ - 1;
+        final int outEnd = outOffset + (outSize / nStates) * nStates;
+        for (int i = outOffset; i < outEnd; i += nStates) {
+            // the states are stepped independently of each other and of the input...
+            for (int r = 0; r < nStates; r++) {
+                final int state = states[r];
+                final int symbol = reverseLookup[state & mask] & 0xFF;
+                out[i + r] = (byte) symbol;
+                states[r] = frequencies[symbol] * (state >> Constants.TOTAL_FREQ_SHIFT) + (state & mask) -
+                        cumulativeFrequencies[symbol];
             }
-        } else {
-            for (int i = 0; i < Constants.NUMBER_OF_SYMBOLS; i++) {
-                D[i].reset();
+            // ...and then renormalized, in order, from the input
+            inPosition = renormalize(states, 0, nStates, renormalize16, in, inPosition);
+        }
+
+        // decode the remaining symbols
+        for (int r = 0; outEnd + r < outOffset + outSize; r++) {
+            final int state = states[r];
+            final int symbol = reverseLookup[state & mask] & 0xFF;
+            out[outEnd + r] = (byte) symbol;
+            states[r] = frequencies[symbol] * (state >> Constants.TOTAL_FREQ_SHIFT) + (state & mask) -
+                    cumulativeFrequencies[symbol];
+            inPosition = renormalize(states, r, r + 1, renormalize16, in, inPosition);
+        }
+        consume(inBuffer, inPosition);
+    }
+
+    /**
+     * Decodes the outSize symbols of an order-1 stream with nStates interleaved rANS states, which are read first,
+     * from the input array of inBuffer into outBuffer, which must be backed by an array, from index 0.
+     * Each state decodes a contiguous part of the output, and the last state also decodes the symbols that do not
+     * fill a whole part.
+     *
+     * @param shift the number of bits of the frequencies of each context
+     * @param renormalize16 true to renormalize the states 16 bits at a time (rANS Nx16), false for 8 bits (rANS 4x8)
+     */
+    protected static void uncompressOrder1(
+            final RANSDecodingTables tables,
+            final int nStates,
+            final int shift,
+            final boolean renormalize16,
+            final ByteBuffer inBuffer,
+            final ByteBuffer outBuffer,
+            final int outSize) {
+        final byte[] in = inBuffer.array();
+        int inPosition = inBuffer.arrayOffset() + inBuffer.position();
+        final byte[] out = outBuffer.array();
+        final int outOffset = outBuffer.arrayOffset();
+        final int[] states = tables.states;
+        final int[] contexts = tables.contexts;
+        final int[] positions = tables.positions;
+        inPosition = readStates(states, nStates, in, inPosition);
+
+        final int interleaveSize = outSize / nStates;
+        for (int r = 0; r < nStates; r++) {
+            contexts[r] = 0;
+            positions[r] = outOffset + r * interleaveSize;
+        }
+
+        final byte[] reverseLookup = tables.reverseLookup;
+        final int[] frequencies = tables.frequencies;
+        final int[] cumulativeFrequencies = tables.cumulativeFrequencies;
+        final int mask = (1 << shift) - 1;
+        for (int i = 0; i < interleaveSize; i++) {
+            for (int r = 0; r < nStates; r++) {
+                final int state = states[r];
+                final int context = contexts[r];
+                final int symbol = reverseLookup[(context << Constants.TOTAL_FREQ_SHIFT) | (state & mask)] & 0xFF;
+                out[positions[r] + i] = (byte) symbol;
+                final int index = (context << 8) | symbol;
+                states[r] = frequencies[index] * (state >> shift) + (state & mask) - cumulativeFrequencies[index];
+                contexts[r] = symbol;
             }
+            inPosition = renormalize(states, 0, nStates, renormalize16, in, inPosition);
         }
-        if (decodingSymbols == null) {
-            decodingSymbols = new RANSDecodingSymbol[Constants.NUMBER_OF_SYMBOLS][Constants.NUMBER_OF_SYMBOLS];
-            for (int i = 0; i < decodingSymbols.length; i++) {
-                for (int j = 0; j < decodingSymbols[i].length; j++) {
-                    decodingSymbols[i][j] = new RANSDecodingSymbol();
-                }
+
+        // decode the remaining symbols with the last state
+        final int last = nStates - 1;
+        int context = contexts[last];
+        for (int i = outOffset + nStates * interleaveSize; i < outOffset + outSize; i++) {
+            final int state = states[last];
+            final int symbol = reverseLookup[(context << Constants.TOTAL_FREQ_SHIFT) | (state & mask)] & 0xFF;
+            out[i] = (byte) symbol;
+            final int index = (context << 8) | symbol;
+            states[last] = frequencies[index] * (state >> shift) + (state & mask) - cumulativeFrequencies[index];
+            inPosition = renormalize(states, last, nStates, renormalize16, in, inPosition);
+            context = symbol;
+        }
+        consume(inBuffer, inPosition);
+    }
+
+    private static int readStates(final int[] states, final int nStates, final byte[] in, final int inPosition) {
+        int position = inPosition;
+        try {
+            for (int r = 0; r < nStates; r++) {
+                states[r] = (in[position] & 0xFF) | (in[position + 1] & 0xFF) << 8 |
+                        (in[position + 2] & 0xFF) << 16 | (in[position + 3] & 0xFF) << 24;
+                position += 4;
             }
-        } else {
-            for (int i = 0; i < decodingSymbols.length; i++) {
-                for (int j = 0; j < decodingSymbols[i].length; j++) {
-                    decodingSymbols[i][j].set(0, 0);
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw truncatedStream(e);
+        }
+        return position;
+    }
+
+    private static int renormalize(final int[] states, final int from, final int to, final boolean renormalize16,
+                                   final byte[] in, final int inPosition) {
+        int position = inPosition;
+        // the input is read without checking its length, as most bytes of a stream are read here, so the end of the
+        // array is only detected by the exception when the stream is truncated
+        try {
+            if (renormalize16) {
+                for (int r = from; r < to; r++) {
+                    if (states[r] < Constants.RANS_Nx16_LOWER_BOUND) {
+                        states[r] = (states[r] << 16) | (in[position] & 0xFF) | (in[position + 1] & 0xFF) << 8;
+                        position += 2;
+                    }
+                }
+            } else {
+                for (int r = from; r < to; r++) {
+                    int state = states[r];
+                    while (state < Constants.RANS_4x8_LOWER_BOUND) {
+                        state = (state << 8) | (in[position++] & 0xFF);
+                    }
+                    states[r] = state;
                 }
             }
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw truncatedStream(e);
         }
+        return position;
     }
 
-}
\ No newline at end of file
+    private static CRAMException truncatedStream(final ArrayIndexOutOfBoundsException e) {
+        return new CRAMException("Truncated rANS stream: the input ended before the stream was uncompressed", e);
+    }
+
+    private static void consume(final ByteBuffer inBuffer, final int arrayPosition) {
+        final int position = arrayPosition - inBuffer.arrayOffset();
+        if (position > inBuffer.limit()) {
+            throw new CRAMException("Truncated rANS stream: " + (position - inBuffer.limit()) + " bytes are missing");
+        }
+        inBuffer.position(position);
+    }
+}
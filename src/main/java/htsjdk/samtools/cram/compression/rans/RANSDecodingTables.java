@@ -0,0 +1,79 @@
+package htsjdk.samtools.cram.compression.rans;
+
+import htsjdk.samtools.cram.CRAMException;
+
+import java.util.Arrays;
+
+/**
+ * Working memory of the rANS decoders: the frequency, cumulative frequency and reverse lookup table of each of the
+ * 256 order-1 contexts (order-0 uses context 0), laid out in flat primitive arrays. The frequency and cumulative
+ * frequency of symbol s in context c are at index (c << 8) | s, and the reverse lookup of cumulative frequency f in
+ * context c is at index (c << 12) | f.
+ *
+ * The tables are reused from one block to the next, so {@link #reset()} only clears the contexts that were
+ * built since the previous reset.
+ */
+public final class RANSDecodingTables {
+    public static final int MAX_INTERLEAVED_STATES = 32;
+
+    public final int[] frequencies = new int[Constants.NUMBER_OF_SYMBOLS * Constants.NUMBER_OF_SYMBOLS];
+    public final int[] cumulativeFrequencies = new int[Constants.NUMBER_OF_SYMBOLS * Constants.NUMBER_OF_SYMBOLS];
+    public final byte[] reverseLookup = new byte[Constants.NUMBER_OF_SYMBOLS * Constants.TOTAL_FREQ];
+
+    // scratch space for the states, contexts and output positions of the interleaved rANS streams
+    public final int[] states = new int[MAX_INTERLEAVED_STATES];
+    public final int[] contexts = new int[MAX_INTERLEAVED_STATES];
+    public final int[] positions = new int[MAX_INTERLEAVED_STATES];
+
+    // scratch space for reading the frequency table of a context
+    public final int[] symbolFrequencies = new int[Constants.NUMBER_OF_SYMBOLS];
+    public final boolean[] alphabet = new boolean[Constants.NUMBER_OF_SYMBOLS];
+
+    private final boolean[] used = new boolean[Constants.NUMBER_OF_SYMBOLS];
+
+    /**
+     * Clears the tables of the contexts built since the previous reset, so that all the tables are zero.
+     */
+    public void reset() {
+        for (int context = 0; context < Constants.NUMBER_OF_SYMBOLS; context++) {
+            if (used[context]) {
+                final int from = context << 8;
+                Arrays.fill(frequencies, from, from + Constants.NUMBER_OF_SYMBOLS, 0);
+                Arrays.fill(cumulativeFrequencies, from, from + Constants.NUMBER_OF_SYMBOLS, 0);
+                final int lookupFrom = context << Constants.TOTAL_FREQ_SHIFT;
+                Arrays.fill(reverseLookup, lookupFrom, lookupFrom + Constants.TOTAL_FREQ, (byte) 0);
+                used[context] = false;
+            }
+        }
+    }
+
+    /**
+     * Marks a context as being built, for its tables to be cleared by the next {@link #reset()}.
+     *
+     * @return the index of the frequency of symbol 0 in the context
+     */
+    public int useContext(final int context) {
+        used[context] = true;
+        return context << 8;
+    }
+
+    /**
+     * Sets the frequency of a symbol of a context, with the next cumulative frequency of the context, and fills its
+     * range of the reverse lookup table.
+     *
+     * @return the cumulative frequency of the next symbol
+     */
+    public int setSymbol(final int context, final int symbol, final int cumulativeFrequency, final int frequency) {
+        final int end = cumulativeFrequency + frequency;
+        if (end > Constants.TOTAL_FREQ) {
+            throw new CRAMException("Invalid rANS frequency table: the cumulative frequency of context " + context +
+                    " exceeds " + Constants.TOTAL_FREQ);
+        }
+        final int index = useContext(context) | symbol;
+        frequencies[index] = frequency;
+        cumulativeFrequencies[index] = cumulativeFrequency;
+        final int lookupFrom = context << Constants.TOTAL_FREQ_SHIFT;
+        Arrays.fill(reverseLookup, lookupFrom + cumulativeFrequency, lookupFrom + end, (byte) symbol);
+        return end;
+    }
+}
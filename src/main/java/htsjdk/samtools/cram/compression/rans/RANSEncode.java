@@ -1,22 +1,20 @@
 package htsjdk.samtools.cram.compression.rans;
 
 import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public abstract class RANSEncode<T extends RANSParams> {
-    private RANSEncodingSymbol[][] encodingSymbols;
-
-    // Getter
-    protected RANSEncodingSymbol[][] getEncodingSymbols() {
-        return encodingSymbols;
-    }
+    // Working memory is borrowed by each call to compress and returned afterwards, so that a single encoder instance
+    // (which is shared by the compressors in a CompressorCache) can be used to compress several blocks concurrently,
+    // while holding no more working memory than it needs for the blocks that it compresses at once
+    private final Queue<RANSEncodingSymbol[][]> idleEncodingSymbols = new ConcurrentLinkedQueue<>();
 
     // This method assumes that inBuffer is already rewound.
     // It compresses the data in the inBuffer, leaving it consumed.
     // Returns a rewound ByteBuffer containing the compressed data.
-    public abstract ByteBuffer compress(final ByteBuffer inBuffer, final T params);
-
-    // Lazy initialization of working memory for the encoder
-    protected void initializeRANSEncoder() {
+    public ByteBuffer compress(final ByteBuffer inBuffer, final T params) {
+        RANSEncodingSymbol[][] encodingSymbols = idleEncodingSymbols.poll();
         if (encodingSymbols == null) {
             encodingSymbols = new RANSEncodingSymbol[Constants.NUMBER_OF_SYMBOLS][Constants.NUMBER_OF_SYMBOLS];
             for (int i = 0; i < encodingSymbols.length; i++) {
@@ -24,27 +22,41 @@ public abstract class RANSEncode<T extends RANSParams> {
                     encodingSymbols[i][j] = new RANSEncodingSymbol();
                 }
             }
-        } else {
-            for (int i = 0; i < encodingSymbols.length; i++) {
-                for (int j = 0; j < encodingSymbols[i].length; j++) {
-                    encodingSymbols[i][j].reset();
-                }
+        }
+        try {
+            return compress(inBuffer, params, encodingSymbols);
+        } finally {
+            idleEncodingSymbols.add(encodingSymbols);
+        }
+    }
+
+    // Compresses the data using the given working memory, which must be reset with initializeRANSEncoder before
+    // each use.
+    protected abstract ByteBuffer compress(
+            final ByteBuffer inBuffer,
+            final T params,
+            final RANSEncodingSymbol[][] encodingSymbols);
+
+    // Reset the working memory of the encoder
+    protected static void initializeRANSEncoder(final RANSEncodingSymbol[][] encodingSymbols) {
+        for (int i = 0; i < encodingSymbols.length; i++) {
+            for (int j = 0; j < encodingSymbols[i].length; j++) {
+                encodingSymbols[i][j].reset();
             }
         }
     }
 
-    protected void buildSymsOrder0(final int[] frequencies) {
-        updateEncodingSymbols(frequencies, getEncodingSymbols()[0]);
+    protected static void buildSymsOrder0(final int[] frequencies, final RANSEncodingSymbol[][] encodingSymbols) {
+        updateEncodingSymbols(frequencies, encodingSymbols[0]);
     }
 
-    protected void buildSymsOrder1(final int[][] frequencies) {
-        final RANSEncodingSymbol[][] encodingSymbols = getEncodingSymbols();
+    protected static void buildSymsOrder1(final int[][] frequencies, final RANSEncodingSymbol[][] encodingSymbols) {
         for (int i = 0; i < Constants.NUMBER_OF_SYMBOLS; i++) {
             updateEncodingSymbols(frequencies[i], encodingSymbols[i]);
         }
     }
 
-    private void updateEncodingSymbols(int[] frequencies, RANSEncodingSymbol[] encodingSymbols) {
+    private static void updateEncodingSymbols(int[] frequencies, RANSEncodingSymbol[] encodingSymbols) {
         int cumulativeFreq = 0;
         for (int symbol = 0; symbol < Constants.NUMBER_OF_SYMBOLS; symbol++) {
             if (frequencies[symbol] != 0) {
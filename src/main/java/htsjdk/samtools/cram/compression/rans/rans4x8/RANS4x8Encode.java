@@ -18,32 +18,33 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
     private static final int MINIMUM_ORDER_1_SIZE = 4;
     private static final ByteBuffer EMPTY_BUFFER = CompressionUtils.allocateByteBuffer(0);
 
-    // This method assumes that inBuffer is already rewound.
-    // It compresses the data in the inBuffer, leaving it consumed.
-    // Returns a rewound ByteBuffer containing the compressed data.
-    public ByteBuffer compress(final ByteBuffer inBuffer, final RANS4x8Params params) {
+    @Override
+    protected ByteBuffer compress(
+            final ByteBuffer inBuffer,
+            final RANS4x8Params params,
+            final RANSEncodingSymbol[][] encodingSymbols) {
         if (inBuffer.remaining() == 0) {
             return EMPTY_BUFFER;
         }
-        initializeRANSEncoder();
+        initializeRANSEncoder(encodingSymbols);
         if (inBuffer.remaining() < MINIMUM_ORDER_1_SIZE) {
             // ORDER-1 encoding of less than 4 bytes is not permitted, so just use ORDER-0
-            return compressOrder0Way4(inBuffer);
+            return compressOrder0Way4(inBuffer, encodingSymbols);
         }
         final RANSParams.ORDER order= params.getOrder();
         switch (order) {
             case ZERO:
-                return compressOrder0Way4(inBuffer);
+                return compressOrder0Way4(inBuffer, encodingSymbols);
 
             case ONE:
-                return compressOrder1Way4(inBuffer);
+                return compressOrder1Way4(inBuffer, encodingSymbols);
 
             default:
                 throw new CRAMException("Unknown rANS order: " + params.getOrder());
         }
     }
 
-    private ByteBuffer compressOrder0Way4(final ByteBuffer inBuffer) {
+    private ByteBuffer compressOrder0Way4(final ByteBuffer inBuffer, final RANSEncodingSymbol[][] encodingSymbols) {
         final int inputSize = inBuffer.remaining();
         final ByteBuffer outBuffer = CompressionUtils.allocateOutputBuffer(inputSize);
 
@@ -55,7 +56,7 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
         final int[] normalizedFreq = calcFrequenciesOrder0(inBuffer);
 
         // using the normalised frequencies, set the RANSEncodingSymbols
-        buildSymsOrder0(normalizedFreq);
+        buildSymsOrder0(normalizedFreq, encodingSymbols);
         final ByteBuffer cp = CompressionUtils.slice(outBuffer);
 
         // write Frequency table
@@ -63,7 +64,7 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
 
         inBuffer.rewind();
 
-        final RANSEncodingSymbol[] syms = getEncodingSymbols()[0];
+        final RANSEncodingSymbol[] syms = encodingSymbols[0];
         final int in_size = inBuffer.remaining();
         long rans0, rans1, rans2, rans3;
         final ByteBuffer ptr = CompressionUtils.slice(cp);
@@ -111,7 +112,7 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
         return outBuffer;
     }
 
-    private ByteBuffer compressOrder1Way4(final ByteBuffer inBuffer) {
+    private ByteBuffer compressOrder1Way4(final ByteBuffer inBuffer, final RANSEncodingSymbol[][] encodingSymbols) {
         final int inSize = inBuffer.remaining();
         final ByteBuffer outBuffer = CompressionUtils.allocateOutputBuffer(inSize);
 
@@ -122,7 +123,7 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
         final int[][] normalizedFreq = calcFrequenciesOrder1(inBuffer);
 
         // using the normalised frequencies, set the RANSEncodingSymbols
-        buildSymsOrder1(normalizedFreq);
+        buildSymsOrder1(normalizedFreq, encodingSymbols);
 
         final ByteBuffer cp = CompressionUtils.slice(outBuffer);
         final int frequencyTableSize = writeFrequenciesOrder1(cp, normalizedFreq);
@@ -158,7 +159,7 @@ public class RANS4x8Encode extends RANSEncode<RANS4x8Params> {
 
         // Slicing is needed for buffer reversing later
         final ByteBuffer ptr = CompressionUtils.slice(cp);
-        final RANSEncodingSymbol[][] syms = getEncodingSymbols();
+        final RANSEncodingSymbol[][] syms = encodingSymbols;
         for (i3 = in_size - 2; i3 > 4 * isz4 - 2 && i3 >= 0; i3--) {
             final byte c3 = inBuffer.get(i3);
             rans3 = syms[0xFF & c3][0xFF & l3].putSymbol4x8(rans3, ptr);
@@ -2,10 +2,9 @@ package htsjdk.samtools.cram.compression.rans.ransnx16;
 
 import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.compression.CompressionUtils;
-import htsjdk.samtools.cram.compression.rans.ArithmeticDecoder;
 import htsjdk.samtools.cram.compression.rans.Constants;
 import htsjdk.samtools.cram.compression.rans.RANSDecode;
-import htsjdk.samtools.cram.compression.rans.RANSDecodingSymbol;
+import htsjdk.samtools.cram.compression.rans.RANSDecodingTables;
 import htsjdk.samtools.cram.compression.rans.Utils;
 
 import java.nio.ByteBuffer;
@@ -18,6 +17,10 @@ import java.util.Arrays;
  * encoding and striping (see the spec).
  *
  * This codec is also used internally by the read name NameTokenisation codec.
+ *
+ * The 4 or 32 (X32 flag) interleaved rANS states are decoded in rounds, stepping all the states from the flat
+ * decoding tables before renormalizing them from the input, and the decoding tables are kept for each thread, so
+ * decoders are cheap to create and to share.
  */
 public class RANSNx16Decode extends RANSDecode {
     private static final ByteBuffer EMPTY_BUFFER = CompressionUtils.allocateByteBuffer(0);
@@ -31,13 +34,22 @@ public class RANSNx16Decode extends RANSDecode {
 
         // For RANS decoding, the bytes are read in little endian from the input stream
         inBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        return uncompress(inBuffer, 0);
+        return withArrayInput(inBuffer, in -> uncompress(in, 0, null));
+    }
+
+    @Override
+    public int uncompress(final ByteBuffer inBuffer, final ByteBuffer outBuffer) {
+        inBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer target = outBuffer.hasArray() ? outBuffer : null;
+        return transferTo(withArrayInput(inBuffer, in -> uncompress(in, 0, target)), outBuffer);
     }
 
-    private ByteBuffer uncompress(final ByteBuffer inBuffer, final int outSize) {
+    // Uncompresses into the remaining space of target when it does not need a transform, or into a new buffer
+    private ByteBuffer uncompress(final ByteBuffer inBuffer, final int outSize, final ByteBuffer target) {
         if (inBuffer.remaining() == 0) {
             return EMPTY_BUFFER;
         }
+        inBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
         // the first byte of compressed stream gives the formatFlags
         final int formatFlags = inBuffer.get() & 0xFF;
@@ -48,7 +60,7 @@ public class RANSNx16Decode extends RANSDecode {
 
         // if stripe, then decodeStripe
         if (ransNx16Params.isStripe()) {
-            return decodeStripe(inBuffer, uncompressedSize);
+            return decodeStripe(inBuffer, uncompressedSize, target);
         }
 
         // if pack, get pack metadata, which will be used later to decode packed data
@@ -95,7 +107,9 @@ public class RANSNx16Decode extends RANSDecode {
             // to meet the requirements of the tests that verify the boundary conditions.
             inBuffer.position(inBuffer.position()+uncompressedSize);
         } else {
-            outBuffer = CompressionUtils.allocateByteBuffer(uncompressedSize);
+            outBuffer = target != null && !ransNx16Params.isRLE() && !ransNx16Params.isPack() ?
+                    outputSlice(target, uncompressedSize) :
+                    CompressionUtils.allocateByteBuffer(uncompressedSize);
 
             // uncompressedSize is 0 in cases where Pack flag is used
             // and number of distinct symbols in the raw data is 1
@@ -105,7 +119,7 @@ public class RANSNx16Decode extends RANSDecode {
                         uncompressOrder0WayN(inBuffer, outBuffer, uncompressedSize, ransNx16Params);
                         break;
                     case ONE:
-                        uncompressOrder1WayN(inBuffer, outBuffer, ransNx16Params);
+                        uncompressOrder1WayN(inBuffer, outBuffer, uncompressedSize, ransNx16Params);
                         break;
                     default:
                         throw new CRAMException("Unknown rANS order: " + ransNx16Params.getOrder());
@@ -130,58 +144,19 @@ public class RANSNx16Decode extends RANSDecode {
             final ByteBuffer outBuffer,
             final int outSize,
             final RANSNx16Params ransNx16Params) {
-        initializeRANSDecoder();
-
-        // read the frequency table, get the normalised frequencies and use it to set the RANSDecodingSymbols
-        readFrequencyTableOrder0(inBuffer);
+        final RANSDecodingTables tables = initializeRANSDecoder();
 
-        // uncompress using Nway rans states
-        final int Nway = ransNx16Params.getNumInterleavedRANSStates();
+        // read the frequency table, get the normalised frequencies and use it to set the decoding tables
+        readFrequencyTableOrder0(inBuffer, tables);
 
-        // Nway parallel rans states. Nway = 4 or 32
-        final long[] rans = new long[Nway];
-
-        for (int r=0; r<Nway; r++){
-            rans[r] = inBuffer.getInt();
-        }
-
-        // size of each interleaved stream
-        // For Nway = 4, division by 4 is the same as right shift by 2 bits
-        // For Nway = 32, division by 32 is the same as right shift by 5 bits
-        final int interleaveSize = (Nway == 4) ? (outSize >> 2) : (outSize >> 5);
-
-        // Number of elements that don't fall into the Nway streams
-        int remSize = outSize - (interleaveSize * Nway);
-        final int out_end = outSize - remSize;
-        final ArithmeticDecoder D = getD()[0];
-        final RANSDecodingSymbol[] syms = getDecodingSymbols()[0];
-        for (int i = 0; i < out_end; i += Nway) {
-            for (int r=0; r<Nway; r++){
-
-                // Nway parallel decoding rans states
-                final byte decodedSymbol = D.reverseLookup[Utils.RANSGetCumulativeFrequency(rans[r], Constants.TOTAL_FREQ_SHIFT)];
-                outBuffer.put(i+r, decodedSymbol);
-                rans[r] = syms[0xFF & decodedSymbol].advanceSymbolStep(rans[r], Constants.TOTAL_FREQ_SHIFT);
-                rans[r] = Utils.RANSDecodeRenormalizeNx16(rans[r], inBuffer);
-            }
-        }
-        outBuffer.position(out_end);
-        int reverseIndex = 0;
-
-        // decode the remaining bytes
-        while (remSize>0){
-            byte remainingSymbol = D.reverseLookup[Utils.RANSGetCumulativeFrequency(rans[reverseIndex], Constants.TOTAL_FREQ_SHIFT)];
-            syms[0xFF & remainingSymbol].advanceSymbolNx16(rans[reverseIndex], inBuffer, Constants.TOTAL_FREQ_SHIFT);
-            outBuffer.put(remainingSymbol);
-            remSize --;
-            reverseIndex ++;
-        }
-        outBuffer.rewind();
+        // uncompress using Nway rans states. Nway = 4 or 32
+        uncompressOrder0(tables, ransNx16Params.getNumInterleavedRANSStates(), true, inBuffer, outBuffer, outSize);
     }
 
     private void uncompressOrder1WayN(
             final ByteBuffer inBuffer,
             final ByteBuffer outBuffer,
+            final int outputSize,
             final RANSNx16Params ransNx16Params) {
 
         // read the first byte
@@ -213,106 +188,58 @@ public class RANSNx16Decode extends RANSDecode {
             freqTableSource = inBuffer;
         }
 
-        // Moving initializeRANSDecoder() from the beginning of this method to this point in the code
-        // due to the nested call to uncompressOrder0WayN, which also invokes the initializeRANSDecoder() method.
-        // TODO: we should work on a more permanent solution for this issue!
-        initializeRANSDecoder();
+        // initialize the decoding tables after the nested call to uncompressOrder0WayN, which uses them too
+        final RANSDecodingTables tables = initializeRANSDecoder();
         final int shift = frequencyTableFirstByte >> 4;
-        readFrequencyTableOrder1(freqTableSource, shift);
-        final int outputSize = outBuffer.remaining();
-
-        // Nway parallel rans states. Nway = 4 or 32
-        final int Nway = ransNx16Params.getNumInterleavedRANSStates();
-        final long[] rans = new long[Nway];
-        final int[] interleaveStreamIndex = new int[Nway];
-        final int[] context = new int[Nway];
-
-        // size of interleaved stream = outputSize / Nway
-        // For Nway = 4, division by 4 is the same as right shift by 2 bits
-        // For Nway = 32, division by 32 is the same as right shift by 5 bits
-        final int interleaveSize = (Nway==4) ? (outputSize >> 2): (outputSize >> 5);
-
-        for (int r=0; r<Nway; r++){
-
-            // initialize rans, interleaveStreamIndex and context arrays
-            rans[r] = inBuffer.getInt();
-            interleaveStreamIndex[r] = r * interleaveSize;
-            context[r] = 0;
-        }
-
-        final ArithmeticDecoder[] D = getD();
-        final RANSDecodingSymbol[][] syms = getDecodingSymbols();
-        final int[] symbol = new int[Nway];
-        while (interleaveStreamIndex[0] < interleaveSize) {
-            for (int r = 0; r < Nway; r++){
-                symbol[r] = 0xFF & D[context[r]].reverseLookup[Utils.RANSGetCumulativeFrequency(rans[r], shift)];
-                outBuffer.put(interleaveStreamIndex[r],(byte) symbol[r]);
-                rans[r] = syms[context[r]][symbol[r]].advanceSymbolStep(rans[r], shift);
-                rans[r] = Utils.RANSDecodeRenormalizeNx16(rans[r], inBuffer);
-                context[r]=symbol[r];
-            }
-            for (int r = 0; r < Nway; r++){
-                interleaveStreamIndex[r]++;
-            }
-        }
+        readFrequencyTableOrder1(freqTableSource, tables, shift);
 
-        // Deal with the remaining elements
-        for (; interleaveStreamIndex[Nway - 1] < outputSize; interleaveStreamIndex[Nway - 1]++) {
-            symbol[Nway - 1] = 0xFF & D[context[Nway - 1]].reverseLookup[Utils.RANSGetCumulativeFrequency(rans[Nway - 1], shift)];
-            outBuffer.put(interleaveStreamIndex[Nway - 1], (byte) symbol[Nway - 1]);
-            rans[Nway - 1] = syms[context[Nway - 1]][symbol[Nway - 1]].advanceSymbolNx16(rans[Nway - 1], inBuffer, shift);
-            context[Nway - 1] = symbol[Nway - 1];
-        }
+        // uncompress using Nway rans states. Nway = 4 or 32
+        uncompressOrder1(tables, ransNx16Params.getNumInterleavedRANSStates(), shift, true, inBuffer, outBuffer, outputSize);
     }
 
-    private void readFrequencyTableOrder0(
-            final ByteBuffer cp) {
+    private static void readFrequencyTableOrder0(
+            final ByteBuffer cp,
+            final RANSDecodingTables tables) {
 
         // Use the Frequency table to set the values of Frequencies, Cumulative Frequency
         // and Reverse Lookup table
 
-        final int[] alphabet = readAlphabet(cp);
-        final ArithmeticDecoder decoder = getD()[0];
+        final boolean[] alphabet = readAlphabet(cp, tables);
+        final int[] frequencies = tables.symbolFrequencies;
 
         // read frequencies, normalise frequencies
         for (int j = 0; j < Constants.NUMBER_OF_SYMBOLS; j++) {
-            if (alphabet[j] > 0) {
-                decoder.frequencies[j] = CompressionUtils.readUint7(cp);
-            }
+            frequencies[j] = alphabet[j] ? CompressionUtils.readUint7(cp) : 0;
         }
-        Utils.normaliseFrequenciesOrder0Shift(decoder.frequencies, Constants.TOTAL_FREQ_SHIFT);
+        Utils.normaliseFrequenciesOrder0Shift(frequencies, Constants.TOTAL_FREQ_SHIFT);
 
-        final RANSDecodingSymbol[] decodingSymbols = getDecodingSymbols()[0];
         int cumulativeFrequency = 0;
         for (int j = 0; j < Constants.NUMBER_OF_SYMBOLS; j++) {
-            if(alphabet[j]>0){
-
-                // set RANSDecodingSymbol
-                decodingSymbols[j].set(cumulativeFrequency, decoder.frequencies[j]);
+            if (alphabet[j]) {
 
-                // update Reverse Lookup table
-                Arrays.fill(decoder.reverseLookup, cumulativeFrequency, cumulativeFrequency + decoder.frequencies[j], (byte) j);
-                cumulativeFrequency += decoder.frequencies[j];
+                // set the frequency and update the Reverse Lookup table
+                cumulativeFrequency = tables.setSymbol(0, j, cumulativeFrequency, frequencies[j]);
             }
         }
     }
 
-    private void readFrequencyTableOrder1(
+    private static void readFrequencyTableOrder1(
             final ByteBuffer cp,
+            final RANSDecodingTables tables,
             final int shift) {
-        final ArithmeticDecoder[] D = getD();
-        final RANSDecodingSymbol[][] decodingSymbols = getDecodingSymbols();
-        final int[] alphabet = readAlphabet(cp);
+        final boolean[] alphabet = readAlphabet(cp, tables);
+        final int[] frequencies = tables.symbolFrequencies;
         for (int i=0; i < Constants.NUMBER_OF_SYMBOLS; i++) {
-            if (alphabet[i] > 0) {
+            if (alphabet[i]) {
                 int run = 0;
                 for (int j = 0; j < Constants.NUMBER_OF_SYMBOLS; j++) {
-                    if (alphabet[j] > 0) {
+                    frequencies[j] = 0;
+                    if (alphabet[j]) {
                         if (run > 0) {
                             run--;
                         } else {
-                            D[i].frequencies[j] = CompressionUtils.readUint7(cp);
-                            if (D[i].frequencies[j] == 0){
+                            frequencies[j] = CompressionUtils.readUint7(cp);
+                            if (frequencies[j] == 0){
                                 run = cp.get() & 0xFF;
                             }
                         }
@@ -320,31 +247,26 @@ public class RANSNx16Decode extends RANSDecode {
                 }
 
                 // For each symbol, normalise it's order 0 frequency table
-                Utils.normaliseFrequenciesOrder0Shift(D[i].frequencies,shift);
+                Utils.normaliseFrequenciesOrder0Shift(frequencies, shift);
                 int cumulativeFreq=0;
 
-                // set decoding symbols
+                // set the frequencies and build the reverse lookup table of context i
                 for (int j = 0; j < Constants.NUMBER_OF_SYMBOLS; j++) {
-                    decodingSymbols[i][j].set(
-                            cumulativeFreq,
-                            D[i].frequencies[j]
-                    );
-                    /* Build reverse lookup table */
-                    Arrays.fill(D[i].reverseLookup, cumulativeFreq, cumulativeFreq + D[i].frequencies[j], (byte) j);
-                    cumulativeFreq+=D[i].frequencies[j];
+                    cumulativeFreq = tables.setSymbol(i, j, cumulativeFreq, frequencies[j]);
                 }
             }
         }
     }
 
-    private static int[] readAlphabet(final ByteBuffer cp){
+    private static boolean[] readAlphabet(final ByteBuffer cp, final RANSDecodingTables tables){
         // gets the list of alphabets whose frequency!=0
-        final int[] alphabet = new int[Constants.NUMBER_OF_SYMBOLS];
+        final boolean[] alphabet = tables.alphabet;
+        Arrays.fill(alphabet, false);
         int rle = 0;
         int symbol = cp.get() & 0xFF;
         int lastSymbol = symbol;
         do {
-            alphabet[symbol] = 1;
+            alphabet[symbol] = true;
             if (rle!=0) {
                 rle--;
                 symbol++;
@@ -417,7 +339,7 @@ public class RANSNx16Decode extends RANSDecode {
         return rleOutBuffer;
     }
 
-    private ByteBuffer decodeStripe(final ByteBuffer inBuffer, final int outSize){
+    private ByteBuffer decodeStripe(final ByteBuffer inBuffer, final int outSize, final ByteBuffer target){
         final int numInterleaveStreams = inBuffer.get() & 0xFF;
 
         // read lengths of compressed interleaved streams
@@ -434,11 +356,13 @@ public class RANSNx16Decode extends RANSDecode {
                 uncompressedLengths[j]++;
             }
 
-            transposedData[j] = uncompress(inBuffer, uncompressedLengths[j]);
+            transposedData[j] = uncompress(inBuffer, uncompressedLengths[j], null);
         }
 
         // Transpose
-        final ByteBuffer outBuffer = CompressionUtils.allocateByteBuffer(outSize);
+        final ByteBuffer outBuffer = target == null ?
+                CompressionUtils.allocateByteBuffer(outSize) :
+                outputSlice(target, outSize);
         for (int j = 0; j <numInterleaveStreams; j++) {
             for (int i = 0; i < uncompressedLengths[j]; i++) {
                 outBuffer.put((i*numInterleaveStreams)+j, transposedData[j].get(i));
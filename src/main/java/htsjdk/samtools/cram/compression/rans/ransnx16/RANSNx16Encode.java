@@ -25,10 +25,11 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
 
     private static final ByteBuffer EMPTY_BUFFER = CompressionUtils.allocateByteBuffer(0);
 
-    // This method assumes that inBuffer is already rewound.
-    // It compresses the data in the inBuffer, leaving it consumed.
-    // Returns a rewound ByteBuffer containing the compressed data.
-    public ByteBuffer compress(final ByteBuffer inBuffer, final RANSNx16Params ransNx16Params) {
+    @Override
+    protected ByteBuffer compress(
+            final ByteBuffer inBuffer,
+            final RANSNx16Params ransNx16Params,
+            final RANSEncodingSymbol[][] encodingSymbols) {
         if (inBuffer.remaining() == 0) {
             return EMPTY_BUFFER;
         }
@@ -76,7 +77,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
 
         // RLE
         if (ransNx16Params.isRLE()){
-            inputBuffer = encodeRLE(inputBuffer, outBuffer, ransNx16Params);
+            inputBuffer = encodeRLE(inputBuffer, outBuffer, ransNx16Params, encodingSymbols);
         }
 
         if (ransNx16Params.isCAT()) {
@@ -97,16 +98,16 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
                 outBuffer.rewind();
                 return outBuffer;
             }
-            compressOrder0WayN(inputBuffer, new RANSNx16Params(outBuffer.get(0)), outBuffer);
+            compressOrder0WayN(inputBuffer, new RANSNx16Params(outBuffer.get(0)), outBuffer, encodingSymbols);
             return outBuffer;
         }
 
         switch (ransNx16Params.getOrder()) {
             case ZERO:
-                compressOrder0WayN(inputBuffer, ransNx16Params, outBuffer);
+                compressOrder0WayN(inputBuffer, ransNx16Params, outBuffer, encodingSymbols);
                 return outBuffer;
             case ONE:
-                compressOrder1WayN(inputBuffer, ransNx16Params, outBuffer);
+                compressOrder1WayN(inputBuffer, ransNx16Params, outBuffer, encodingSymbols);
                 return outBuffer;
             default:
                 throw new CRAMException("Unknown rANS order: " + ransNx16Params.getOrder());
@@ -116,8 +117,9 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
     private void compressOrder0WayN (
             final ByteBuffer inBuffer,
             final RANSNx16Params ransNx16Params,
-            final ByteBuffer outBuffer) {
-        initializeRANSEncoder();
+            final ByteBuffer outBuffer,
+            final RANSEncodingSymbol[][] encodingSymbols) {
+        initializeRANSEncoder(encodingSymbols);
         final int inSize = inBuffer.remaining();
         int bitSize = (int) Math.ceil(Math.log(inSize) / Math.log(2));
         if (bitSize > Constants.TOTAL_FREQ_SHIFT) {
@@ -141,7 +143,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
         }
 
         // using the normalised frequencies, set the RANSEncodingSymbols
-        buildSymsOrder0(F);
+        buildSymsOrder0(F, encodingSymbols);
         inBuffer.rewind();
         final int Nway = ransNx16Params.getNumInterleavedRANSStates();
 
@@ -159,7 +161,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
             rans[r] = Constants.RANS_Nx16_LOWER_BOUND;
         }
         final ByteBuffer ptr = CompressionUtils.slice(cp);
-        final RANSEncodingSymbol[] ransEncodingSymbols = getEncodingSymbols()[0];
+        final RANSEncodingSymbol[] ransEncodingSymbols = encodingSymbols[0];
         // encoded in LIFO order
         while (remainingSize>0){
 
@@ -198,7 +200,8 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
     private void compressOrder1WayN (
             final ByteBuffer inBuffer,
             final RANSNx16Params ransNx16Params,
-            final ByteBuffer outBuffer) {
+            final ByteBuffer outBuffer,
+            final RANSEncodingSymbol[][] encodingSymbols) {
         final int[][] frequencies = buildFrequenciesOrder1(inBuffer, ransNx16Params.getNumInterleavedRANSStates());
 
         // normalise frequencies with a variable shift calculated
@@ -216,13 +219,13 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
 
         // Compress using RANSNx16 Order 0, Nway = 4.
         // formatFlags = (~RANSNx16Params.ORDER_FLAG_MASK & ~RANSNx16Params.N32_FLAG_MASK) = ~(RANSNx16Params.ORDER_FLAG_MASK | RANSNx16Params.N32_FLAG_MASK)
-        compressOrder0WayN(frequencyTable, new RANSNx16Params(~(RANSNx16Params.ORDER_FLAG_MASK | RANSNx16Params.N32_FLAG_MASK)), compressedFrequencyTable);
+        compressOrder0WayN(frequencyTable, new RANSNx16Params(~(RANSNx16Params.ORDER_FLAG_MASK | RANSNx16Params.N32_FLAG_MASK)), compressedFrequencyTable, encodingSymbols);
         frequencyTable.rewind();
 
         // Moving initializeRANSEncoder() from the beginning of this method to this point in the code
         // due to the nested call to compressOrder0WayN, which also invokes the initializeRANSEncoder() method.
         // TODO: we should work on a more permanent solution for this issue!
-        initializeRANSEncoder();
+        initializeRANSEncoder(encodingSymbols);
         final int compressedFrequencyTableSize = compressedFrequencyTable.limit();
         final ByteBuffer cp = CompressionUtils.slice(outBuffer);
 
@@ -256,7 +259,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
         Utils.normaliseFrequenciesOrder1Shift(frequencies, Constants.TOTAL_FREQ_SHIFT);
 
         // using the normalised frequencies, set the RANSEncodingSymbols
-        buildSymsOrder1(frequencies);
+        buildSymsOrder1(frequencies, encodingSymbols);
 
         // uncompress for Nway = 4. then extend Nway to be variable - 4 or 32
         final int Nway = ransNx16Params.getNumInterleavedRANSStates();
@@ -292,7 +295,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
 
         // Slicing is needed for buffer reversing later.
         final ByteBuffer ptr = CompressionUtils.slice(cp);
-        final RANSEncodingSymbol[][] ransEncodingSymbols = getEncodingSymbols();
+        final RANSEncodingSymbol[][] ransEncodingSymbols = encodingSymbols;
         final byte[] context = new byte[Nway];
 
         // deal with the reminder
@@ -479,7 +482,11 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
         cp.put((byte) 0);
     }
 
-    private ByteBuffer encodeRLE(final ByteBuffer inBuffer, final ByteBuffer outBuffer, final RANSNx16Params ransNx16Params){
+    private ByteBuffer encodeRLE(
+            final ByteBuffer inBuffer,
+            final ByteBuffer outBuffer,
+            final RANSNx16Params ransNx16Params,
+            final RANSEncodingSymbol[][] encodingSymbols){
 
         // Find the symbols that benefit from RLE, i.e, the symbols that occur more than 2 times in succession.
         // spec: For symbols that occur many times in succession, we can replace them with a single symbol and a count.
@@ -556,7 +563,7 @@ public class RANSNx16Encode extends RANSEncode<RANSNx16Params> {
         final ByteBuffer compressedRleMetaData = CompressionUtils.allocateOutputBuffer(rleMetaData.remaining());
 
         // compress using Order 0 and N = Nway
-        compressOrder0WayN(rleMetaData, new RANSNx16Params(0x00 | ransNx16Params.getFormatFlags() & RANSNx16Params.N32_FLAG_MASK),compressedRleMetaData);
+        compressOrder0WayN(rleMetaData, new RANSNx16Params(0x00 | ransNx16Params.getFormatFlags() & RANSNx16Params.N32_FLAG_MASK),compressedRleMetaData, encodingSymbols);
 
         // write to compressedRleMetaData to outBuffer
         CompressionUtils.writeUint7(rleMetaData.limit()*2, outBuffer);
@@ -27,6 +27,8 @@ import htsjdk.samtools.util.RuntimeIOException;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * NOTE: this encoding can be a hybrid encoding in that it ALLOWS for the possibility to split it's data
@@ -71,6 +73,13 @@ public class ByteArrayLenEncoding extends CRAMEncoding<byte[]> {
         return new ByteArrayLenEncoding(lenEncoding, byteEncoding);
     }
 
+    @Override
+    public Set<Integer> getExternalBlockContentIds() {
+        final Set<Integer> contentIds = new HashSet<>(lenEncoding.getExternalBlockContentIds());
+        contentIds.addAll(byteEncoding.getExternalBlockContentIds());
+        return contentIds;
+    }
+
     @Override
     public byte[] toSerializedEncodingParams() {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
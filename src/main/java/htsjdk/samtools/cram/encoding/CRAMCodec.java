@@ -21,6 +21,19 @@ public interface CRAMCodec<T> {
      */
     T read(final int length);
 
+    /**
+     * Read count values of an integer data series into values, as count calls to {@link #read()} would.
+     * Codecs that can decode a whole column of values faster override this method.
+     *
+     * @param values the array to read the values into, from index 0
+     * @param count the number of values to read
+     */
+    default void readIntegers(final int[] values, final int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = (Integer) read();
+        }
+    }
+
     /**
      * Write an object to the stream
      * @param value the object to write
@@ -23,6 +23,9 @@ import htsjdk.samtools.cram.structure.EncodingDescriptor;
 import htsjdk.samtools.cram.structure.SliceBlocksReadStreams;
 import htsjdk.samtools.cram.structure.SliceBlocksWriteStreams;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * A base class for the various CRAM encodings. This class serves as a (typed) bridge between an
  * {@link EncodingDescriptor}, which only describes an encoding, and the various {@link CRAMCodec} classes,
@@ -54,6 +57,16 @@ public abstract class CRAMEncoding<T> {
         return new EncodingDescriptor(id(), toSerializedEncodingParams());
     }
 
+    /**
+     * Get the content IDs of the external blocks this encoding reads from and writes to. The core block is not
+     * included.
+     *
+     * @return the content IDs of the external blocks used by this encoding, empty for core encodings
+     */
+    public Set<Integer> getExternalBlockContentIds() {
+        return Collections.emptySet();
+    }
+
     /**
      * Serialize encoding parameters to an ITF8-encoded byte array.
      * By convention, each subclass should have a corresponding and symmetric "fromSerializedEncodingParams"
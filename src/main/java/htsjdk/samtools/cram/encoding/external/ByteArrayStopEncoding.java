@@ -28,6 +28,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.Set;
 
 public final class ByteArrayStopEncoding extends CRAMEncoding<byte[]> {
     private final byte stopByte;
@@ -54,6 +56,11 @@ public final class ByteArrayStopEncoding extends CRAMEncoding<byte[]> {
         return new ByteArrayStopEncoding(stopByte, externalId);
     }
 
+    @Override
+    public Set<Integer> getExternalBlockContentIds() {
+        return Collections.singleton(externalId);
+    }
+
     @Override
     public byte[] toSerializedEncodingParams() {
         buf.clear();
@@ -4,6 +4,9 @@ import htsjdk.samtools.cram.encoding.CRAMEncoding;
 import htsjdk.samtools.cram.io.ITF8;
 import htsjdk.samtools.cram.structure.EncodingID;
 
+import java.util.Collections;
+import java.util.Set;
+
 public abstract class ExternalEncoding<T> extends CRAMEncoding<T> {
     protected final int externalBlockContentId;
 
@@ -12,6 +15,11 @@ public abstract class ExternalEncoding<T> extends CRAMEncoding<T> {
         this.externalBlockContentId = externalBlockContentId;
     }
 
+    @Override
+    public Set<Integer> getExternalBlockContentIds() {
+        return Collections.singleton(externalBlockContentId);
+    }
+
     @Override
     public byte[] toSerializedEncodingParams() {
         return ITF8.writeUnsignedITF8(externalBlockContentId);
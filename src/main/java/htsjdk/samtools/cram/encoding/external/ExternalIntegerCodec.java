@@ -18,9 +18,12 @@
 package htsjdk.samtools.cram.encoding.external;
 
 import htsjdk.samtools.cram.io.ITF8;
+import htsjdk.samtools.util.RuntimeEOFException;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Encode Integers using an External Data Block
@@ -42,6 +45,23 @@ final class ExternalIntegerCodec extends ExternalCodec<Integer> {
         return ITF8.readUnsignedITF8(inputStream);
     }
 
+    @Override
+    public void readIntegers(final int[] values, final int count) {
+        // decode from the remaining bytes of the block rather than through the synchronized stream, and then
+        // consume only the bytes of the values read
+        inputStream.mark(0);
+        final ByteBuffer buffer = ByteBuffer.wrap(inputStream.readAllBytes());
+        try {
+            for (int i = 0; i < count; i++) {
+                values[i] = ITF8.readUnsignedITF8(buffer);
+            }
+        } catch (final BufferUnderflowException e) {
+            throw new RuntimeEOFException(e);
+        }
+        inputStream.reset();
+        inputStream.skip(buffer.position());
+    }
+
     @Override
     public void write(final Integer value) {
         ITF8.writeUnsignedITF8(value, outputStream);
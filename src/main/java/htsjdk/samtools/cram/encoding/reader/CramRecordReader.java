@@ -20,30 +20,40 @@ package htsjdk.samtools.cram.encoding.reader;
 import htsjdk.samtools.SAMFlag;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.cram.encoding.CRAMEncoding;
+import htsjdk.samtools.cram.encoding.EncodingFactory;
 import htsjdk.samtools.cram.encoding.readfeatures.*;
 import htsjdk.samtools.cram.structure.*;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * A reader used to consume and populate encoded {@link CRAMCompressionRecord}s from a set of streams representing data
  * series/blocks in a Slice. This is essentially a bridge between the various data series streams associated in
  * a {@link Slice} and the corresponding {@link CRAMCompressionRecord} fields.
+ *
+ * The integer data series that have an external block to themselves, as they do in files written by htsjdk and
+ * samtools, are decoded for the whole slice up front, into columns from which the records are assembled, rather than
+ * one value at a time.
  */
 public final class CramRecordReader {
-    private final DataSeriesReader<Integer> bitFlagsCodec;
-    private final DataSeriesReader<Integer> compressionBitFlagsCodec;
-    private final DataSeriesReader<Integer> readLengthCodec;
-    private final DataSeriesReader<Integer> alignmentStartCodec;
-    private final DataSeriesReader<Integer> readGroupCodec;
+    private final IntegerDataSeries bitFlagsCodec;
+    private final IntegerDataSeries compressionBitFlagsCodec;
+    private final IntegerDataSeries readLengthCodec;
+    private final IntegerDataSeries alignmentStartCodec;
+    private final IntegerDataSeries readGroupCodec;
     private final DataSeriesReader<byte[]> readNameCodec;
-    private final DataSeriesReader<Integer> distanceToNextFragmentCodec;
+    private final IntegerDataSeries distanceToNextFragmentCodec;
     private final Map<Integer, DataSeriesReader<byte[]>> tagValueCodecs;
-    private final DataSeriesReader<Integer> numberOfReadFeaturesCodec;
+    private final IntegerDataSeries numberOfReadFeaturesCodec;
     private final DataSeriesReader<Integer> readFeaturePositionCodec;
     private final DataSeriesReader<Byte> readFeatureCodeCodec;
     private final DataSeriesReader<Byte> baseCodec;
@@ -54,13 +64,13 @@ public final class CramRecordReader {
     private final DataSeriesReader<Integer> hardClipCodec;
     private final DataSeriesReader<Integer> paddingCodec;
     private final DataSeriesReader<Integer> deletionLengthCodec;
-    private final DataSeriesReader<Integer> mappingScoreCodec;
-    private final DataSeriesReader<Integer> mateBitFlagCodec;
-    private final DataSeriesReader<Integer> mateReferenceIdCodec;
-    private final DataSeriesReader<Integer> mateAlignmentStartCodec;
-    private final DataSeriesReader<Integer> insertSizeCodec;
-    private final DataSeriesReader<Integer> tagIdListCodec;
-    private final DataSeriesReader<Integer> refIdCodec;
+    private final IntegerDataSeries mappingScoreCodec;
+    private final IntegerDataSeries mateBitFlagCodec;
+    private final IntegerDataSeries mateReferenceIdCodec;
+    private final IntegerDataSeries mateAlignmentStartCodec;
+    private final IntegerDataSeries insertSizeCodec;
+    private final IntegerDataSeries tagIdListCodec;
+    private final IntegerDataSeries refIdCodec;
     private final DataSeriesReader<Integer> refSkipCodec;
     private final DataSeriesReader<byte[]> basesCodec;
     private final DataSeriesReader<Byte> qualityScoreCodec;
@@ -73,6 +83,12 @@ public final class CramRecordReader {
     private final SliceBlocksReadStreams sliceBlocksReadStreams;
     protected final ValidationStringency validationStringency;
 
+    // the number of data series and tags using each external block
+    private final Map<Integer, Integer> externalBlockUses = new HashMap<>();
+    // whether the base and substitution data series, and the quality score data series, are left unread
+    private final boolean skipBases;
+    private final boolean skipQualityScores;
+
     /**
      * Initialize a Cram Record Reader
      *
@@ -83,19 +99,49 @@ public final class CramRecordReader {
             final Slice slice,
             final CompressorCache compressorCache,
             final ValidationStringency validationStringency) {
+        this(slice, compressorCache, validationStringency, EnumSet.noneOf(CRAMRecordField.class));
+    }
+
+    /**
+     * Initialize a Cram Record Reader that leaves some fields of the records out. The data series of the skipped
+     * fields that have external blocks to themselves are not read, and their blocks are not uncompressed; the
+     * others are still read, to keep the streams they share in step.
+     *
+     * @param slice the slice into which the records should be read
+     * @param validationStringency how strict to be when reading this CRAM record
+     * @param skippedFields the fields of the records that are not needed
+     */
+    public CramRecordReader(
+            final Slice slice,
+            final CompressorCache compressorCache,
+            final ValidationStringency validationStringency,
+            final Set<CRAMRecordField> skippedFields) {
         this.slice = slice;
         this.compressionHeader = slice.getCompressionHeader();
         this.validationStringency = validationStringency;
-        this.sliceBlocksReadStreams = new SliceBlocksReadStreams(slice.getSliceBlocks(), compressorCache);
 
-        bitFlagsCodec =                 createDataSeriesReader(DataSeries.BF_BitFlags);
-        compressionBitFlagsCodec =      createDataSeriesReader(DataSeries.CF_CompressionBitFlags);
-        readLengthCodec =               createDataSeriesReader(DataSeries.RL_ReadLength);
-        alignmentStartCodec =           createDataSeriesReader(DataSeries.AP_AlignmentPositionOffset);
-        readGroupCodec =                createDataSeriesReader(DataSeries.RG_ReadGroup);
+        countExternalBlockUses();
+        final Set<Integer> skippedContentIDs = new HashSet<>();
+        skipBases = skipDataSeries(skippedFields.contains(CRAMRecordField.READ_BASES),
+                EnumSet.of(DataSeries.BA_Base, DataSeries.BS_BaseSubstitutionCode), skippedContentIDs);
+        skipQualityScores = skipDataSeries(skippedFields.contains(CRAMRecordField.BASE_QUALITIES),
+                EnumSet.of(DataSeries.QS_QualityScore), skippedContentIDs);
+        // the embedded reference is only used to restore the read bases
+        if (skippedFields.contains(CRAMRecordField.READ_BASES) &&
+                slice.getEmbeddedReferenceContentID() != Slice.EMBEDDED_REFERENCE_ABSENT_CONTENT_ID &&
+                !externalBlockUses.containsKey(slice.getEmbeddedReferenceContentID())) {
+            skippedContentIDs.add(slice.getEmbeddedReferenceContentID());
+        }
+        this.sliceBlocksReadStreams = new SliceBlocksReadStreams(slice.getSliceBlocks(), compressorCache, skippedContentIDs);
+
+        bitFlagsCodec =                 createIntegerDataSeries(DataSeries.BF_BitFlags);
+        compressionBitFlagsCodec =      createIntegerDataSeries(DataSeries.CF_CompressionBitFlags);
+        readLengthCodec =               createIntegerDataSeries(DataSeries.RL_ReadLength);
+        alignmentStartCodec =           createIntegerDataSeries(DataSeries.AP_AlignmentPositionOffset);
+        readGroupCodec =                createIntegerDataSeries(DataSeries.RG_ReadGroup);
         readNameCodec =                 createDataSeriesReader(DataSeries.RN_ReadName);
-        distanceToNextFragmentCodec =   createDataSeriesReader(DataSeries.NF_RecordsToNextFragment);
-        numberOfReadFeaturesCodec =     createDataSeriesReader(DataSeries.FN_NumberOfReadFeatures);
+        distanceToNextFragmentCodec =   createIntegerDataSeries(DataSeries.NF_RecordsToNextFragment);
+        numberOfReadFeaturesCodec =     createIntegerDataSeries(DataSeries.FN_NumberOfReadFeatures);
         readFeaturePositionCodec =      createDataSeriesReader(DataSeries.FP_FeaturePosition);
         readFeatureCodeCodec =          createDataSeriesReader(DataSeries.FC_FeatureCode);
         baseCodec =                     createDataSeriesReader(DataSeries.BA_Base);
@@ -105,13 +151,13 @@ public final class CramRecordReader {
         hardClipCodec =                 createDataSeriesReader(DataSeries.HC_HardClip);
         paddingCodec =                  createDataSeriesReader(DataSeries.PD_padding);
         deletionLengthCodec =           createDataSeriesReader(DataSeries.DL_DeletionLength);
-        mappingScoreCodec =             createDataSeriesReader(DataSeries.MQ_MappingQualityScore);
-        mateBitFlagCodec =              createDataSeriesReader(DataSeries.MF_MateBitFlags);
-        mateReferenceIdCodec =          createDataSeriesReader(DataSeries.NS_NextFragmentReferenceSequenceID);
-        mateAlignmentStartCodec =       createDataSeriesReader(DataSeries.NP_NextFragmentAlignmentStart);
-        insertSizeCodec =               createDataSeriesReader(DataSeries.TS_InsertSize);
-        tagIdListCodec =                createDataSeriesReader(DataSeries.TL_TagIdList);
-        refIdCodec =                    createDataSeriesReader(DataSeries.RI_RefId);
+        mappingScoreCodec =             createIntegerDataSeries(DataSeries.MQ_MappingQualityScore);
+        mateBitFlagCodec =              createIntegerDataSeries(DataSeries.MF_MateBitFlags);
+        mateReferenceIdCodec =          createIntegerDataSeries(DataSeries.NS_NextFragmentReferenceSequenceID);
+        mateAlignmentStartCodec =       createIntegerDataSeries(DataSeries.NP_NextFragmentAlignmentStart);
+        insertSizeCodec =               createIntegerDataSeries(DataSeries.TS_InsertSize);
+        tagIdListCodec =                createIntegerDataSeries(DataSeries.TL_TagIdList);
+        refIdCodec =                    createIntegerDataSeries(DataSeries.RI_RefId);
         refSkipCodec =                  createDataSeriesReader(DataSeries.RS_RefSkip);
         basesCodec =                    createDataSeriesReader(DataSeries.BB_Bases);
         qualityScoreCodec =             createDataSeriesReader(DataSeries.QS_QualityScore);
@@ -135,6 +181,58 @@ public final class CramRecordReader {
                                 DataSeriesType.BYTE_ARRAY,
                                 mapEntry.getValue(),
                                 sliceBlocksReadStreams)));
+
+        decodeColumns(slice.getNumberOfRecords());
+    }
+
+    /**
+     * Decodes the columns of the integer data series that can be read independently of the others, for the
+     * records of the slice. The number of values of the data series that are only read for some of the records is
+     * known from the bit flags or the compression bit flags, if those were decoded.
+     */
+    private void decodeColumns(final int numberOfRecords) {
+        // the data series read for every record
+        bitFlagsCodec.decodeColumn(numberOfRecords);
+        compressionBitFlagsCodec.decodeColumn(numberOfRecords);
+        if (slice.getAlignmentContext().getReferenceContext().isMultiRef()) {
+            refIdCodec.decodeColumn(numberOfRecords);
+        }
+        readLengthCodec.decodeColumn(numberOfRecords);
+        alignmentStartCodec.decodeColumn(numberOfRecords);
+        readGroupCodec.decodeColumn(numberOfRecords);
+        tagIdListCodec.decodeColumn(numberOfRecords);
+
+        // the data series read for mapped records
+        final int[] bitFlags = bitFlagsCodec.getColumn();
+        if (bitFlags != null) {
+            int mappedRecords = 0;
+            for (final int bamFlags : bitFlags) {
+                if (!CRAMCompressionRecord.isSegmentUnmapped(bamFlags)) {
+                    mappedRecords++;
+                }
+            }
+            numberOfReadFeaturesCodec.decodeColumn(mappedRecords);
+            mappingScoreCodec.decodeColumn(mappedRecords);
+        }
+
+        // the data series read for records with a detached mate, or with a mate downstream in the slice
+        final int[] compressionBitFlags = compressionBitFlagsCodec.getColumn();
+        if (compressionBitFlags != null) {
+            int detachedRecords = 0;
+            int mateDownstreamRecords = 0;
+            for (final int cramFlags : compressionBitFlags) {
+                if (CRAMCompressionRecord.isDetached(cramFlags)) {
+                    detachedRecords++;
+                } else if (CRAMCompressionRecord.isHasMateDownStream(cramFlags)) {
+                    mateDownstreamRecords++;
+                }
+            }
+            mateBitFlagCodec.decodeColumn(detachedRecords);
+            mateReferenceIdCodec.decodeColumn(detachedRecords);
+            mateAlignmentStartCodec.decodeColumn(detachedRecords);
+            insertSizeCodec.decodeColumn(detachedRecords);
+            distanceToNextFragmentCodec.decodeColumn(mateDownstreamRecords);
+        }
     }
 
     /**
@@ -148,29 +246,29 @@ public final class CramRecordReader {
             final int prevAlignmentStart) {
         // NOTE: Because it is legal to interleave multiple data series encodings within a single stream,
         // the order in which these are encoded (and decoded) is significant, and prescribed by the spec.
-        int bamFlags = bitFlagsCodec.readData();
-        final int cramFlags = compressionBitFlagsCodec.readData();
+        int bamFlags = bitFlagsCodec.read();
+        final int cramFlags = compressionBitFlagsCodec.read();
 
         // decode positions
         int referenceIndex;
         if (slice.getAlignmentContext().getReferenceContext().isMultiRef()) {
-            referenceIndex = refIdCodec.readData();
+            referenceIndex = refIdCodec.read();
         } else {
             // either unmapped (-1) or a valid ref
             referenceIndex = slice.getAlignmentContext().getReferenceContext().getReferenceContextID();
         }
 
-        final int readLength = readLengthCodec.readData();
+        final int readLength = readLengthCodec.read();
 
         int alignmentStart;
         if (compressionHeader.isAPDelta()) {
             // note that its legal to have negative alignmentStart deltas
-            alignmentStart = prevAlignmentStart + alignmentStartCodec.readData();
+            alignmentStart = prevAlignmentStart + alignmentStartCodec.read();
         } else {
-            alignmentStart = alignmentStartCodec.readData();
+            alignmentStart = alignmentStartCodec.read();
         }
 
-        int readGroupID = readGroupCodec.readData();
+        int readGroupID = readGroupCodec.read();
 
         String readName = null;
         if (compressionHeader.isPreserveReadNames()) {
@@ -185,7 +283,7 @@ public final class CramRecordReader {
         int recordsToNextFragment = -1;
 
         if (CRAMCompressionRecord.isDetached(cramFlags)) {
-            mateFlags = mateBitFlagCodec.readData();
+            mateFlags = mateBitFlagCodec.read();
             // CRAM write implementations are not required to preserve these BAM flags directly in the
             // BAM Flags series, so we have to propagate them from mate flags just in case.
             if ((mateFlags & CRAMCompressionRecord.MF_MATE_NEG_STRAND) != 0) {
@@ -200,17 +298,17 @@ public final class CramRecordReader {
                 readName = new String(readNameCodec.readData(), charset);
             }
 
-            mateSequenceID = mateReferenceIdCodec.readData();
-            mateAlignmentStart = mateAlignmentStartCodec.readData();
-            templateSize = insertSizeCodec.readData();
+            mateSequenceID = mateReferenceIdCodec.read();
+            mateAlignmentStart = mateAlignmentStartCodec.read();
+            templateSize = insertSizeCodec.read();
         } else if (CRAMCompressionRecord.isHasMateDownStream(cramFlags)) {
-            recordsToNextFragment = distanceToNextFragmentCodec.readData();
+            recordsToNextFragment = distanceToNextFragmentCodec.read();
             // this record's bam flags will be updated once the next fragment
             // is resolved
         }
 
         List<ReadTag> readTags = null;
-        final Integer tagIdList = tagIdListCodec.readData();
+        final int tagIdList = tagIdListCodec.read();
         final byte[][] ids = compressionHeader.getTagIDDictionary()[tagIdList];
         if (ids.length > 0) {
             readTags = new ArrayList<>(ids.length);
@@ -229,7 +327,7 @@ public final class CramRecordReader {
 
         if (!CRAMCompressionRecord.isSegmentUnmapped(bamFlags)) {
             // reading read features:
-            final int size = numberOfReadFeaturesCodec.readData();
+            final int size = numberOfReadFeaturesCodec.read();
             int prevPos = 0;
             if ( size > 0) {
                 readFeatures = new ArrayList<>(size);
@@ -241,11 +339,11 @@ public final class CramRecordReader {
 
                     switch (operator) {
                         case ReadBase.operator:
-                            final ReadBase readBase = new ReadBase(pos, baseCodec.readData(), qualityScoreCodec.readData());
+                            final ReadBase readBase = new ReadBase(pos, readBase(), readQualityScore());
                             readFeatures.add(readBase);
                             break;
                         case Substitution.operator:
-                            final byte code = baseSubstitutionCodec.readData();
+                            final byte code = skipBases ? 0 : baseSubstitutionCodec.readData();
                             final Substitution substitution = new Substitution(pos, code);
                             readFeatures.add(substitution);
                             break;
@@ -274,11 +372,11 @@ public final class CramRecordReader {
                             readFeatures.add(refSkip);
                             break;
                         case InsertBase.operator:
-                            final InsertBase insertBase = new InsertBase(pos, baseCodec.readData());
+                            final InsertBase insertBase = new InsertBase(pos, readBase());
                             readFeatures.add(insertBase);
                             break;
                         case BaseQualityScore.operator:
-                            final BaseQualityScore baseQualityScore = new BaseQualityScore(pos, qualityScoreCodec.readData());
+                            final BaseQualityScore baseQualityScore = new BaseQualityScore(pos, readQualityScore());
                             readFeatures.add(baseQualityScore);
                             break;
                         case Bases.operator:
@@ -295,17 +393,19 @@ public final class CramRecordReader {
                 }
             }
 
-            mappingQuality = mappingScoreCodec.readData();;
-            if (CRAMCompressionRecord.isForcePreserveQualityScores(cramFlags)) {
+            mappingQuality = mappingScoreCodec.read();
+            if (CRAMCompressionRecord.isForcePreserveQualityScores(cramFlags) && !skipQualityScores) {
                 qualityScores = qualityScoreArrayCodec.readDataArray(readLength);
             }
         } else {
             if (!CRAMCompressionRecord.isUnknownBases(cramFlags)) {
-                readBases = new byte[readLength];
-                for (int i = 0; i < readBases.length; i++) {
-                    readBases[i] = baseCodec.readData();
+                if (!skipBases) {
+                    readBases = new byte[readLength];
+                    for (int i = 0; i < readBases.length; i++) {
+                        readBases[i] = baseCodec.readData();
+                    }
                 }
-                if (CRAMCompressionRecord.isForcePreserveQualityScores(cramFlags)) {
+                if (CRAMCompressionRecord.isForcePreserveQualityScores(cramFlags) && !skipQualityScores) {
                     qualityScores = qualityScoreArrayCodec.readDataArray(readLength);
                 }
             }
@@ -332,13 +432,22 @@ public final class CramRecordReader {
                 recordsToNextFragment);
     }
 
+    private byte readBase() {
+        return skipBases ? (byte) 'N' : baseCodec.readData();
+    }
+
+    private byte readQualityScore() {
+        return skipQualityScores ? 0 : qualityScoreCodec.readData();
+    }
+
     private <T> DataSeriesReader<T> createDataSeriesReader(final DataSeries dataSeries) {
         final EncodingDescriptor encodingDescriptor = compressionHeader.getEncodingMap().getEncodingDescriptorForDataSeries(dataSeries);
         if (encodingDescriptor != null) {
-            return new DataSeriesReader<>(
+            final DataSeriesReader<T> dataSeriesReader = new DataSeriesReader<>(
                     dataSeries.getType(),
                     encodingDescriptor,
                     sliceBlocksReadStreams);
+            return dataSeriesReader;
         } else {
             // NOTE: Not all CRAM implementations choose to use all data series. For example, the
             // htsjdk write implementation doesn't use `BB` and `QQ`; other implementations may choose to
@@ -347,4 +456,101 @@ public final class CramRecordReader {
         }
     }
 
+    private IntegerDataSeries createIntegerDataSeries(final DataSeries dataSeries) {
+        return new IntegerDataSeries(createDataSeriesReader(dataSeries));
+    }
+
+    /**
+     * Counts the data series and tags that use each external block, from the encodings of the compression header.
+     */
+    private void countExternalBlockUses() {
+        for (final DataSeries dataSeries : DataSeries.values()) {
+            final CRAMEncoding<?> encoding = getEncoding(dataSeries);
+            if (encoding != null) {
+                countExternalBlockUses(encoding);
+            }
+        }
+        for (final EncodingDescriptor encodingDescriptor : compressionHeader.getTagEncodingMap().values()) {
+            countExternalBlockUses(EncodingFactory.createCRAMEncoding(DataSeriesType.BYTE_ARRAY, encodingDescriptor));
+        }
+    }
+
+    private void countExternalBlockUses(final CRAMEncoding<?> encoding) {
+        for (final Integer contentId : encoding.getExternalBlockContentIds()) {
+            externalBlockUses.merge(contentId, 1, Integer::sum);
+        }
+    }
+
+    private CRAMEncoding<?> getEncoding(final DataSeries dataSeries) {
+        final EncodingDescriptor encodingDescriptor = compressionHeader.getEncodingMap().getEncodingDescriptorForDataSeries(dataSeries);
+        return encodingDescriptor == null || CompressionHeaderEncodingMap.DATASERIES_NOT_READ_BY_HTSJDK.contains(dataSeries) ?
+                null :
+                EncodingFactory.createCRAMEncoding(dataSeries.getType(), encodingDescriptor);
+    }
+
+    /**
+     * Determines whether data series that are not needed can be left unread: they must all be EXTERNAL, and the
+     * external blocks they use must not be used by any other data series or tag.
+     *
+     * @param skip true if the data series are not needed
+     * @param skippedContentIDs the content IDs of the blocks that are not read, to which those of the data series
+     *                          are added if they are left unread
+     * @return true if the data series are left unread
+     */
+    private boolean skipDataSeries(final boolean skip, final Set<DataSeries> dataSeries, final Set<Integer> skippedContentIDs) {
+        if (!skip) {
+            return false;
+        }
+        final Map<Integer, Integer> uses = new HashMap<>();
+        for (final DataSeries series : dataSeries) {
+            final CRAMEncoding<?> encoding = getEncoding(series);
+            if (encoding != null) {
+                if (encoding.id() != EncodingID.EXTERNAL) {
+                    return false;
+                }
+                for (final Integer contentId : encoding.getExternalBlockContentIds()) {
+                    uses.merge(contentId, 1, Integer::sum);
+                }
+            }
+        }
+        if (!uses.entrySet().stream().allMatch(use -> use.getValue().equals(externalBlockUses.get(use.getKey())))) {
+            return false;
+        }
+        skippedContentIDs.addAll(uses.keySet());
+        return true;
+    }
+
+    /**
+     * An integer data series, read either from the column of its values for the slice, or one value at a time.
+     */
+    private final class IntegerDataSeries {
+        private final DataSeriesReader<Integer> dataSeriesReader;
+        private int[] column;
+        private int next;
+
+        private IntegerDataSeries(final DataSeriesReader<Integer> dataSeriesReader) {
+            this.dataSeriesReader = dataSeriesReader;
+        }
+
+        /**
+         * Decodes the next count values of the data series into a column if it is the only data series of its
+         * external block, since the order in which data series sharing a block are read is significant.
+         */
+        private void decodeColumn(final int count) {
+            if (dataSeriesReader != null &&
+                    dataSeriesReader.getEncoding().id() == EncodingID.EXTERNAL &&
+                    dataSeriesReader.getEncoding().getExternalBlockContentIds().stream()
+                            .allMatch(contentId -> externalBlockUses.get(contentId) == 1)) {
+                column = dataSeriesReader.readIntegerColumn(count);
+            }
+        }
+
+        private int[] getColumn() {
+            return column;
+        }
+
+        private int read() {
+            return column != null ? column[next++] : dataSeriesReader.readData();
+        }
+    }
 }
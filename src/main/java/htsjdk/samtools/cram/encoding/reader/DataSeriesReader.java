@@ -30,6 +30,7 @@ import htsjdk.samtools.cram.structure.SliceBlocksReadStreams;
  * @param <T> data type of the series to be read.
  */
 public final class DataSeriesReader<T> {
+    private final CRAMEncoding<T> encoding;
     private final CRAMCodec<T> codec;
 
     /**
@@ -44,7 +45,7 @@ public final class DataSeriesReader<T> {
                             final EncodingDescriptor encodingDescriptor,
                             final SliceBlocksReadStreams sliceBlocksReadStreams) {
 
-        final CRAMEncoding<T> encoding = EncodingFactory.createCRAMEncoding(valueType, encodingDescriptor);
+        this.encoding = EncodingFactory.createCRAMEncoding(valueType, encodingDescriptor);
         this.codec = encoding.buildReadCodec(sliceBlocksReadStreams);
     }
 
@@ -65,4 +66,23 @@ public final class DataSeriesReader<T> {
     T readDataArray(final int length) {
         return codec.read(length);
     }
+
+    /**
+     * Read the values of an integer data series for several records at once, as the same number of calls to
+     * {@link #readData()} would.
+     * @param count the number of values to read
+     * @return the array of values
+     */
+    int[] readIntegerColumn(final int count) {
+        final int[] values = new int[count];
+        codec.readIntegers(values, count);
+        return values;
+    }
+
+    /**
+     * @return the encoding of the data series
+     */
+    CRAMEncoding<T> getEncoding() {
+        return encoding;
+    }
 }
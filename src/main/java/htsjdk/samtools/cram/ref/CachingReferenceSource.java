@@ -0,0 +1,305 @@
+package htsjdk.samtools.cram.ref;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.util.StringUtil;
+import htsjdk.samtools.util.Tuple;
+import htsjdk.utils.ValidationUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A thread-safe {@link CRAMReferenceSource} that caches reference bases in fixed-size regions, rather than as whole
+ * contigs, up to a configurable number of bytes, evicting the least recently used regions first.
+ *
+ * A single instance is intended to be shared by all of the CRAM readers and writers in a JVM that use the same
+ * reference, so that each region is loaded once, however many readers are traversing it. Regions are keyed by the
+ * MD5 of their sequence ({@link SAMSequenceRecord#MD5_TAG}) when the sequence record has one, otherwise by the
+ * sequence name, so that readers whose headers use different names for the same sequence share cached bases.
+ *
+ * Bases are loaded, one region at a time, either directly from an indexed {@link ReferenceSequenceFile} or from
+ * another {@link CRAMReferenceSource}. Note that, unlike {@link ReferenceSource}, this class does not attempt to
+ * match sequence name variants; sequences are looked up by their exact name, and the sequence records passed to it
+ * must have their length set.
+ */
+public class CachingReferenceSource implements CRAMReferenceSource {
+    /**
+     * Size, in bases, of the regions cached by instances that are not given an explicit region size.
+     */
+    public static final int DEFAULT_REGION_SIZE = 1 << 20;
+
+    /**
+     * Loads the bases for a region of a reference sequence, or returns null if the sequence cannot be found.
+     */
+    private interface RegionLoader {
+        byte[] load(SAMSequenceRecord sequenceRecord, int zeroBasedStart, int length);
+    }
+
+    private final RegionLoader regionLoader;
+    private final long maxCacheBytes;
+    private final int regionSize;
+
+    // all guarded by this
+    private final LinkedHashMap<Tuple<String, Integer>, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Tuple<String, Integer>, CompletableFuture<byte[]>> pendingLoads = new HashMap<>();
+    private long cachedBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * @param referenceSequenceFile indexed reference from which regions are loaded. Access to it is synchronized
+     *                              on the file itself.
+     * @param maxCacheBytes maximum number of bases to cache
+     */
+    public CachingReferenceSource(final ReferenceSequenceFile referenceSequenceFile, final long maxCacheBytes) {
+        this(referenceSequenceFile, maxCacheBytes, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param referenceSequenceFile indexed reference from which regions are loaded. Access to it is synchronized
+     *                              on the file itself.
+     * @param maxCacheBytes maximum number of bases to cache
+     * @param regionSize size of the regions in which bases are loaded and cached
+     */
+    public CachingReferenceSource(final ReferenceSequenceFile referenceSequenceFile, final long maxCacheBytes, final int regionSize) {
+        this((sequenceRecord, zeroBasedStart, length) -> loadFromFile(referenceSequenceFile, sequenceRecord, zeroBasedStart, length),
+                maxCacheBytes,
+                regionSize);
+        ValidationUtils.validateArg(referenceSequenceFile.isIndexed(), "reference sequence file must be indexed");
+    }
+
+    /**
+     * @param referenceSource reference source from which regions are loaded, which must be thread-safe
+     * @param maxCacheBytes maximum number of bases to cache
+     */
+    public CachingReferenceSource(final CRAMReferenceSource referenceSource, final long maxCacheBytes) {
+        this(referenceSource, maxCacheBytes, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param referenceSource reference source from which regions are loaded, which must be thread-safe
+     * @param maxCacheBytes maximum number of bases to cache
+     * @param regionSize size of the regions in which bases are loaded and cached
+     */
+    public CachingReferenceSource(final CRAMReferenceSource referenceSource, final long maxCacheBytes, final int regionSize) {
+        this((sequenceRecord, zeroBasedStart, length) -> referenceSource.getReferenceBasesByRegion(
+                        sequenceRecord,
+                        zeroBasedStart,
+                        Math.min(length, sequenceRecord.getSequenceLength() - zeroBasedStart)),
+                maxCacheBytes,
+                regionSize);
+        ValidationUtils.nonNull(referenceSource, "referenceSource");
+    }
+
+    private CachingReferenceSource(final RegionLoader regionLoader, final long maxCacheBytes, final int regionSize) {
+        ValidationUtils.validateArg(maxCacheBytes >= 0, () -> "maxCacheBytes must be non-negative: " + maxCacheBytes);
+        ValidationUtils.validateArg(regionSize > 0, () -> "regionSize must be positive: " + regionSize);
+        this.regionLoader = regionLoader;
+        this.maxCacheBytes = maxCacheBytes;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A sequence that fits in a single region is served from the cache, and the returned bases must not be modified.
+     * A longer sequence is loaded whole, and is not cached, so that whole-sequence requests neither evict the cached
+     * regions nor copy them; callers that traverse a sequence should request its bases by region instead.
+     * tryNameVariants is ignored.
+     */
+    @Override
+    public byte[] getReferenceBases(final SAMSequenceRecord sequenceRecord, final boolean tryNameVariants) {
+        final int sequenceLength = sequenceRecord.getSequenceLength();
+        final byte[] bases = sequenceLength <= regionSize ?
+                getRegion(getSequenceKey(sequenceRecord), sequenceRecord, 0) :
+                regionLoader.load(sequenceRecord, 0, sequenceLength);
+        return bases == null || bases.length == 0 ? null : bases;
+    }
+
+    @Override
+    public byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord sequenceRecord,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        ValidationUtils.validateArg(zeroBasedStart >= 0, "start must be >= 0");
+        final byte[] bases = getBases(sequenceRecord, zeroBasedStart, requestedRegionLength);
+        if (bases != null && bases.length == 0 && requestedRegionLength > 0) {
+            throw new IllegalArgumentException(String.format("Requested start %d is beyond the sequence length %s",
+                    zeroBasedStart,
+                    sequenceRecord.getSequenceName()));
+        }
+        return bases;
+    }
+
+    /**
+     * @return the number of region lookups that were satisfied from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of region lookups that were not satisfied from the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of regions evicted from the cache to stay within its byte budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of bases currently cached
+     */
+    public synchronized long getCachedByteCount() {
+        return cachedBytes;
+    }
+
+    /**
+     * Assemble the requested bases from cached regions, loading any regions that are not cached.
+     * @return the bases, which may be fewer than requested if the sequence is shorter, or null if the sequence
+     * cannot be found
+     */
+    private byte[] getBases(final SAMSequenceRecord sequenceRecord, final int zeroBasedStart, final int length) {
+        final String sequenceKey = getSequenceKey(sequenceRecord);
+        final byte[] bases = new byte[length];
+        int basesCopied = 0;
+        while (basesCopied < length) {
+            final int position = zeroBasedStart + basesCopied;
+            if (position >= sequenceRecord.getSequenceLength()) {
+                break;
+            }
+            final int regionIndex = position / regionSize;
+            final byte[] region = getRegion(sequenceKey, sequenceRecord, regionIndex);
+            if (region == null) {
+                return null;
+            }
+            final int offsetInRegion = position - regionIndex * regionSize;
+            final int n = Math.min(length - basesCopied, region.length - offsetInRegion);
+            if (n <= 0) {
+                break;
+            }
+            System.arraycopy(region, offsetInRegion, bases, basesCopied, n);
+            basesCopied += n;
+            if (region.length < regionSize) {
+                // the last region of the sequence
+                break;
+            }
+        }
+        return basesCopied == length ? bases : Arrays.copyOf(bases, basesCopied);
+    }
+
+    private byte[] getRegion(final String sequenceKey, final SAMSequenceRecord sequenceRecord, final int regionIndex) {
+        final Tuple<String, Integer> key = new Tuple<>(sequenceKey, regionIndex);
+        final CompletableFuture<byte[]> pendingLoad;
+        final boolean loadOnThisThread;
+        synchronized (this) {
+            final byte[] cached = cache.get(key);
+            if (cached != null) {
+                hitCount++;
+                return cached;
+            }
+            missCount++;
+            // if another thread is already loading this region, wait for it rather than loading it again
+            final CompletableFuture<byte[]> existingLoad = pendingLoads.get(key);
+            loadOnThisThread = existingLoad == null;
+            pendingLoad = loadOnThisThread ? new CompletableFuture<>() : existingLoad;
+            if (loadOnThisThread) {
+                pendingLoads.put(key, pendingLoad);
+            }
+        }
+
+        if (!loadOnThisThread) {
+            try {
+                return pendingLoad.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        final byte[] region;
+        try {
+            region = regionLoader.load(sequenceRecord, regionIndex * regionSize, regionSize);
+        } catch (final RuntimeException | Error e) {
+            synchronized (this) {
+                pendingLoads.remove(key);
+            }
+            pendingLoad.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            pendingLoads.remove(key);
+            if (region != null) {
+                addToCache(key, region);
+            }
+        }
+        pendingLoad.complete(region);
+        return region;
+    }
+
+    // must be called while holding the lock on this
+    private void addToCache(final Tuple<String, Integer> key, final byte[] region) {
+        cache.put(key, region);
+        cachedBytes += region.length;
+        final Iterator<Map.Entry<Tuple<String, Integer>, byte[]>> leastRecentlyUsed = cache.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && leastRecentlyUsed.hasNext()) {
+            final Map.Entry<Tuple<String, Integer>, byte[]> eldest = leastRecentlyUsed.next();
+            cachedBytes -= eldest.getValue().length;
+            leastRecentlyUsed.remove();
+            evictionCount++;
+        }
+    }
+
+    private static String getSequenceKey(final SAMSequenceRecord sequenceRecord) {
+        final String md5 = sequenceRecord.getAttribute(SAMSequenceRecord.MD5_TAG);
+        return md5 != null ?
+                "M5:" + md5.toLowerCase(Locale.ROOT) :
+                "SN:" + sequenceRecord.getSequenceName();
+    }
+
+    private static byte[] loadFromFile(
+            final ReferenceSequenceFile referenceSequenceFile,
+            final SAMSequenceRecord sequenceRecord,
+            final int zeroBasedStart,
+            final int length) {
+        final int end = (int) Math.min((long) zeroBasedStart + length, sequenceRecord.getSequenceLength());
+        if (end <= zeroBasedStart) {
+            return new byte[0];
+        }
+        final ReferenceSequence sequence;
+        synchronized (referenceSequenceFile) {
+            try {
+                sequence = referenceSequenceFile.getSubsequenceAt(sequenceRecord.getSequenceName(), zeroBasedStart + 1, end);
+            } catch (final SAMException e) {
+                // the only way to test if the file contains the sequence is to try and catch exception
+                return null;
+            }
+        }
+        if (sequence == null) {
+            return null;
+        }
+        // Normalize to upper case only, as ReferenceSource does
+        final byte[] bases = sequence.getBases();
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = StringUtil.toUpperCase(bases[i]);
+        }
+        return bases;
+    }
+}
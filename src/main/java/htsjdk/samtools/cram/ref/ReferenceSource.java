@@ -188,7 +188,7 @@ public class ReferenceSource implements CRAMReferenceSource {
     }
 
     @Override
-    public byte[] getReferenceBasesByRegion(
+    public synchronized byte[] getReferenceBasesByRegion(
             final SAMSequenceRecord sequenceRecord,
             final int zeroBasedStart,
             final int requestedRegionLength) {
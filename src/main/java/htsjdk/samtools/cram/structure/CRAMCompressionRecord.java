@@ -113,6 +113,28 @@ public class CRAMCompressionRecord {
             final byte[] referenceBases,
             final long sequentialIndex,
             final Map<String, Integer> readGroupMap) {
+        this(cramVersion, encodingStrategy, samRecord, referenceBases, 0, sequentialIndex, readGroupMap);
+    }
+
+    /**
+     * Create a CRAMRecord from a SAMRecord, given the reference bases for a region of its contig.
+     *
+     * @param cramVersion
+     * @param encodingStrategy
+     * @param samRecord
+     * @param referenceBases the reference bases spanning the alignment of the record, or up to the end of the contig
+     * @param zeroBasedReferenceOffset the zero based position in the contig of the first of referenceBases
+     * @param sequentialIndex
+     * @param readGroupMap
+     */
+    public CRAMCompressionRecord(
+            final CRAMVersion cramVersion,
+            final CRAMEncodingStrategy encodingStrategy,
+            final SAMRecord samRecord,
+            final byte[] referenceBases,
+            final int zeroBasedReferenceOffset,
+            final long sequentialIndex,
+            final Map<String, Integer> readGroupMap) {
         ValidationUtils.nonNull(cramVersion);
         ValidationUtils.nonNull(encodingStrategy);
         ValidationUtils.nonNull(samRecord, "a valid SAMRecord is required");
@@ -160,7 +182,7 @@ public class CRAMCompressionRecord {
             readFeatures = new CRAMRecordReadFeatures();
             alignmentEnd = AlignmentContext.NO_ALIGNMENT_END;
         } else {
-            readFeatures = new CRAMRecordReadFeatures(samRecord, readBases, referenceBases);
+            readFeatures = new CRAMRecordReadFeatures(samRecord, readBases, referenceBases, zeroBasedReferenceOffset);
             alignmentEnd = readFeatures.getAlignmentEnd(alignmentStart, readLength);
         }
 
@@ -430,6 +452,16 @@ public class CRAMCompressionRecord {
         }
     }
 
+    /**
+     * Leave the read bases of this record out, when it is decoded without {@link CRAMRecordField#READ_BASES}.
+     */
+    void clearReadBases() { readBases = SAMRecord.NULL_SEQUENCE; }
+
+    /**
+     * Leave the quality scores of this record out, when it is decoded without {@link CRAMRecordField#BASE_QUALITIES}.
+     */
+    void clearQualityScores() { qualityScores = SAMRecord.NULL_QUALS; }
+
     /**
      * The method is similar in semantics to
      * {@link htsjdk.samtools.SamPairUtil#computeInsertSize(SAMRecord, SAMRecord)
@@ -41,6 +41,10 @@ public class CRAMEncodingStrategy {
     // This number must be >= DEFAULT_MINIMUM_SINGLE_REFERENCE_SLICE_THRESHOLD (required by ContainerFactory).
     public static final int DEFAULT_READS_PER_SLICE = 10000;
 
+    // Default number of blocks of each external content ID compressed with the compressor chosen by an adaptive
+    // compression trial before the compressors are trialled again.
+    public static final int DEFAULT_ADAPTIVE_COMPRESSION_TRIAL_INTERVAL = 100;
+
     // encoding strategies
     private CompressionHeaderEncodingMap customCompressionHeaderEncodingMap;
 
@@ -55,6 +59,11 @@ public class CRAMEncodingStrategy {
     private int readsPerSlice = DEFAULT_READS_PER_SLICE;
     private int slicesPerContainer = 1;
 
+    // adaptive compression (see ExternalCompressorSelector)
+    private boolean adaptiveCompression = false;
+    private double adaptiveCompressionTimeCost = 0;
+    private int adaptiveCompressionTrialInterval = DEFAULT_ADAPTIVE_COMPRESSION_TRIAL_INTERVAL;
+
     /**
      * Create an encoding strategy that uses all default values.
      */
@@ -124,6 +133,52 @@ public class CRAMEncodingStrategy {
         return this;
     }
 
+    /**
+     * Enable or disable adaptive compression. When enabled, the compressor of each external block is chosen by
+     * periodically compressing blocks of the same content ID with each of the GZIP, rANS, BZIP2 and LZMA
+     * compressors and keeping the one with the lowest cost (see {@link #setAdaptiveCompressionTimeCost}),
+     * instead of using a fixed compressor for each data series. Ignored when a custom encoding map is used.
+     *
+     * @param adaptiveCompression true to choose the compressor of each external block by trial
+     * @return updated CRAMEncodingStrategy
+     * @see ExternalCompressorSelector
+     */
+    public CRAMEncodingStrategy setAdaptiveCompression(final boolean adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+        return this;
+    }
+
+    /**
+     * Set the number of compressed bytes that a millisecond of compression time is worth when adaptive compression
+     * chooses between compressors. 0 (the default) chooses the compressor with the smallest output regardless of
+     * its speed; larger values favor faster compressors.
+     *
+     * @param timeCost compressed bytes per millisecond of compression time, >= 0
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setAdaptiveCompressionTimeCost(final double timeCost) {
+        ValidationUtils.validateArg(timeCost >= 0, "adaptive compression time cost must be >= 0");
+        this.adaptiveCompressionTimeCost = timeCost;
+        return this;
+    }
+
+    /**
+     * Set the number of blocks of each external content ID that are compressed with the compressor chosen by an
+     * adaptive compression trial before the compressors are trialled again. 1 trials every block.
+     *
+     * @param trialInterval number of blocks per trial, > 0
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setAdaptiveCompressionTrialInterval(final int trialInterval) {
+        ValidationUtils.validateArg(trialInterval > 0, "adaptive compression trial interval must be > 0");
+        this.adaptiveCompressionTrialInterval = trialInterval;
+        return this;
+    }
+
+    public boolean isAdaptiveCompression() { return adaptiveCompression; }
+    public double getAdaptiveCompressionTimeCost() { return adaptiveCompressionTimeCost; }
+    public int getAdaptiveCompressionTrialInterval() { return adaptiveCompressionTrialInterval; }
+
     /**
      * Set the {@link CompressionHeaderEncodingMap} to use.
      *
@@ -145,6 +200,9 @@ public class CRAMEncodingStrategy {
                 ", gzipCompressionLevel=" + gzipCompressionLevel +
                 ", readsPerSlice=" + readsPerSlice +
                 ", slicesPerContainer=" + slicesPerContainer +
+                ", adaptiveCompression=" + adaptiveCompression +
+                ", adaptiveCompressionTimeCost=" + adaptiveCompressionTimeCost +
+                ", adaptiveCompressionTrialInterval=" + adaptiveCompressionTrialInterval +
                 '}';
     }
     @Override
@@ -158,6 +216,9 @@ public class CRAMEncodingStrategy {
         if (getMinimumSingleReferenceSliceSize() != that.getMinimumSingleReferenceSliceSize()) return false;
         if (getReadsPerSlice() != that.getReadsPerSlice()) return false;
         if (getSlicesPerContainer() != that.getSlicesPerContainer()) return false;
+        if (isAdaptiveCompression() != that.isAdaptiveCompression()) return false;
+        if (Double.compare(getAdaptiveCompressionTimeCost(), that.getAdaptiveCompressionTimeCost()) != 0) return false;
+        if (getAdaptiveCompressionTrialInterval() != that.getAdaptiveCompressionTrialInterval()) return false;
         return getCustomCompressionHeaderEncodingMap() != null ?
                 getCustomCompressionHeaderEncodingMap().equals(that.getCustomCompressionHeaderEncodingMap()) :
                 that.getCustomCompressionHeaderEncodingMap() == null;
@@ -171,6 +232,9 @@ public class CRAMEncodingStrategy {
         result = 31 * result + getMinimumSingleReferenceSliceSize();
         result = 31 * result + getReadsPerSlice();
         result = 31 * result + getSlicesPerContainer();
+        result = 31 * result + (isAdaptiveCompression() ? 1 : 0);
+        result = 31 * result + Double.hashCode(getAdaptiveCompressionTimeCost());
+        result = 31 * result + getAdaptiveCompressionTrialInterval();
         return result;
     }
 
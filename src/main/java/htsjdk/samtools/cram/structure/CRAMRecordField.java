@@ -0,0 +1,24 @@
+package htsjdk.samtools.cram.structure;
+
+/**
+ * Fields of the records of a CRAM stream that callers which don't need them, such as coverage or flag statistics
+ * jobs, can leave out when decoding. The alignment of the records (reference, positions, flags and cigar), their mate
+ * information, read names and tags are always decoded.
+ *
+ * @see Slice#getSAMRecords(htsjdk.samtools.ValidationStringency, htsjdk.samtools.cram.build.CRAMReferenceRegion,
+ * CompressorCache, htsjdk.samtools.SAMFileHeader, java.util.Set)
+ */
+public enum CRAMRecordField {
+    /**
+     * The read bases. When skipped, the records have {@link htsjdk.samtools.SAMRecord#NULL_SEQUENCE} as bases, no
+     * reference bases are fetched or validated, and the base and substitution data series are not decompressed if
+     * they have external blocks to themselves.
+     */
+    READ_BASES,
+
+    /**
+     * The base qualities. When skipped, the records have {@link htsjdk.samtools.SAMRecord#NULL_QUALS} as base
+     * qualities, and the quality score data series is not decompressed if it has an external block to itself.
+     */
+    BASE_QUALITIES
+}
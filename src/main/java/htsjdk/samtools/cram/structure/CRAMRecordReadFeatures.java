@@ -67,6 +67,23 @@ public class CRAMRecordReadFeatures {
      * @param refBases the reference bases for the entire reference contig to which this record is mapped
      */
     public CRAMRecordReadFeatures(final SAMRecord samRecord, final byte[] bamReadBases, final byte[] refBases) {
+        this(samRecord, bamReadBases, refBases, 0);
+    }
+
+    /**
+     * Create the read features for a given SAMRecord.
+     * @param samRecord the {@link SAMRecord} for which to create read features
+     * @param bamReadBases a modifiable copy of the readbases from the original SAM/BAM record, with the individual
+     *                     bases mapped to BAM bases (upper case)
+     * @param refBases the reference bases for a region of the reference contig to which this record is mapped,
+     *                 spanning the alignment of the record, or up to the end of the contig
+     * @param zeroBasedRefOffset the zero based position in the reference contig of the first of refBases
+     */
+    public CRAMRecordReadFeatures(
+            final SAMRecord samRecord,
+            final byte[] bamReadBases,
+            final byte[] refBases,
+            final int zeroBasedRefOffset) {
         readFeatures = new ArrayList<>();
         final List<CigarElement> cigarElements = samRecord.getCigar().getCigarElements();
         int cigarLen = Cigar.getReadLength(cigarElements);
@@ -108,7 +125,7 @@ public class CRAMRecordReadFeatures {
                 case EQ:
                     addMismatchReadFeatures(
                             refBases,
-                            samRecord.getAlignmentStart(),
+                            samRecord.getAlignmentStart() - zeroBasedRefOffset,
                             readFeatures,
                             zeroBasedPositionInRead,
                             alignmentStartOffset,
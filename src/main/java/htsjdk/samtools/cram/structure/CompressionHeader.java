@@ -108,6 +108,16 @@ public class CompressionHeader {
      */
     public CompressionHeaderEncodingMap getEncodingMap() { return encodingMap; }
 
+    /**
+     * Replace the encoding map for this compression header with a private copy. Compression headers created by
+     * a {@link htsjdk.samtools.cram.build.CompressionHeaderFactory} share a single encoding map, to which tag block
+     * compressors are added as each header is created, so this must be called before the header is used to encode
+     * slices concurrently with the creation of subsequent headers.
+     */
+    public void detachEncodingMap() {
+        encodingMap = new CompressionHeaderEncodingMap(encodingMap);
+    }
+
     /**
      * Write this CompressionHeader out to an internal OutputStream, wrap it in a Block, and write that
      * Block out to the passed-in OutputStream.
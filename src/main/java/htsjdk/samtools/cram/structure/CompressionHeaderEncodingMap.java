@@ -99,6 +99,10 @@ public class CompressionHeaderEncodingMap {
     // Keep a compressor cache for the lifetime of this encoding map
     private final CompressorCache compressorCache = new CompressorCache();
 
+    // Chooses the compressor of each external block by trial when the encoding strategy enables adaptive
+    // compression, in which case it overrides externalCompressors when writing blocks; otherwise null.
+    private final ExternalCompressorSelector compressorSelector;
+
     /**
      * Constructor used to create the default encoding map for writing CRAMs. The encoding strategy
      * parameter values are used to set compression levels, etc, but any encoding map embedded is ignored
@@ -147,6 +151,22 @@ public class CompressionHeaderEncodingMap {
         putExternalGzipEncoding(encodingStrategy, DataSeries.TL_TagIdList);
         // the TN data series is obsolete
         putExternalRansOrderOneEncoding(DataSeries.TS_InsertSize);
+
+        compressorSelector = encodingStrategy.isAdaptiveCompression() ?
+                ExternalCompressorSelector.fromEncodingStrategy(encodingStrategy, compressorCache) :
+                null;
+    }
+
+    /**
+     * Copy constructor. The copy shares the source map's (thread-safe) compressor instances, but subsequent
+     * changes to either map, such as adding tag block compressors, are not visible to the other.
+     * @param source the encoding map to copy
+     */
+    public CompressionHeaderEncodingMap(final CompressionHeaderEncodingMap source) {
+        ValidationUtils.nonNull(source, "source encoding map");
+        encodingMap.putAll(source.encodingMap);
+        externalCompressors.putAll(source.externalCompressors);
+        compressorSelector = source.compressorSelector;
     }
 
     /**
@@ -154,6 +174,7 @@ public class CompressionHeaderEncodingMap {
      * @param inputStream the CRAM input stream to be consumed
      */
     public CompressionHeaderEncodingMap(final InputStream inputStream) {
+        compressorSelector = null;
         final int byteSize = ITF8.readUnsignedITF8(inputStream);
         final byte[] bytes = new byte[byteSize];
         InputStreamUtils.readFully(inputStream, bytes, 0, bytes.length);
@@ -214,13 +235,18 @@ public class CompressionHeaderEncodingMap {
     /**
      * Given a content ID, return a {@link Block} for that ID by obtaining the contents of the stream,
      * compressing it using the compressor for that contentID, and converting the result to a {@link Block}.
+     * When adaptive compression is enabled, the compressor is chosen by the {@link ExternalCompressorSelector}
+     * instead.
      * @param contentId contentID to use
      * @param outputStream stream to compress
      * @return Block containing the compressed contends of the stream
      */
     public Block createCompressedBlockForStream(final Integer contentId, final ByteArrayOutputStream outputStream) {
-        final ExternalCompressor compressor = externalCompressors.get(contentId);
         final byte[] rawContent = outputStream.toByteArray();
+        if (compressorSelector != null) {
+            return compressorSelector.createCompressedBlock(contentId, rawContent);
+        }
+        final ExternalCompressor compressor = externalCompressors.get(contentId);
         return Block.createExternalBlock(
                 compressor.getMethod(),
                 contentId,
@@ -49,7 +49,7 @@ public class Container {
     private final List<Slice> slices;
 
     // container's byte offset from the start of the containing stream, used for indexing
-    private final long containerByteOffset;
+    private long containerByteOffset;
 
     /**
      * Create a Container with a {@link ReferenceContext} derived from its {@link Slice}s.
@@ -315,18 +315,30 @@ public class Container {
             final CRAMReferenceRegion cramReferenceRegion,
             final CompressorCache compressorCache,
             final SAMFileHeader samFileHeader) {
+        return getSAMRecords(validationStringency, cramReferenceRegion, compressorCache, samFileHeader,
+                EnumSet.noneOf(CRAMRecordField.class));
+    }
+
+    /**
+     * Get SAMRecords from all Slices in this container, leaving out fields that are not needed.
+     *
+     * @param validationStringency validation stringency to use (when reading tags)
+     * @param cramReferenceRegion reference region to use to restore bases
+     * @param compressorCache compressor cache to use for decompressing streams
+     * @param samFileHeader the SAMFileHeader for this CRAM stream (for resolving read groups)
+     * @param skippedFields the fields of the records that are not needed
+     * @return the {@link SAMRecord}s from this container
+     */
+    public List<SAMRecord> getSAMRecords(
+            final ValidationStringency validationStringency,
+            final CRAMReferenceRegion cramReferenceRegion,
+            final CompressorCache compressorCache,
+            final SAMFileHeader samFileHeader,
+            final Set<CRAMRecordField> skippedFields) {
         final List<SAMRecord> samRecords = new ArrayList<>(getContainerHeader().getNumberOfRecords());
         for (final Slice slice : getSlices()) {
-            final List<CRAMCompressionRecord> cramCompressionRecords = slice.deserializeCRAMRecords(compressorCache, validationStringency);
-            // before we convert to SAMRecord, we need to normalize the CRAMCompressionRecord in each Slice
-            slice.normalizeCRAMRecords(
-                    cramCompressionRecords,
-                    cramReferenceRegion);
-            for (final CRAMCompressionRecord cramCompressionRecord : cramCompressionRecords) {
-                final SAMRecord samRecord = cramCompressionRecord.toSAMRecord(samFileHeader);
-                samRecord.setValidationStringency(validationStringency);
-                samRecords.add(samRecord);
-            }
+            samRecords.addAll(slice.getSAMRecords(
+                    validationStringency, cramReferenceRegion, compressorCache, samFileHeader, skippedFields));
         }
         return samRecords;
     }
@@ -335,6 +347,19 @@ public class Container {
     public CompressionHeader getCompressionHeader() { return compressionHeader; }
     public AlignmentContext getAlignmentContext() { return containerHeader.getAlignmentContext(); }
     public long getContainerByteOffset() { return containerByteOffset; }
+
+    /**
+     * Set the byte offset of this Container, and of its Slices, for Containers that are created before their
+     * position in the output stream is known (i.e., when Containers are encoded concurrently).
+     *
+     * @param containerByteOffset the Container's byte offset from the start of the stream
+     */
+    public void setContainerByteOffset(final long containerByteOffset) {
+        this.containerByteOffset = containerByteOffset;
+        for (final Slice slice : slices) {
+            slice.setByteOffsetOfContainer(containerByteOffset);
+        }
+    }
     public List<Slice> getSlices() { return slices; }
     public boolean isEOF() {
         return containerHeader.isEOF() && (getSlices() == null || getSlices().size() == 0);
@@ -0,0 +1,153 @@
+package htsjdk.samtools.cram.structure;
+
+import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.compression.rans.rans4x8.RANS4x8Params;
+import htsjdk.samtools.cram.structure.block.Block;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+import htsjdk.utils.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the compressor of each external block, by content ID, by trial: the first non-empty block with a given
+ * content ID, and every {@code trialInterval}th one after it, is compressed with each of the candidate compressors,
+ * and the one with the lowest cost is used for that block and for the blocks with that content ID until the next
+ * trial. The cost of a compressor is the size of its output plus the time it took, weighted by {@code timeCost},
+ * the number of compressed bytes that a millisecond of compression time is worth; with a time cost of 0, the
+ * compressor with the smallest output is chosen.
+ *
+ * Selectors are thread-safe, so that the slices of a container can be compressed concurrently.
+ *
+ * @see CRAMEncodingStrategy#setAdaptiveCompression(boolean)
+ */
+public class ExternalCompressorSelector {
+    private final List<ExternalCompressor> candidates;
+    private final double timeCost;
+    private final int trialInterval;
+    private final Map<Integer, Selection> selections = new ConcurrentHashMap<>();
+
+    /**
+     * @param candidates the compressors to choose from; ties are broken in favor of the earliest
+     * @param timeCost the number of compressed bytes a millisecond of compression time is worth, >= 0
+     * @param trialInterval the number of blocks with a given content ID compressed with each choice, > 0
+     */
+    public ExternalCompressorSelector(
+            final List<ExternalCompressor> candidates,
+            final double timeCost,
+            final int trialInterval) {
+        ValidationUtils.nonEmpty(candidates, "compressor candidates");
+        ValidationUtils.validateArg(timeCost >= 0, "time cost must be >= 0");
+        ValidationUtils.validateArg(trialInterval > 0, "trial interval must be > 0");
+        this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+        this.timeCost = timeCost;
+        this.trialInterval = trialInterval;
+    }
+
+    /**
+     * Create a selector using the settings of an encoding strategy, choosing from the compressors that can be
+     * written to CRAM 3.0: GZIP at the strategy compression level and at the fastest and best levels, rANS 4x8
+     * order-0 and order-1, BZIP2 and LZMA.
+     *
+     * @param encodingStrategy the strategy providing the GZIP level, time cost and trial interval
+     * @param compressorCache the cache from which to get the compressors
+     */
+    public static ExternalCompressorSelector fromEncodingStrategy(
+            final CRAMEncodingStrategy encodingStrategy,
+            final CompressorCache compressorCache) {
+        final List<ExternalCompressor> candidates = new ArrayList<>();
+        final int gzipLevel = encodingStrategy.getGZIPCompressionLevel();
+        candidates.add(compressorCache.getCompressorForMethod(BlockCompressionMethod.GZIP, gzipLevel));
+        for (final int level : new int[]{1, 9}) {
+            if (level != gzipLevel) {
+                candidates.add(compressorCache.getCompressorForMethod(BlockCompressionMethod.GZIP, level));
+            }
+        }
+        candidates.add(compressorCache.getCompressorForMethod(
+                BlockCompressionMethod.RANS, RANS4x8Params.ORDER.ZERO.ordinal()));
+        candidates.add(compressorCache.getCompressorForMethod(
+                BlockCompressionMethod.RANS, RANS4x8Params.ORDER.ONE.ordinal()));
+        candidates.add(compressorCache.getCompressorForMethod(
+                BlockCompressionMethod.BZIP2, ExternalCompressor.NO_COMPRESSION_ARG));
+        candidates.add(compressorCache.getCompressorForMethod(
+                BlockCompressionMethod.LZMA, ExternalCompressor.NO_COMPRESSION_ARG));
+        return new ExternalCompressorSelector(
+                candidates,
+                encodingStrategy.getAdaptiveCompressionTimeCost(),
+                encodingStrategy.getAdaptiveCompressionTrialInterval());
+    }
+
+    /**
+     * Compress the content of an external block with the compressor chosen for its content ID, running a trial of
+     * the candidates first if one is due.
+     *
+     * @param contentId the content ID of the block
+     * @param rawContent the uncompressed content of the block
+     * @return the compressed external block
+     */
+    public Block createCompressedBlock(final int contentId, final byte[] rawContent) {
+        final Selection selection = selections.computeIfAbsent(contentId, id -> new Selection());
+        final ExternalCompressor selected = selection.compressor;
+        // empty blocks say nothing about the data series, so they neither run nor count towards a trial
+        if (rawContent.length == 0) {
+            final ExternalCompressor compressor = selected == null ? candidates.get(0) : selected;
+            return Block.createExternalBlock(compressor.getMethod(), contentId, compressor.compress(rawContent), 0);
+        }
+        if (selected != null && selection.blockCount.getAndIncrement() % trialInterval != 0) {
+            return Block.createExternalBlock(selected.getMethod(), contentId, selected.compress(rawContent),
+                    rawContent.length);
+        }
+
+        ExternalCompressor best = null;
+        byte[] bestContent = null;
+        double bestCost = Double.MAX_VALUE;
+        for (final ExternalCompressor candidate : candidates) {
+            final long start = System.nanoTime();
+            final byte[] compressed = candidate.compress(rawContent);
+            final double cost = compressed.length + timeCost * (System.nanoTime() - start) / 1_000_000.0;
+            if (cost < bestCost) {
+                best = candidate;
+                bestContent = compressed;
+                bestCost = cost;
+            }
+        }
+        if (selected == null) {
+            // the first trial counts as the first block of the interval
+            selection.blockCount.compareAndSet(0, 1);
+        }
+        selection.compressor = best;
+        return Block.createExternalBlock(best.getMethod(), contentId, bestContent, rawContent.length);
+    }
+
+    /**
+     * @param contentId the content ID of an external block
+     * @return the compressor chosen by the last trial for the content ID, or null if no trial has been run yet
+     */
+    public ExternalCompressor getSelectedCompressor(final int contentId) {
+        final Selection selection = selections.get(contentId);
+        return selection == null ? null : selection.compressor;
+    }
+
+    public List<ExternalCompressor> getCandidates() { return candidates; }
+    public double getTimeCost() { return timeCost; }
+    public int getTrialInterval() { return trialInterval; }
+
+    @Override
+    public String toString() {
+        return "ExternalCompressorSelector{" +
+                "candidates=" + candidates +
+                ", timeCost=" + timeCost +
+                ", trialInterval=" + trialInterval +
+                '}';
+    }
+
+    private static final class Selection {
+        // the number of non-empty blocks compressed since the first trial
+        private final AtomicInteger blockCount = new AtomicInteger();
+        private volatile ExternalCompressor compressor;
+    }
+}
@@ -78,7 +78,7 @@ public class Slice {
 
     private final CompressionHeader compressionHeader;
     private final SliceBlocks sliceBlocks;
-    private final long byteOffsetOfContainer;
+    private long byteOffsetOfContainer;
 
     private Block sliceHeaderBlock;
 
@@ -300,6 +300,10 @@ public class Slice {
         this.byteSizeOfSliceBlocks = byteSizeOfSliceBlocks;
     }
 
+    void setByteOffsetOfContainer(final long byteOffsetOfContainer) {
+        this.byteOffsetOfContainer = byteOffsetOfContainer;
+    }
+
     public void setLandmarkIndex(int landmarkIndex) {
         this.landmarkIndex = landmarkIndex;
     }
@@ -395,6 +399,57 @@ public class Slice {
 
     public CompressionHeader getCompressionHeader() { return compressionHeader; }
 
+    /**
+     * Get the SAMRecords for this Slice: deserialize the slice blocks, normalize the resulting CRAMCompressionRecords,
+     * and convert them to SAMRecords. Slices are independent of each other, so different slices of a container may
+     * be decoded concurrently, provided each thread uses its own {@link CRAMReferenceRegion} and
+     * {@link CompressorCache}.
+     *
+     * @param validationStringency validation stringency to use (when reading tags)
+     * @param cramReferenceRegion reference region to use to restore bases
+     * @param compressorCache compressor cache to use for decompressing streams
+     * @param samFileHeader the SAMFileHeader for this CRAM stream (for resolving read groups)
+     * @return the {@link SAMRecord}s from this slice
+     */
+    public List<SAMRecord> getSAMRecords(
+            final ValidationStringency validationStringency,
+            final CRAMReferenceRegion cramReferenceRegion,
+            final CompressorCache compressorCache,
+            final SAMFileHeader samFileHeader) {
+        return getSAMRecords(validationStringency, cramReferenceRegion, compressorCache, samFileHeader,
+                EnumSet.noneOf(CRAMRecordField.class));
+    }
+
+    /**
+     * Get the SAMRecords for this Slice, leaving out fields that are not needed. Without
+     * {@link CRAMRecordField#READ_BASES}, no reference bases are fetched, so cramReferenceRegion is not used.
+     *
+     * @param validationStringency validation stringency to use (when reading tags)
+     * @param cramReferenceRegion reference region to use to restore bases
+     * @param compressorCache compressor cache to use for decompressing streams
+     * @param samFileHeader the SAMFileHeader for this CRAM stream (for resolving read groups)
+     * @param skippedFields the fields of the records that are not needed
+     * @return the {@link SAMRecord}s from this slice
+     */
+    public List<SAMRecord> getSAMRecords(
+            final ValidationStringency validationStringency,
+            final CRAMReferenceRegion cramReferenceRegion,
+            final CompressorCache compressorCache,
+            final SAMFileHeader samFileHeader,
+            final Set<CRAMRecordField> skippedFields) {
+        final List<CRAMCompressionRecord> cramCompressionRecords =
+                deserializeCRAMRecords(compressorCache, validationStringency, skippedFields);
+        // before we convert to SAMRecord, we need to normalize the CRAMCompressionRecord in each Slice
+        normalizeCRAMRecords(cramCompressionRecords, cramReferenceRegion, skippedFields);
+        final List<SAMRecord> samRecords = new ArrayList<>(cramCompressionRecords.size());
+        for (final CRAMCompressionRecord cramCompressionRecord : cramCompressionRecords) {
+            final SAMRecord samRecord = cramCompressionRecord.toSAMRecord(samFileHeader);
+            samRecord.setValidationStringency(validationStringency);
+            samRecords.add(samRecord);
+        }
+        return samRecords;
+    }
+
     /**
      * Reads and decodes the underlying blocks and returns a list of CRAMCompressionRecord. This isn't done initially
      * when the blocks are read from the underlying stream since there are cases where we want to iterate
@@ -411,7 +466,24 @@ public class Slice {
     public ArrayList<CRAMCompressionRecord> deserializeCRAMRecords(
             final CompressorCache compressorCache,
             final ValidationStringency validationStringency) {
-        final CramRecordReader cramRecordReader = new CramRecordReader(this, compressorCache, validationStringency);
+        return deserializeCRAMRecords(compressorCache, validationStringency, EnumSet.noneOf(CRAMRecordField.class));
+    }
+
+    /**
+     * Reads and decodes the underlying blocks, leaving out fields that are not needed, and returns a list of
+     * CRAMCompressionRecord (see {@link #deserializeCRAMRecords(CompressorCache, ValidationStringency)}).
+     *
+     * @param compressorCache cached compressor objects to use to decode streams
+     * @param validationStringency validation stringency to use
+     * @param skippedFields the fields of the records that are not needed
+     * @return list of raw (not normalized) CRAMCompressionRecord for this Slice ({@link #normalizeCRAMRecords})
+     */
+    public ArrayList<CRAMCompressionRecord> deserializeCRAMRecords(
+            final CompressorCache compressorCache,
+            final ValidationStringency validationStringency,
+            final Set<CRAMRecordField> skippedFields) {
+        final CramRecordReader cramRecordReader =
+                new CramRecordReader(this, compressorCache, validationStringency, skippedFields);
         final ArrayList<CRAMCompressionRecord> cramCompressionRecords = new ArrayList<>(nRecords);
 
         // in the case where APDelta = true, the first record in the slice has a 0 position delta, so initialize
@@ -442,24 +514,44 @@ public class Slice {
      */
     public void normalizeCRAMRecords(final List<CRAMCompressionRecord> cramCompressionRecords,
                                      final CRAMReferenceRegion cramReferenceRegion) {
+        normalizeCRAMRecords(cramCompressionRecords, cramReferenceRegion, EnumSet.noneOf(CRAMRecordField.class));
+    }
+
+    /**
+     * Normalize a list of CRAMCompressionRecord read from a CRAM stream, leaving out fields that are not needed
+     * (see {@link #normalizeCRAMRecords(List, CRAMReferenceRegion)}). Without {@link CRAMRecordField#READ_BASES},
+     * the reference bases are neither fetched nor validated.
+     *
+     * @param cramCompressionRecords CRAMCompressionRecords to normalize
+     * @param cramReferenceRegion the reference region for this slice
+     * @param skippedFields the fields of the records that are not needed
+     */
+    public void normalizeCRAMRecords(final List<CRAMCompressionRecord> cramCompressionRecords,
+                                     final CRAMReferenceRegion cramReferenceRegion,
+                                     final Set<CRAMRecordField> skippedFields) {
+        final boolean skipBases = skippedFields.contains(CRAMRecordField.READ_BASES);
+        final boolean skipQualityScores = skippedFields.contains(CRAMRecordField.BASE_QUALITIES);
         boolean hasEmbeddedReference = false;
-        if (compressionHeader.isReferenceRequired()) {
-            // get the reference bases required for the entire slice and validate the reference MD5
-            final AlignmentContext sliceAlignmentContext = getAlignmentContext();
-            if (sliceAlignmentContext.getReferenceContext().isMappedSingleRef()) {
-                cramReferenceRegion.fetchReferenceBasesByRegion(sliceAlignmentContext);
-                validateReferenceBases(cramReferenceRegion);
-            }
-        } else {
-            // RR = false might mean that no reference compression was used, or that an embedded reference
-            // was used, so if there is an embedded ref block, use it, and either way, skip MD5 validation
-            final Block embeddedReferenceBlock = getEmbeddedReferenceBlock();
-            if (embeddedReferenceBlock != null) {
-                hasEmbeddedReference = true;
-                cramReferenceRegion.setEmbeddedReferenceBases(
-                        embeddedReferenceBlock.getUncompressedContent(new CompressorCache()),
-                        getAlignmentContext().getReferenceContext().getReferenceSequenceID(),
-                        alignmentContext.getAlignmentStart() - 1);
+        // the reference is only used to restore the read bases
+        if (!skipBases) {
+            if (compressionHeader.isReferenceRequired()) {
+                // get the reference bases required for the entire slice and validate the reference MD5
+                final AlignmentContext sliceAlignmentContext = getAlignmentContext();
+                if (sliceAlignmentContext.getReferenceContext().isMappedSingleRef()) {
+                    cramReferenceRegion.fetchReferenceBasesByRegion(sliceAlignmentContext);
+                    validateReferenceBases(cramReferenceRegion);
+                }
+            } else {
+                // RR = false might mean that no reference compression was used, or that an embedded reference
+                // was used, so if there is an embedded ref block, use it, and either way, skip MD5 validation
+                final Block embeddedReferenceBlock = getEmbeddedReferenceBlock();
+                if (embeddedReferenceBlock != null) {
+                    hasEmbeddedReference = true;
+                    cramReferenceRegion.setEmbeddedReferenceBases(
+                            embeddedReferenceBlock.getUncompressedContent(new CompressorCache()),
+                            getAlignmentContext().getReferenceContext().getReferenceSequenceID(),
+                            alignmentContext.getAlignmentStart() - 1);
+                }
             }
         }
 
@@ -491,7 +583,9 @@ public class Slice {
 
         // resolve bases:
         for (final CRAMCompressionRecord record : cramCompressionRecords) {
-            if (!record.isSegmentUnmapped()) { // read bases for unmapped are restored directly from the input stream
+            if (skipBases) {
+                record.clearReadBases();
+            } else if (!record.isSegmentUnmapped()) { // read bases for unmapped are restored directly from the input stream
                 if (compressionHeader.isReferenceRequired() &&
                         getAlignmentContext().getReferenceContext().isMultiRef() &&
                         !record.isUnknownBases() &&
@@ -512,7 +606,11 @@ public class Slice {
 
         for (final CRAMCompressionRecord record : cramCompressionRecords) {
             // resolve quality scores:
-            record.resolveQualityScores();
+            if (skipQualityScores) {
+                record.clearQualityScores();
+            } else {
+                record.resolveQualityScores();
+            }
 
             // in this last pass, set all records as normalized
             record.setIsNormalized();
@@ -754,8 +852,9 @@ public class Slice {
         // need the alignment start and span for indexing. Is it possible to do this more efficiently ?
         // See https://github.com/samtools/htsjdk/issues/1347.
         // Note that this doesn't normalize the CRAMCompressionRecord, which bypasses resolution of bases
-        // against the reference.
-        final List<CRAMCompressionRecord> cramCompressionRecords = deserializeCRAMRecords(compressorCache, validationStringency);
+        // against the reference, and the spans don't depend on the bases or quality scores either.
+        final List<CRAMCompressionRecord> cramCompressionRecords = deserializeCRAMRecords(
+                compressorCache, validationStringency, EnumSet.allOf(CRAMRecordField.class));
 
         final Map<ReferenceContext, AlignmentSpan> spans = new HashMap<>();
         cramCompressionRecords.forEach(r -> mergeRecordSpan(r, spans));
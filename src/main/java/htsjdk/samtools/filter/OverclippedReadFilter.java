@@ -23,7 +23,6 @@
  */
 package htsjdk.samtools.filter;
 
-import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMRecord;
@@ -53,17 +52,20 @@ public class OverclippedReadFilter implements SamRecordFilter {
         int minSoftClipBlocks = filterSingleEndClips ? 1 : 2;
         CigarOperator lastOperator = null;
 
-        for ( final CigarElement element : record.getCigar().getCigarElements() ) {
-            if ( element.getOperator() == CigarOperator.S ) {
+        // read the elements one at a time, rather than through getCigar(), so that BAM records need not decode the cigar
+        final int cigarLength = record.getCigarLength();
+        for ( int i = 0; i < cigarLength; i++ ) {
+            final CigarOperator operator = record.getCigarElementOperator(i);
+            if ( operator == CigarOperator.S ) {
                 //Treat consecutive S blocks as a single one
                 if(lastOperator != CigarOperator.S){
                     softClipBlocks += 1;
                 }
 
-            } else if ( element.getOperator().consumesReadBases() ) {   // M, I, X, and EQ (S was already accounted for above)
-                alignedLength += element.getLength();
+            } else if ( operator.consumesReadBases() ) {   // M, I, X, and EQ (S was already accounted for above)
+                alignedLength += record.getCigarElementLength(i);
             }
-            lastOperator = element.getOperator();
+            lastOperator = operator;
         }
 
         return(alignedLength < unclippedBasesThreshold && softClipBlocks >= minSoftClipBlocks);
@@ -28,6 +28,11 @@ import htsjdk.samtools.SAMRecord;
 /**
  * API for filtering SAMRecords
  *
+ * Filters are typically applied to every record that is read, most of which they reject, so implementations
+ * should prefer accessors that {@link htsjdk.samtools.BAMRecord} can answer without decoding the record, such as
+ * the flags, mapping quality, {@link SAMRecord#getCigarLength()}, {@link SAMRecord#getCigarElementOperator(int)},
+ * {@link SAMRecord#getAlignmentEnd()} and {@link SAMRecord#getAttribute(String)}, over {@link SAMRecord#getCigar()}.
+ *
  * $Id$
  */
 public interface SamRecordFilter {
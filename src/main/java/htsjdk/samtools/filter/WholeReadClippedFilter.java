@@ -45,8 +45,8 @@ public class WholeReadClippedFilter implements SamRecordFilter {
      */
     @Override
     public boolean filterOut(final SAMRecord record) {
-        return record.getAttribute(ReservedTagConstants.XT) != null
-                && (Integer)record.getAttribute(ReservedTagConstants.XT) == 1;
+        final Object xt = record.getAttribute(ReservedTagConstants.XT);
+        return xt != null && (Integer) xt == 1;
     }
 
      /**
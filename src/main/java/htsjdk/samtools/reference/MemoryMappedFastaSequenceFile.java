@@ -0,0 +1,236 @@
+package htsjdk.samtools.reference;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An indexed fasta file that is memory-mapped once when it is opened, rather than read through a channel on every
+ * lookup. The line lengths in the {@link FastaSequenceIndex} are used to locate each run of bases in the mapping,
+ * so bases are copied straight from the mapped file into the caller's array, with line terminators skipped, and
+ * bases that lie on a single line can be served as read-only {@link ByteBuffer} views without any copying.
+ *
+ * The random access methods ({@link #getSubsequenceAt}, {@link #copySubsequence}, {@link #getSubsequenceView}
+ * and {@link #getSequence}) are thread-safe, so many reader threads can share one instance. As for the other
+ * indexed readers, {@link #nextSequence()} and {@link #reset()} are not.
+ *
+ * Only files on the default file system can be mapped. The mapping is released when this object is garbage
+ * collected rather than on {@link #close()}, so views must not be used after the file has been modified.
+ */
+public class MemoryMappedFastaSequenceFile extends AbstractIndexedFastaSequenceFile {
+    /** Number of bytes between the starts of consecutive mapped segments of the file. */
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Number of bytes by which each segment overlaps the next, so that any run of bases shorter than this can be
+     * served from a single segment.
+     */
+    static final int DEFAULT_SEGMENT_OVERLAP = 1 << 20;
+
+    private final int segmentSize;
+    private final long fileSize;
+    // segment i maps the bytes of the file starting at i * segmentSize
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Open and map the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     * @param file The file to open.
+     * @throws FileNotFoundException If the fasta or any of its supporting files cannot be found.
+     */
+    public MemoryMappedFastaSequenceFile(final File file) throws FileNotFoundException {
+        this(IOUtil.toPath(file));
+    }
+
+    /**
+     * Open and map the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     * @param path The file to open.
+     * @throws FileNotFoundException If the fasta or any of its supporting files cannot be found.
+     */
+    public MemoryMappedFastaSequenceFile(final Path path) throws FileNotFoundException {
+        this(path, new FastaSequenceIndex(findRequiredFastaIndexFile(path)));
+    }
+
+    /**
+     * Open and map the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     * @param path The file to open.
+     * @param index Pre-built FastaSequenceIndex, for the case in which one does not exist on disk.
+     */
+    public MemoryMappedFastaSequenceFile(final Path path, final FastaSequenceIndex index) {
+        this(path, index, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_OVERLAP);
+    }
+
+    // visible for testing, so that segment boundaries can be exercised with small files
+    MemoryMappedFastaSequenceFile(final Path path, final FastaSequenceIndex index, final int segmentSize, final int segmentOverlap) {
+        super(path, index);
+        ValidationUtils.validateArg(segmentSize > 0, "segmentSize must be positive");
+        ValidationUtils.validateArg(segmentOverlap >= 0 && (long) segmentSize + segmentOverlap <= Integer.MAX_VALUE,
+                "segmentSize plus segmentOverlap must be a non-negative int");
+        this.segmentSize = segmentSize;
+        try {
+            if (IOUtil.isBlockCompressed(path, true)) {
+                throw new SAMException("Indexed block-compressed FASTA file cannot be memory-mapped: " + path);
+            }
+            // the mappings remain valid after the channel is closed
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.fileSize = channel.size();
+                this.segments = new MappedByteBuffer[(int) ((fileSize + segmentSize - 1) / segmentSize)];
+                for (int i = 0; i < segments.length; i++) {
+                    final long segmentStart = (long) i * segmentSize;
+                    final long length = Math.min((long) segmentSize + segmentOverlap, fileSize - segmentStart);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, length);
+                }
+            }
+        } catch (final IOException | UnsupportedOperationException e) {
+            throw new SAMException("FASTA file should be readable and mappable but is not: " + path, e);
+        }
+    }
+
+    /**
+     * Gets the subsequence of the contig in the range [start,stop]
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return The partial reference sequence associated with this range.
+     */
+    @Override
+    public ReferenceSequence getSubsequenceAt(final String contig, final long start, final long stop) {
+        final FastaSequenceIndexEntry indexEntry = getCheckedIndexEntry(contig, start, stop);
+        final byte[] target = new byte[(int) (stop - start + 1)];
+        copyBases(indexEntry, start - 1, target, 0, target.length);
+        return new ReferenceSequence(contig, indexEntry.getSequenceIndex(), target);
+    }
+
+    /**
+     * Copies the bases of the contig in the range [start,stop] into the given array, without any intermediate
+     * allocation.
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @param destination array into which the bases are copied.
+     * @param destinationOffset offset in destination at which to copy the first base.
+     * @return the number of bases copied.
+     */
+    public int copySubsequence(final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset) {
+        final FastaSequenceIndexEntry indexEntry = getCheckedIndexEntry(contig, start, stop);
+        final int length = (int) (stop - start + 1);
+        if (destinationOffset < 0 || destinationOffset > destination.length - length) {
+            throw new IndexOutOfBoundsException(String.format("Cannot copy %d bases at offset %d into an array of length %d",
+                    length, destinationOffset, destination.length));
+        }
+        copyBases(indexEntry, start - 1, destination, destinationOffset, length);
+        return length;
+    }
+
+    /**
+     * Gets a read-only view of the bases of the contig in the range [start,stop]. If the range lies on a single
+     * line of the file, the view is backed directly by the mapped file; otherwise the line terminators have to be
+     * removed and the bases are copied into a new buffer.
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return a read-only buffer whose remaining bytes are the bases of the region.
+     */
+    public ByteBuffer getSubsequenceView(final String contig, final long start, final long stop) {
+        final FastaSequenceIndexEntry indexEntry = getCheckedIndexEntry(contig, start, stop);
+        final int length = (int) (stop - start + 1);
+        if (length > 0) {
+            final int basesPerLine = indexEntry.getBasesPerLine();
+            final long zeroBasedStart = start - 1;
+            if (zeroBasedStart % basesPerLine + length <= basesPerLine) {
+                final long fileOffset = getFileOffset(indexEntry, zeroBasedStart);
+                final int segmentIndex = (int) (fileOffset / segmentSize);
+                final int offsetInSegment = (int) (fileOffset - (long) segmentIndex * segmentSize);
+                final MappedByteBuffer segment = segments[segmentIndex];
+                if (offsetInSegment + length <= segment.limit()) {
+                    // absolute slice, which leaves the shared segment untouched
+                    return segment.slice(offsetInSegment, length).asReadOnlyBuffer();
+                }
+            }
+        }
+        final byte[] target = new byte[length];
+        copyBases(indexEntry, start - 1, target, 0, length);
+        return ByteBuffer.wrap(target).asReadOnlyBuffer();
+    }
+
+    @Override
+    protected int readFromPosition(final ByteBuffer buffer, final long position) {
+        if (position >= fileSize) {
+            return -1;
+        }
+        final int length = (int) Math.min(buffer.remaining(), fileSize - position);
+        if (buffer.hasArray()) {
+            copyFromFile(position, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            copyFromFile(position, bytes, 0, length);
+            buffer.put(bytes);
+        }
+        return length;
+    }
+
+    /**
+     * The mapped segments are released when this object is garbage collected, not when it is closed.
+     */
+    @Override
+    public void close() {
+    }
+
+    private FastaSequenceIndexEntry getCheckedIndexEntry(final String contig, final long start, final long stop) {
+        if (start > stop + 1) {
+            throw new SAMException(String.format("Malformed query; start point %d lies after end point %d", start, stop));
+        }
+        final FastaSequenceIndexEntry indexEntry = getIndex().getIndexEntry(contig);
+        if (stop > indexEntry.getSize()) {
+            throw new SAMException("Query asks for data past end of contig");
+        }
+        if (start < 1 && start <= stop) {
+            throw new SAMException(String.format("Malformed query; start point %d is before the start of the contig", start));
+        }
+        return indexEntry;
+    }
+
+    private static long getFileOffset(final FastaSequenceIndexEntry indexEntry, final long zeroBasedPosition) {
+        final int basesPerLine = indexEntry.getBasesPerLine();
+        return indexEntry.getLocation() +
+                (zeroBasedPosition / basesPerLine) * indexEntry.getBytesPerLine() +
+                zeroBasedPosition % basesPerLine;
+    }
+
+    /**
+     * Copies bases one line at a time, skipping the line terminators between them.
+     */
+    private void copyBases(final FastaSequenceIndexEntry indexEntry, final long zeroBasedStart, final byte[] destination, final int destinationOffset, final int length) {
+        final int basesPerLine = indexEntry.getBasesPerLine();
+        int copied = 0;
+        while (copied < length) {
+            final long position = zeroBasedStart + copied;
+            final int basesOnLine = (int) Math.min(basesPerLine - position % basesPerLine, length - copied);
+            copyFromFile(getFileOffset(indexEntry, position), destination, destinationOffset + copied, basesOnLine);
+            copied += basesOnLine;
+        }
+    }
+
+    private void copyFromFile(final long fileOffset, final byte[] destination, final int destinationOffset, final int length) {
+        int copied = 0;
+        while (copied < length) {
+            final long position = fileOffset + copied;
+            final int segmentIndex = (int) (position / segmentSize);
+            final int offsetInSegment = (int) (position - (long) segmentIndex * segmentSize);
+            final MappedByteBuffer segment = segments[segmentIndex];
+            final int n = Math.min(length - copied, segment.limit() - offsetInSegment);
+            // absolute bulk get, so that concurrent readers do not share buffer state
+            segment.get(offsetInSegment, destination, destinationOffset + copied, n);
+            copied += n;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import htsjdk.beta.io.bundle.BundleResourceType;
 import htsjdk.beta.plugin.IOUtils;
 import htsjdk.io.HtsPath;
 import htsjdk.io.IOPath;
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.util.GZIIndex;
 import htsjdk.samtools.SAMFileHeader;
@@ -45,6 +46,7 @@ import htsjdk.utils.ValidationUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
@@ -155,9 +157,13 @@ public class ReferenceSequenceFileFactory {
             // Using faidx requires truncateNamesAtWhitespace
             if (truncateNamesAtWhitespace && preferIndexed && canCreateIndexedFastaReader(path)) {
                 try {
-                    return IOUtil.isBlockCompressed(path, true) ?
-                            new BlockCompressedIndexedFastaSequenceFile(path) :
-                            new IndexedFastaSequenceFile(path);
+                    if (IOUtil.isBlockCompressed(path, true)) {
+                        return new BlockCompressedIndexedFastaSequenceFile(path);
+                    } else if (Defaults.USE_MEMORY_MAPPED_FASTA && path.getFileSystem() == FileSystems.getDefault()) {
+                        return new MemoryMappedFastaSequenceFile(path);
+                    } else {
+                        return new IndexedFastaSequenceFile(path);
+                    }
                 } catch (final IOException e) {
                     throw new SAMException("Error opening FASTA: " + path, e);
                 }
@@ -0,0 +1,231 @@
+package htsjdk.samtools.seekablestream;
+
+import htsjdk.utils.ValidationUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A wrapper class to provide cached read access to a {@link SeekableStream} for which each read is expensive, such
+ * as a {@link SeekableHTTPStream}, which makes a range request for every read.
+ *
+ * Unlike {@link SeekableBufferedStream}, whose buffer is discarded whenever the position moves out of it, the data
+ * is kept as fixed-size pages, aligned to multiples of the page size, that are only evicted when the cache is over
+ * its byte budget, least recently used first. Pages missing for a read are fetched from the wrapped stream with one
+ * read for each run of consecutive missing pages. When reads move through the stream sequentially, the last run is
+ * extended by a number of pages read ahead, which is doubled each time a read starts on the page after the last one
+ * read, up to a maximum, and is reset by a read anywhere else but on the last page read.
+ *
+ * If the length of the wrapped stream is not known, reads are passed through to it without caching.
+ */
+public class SeekableCachingStream extends SeekableStream {
+    public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+    public static final long DEFAULT_CACHE_SIZE = 32L * 1024 * 1024;
+    public static final int DEFAULT_MAX_READ_AHEAD_PAGES = 16;
+
+    private final SeekableStream wrappedStream;
+    private final int pageSize;
+    private final long cacheSize;
+    private final int maxReadAheadPages;
+    private final long length;
+
+    // pages in least to most recently used order
+    private final LinkedHashMap<Long, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+    private long position = 0;
+    // the last page read, and the number of pages to read ahead if the next read follows on from it
+    private long lastPage = -1;
+    private int readAheadPages = 0;
+
+    /**
+     * @param stream the stream to cache
+     * @param pageSize size of the pages in which data is read from the stream and cached
+     * @param cacheSize maximum number of bytes of pages kept in the cache
+     * @param maxReadAheadPages maximum number of pages read ahead when reading sequentially, or 0 to not read ahead
+     */
+    public SeekableCachingStream(final SeekableStream stream, final int pageSize, final long cacheSize, final int maxReadAheadPages) {
+        ValidationUtils.nonNull(stream, "stream");
+        ValidationUtils.validateArg(pageSize > 0, "pageSize must be positive");
+        ValidationUtils.validateArg(cacheSize >= pageSize, "cacheSize must be at least one page");
+        ValidationUtils.validateArg(maxReadAheadPages >= 0, "maxReadAheadPages must not be negative");
+        this.wrappedStream = stream;
+        this.pageSize = pageSize;
+        this.cacheSize = cacheSize;
+        this.maxReadAheadPages = maxReadAheadPages;
+        this.length = stream.length();
+    }
+
+    public SeekableCachingStream(final SeekableStream stream, final long cacheSize) {
+        this(stream, DEFAULT_PAGE_SIZE, cacheSize, DEFAULT_MAX_READ_AHEAD_PAGES);
+    }
+
+    public SeekableCachingStream(final SeekableStream stream) {
+        this(stream, DEFAULT_CACHE_SIZE);
+    }
+
+    @Override
+    public long length() {
+        return wrappedStream.length();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return length > 0 ? position : wrappedStream.position();
+    }
+
+    @Override
+    public void seek(final long position) throws IOException {
+        if (length > 0) {
+            this.position = position;
+        } else {
+            wrappedStream.seek(position);
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (length <= 0) {
+            return wrappedStream.skip(n);
+        }
+        final long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("Offset=" + offset + ",len=" + length + ",buflen=" + buffer.length);
+        }
+        if (this.length <= 0) {
+            return wrappedStream.read(buffer, offset, length);
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= this.length) {
+            return -1;
+        }
+        final int n = (int) Math.min(length, this.length - position);
+        final long firstPage = position / pageSize;
+        final long lastPage = (position + n - 1) / pageSize;
+        fetchMissingPages(firstPage, lastPage);
+
+        int copied = 0;
+        for (long page = firstPage; page <= lastPage; page++) {
+            final byte[] data = pages.get(page);
+            final int pageOffset = (int) (position - page * pageSize);
+            final int toCopy = Math.min(n - copied, data.length - pageOffset);
+            System.arraycopy(data, pageOffset, buffer, offset + copied, toCopy);
+            copied += toCopy;
+            position += toCopy;
+        }
+        return copied;
+    }
+
+    /**
+     * Fetch the pages in the given range that are not in the cache, and any pages to be read ahead, with one read
+     * of the wrapped stream for each run of consecutive missing pages.
+     */
+    private void fetchMissingPages(final long firstPage, final long lastPage) throws IOException {
+        if (firstPage == this.lastPage + 1) {
+            readAheadPages = Math.min(maxReadAheadPages, Math.max(1, 2 * readAheadPages));
+        } else if (firstPage != this.lastPage) {
+            readAheadPages = 0;
+        }
+        this.lastPage = lastPage;
+
+        final List<long[]> runs = new ArrayList<>();
+        long runStart = -1;
+        for (long page = firstPage; page <= lastPage; page++) {
+            if (pages.containsKey(page)) {
+                if (runStart != -1) {
+                    runs.add(new long[]{runStart, page - 1});
+                    runStart = -1;
+                }
+            } else if (runStart == -1) {
+                runStart = page;
+            }
+        }
+        if (runStart != -1) {
+            // read ahead from the end of the last run, up to the next cached page
+            final long lastPageInStream = (this.length - 1) / pageSize;
+            long runEnd = lastPage;
+            while (runEnd < lastPageInStream && runEnd < lastPage + readAheadPages && !pages.containsKey(runEnd + 1)) {
+                runEnd++;
+            }
+            runs.add(new long[]{runStart, runEnd});
+        }
+        for (final long[] run : runs) {
+            fetchPages(run[0], run[1]);
+        }
+        // the pages of this read are the most recently used
+        for (long page = firstPage; page <= lastPage; page++) {
+            pages.get(page);
+        }
+        evict(lastPage - firstPage + 1);
+    }
+
+    private void fetchPages(final long firstPage, final long lastPage) throws IOException {
+        final long start = firstPage * pageSize;
+        final int runLength = (int) (Math.min(this.length, (lastPage + 1) * pageSize) - start);
+        final byte[] data = new byte[runLength];
+        wrappedStream.seek(start);
+        int n = 0;
+        while (n < runLength) {
+            final int count = wrappedStream.read(data, n, runLength - n);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of " + getSource() + " at " + (start + n));
+            }
+            n += count;
+        }
+        for (long page = firstPage; page <= lastPage; page++) {
+            final int pageStart = (int) ((page - firstPage) * pageSize);
+            final byte[] pageData = new byte[Math.min(pageSize, runLength - pageStart)];
+            System.arraycopy(data, pageStart, pageData, 0, pageData.length);
+            final byte[] previous = pages.put(page, pageData);
+            cachedBytes += pageData.length - (previous == null ? 0 : previous.length);
+        }
+    }
+
+    /**
+     * Evict least recently used pages until the cache is within its budget, but never the given number of most
+     * recently used pages, which hold the data of the current read.
+     */
+    private void evict(final long pagesToKeep) {
+        int evictable = (int) Math.max(0, pages.size() - pagesToKeep);
+        final Iterator<Map.Entry<Long, byte[]>> iterator = pages.entrySet().iterator();
+        while (cachedBytes > cacheSize && evictable-- > 0) {
+            cachedBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pages.clear();
+        cachedBytes = 0;
+        wrappedStream.close();
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return length > 0 ? position >= length : wrappedStream.eof();
+    }
+
+    @Override
+    public String getSource() {
+        return wrappedStream.getSource();
+    }
+}
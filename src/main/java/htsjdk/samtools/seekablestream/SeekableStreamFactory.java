@@ -25,6 +25,7 @@ package htsjdk.samtools.seekablestream;
 
 import htsjdk.io.HtsPath;
 import htsjdk.io.IOPath;
+import htsjdk.samtools.Defaults;
 import htsjdk.tribble.TribbleException;
 
 import java.io.IOException;
@@ -136,16 +137,26 @@ public class SeekableStreamFactory{
             if(path.hasFileSystemProvider()) {
                 return path.getScheme().equals(FILE_SCHEME)
                         ? new SeekableFileStream(path.toPath().toFile()) //don't apply the wrapper to local files
-                        : new SeekablePathStream(path.toPath(), wrapper);
+                        : getCachingStream(new SeekablePathStream(path.toPath(), wrapper));
             } else {
-               return switch(path.getScheme()){
+               return getCachingStream(switch(path.getScheme()){
                    case HTTP, HTTPS -> new SeekableHTTPStream(new URL(path.getRawInputString()));
                    case FTP -> new SeekableFTPStream((new URL(path.getRawInputString())));
                    default -> throw new TribbleException("Unknown path type. No FileSystemProvider available for " + path.getRawInputString());
-               };
+               });
             }
         }
 
+        /**
+         * Remote reads are expensive, and indexed queries make many small reads, so streams that are not over local
+         * files are wrapped in a {@link SeekableCachingStream} unless {@link Defaults#SEEKABLE_STREAM_CACHE_SIZE} is 0
+         */
+        private static SeekableStream getCachingStream(final SeekableStream stream) {
+            return Defaults.SEEKABLE_STREAM_CACHE_SIZE > 0
+                    ? new SeekableCachingStream(stream, Math.max(Defaults.SEEKABLE_STREAM_CACHE_SIZE, SeekableCachingStream.DEFAULT_PAGE_SIZE))
+                    : stream;
+        }
+
         @Override
         public SeekableStream getBufferedStream(SeekableStream stream){
             return getBufferedStream(stream, SeekableBufferedStream.DEFAULT_BUFFER_SIZE);
@@ -404,13 +404,23 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
     protected void prepareForSeek() {
     }
 
+    /**
+     * @return offset in the compressed stream of the next block to be read from the underlying stream. This is
+     * ahead of the current block for subclasses that read ahead.
+     */
+    protected long getCompressedStreamOffset() {
+        return mStreamOffset;
+    }
+
     private boolean eof() throws IOException {
-        if (mFile.eof()) {
+        final long blockEnd = mCurrentBlock.mBlockAddress + mCurrentBlock.mBlockCompressedSize;
+        // Subclasses that read ahead may have moved the file position past the end of the current block
+        if (mFile.position() == blockEnd && mFile.eof()) {
             return true;
         }
-        // If the last remaining block is the size of the EMPTY_GZIP_BLOCK, this is the same as being at EOF.
-        return (mFile.length() - (mCurrentBlock.mBlockAddress
-                + mCurrentBlock.mBlockCompressedSize) == BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length);
+        // If nothing remains, or the last remaining block is the size of the EMPTY_GZIP_BLOCK, this is the same as being at EOF.
+        final long remaining = mFile.length() - blockEnd;
+        return remaining == 0 || remaining == BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length;
     }
 
     /**
@@ -516,9 +526,28 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         if (mFileBuffer == null) {
             mFileBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
         }
-        long blockAddress = mStreamOffset;
+        final long blockAddress = mStreamOffset;
+        final DecompressedBlock unreadable = readCompressedBlock(mFileBuffer);
+        if (unreadable != null) {
+            return unreadable;
+        }
+        return inflateCompressedBlock(blockAddress, mFileBuffer, (int) (mStreamOffset - blockAddress),
+                bufferAvailableForReuse, blockGunzipper);
+    }
+
+    /**
+     * Reads the next compressed block, header and footer included, from the input stream into the given buffer
+     * without decompressing it, and advances the stream offset past it. The address of the block is the stream
+     * offset before this call, and its compressed length is the number of bytes by which the stream offset advanced.
+     * @param compressedBuffer buffer of at least {@link BlockCompressedStreamConstants#MAX_COMPRESSED_BLOCK_SIZE}
+     *                         bytes that receives the compressed block
+     * @return null if a complete block was read, otherwise the block that should be handed to the reader instead:
+     * an empty block at the end of the input, or a block carrying the exception that prevented reading
+     */
+    protected DecompressedBlock readCompressedBlock(final byte[] compressedBuffer) {
+        final long blockAddress = mStreamOffset;
         try {
-            final int headerByteCount = readBytes(mFileBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
+            final int headerByteCount = readBytes(compressedBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
             mStreamOffset += headerByteCount;
             if (headerByteCount == 0) {
                 // Handle case where there is no empty gzip block at end.
@@ -527,28 +556,49 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
             if (headerByteCount != BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH) {
                 return new DecompressedBlock(blockAddress, headerByteCount, new IOException(INCORRECT_HEADER_SIZE_MSG + getSource()));
             }
-            final int blockLength = unpackInt16(mFileBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
-            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > mFileBuffer.length) {
+            final int blockLength = unpackInt16(compressedBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > compressedBuffer.length) {
                 return new DecompressedBlock(blockAddress, blockLength,
                         new IOException(UNEXPECTED_BLOCK_LENGTH_MSG + blockLength + " for " + getSource()));
             }
             final int remaining = blockLength - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
-            final int dataByteCount = readBytes(mFileBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
+            final int dataByteCount = readBytes(compressedBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
                     remaining);
             mStreamOffset += dataByteCount;
             if (dataByteCount != remaining) {
                 return new DecompressedBlock(blockAddress, blockLength,
                         new FileTruncatedException(PREMATURE_END_MSG + getSource()));
             }
-            final byte[] decompressed = inflateBlock(mFileBuffer, blockLength, bufferAvailableForReuse);
-            return new DecompressedBlock(blockAddress, decompressed, blockLength);
+            return null;
+        } catch (IOException e) {
+            return new DecompressedBlock(blockAddress, 0, e);
+        }
+    }
+
+    /**
+     * Decompresses a block previously read by {@link #readCompressedBlock(byte[])}. This method does not touch the
+     * input stream, so it may be called from several threads at once provided each uses its own buffers and
+     * {@link BlockGunzipper}.
+     * @param blockAddress stream offset of the start of the block
+     * @param compressedBlock buffer holding the compressed block
+     * @param compressedLength length of the compressed block, header and footer included
+     * @param bufferAvailableForReuse buffer in which to place decompressed block, may be null
+     * @param gunzipper gunzipper used to inflate the block
+     * @return the decompressed block
+     */
+    protected DecompressedBlock inflateCompressedBlock(final long blockAddress, final byte[] compressedBlock,
+                                                       final int compressedLength, final byte[] bufferAvailableForReuse,
+                                                       final BlockGunzipper gunzipper) {
+        try {
+            final byte[] decompressed = inflateBlock(compressedBlock, compressedLength, bufferAvailableForReuse, gunzipper);
+            return new DecompressedBlock(blockAddress, decompressed, compressedLength);
         } catch (IOException e) {
             return new DecompressedBlock(blockAddress, 0, e);
         }
     }
 
     private byte[] inflateBlock(final byte[] compressedBlock, final int compressedLength,
-            final byte[] bufferAvailableForReuse) throws IOException {
+            final byte[] bufferAvailableForReuse, final BlockGunzipper gunzipper) throws IOException {
         final int uncompressedLength = unpackInt32(compressedBlock, compressedLength - 4);
         if (uncompressedLength < 0) {
             throw new RuntimeIOException(getSource() + " has invalid uncompressedLength: " + uncompressedLength);
@@ -558,7 +608,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         	// can't reuse the buffer since the size is incorrect
             buffer = new byte[uncompressedLength];
         }
-        blockGunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
+        gunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
         return buffer;
     }
 
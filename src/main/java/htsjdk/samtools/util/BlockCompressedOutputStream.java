@@ -23,6 +23,7 @@
  */
 package htsjdk.samtools.util;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
 import java.io.File;
@@ -30,6 +31,15 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
@@ -46,6 +56,12 @@ import java.util.zip.Deflater;
  * number of buffered bytes has not reached threshold.  close(), on the other hand, must be called
  * when done writing in order to force the last gzip block to be written.
  *
+ * Blocks are deflated on the calling thread unless a compression executor has been supplied via
+ * {@link #setCompressionExecutor(ExecutorService, int)}, or the {@code samjdk.bgzf_compression_threads} property
+ * is set (see {@link Defaults#BGZF_COMPRESSION_THREADS}).  In that case full blocks are deflated
+ * concurrently on the executor, but are still written to the underlying stream in order, so the output is
+ * byte-identical to serial compression.
+ *
  * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF file format.
  */
 public class BlockCompressedOutputStream
@@ -90,30 +106,44 @@ public class BlockCompressedOutputStream
         return defaultDeflaterFactory;
     }
 
+    private static ExecutorService defaultCompressionExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool used by instances created while
+     * {@link Defaults#BGZF_COMPRESSION_THREADS} is greater than zero.
+     */
+    private static synchronized ExecutorService getDefaultCompressionExecutor() {
+        if (defaultCompressionExecutor == null) {
+            defaultCompressionExecutor = Executors.newFixedThreadPool(Defaults.BGZF_COMPRESSION_THREADS, new DaemonThreadFactory());
+        }
+        return defaultCompressionExecutor;
+    }
+
     private final BinaryCodec codec;
-    private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+    private byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
     private int numUncompressedBytes = 0;
-    private final byte[] compressedBuffer =
-            new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
-                    BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
-    private final Deflater deflater;
-
-    // A second deflater is created for the very unlikely case where the regular deflation actually makes
-    // things bigger, and the compressed block is too big.  It should be possible to downshift the
-    // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
-    // but in practice that doesn't work.
-    // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
-    // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
-    // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
-    // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
-    // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
-    // getFilePointer might return an inaccurate value.
-    // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
-    // so just use JDK standard.
-    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-    private final CRC32 crc32 = new CRC32();
+    private final int compressionLevel;
+    private final DeflaterFactory deflaterFactory;
+    private final BlockDeflater blockDeflater;
+
+    // Only used when blocks are compressed in parallel, see setCompressionExecutor()
+    private ExecutorService compressionExecutor = null;
+    private int maxBlocksInFlight = 0;
+    private final Deque<Future<BlockDeflater>> pendingBlocks = new ArrayDeque<>();
+    private final Queue<BlockDeflater> idleDeflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> idleUncompressedBuffers = new ArrayDeque<>();
+
     private Path file = null;
     private long mBlockAddress = 0;
+
+    // The number of blocks deflated (written or submitted for compression) and written so far, and the addresses
+    // of the written blocks from number firstRetainedBlock on, for resolving unresolved file pointers; the addresses
+    // are only retained once an unresolved file pointer has been requested
+    private boolean retainBlockAddresses = false;
+    private long blocksDeflated = 0;
+    private long blocksWritten = 0;
+    private long firstRetainedBlock = 0;
+    private long[] blockAddresses = new long[16];
     private GZIIndex.GZIIndexer indexer;
 
     /**
@@ -170,8 +200,11 @@ public class BlockCompressedOutputStream
     public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory) {
         this.file = path;
         codec = new BinaryCodec(path, true);
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.compressionLevel = compressionLevel;
+        this.deflaterFactory = deflaterFactory;
+        blockDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true));
+        log.debug("Using deflater: " + blockDeflater.deflater.getClass().getSimpleName());
+        initDefaultCompressionExecutor();
     }
 
     /**
@@ -236,8 +269,17 @@ public class BlockCompressedOutputStream
         if (file != null) {
             codec.setOutputFileName(file.toAbsolutePath().toUri().toString());
         }
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.compressionLevel = compressionLevel;
+        this.deflaterFactory = deflaterFactory;
+        blockDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true));
+        log.debug("Using deflater: " + blockDeflater.deflater.getClass().getSimpleName());
+        initDefaultCompressionExecutor();
+    }
+
+    private void initDefaultCompressionExecutor() {
+        if (Defaults.BGZF_COMPRESSION_THREADS > 0) {
+            setCompressionExecutor(getDefaultCompressionExecutor(), 2 * Defaults.BGZF_COMPRESSION_THREADS);
+        }
     }
 
     /**
@@ -262,12 +304,39 @@ public class BlockCompressedOutputStream
      * @throws RuntimeException this method is called after output has already been written to the stream.
      */
     public void addIndexer(final OutputStream outputStream) {
-        if (mBlockAddress != 0) {
+        if (mBlockAddress != 0 || !pendingBlocks.isEmpty()) {
             throw new RuntimeException("Cannot add gzi indexer if this BlockCompressedOutput stream has already written Gzipped blocks");
         }
         indexer = new GZIIndex.GZIIndexer(outputStream);
     }
 
+    /**
+     * Deflates full blocks on the given executor instead of the calling thread. Blocks are still written to the
+     * underlying stream in the order in which they were filled, so the output is identical to that of serial
+     * compression.
+     *
+     * Because the virtual file pointer of a block depends on the compressed size of every preceding block,
+     * {@link #getFilePointer()} waits for all blocks submitted so far to be compressed and written. Callers that
+     * need the file pointer of every record (e.g. when indexing on the fly) should use
+     * {@link #getUnresolvedFilePointer()} instead, and resolve the pointers once their blocks have been written.
+     *
+     * @param executor executor used to deflate blocks, or null to compress on the calling thread. The executor
+     *                 is not shut down when this stream is closed.
+     * @param maxBlocksInFlight maximum number of blocks being compressed or waiting to be written at any time;
+     *                          bounds the memory used by this stream to roughly 128K per block.
+     * @throws RuntimeException if this method is called after output has already been written to the stream.
+     */
+    public void setCompressionExecutor(final ExecutorService executor, final int maxBlocksInFlight) {
+        if (mBlockAddress != 0 || !pendingBlocks.isEmpty()) {
+            throw new RuntimeException("Cannot change the compression executor if this BlockCompressedOutput stream has already written Gzipped blocks");
+        }
+        if (executor != null && maxBlocksInFlight < 1) {
+            throw new IllegalArgumentException("maxBlocksInFlight must be positive: " + maxBlocksInFlight);
+        }
+        this.compressionExecutor = executor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
     /**
      * Writes b.length bytes from the specified byte array to this output stream. The general contract for write(b)
      * is that it should have exactly the same effect as the call write(b, 0, b.length).
@@ -320,6 +389,7 @@ public class BlockCompressedOutputStream
         while (numUncompressedBytes > 0) {
             deflateBlock();
         }
+        writePendingBlocks();
         codec.getOutputStream().flush();
     }
 
@@ -347,6 +417,11 @@ public class BlockCompressedOutputStream
         if (indexer != null) {
             indexer.close();
         }
+        BlockDeflater idle;
+        while ((idle = idleDeflaters.poll()) != null) {
+            idle.end();
+        }
+        idleUncompressedBuffers.clear();
 
         // If a terminator block was written, ensure that it's there and valid
         if (writeTerminatorBlock) {
@@ -364,6 +439,7 @@ public class BlockCompressedOutputStream
      * Lower 16 bits is the byte offset into the uncompressed stream inside the block.
      */
     public long getFilePointer(){
+        writePendingBlocks();
         return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes);
     }
 
@@ -373,48 +449,151 @@ public class BlockCompressedOutputStream
     }
 
     /**
-     * Attempt to write the data in uncompressedBuffer to the underlying file in a gzip block.
-     * If the entire uncompressedBuffer does not fit in the maximum allowed size, reduce the amount
-     * of data to be compressed, and slide the excess down in uncompressedBuffer so it can be picked
-     * up in the next deflate event.
-     * @return size of gzip block that was written.
+     * Returns the current position without waiting for blocks that are being compressed in parallel. The returned
+     * value identifies its block by number rather than by address, so it is not a virtual file pointer: it must be
+     * converted to one with {@link #resolveFilePointer(long)} once {@link #isResolvable(long)} is true for it, which
+     * is always the case when blocks are compressed on the calling thread, and after {@link #flush()} or
+     * {@link #close()}. Once this has been called, the addresses of the blocks written are retained until a pointer
+     * in a later block is resolved.
+     */
+    public long getUnresolvedFilePointer() {
+        retainBlockAddresses = true;
+        return BlockCompressedFilePointerUtil.makeFilePointer(blocksDeflated, numUncompressedBytes);
+    }
+
+    /**
+     * @param unresolvedFilePointer a value returned by {@link #getUnresolvedFilePointer()}
+     * @return true if all the blocks preceding the block of the pointer have been written, so that the pointer
+     * can be resolved
+     */
+    public boolean isResolvable(final long unresolvedFilePointer) {
+        return BlockCompressedFilePointerUtil.getBlockAddress(unresolvedFilePointer) <= blocksWritten;
+    }
+
+    /**
+     * Converts a value returned by {@link #getUnresolvedFilePointer()} to the virtual file pointer that
+     * {@link #getFilePointer()} would have returned at the same point. Pointers must be resolved in non-decreasing
+     * order, since the addresses of the blocks preceding the last resolved one are discarded.
+     *
+     * @param unresolvedFilePointer a value returned by {@link #getUnresolvedFilePointer()}
+     * @return the virtual file pointer
+     * @throws IllegalStateException if the pointer is not resolvable yet, or precedes a pointer already resolved
+     */
+    public long resolveFilePointer(final long unresolvedFilePointer) {
+        final long block = BlockCompressedFilePointerUtil.getBlockAddress(unresolvedFilePointer);
+        if (block > blocksWritten || block < firstRetainedBlock) {
+            throw new IllegalStateException("File pointer in block " + block + " cannot be resolved after " +
+                    blocksWritten + " blocks have been written and blocks before " + firstRetainedBlock + " discarded");
+        }
+        final long blockAddress = block == blocksWritten ?
+                mBlockAddress :
+                blockAddresses[(int) (block - firstRetainedBlock)];
+        // discard the addresses of the blocks before this one
+        final int discarded = (int) (Math.min(block, blocksWritten) - firstRetainedBlock);
+        if (discarded > 0) {
+            System.arraycopy(blockAddresses, discarded, blockAddresses, 0, (int) (blocksWritten - block));
+            firstRetainedBlock += discarded;
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(
+                blockAddress, BlockCompressedFilePointerUtil.getBlockOffset(unresolvedFilePointer));
+    }
+
+    /**
+     * Write the data in uncompressedBuffer to the underlying file in a gzip block, or hand it off to the
+     * compression executor if there is one.
+     * @return size of gzip block that was written, or 0 if the block was submitted for parallel compression.
      */
     private int deflateBlock() {
         if (numUncompressedBytes == 0) {
             return 0;
         }
+        blocksDeflated++;
+        if (compressionExecutor != null) {
+            submitBlock();
+            return 0;
+        }
         final int bytesToCompress = numUncompressedBytes;
-        // Compress the input
-        deflater.reset();
-        deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-        deflater.finish();
-        int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-
-        // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
-        // and try again.  This should always fit.
-        if (!deflater.finished()) {
-            noCompressionDeflater.reset();
-            noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-            noCompressionDeflater.finish();
-            compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-            if (!noCompressionDeflater.finished()) {
-                throw new IllegalStateException("unpossible");
+        blockDeflater.deflate(uncompressedBuffer, bytesToCompress);
+        final int totalBlockSize = writeGzipBlock(blockDeflater);
+
+        // Clear out from uncompressedBuffer the data that was written
+        numUncompressedBytes = 0;
+        return totalBlockSize;
+    }
+
+    /**
+     * Submits the data in uncompressedBuffer for compression on the compression executor, and writes any
+     * blocks that are ready to be written, or that must be written to stay within maxBlocksInFlight.
+     */
+    private void submitBlock() {
+        final byte[] blockToCompress = uncompressedBuffer;
+        final int bytesToCompress = numUncompressedBytes;
+        pendingBlocks.add(compressionExecutor.submit(() -> {
+            BlockDeflater blockDeflater = idleDeflaters.poll();
+            if (blockDeflater == null) {
+                blockDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true));
+            }
+            blockDeflater.deflate(blockToCompress, bytesToCompress);
+            return blockDeflater;
+        }));
+        final byte[] idleBuffer = idleUncompressedBuffers.poll();
+        uncompressedBuffer = idleBuffer != null ? idleBuffer : new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+        numUncompressedBytes = 0;
+
+        while (!pendingBlocks.isEmpty() && (pendingBlocks.size() >= maxBlocksInFlight || pendingBlocks.peekFirst().isDone())) {
+            writeNextPendingBlock();
+        }
+    }
+
+    /**
+     * Waits for all blocks submitted for parallel compression and writes them, in order.
+     */
+    private void writePendingBlocks() {
+        while (!pendingBlocks.isEmpty()) {
+            writeNextPendingBlock();
+        }
+    }
+
+    private void writeNextPendingBlock() {
+        final BlockDeflater compressed;
+        try {
+            compressed = pendingBlocks.removeFirst().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for compression thread", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuntimeException("Error compressing BGZF block", e.getCause());
         }
-        // Data compressed small enough, so write it out.
-        crc32.reset();
-        crc32.update(uncompressedBuffer, 0, bytesToCompress);
+        writeGzipBlock(compressed);
+        idleUncompressedBuffers.add(compressed.releaseInput());
+        idleDeflaters.add(compressed);
+    }
 
-        final int totalBlockSize = writeGzipBlock(compressedSize, bytesToCompress, crc32.getValue());
-        assert(bytesToCompress <= numUncompressedBytes);
+    /**
+     * Writes the entire gzip block held by the given BlockDeflater, and advances the block address.
+     * @return  size of gzip block that was written.
+     */
+    private int writeGzipBlock(final BlockDeflater compressed) {
+        final int totalBlockSize = writeGzipBlock(compressed.compressedBuffer, compressed.compressedSize,
+                compressed.uncompressedSize, compressed.crc32.getValue());
 
         // Call out to the indexer if it exists
         if (indexer != null) {
-            indexer.addGzipBlock(mBlockAddress, numUncompressedBytes);
+            indexer.addGzipBlock(mBlockAddress, compressed.uncompressedSize);
+        }
+        if (retainBlockAddresses) {
+            final int retained = (int) (blocksWritten - firstRetainedBlock);
+            if (retained == blockAddresses.length) {
+                blockAddresses = Arrays.copyOf(blockAddresses, retained * 2);
+            }
+            blockAddresses[retained] = mBlockAddress;
+            blocksWritten++;
+        } else {
+            firstRetainedBlock = ++blocksWritten;
         }
-
-        // Clear out from uncompressedBuffer the data that was written
-        numUncompressedBytes = 0;
         mBlockAddress += totalBlockSize;
         return totalBlockSize;
     }
@@ -423,7 +602,7 @@ public class BlockCompressedOutputStream
      * Writes the entire gzip block, assuming the compressed data is stored in compressedBuffer
      * @return  size of gzip block that was written.
      */
-    private int writeGzipBlock(final int compressedSize, final int uncompressedSize, final long crc) {
+    private int writeGzipBlock(final byte[] compressedBuffer, final int compressedSize, final int uncompressedSize, final long crc) {
         // Init gzip header
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID1);
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID2);
@@ -446,4 +625,78 @@ public class BlockCompressedOutputStream
         codec.writeInt(uncompressedSize);
         return totalBlockSize;
     }
+
+    /**
+     * Compresses a single block, and holds the compressed bytes until they have been written. When blocks are
+     * compressed in parallel, each in-flight block owns one of these.
+     */
+    private static final class BlockDeflater {
+        private final Deflater deflater;
+        // A second deflater is created for the very unlikely case where the regular deflation actually makes
+        // things bigger, and the compressed block is too big.  It should be possible to downshift the
+        // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
+        // but in practice that doesn't work.
+        // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
+        // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
+        // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
+        // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
+        // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
+        // getFilePointer might return an inaccurate value.
+        // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
+        // so just use JDK standard.
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        private byte[] input;
+        private int compressedSize;
+        private int uncompressedSize;
+
+        BlockDeflater(final Deflater deflater) {
+            this.deflater = deflater;
+        }
+
+        /**
+         * Compresses the first bytesToCompress bytes of the given buffer into compressedBuffer.
+         */
+        void deflate(final byte[] uncompressedBuffer, final int bytesToCompress) {
+            input = uncompressedBuffer;
+            uncompressedSize = bytesToCompress;
+            // Compress the input
+            deflater.reset();
+            deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+            deflater.finish();
+            compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+
+            // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
+            // and try again.  This should always fit.
+            if (!deflater.finished()) {
+                noCompressionDeflater.reset();
+                noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+                noCompressionDeflater.finish();
+                compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                if (!noCompressionDeflater.finished()) {
+                    throw new IllegalStateException("unpossible");
+                }
+            }
+            // Data compressed small enough, so it can be written out.
+            crc32.reset();
+            crc32.update(uncompressedBuffer, 0, bytesToCompress);
+        }
+
+        /**
+         * @return the buffer most recently passed to deflate(), which may now be reused.
+         */
+        byte[] releaseInput() {
+            final byte[] released = input;
+            input = null;
+            return released;
+        }
+
+        void end() {
+            deflater.end();
+            noCompressionDeflater.end();
+        }
+    }
 }
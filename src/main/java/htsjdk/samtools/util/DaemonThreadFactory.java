@@ -0,0 +1,19 @@
+package htsjdk.samtools.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link ThreadFactory} creating the threads of {@link Executors#defaultThreadFactory()}, but as daemon threads,
+ * so that the thread pools shared by readers and writers do not keep the JVM from exiting.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+    private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+        final Thread t = delegate.newThread(r);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,788 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.Defaults;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@link SortingCollection} that keeps its records encoded in off-heap buffers rather than as objects on the heap,
+ * which keeps the garbage collector out of the way when sorting very large numbers of records.
+ * <p>
+ * Records are encoded with the codec as they are added, and stored alongside the primitive key provided by the
+ * {@link SortingCollection.KeyedComparator}.  Runs are sorted in parallel by key; records are only decoded to be
+ * compared when their keys are equal and their encoded bytes differ.  Spill files store the key of every record, and
+ * are merged with a loser tree whose inputs are read and decompressed ahead on background threads.
+ * <p>
+ * The output order is the same as that of {@link SortingCollection}.  Since records are encoded when they are added,
+ * changes made to a record after adding it are not reflected in the sorted output.
+ * <p>
+ * With destructive iteration, the off-heap buffers are released once the records in memory have all been returned,
+ * or the iterator has been closed, rather than record by record; the collection cannot be iterated again afterwards.
+ */
+class OffHeapSortingCollection<T> extends SortingCollection<T> {
+    private static final Log log = Log.getInstance(OffHeapSortingCollection.class);
+
+    /** Size of each off-heap buffer holding encoded records. */
+    static final int BUFFER_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /** Runs shorter than this are sorted on a single thread. */
+    private static final int PARALLEL_SORT_THRESHOLD = 8192;
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private static ExecutorService prefetchExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool on which spill files are read ahead during merging
+     */
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+        }
+        return prefetchExecutor;
+    }
+
+    private final SortingCollection.Codec<T> codec;
+    private final SortingCollection.KeyedComparator<T> comparator;
+    private final int maxRecordsInRam;
+
+    // Encoded records in memory: the sort key, the address (buffer index << 32 | offset) and length of the record
+    private int numRecordsInRam = 0;
+    private long[] keys;
+    private long[] addresses;
+    private int[] lengths;
+    /** Indices of the records in memory, in sorted order once sortRecordsInRam() has been called. */
+    private int[] order;
+    private boolean sorted = false;
+
+    private List<ByteBuffer> buffers = new ArrayList<>();
+    private int currentBuffer = 0;
+
+    private final EncodeBuffer encodeBuffer = new EncodeBuffer();
+
+    private final List<Path> files = new ArrayList<>();
+    private boolean iterationStarted = false;
+    private boolean doneAdding = false;
+    private boolean cleanedUp = false;
+    /** Set once a destructive iteration has released the records in memory. */
+    private boolean recordsReleased = false;
+
+    OffHeapSortingCollection(final SortingCollection.Codec<T> codec, final SortingCollection.KeyedComparator<T> comparator,
+                             final int maxRecordsInRam, final Path... tmpDir) {
+        this(codec, comparator, maxRecordsInRam, false, tmpDir);
+    }
+
+    /**
+     * @param printRecordSizeSampling If true the memory used by the records in RAM is output at DEBUG log level
+     *                                whenever they are spilled to disk
+     */
+    OffHeapSortingCollection(final SortingCollection.Codec<T> codec, final SortingCollection.KeyedComparator<T> comparator,
+                             final int maxRecordsInRam, final boolean printRecordSizeSampling, final Path... tmpDir) {
+        super(codec, comparator, maxRecordsInRam, printRecordSizeSampling, tmpDir);
+        this.codec = codec;
+        this.comparator = comparator;
+        this.maxRecordsInRam = maxRecordsInRam;
+        final int initialCapacity = Math.min(maxRecordsInRam, 1024);
+        this.keys = new long[initialCapacity];
+        this.addresses = new long[initialCapacity];
+        this.lengths = new int[initialCapacity];
+        this.codec.setOutputStream(encodeBuffer);
+    }
+
+    @Override
+    public void add(final T rec) {
+        if (doneAdding) {
+            throw new IllegalStateException("Cannot add after calling doneAdding()");
+        }
+        if (iterationStarted) {
+            throw new IllegalStateException("Cannot add after calling iterator()");
+        }
+        if (numRecordsInRam == maxRecordsInRam) {
+            if (printRecordSizeSampling) {
+                logRecordSize();
+            }
+            spillToDisk();
+        }
+        if (numRecordsInRam == keys.length) {
+            final int capacity = (int) Math.min(maxRecordsInRam, 2L * keys.length);
+            keys = Arrays.copyOf(keys, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        encodeBuffer.reset();
+        codec.encode(rec);
+        keys[numRecordsInRam] = comparator.sortKey(rec);
+        addresses[numRecordsInRam] = store(encodeBuffer.buffer(), encodeBuffer.size());
+        lengths[numRecordsInRam] = encodeBuffer.size();
+        numRecordsInRam++;
+        sorted = false;
+    }
+
+    /**
+     * Copies an encoded record into the off-heap buffers.
+     * @return the address of the record
+     */
+    private long store(final byte[] bytes, final int length) {
+        if (buffers.isEmpty()) {
+            buffers.add(ByteBuffer.allocateDirect(Math.max(BUFFER_CHUNK_SIZE, length)));
+        }
+        ByteBuffer buffer = buffers.get(currentBuffer);
+        if (buffer.remaining() < length) {
+            currentBuffer++;
+            if (currentBuffer == buffers.size()) {
+                buffers.add(ByteBuffer.allocateDirect(Math.max(BUFFER_CHUNK_SIZE, length)));
+            } else if (buffers.get(currentBuffer).capacity() < length) {
+                buffers.set(currentBuffer, ByteBuffer.allocateDirect(length));
+            }
+            buffer = buffers.get(currentBuffer);
+            buffer.clear();
+        }
+        final int offset = buffer.position();
+        buffer.put(bytes, 0, length);
+        return ((long) currentBuffer << 32) | offset;
+    }
+
+    /**
+     * Logs the memory used by the records in RAM, both the encoded records and the index arrays.
+     */
+    private void logRecordSize() {
+        long usedBytes = (long) numRecordsInRam * (Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES);
+        for (int i = 0; i <= currentBuffer && i < buffers.size(); i++) {
+            usedBytes += buffers.get(i).position();
+        }
+        log.debug(String.format("%d records in ram required approximately %s memory or %s per record. ", numRecordsInRam,
+                StringUtil.humanReadableByteCount(usedBytes),
+                StringUtil.humanReadableByteCount(usedBytes / numRecordsInRam)));
+    }
+
+    @Override
+    public void doneAdding() {
+        if (this.cleanedUp) {
+            throw new IllegalStateException("Cannot call doneAdding() after cleanup() was called.");
+        }
+        if (doneAdding) {
+            return;
+        }
+
+        doneAdding = true;
+
+        if (this.files.isEmpty()) {
+            return;
+        }
+
+        if (this.numRecordsInRam > 0) {
+            spillToDisk();
+        }
+
+        // Release the off-heap buffers and the index
+        this.buffers = null;
+        this.keys = null;
+        this.addresses = null;
+        this.lengths = null;
+        this.order = null;
+    }
+
+    /**
+     * Sort the records in memory, write them and their keys to a file, and clear the records in memory.
+     */
+    @Override
+    public void spillToDisk() {
+        try {
+            sortRecordsInRam();
+
+            final Path f = newTempFile();
+            try (DataOutputStream os = new DataOutputStream(
+                    tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE))) {
+                byte[] bytes = new byte[0];
+                for (int i = 0; i < this.numRecordsInRam; ++i) {
+                    final int record = order[i];
+                    if (bytes.length < lengths[record]) {
+                        bytes = new byte[lengths[record]];
+                    }
+                    load(record, bytes);
+                    os.writeLong(keys[record]);
+                    os.writeInt(lengths[record]);
+                    os.write(bytes, 0, lengths[record]);
+                }
+                os.flush();
+            } catch (RuntimeIOException ex) {
+                throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
+                        ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+            }
+
+            this.numRecordsInRam = 0;
+            this.currentBuffer = 0;
+            if (!buffers.isEmpty()) {
+                buffers.get(0).clear();
+            }
+            this.files.add(f);
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    /**
+     * Copies the encoded bytes of a record in memory into the given array.
+     */
+    private void load(final int record, final byte[] bytes) {
+        final long address = addresses[record];
+        buffers.get((int) (address >>> 32)).get((int) address, bytes, 0, lengths[record]);
+    }
+
+    /**
+     * Decodes a record in memory.  May be called from any thread, as long as the decoder is not used concurrently.
+     */
+    private T decode(final int record, final Codec<T> decoder) {
+        final byte[] bytes = new byte[lengths[record]];
+        load(record, bytes);
+        decoder.setInputStream(new ByteArrayInputStream(bytes));
+        return decoder.decode();
+    }
+
+    /**
+     * @return true if two records in memory have the same encoded bytes, and hence compare equal.  The bytes are
+     * compared in place, without being copied onto the heap.
+     */
+    private boolean sameEncoding(final int lhs, final int rhs) {
+        return lengths[lhs] == lengths[rhs] && encoded(lhs).equals(encoded(rhs));
+    }
+
+    private ByteBuffer encoded(final int record) {
+        final long address = addresses[record];
+        return buffers.get((int) (address >>> 32)).slice((int) address, lengths[record]);
+    }
+
+    private int compareKeys(final int lhs, final int rhs) {
+        return Long.compare(keys[lhs], keys[rhs]);
+    }
+
+    /**
+     * Sorts the indices of the records in memory, first by key and then, within each run of records with equal keys,
+     * by comparing the records themselves.  Records with the same encoded bytes compare equal without being decoded;
+     * other records of a run are decoded at most once each, rather than once per comparison, and are held on the heap
+     * while the run is sorted.  The sort is stable, so records that compare equal stay in the order in which they
+     * were added.
+     */
+    private void sortRecordsInRam() {
+        if (sorted) {
+            return;
+        }
+        if (order == null || order.length < numRecordsInRam) {
+            order = new int[keys.length];
+        }
+        for (int i = 0; i < numRecordsInRam; i++) {
+            order[i] = i;
+        }
+        final SortTask task = new SortTask(order, new int[numRecordsInRam], 0, numRecordsInRam);
+        if (numRecordsInRam > PARALLEL_SORT_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+
+        final List<int[]> tiedRuns = new ArrayList<>();
+        for (int start = 0, end; start < numRecordsInRam; start = end) {
+            end = start + 1;
+            while (end < numRecordsInRam && keys[order[end]] == keys[order[start]]) {
+                end++;
+            }
+            if (end - start > 1) {
+                tiedRuns.add(new int[]{start, end});
+            }
+        }
+        // decoders are borrowed by the runs being sorted, and are dropped once the records are sorted
+        final Queue<Codec<T>> idleDecoders = new ConcurrentLinkedQueue<>();
+        if (numRecordsInRam > PARALLEL_SORT_THRESHOLD) {
+            ForkJoinPool.commonPool().submit(() -> tiedRuns.parallelStream().forEach(run -> sortTiedRun(run, idleDecoders))).join();
+        } else {
+            tiedRuns.forEach(run -> sortTiedRun(run, idleDecoders));
+        }
+        sorted = true;
+    }
+
+    /**
+     * Sorts a range of {@link #order} whose records have equal keys, decoding each record at most once.
+     * @param range the start (inclusive) and end (exclusive) of the range
+     * @param idleDecoders decoders that are not in use by another run
+     */
+    @SuppressWarnings("unchecked")
+    private void sortTiedRun(final int[] range, final Queue<Codec<T>> idleDecoders) {
+        final int size = range[1] - range[0];
+        final int[] run = Arrays.copyOfRange(order, range[0], range[1]);
+        final T[] records = (T[]) new Object[size];
+        final Integer[] positions = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        final Codec<T> idleDecoder = idleDecoders.poll();
+        final Codec<T> decoder = idleDecoder != null ? idleDecoder : codec.clone();
+        try {
+            // Arrays.sort of objects is stable
+            Arrays.sort(positions, (lhs, rhs) -> {
+                if (sameEncoding(run[lhs], run[rhs])) {
+                    return 0;
+                }
+                if (records[lhs] == null) {
+                    records[lhs] = decode(run[lhs], decoder);
+                }
+                if (records[rhs] == null) {
+                    records[rhs] = decode(run[rhs], decoder);
+                }
+                return comparator.compare(records[lhs], records[rhs]);
+            });
+        } finally {
+            idleDecoders.offer(decoder);
+        }
+        for (int i = 0; i < size; i++) {
+            order[range[0] + i] = run[positions[i]];
+        }
+    }
+
+    /**
+     * Merge sort of record indices by key, forking both halves of ranges larger than {@link #PARALLEL_SORT_THRESHOLD}.
+     */
+    private final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] indices;
+        private final int[] scratch;
+        private final int from;
+        private final int to;
+
+        SortTask(final int[] indices, final int[] scratch, final int from, final int to) {
+            this.indices = indices;
+            this.scratch = scratch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                insertionSort();
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            final SortTask left = new SortTask(indices, scratch, from, mid);
+            final SortTask right = new SortTask(indices, scratch, mid, to);
+            if (to - from > PARALLEL_SORT_THRESHOLD) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            merge(mid);
+        }
+
+        private void insertionSort() {
+            for (int i = from + 1; i < to; i++) {
+                final int record = indices[i];
+                int j = i - 1;
+                while (j >= from && compareKeys(indices[j], record) > 0) {
+                    indices[j + 1] = indices[j];
+                    j--;
+                }
+                indices[j + 1] = record;
+            }
+        }
+
+        private void merge(final int mid) {
+            if (compareKeys(indices[mid - 1], indices[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(indices, from, scratch, from, to - from);
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                if (j >= to || (i < mid && compareKeys(scratch[i], scratch[j]) <= 0)) {
+                    indices[k] = scratch[i++];
+                } else {
+                    indices[k] = scratch[j++];
+                }
+            }
+        }
+    }
+
+    @Override
+    public CloseableIterator<T> iterator() {
+        if (this.cleanedUp) {
+            throw new IllegalStateException("Cannot call iterator() after cleanup() was called.");
+        }
+        if (this.recordsReleased) {
+            throw new IllegalStateException("Cannot call iterator() again after a destructive iteration.");
+        }
+        doneAdding();
+
+        this.iterationStarted = true;
+        if (this.files.isEmpty()) {
+            return new InMemoryIterator();
+        } else {
+            return new MergingIterator();
+        }
+    }
+
+    /**
+     * Releases the off-heap buffers and the index of the records in memory, once a destructive iteration is over.
+     */
+    private void releaseRecordsInRam() {
+        this.recordsReleased = true;
+        this.buffers = null;
+        this.keys = null;
+        this.addresses = null;
+        this.lengths = null;
+        this.order = null;
+    }
+
+    @Override
+    public void cleanup() {
+        this.iterationStarted = true;
+        this.cleanedUp = true;
+        this.buffers = null;
+
+        IOUtil.deletePaths(this.files);
+    }
+
+    /**
+     * For iteration when number of records added is less than the threshold for spilling to disk.
+     */
+    private class InMemoryIterator implements CloseableIterator<T> {
+        private final Codec<T> decoder = codec.clone();
+        private final boolean destructive = isDestructiveIteration();
+        private int iterationIndex = 0;
+
+        InMemoryIterator() {
+            sortRecordsInRam();
+        }
+
+        @Override
+        public void close() {
+            if (destructive && !recordsReleased) {
+                releaseRecordsInRam();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !recordsReleased && this.iterationIndex < numRecordsInRam;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T ret = decode(order[iterationIndex++], decoder);
+            if (iterationIndex == numRecordsInRam) {
+                close();
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * For iteration when spilling to disk has occurred.
+     * <p>
+     * Algorithm: the next record of every spill file is held by a {@link RunReader}, and the readers are the
+     * leaves of a loser tree.  Each internal node of the tree holds the reader that lost the comparison played
+     * at that node, and the root holds the overall winner, i.e. the reader with the smallest record.  Once the
+     * winner's record has been returned, the winner advances and replays the comparisons on the path from its leaf
+     * to the root, which takes log2(number of files) comparisons.  Comparisons are made on keys, and records are
+     * only decoded when their keys are equal.  Records that compare equal are returned in the order of the files
+     * they were spilled to, as {@link SortingCollection} does.
+     */
+    private class MergingIterator implements CloseableIterator<T> {
+        private final List<RunReader> runs = new ArrayList<>();
+        /** tree[0] is the index of the winning run, tree[1..n) the losers of the internal nodes. */
+        private final int[] tree;
+
+        MergingIterator() {
+            log.debug(String.format("Creating merging iterator from %d files", files.size()));
+            // two buffers are held per file, the one being read and the one being read ahead
+            final int chunkSize = Math.max(checkMemoryAndAdjustBuffer(files.size()) / 2, 8192);
+            for (final Path f : files) {
+                runs.add(new RunReader(f, chunkSize));
+            }
+            tree = new int[runs.size()];
+            Arrays.fill(tree, -1);
+            for (int run = 0; run < runs.size(); run++) {
+                replay(run);
+            }
+        }
+
+        /**
+         * Moves a run from its leaf towards the root, swapping it with the loser stored at each node it loses to.
+         * While the tree is built, a run that reaches an empty node waits there for its opponent.
+         */
+        private void replay(int winner) {
+            for (int node = (winner + tree.length) >>> 1; node > 0; node >>>= 1) {
+                if (tree[node] == -1) {
+                    tree[node] = winner;
+                    return;
+                }
+                if (compareRuns(tree[node], winner) < 0) {
+                    final int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+        }
+
+        private int compareRuns(final int lhs, final int rhs) {
+            final RunReader left = runs.get(lhs);
+            final RunReader right = runs.get(rhs);
+            int cmp;
+            if (left.exhausted || right.exhausted) {
+                cmp = Boolean.compare(left.exhausted, right.exhausted);
+            } else {
+                cmp = Long.compare(left.key, right.key);
+                if (cmp == 0 && !left.hasSameEncoding(right)) {
+                    cmp = comparator.compare(left.current(), right.current());
+                }
+            }
+            return cmp != 0 ? cmp : lhs - rhs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !runs.isEmpty() && !runs.get(tree[0]).exhausted;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int winner = tree[0];
+            final RunReader run = runs.get(winner);
+            final T ret = run.current();
+            run.advance();
+            replay(winner);
+            return ret;
+        }
+
+        @Override
+        public void close() {
+            for (final RunReader run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a spill file, along with their keys.  Records are only decoded when needed.
+     */
+    private class RunReader {
+        private final Path file;
+        private final PrefetchingInputStream prefetching;
+        private final DataInputStream in;
+        private final Codec<T> decoder = codec.clone();
+        private boolean exhausted = false;
+        private long key;
+        private int length;
+        private byte[] bytes = new byte[0];
+        private T record;
+
+        RunReader(final Path file, final int chunkSize) {
+            this.file = file;
+            try {
+                this.prefetching = new PrefetchingInputStream(
+                        tempStreamFactory.wrapTempInputStream(Files.newInputStream(file), 0), chunkSize);
+                this.in = new DataInputStream(prefetching);
+            } catch (IOException e) {
+                throw new RuntimeIOException(e);
+            }
+            advance();
+        }
+
+        T current() {
+            if (record == null) {
+                decoder.setInputStream(new ByteArrayInputStream(bytes, 0, length));
+                record = decoder.decode();
+            }
+            return record;
+        }
+
+        /**
+         * @return true if the current records of both readers have the same encoded bytes, and hence compare equal
+         */
+        boolean hasSameEncoding(final RunReader other) {
+            return Arrays.equals(bytes, 0, length, other.bytes, 0, other.length);
+        }
+
+        void advance() {
+            record = null;
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                exhausted = true;
+                close();
+                return;
+            } catch (IOException e) {
+                throw new RuntimeIOException("Problem reading temporary file " + file.toUri(), e);
+            }
+            try {
+                length = in.readInt();
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                in.readFully(bytes, 0, length);
+            } catch (IOException e) {
+                throw new RuntimeIOException("Problem reading temporary file " + file.toUri(), e);
+            }
+        }
+
+        void close() {
+            CloserUtil.close(prefetching);
+        }
+    }
+
+    /**
+     * Reads the next chunk of the underlying stream on a background thread while the current chunk is consumed.
+     */
+    private static final class PrefetchingInputStream extends InputStream {
+        private final InputStream in;
+        private byte[] current;
+        private byte[] next;
+        private int position = 0;
+        private int limit = 0;
+        private Future<Integer> pending;
+        private boolean closed = false;
+
+        PrefetchingInputStream(final InputStream in, final int chunkSize) {
+            this.in = in;
+            this.current = new byte[chunkSize];
+            this.next = new byte[chunkSize];
+            this.pending = submitRead();
+        }
+
+        private Future<Integer> submitRead() {
+            final byte[] buffer = next;
+            return getPrefetchExecutor().submit(() -> {
+                int total = 0;
+                int n;
+                while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) > 0) {
+                    total += n;
+                }
+                return total;
+            });
+        }
+
+        /**
+         * Makes the chunk read ahead current, and starts reading the following one.
+         * @return false at the end of the stream
+         */
+        private boolean nextChunk() throws IOException {
+            if (pending == null) {
+                return false;
+            }
+            final int n;
+            try {
+                n = pending.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+            final byte[] tmp = current;
+            current = next;
+            next = tmp;
+            position = 0;
+            limit = n;
+            // a short read means the end of the stream has been reached
+            pending = n == current.length ? submitRead() : null;
+            return n > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !nextChunk()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !nextChunk()) {
+                return -1;
+            }
+            final int n = Math.min(len, limit - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (pending != null) {
+                // wait for the read in flight, so that the stream is not closed underneath it
+                try {
+                    pending.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // the stream is being abandoned
+                }
+                pending = null;
+            }
+            in.close();
+        }
+    }
+
+    /**
+     * Gives access to the internal buffer, so that encoded records can be copied off-heap without an intermediate copy.
+     */
+    private static final class EncodeBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.zip.InflaterFactory;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Read-ahead implementation of {@link BlockCompressedInputStream} that inflates several blocks in parallel.
+ *
+ * Compressed blocks are read from the underlying stream on the calling thread, up to a configurable number of
+ * blocks ahead of the block currently being consumed, and are inflated concurrently on an executor. Blocks are
+ * handed back to the reader in stream order, so virtual file pointers and {@link #seek(long)} behave exactly as
+ * they do for {@link BlockCompressedInputStream}; a seek discards any read-ahead.
+ *
+ * Unlike {@link AsyncBlockCompressedInputStream}, which keeps a single block in flight per stream, this
+ * implementation is bounded by the number of threads of the executor rather than by serial inflation.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must
+ * be synchronized externally.
+ */
+public class ParallelBlockCompressedInputStream extends BlockCompressedInputStream {
+    /**
+     * Number of blocks read ahead by streams that are not given an explicit read-ahead depth.
+     */
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 2 * Math.max(1, Defaults.BGZF_DECOMPRESSION_THREADS);
+
+    private static ExecutorService defaultExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool used by streams that are not given an executor. The pool has
+     * {@link Defaults#BGZF_DECOMPRESSION_THREADS} threads, or one per processor if that is not set.
+     */
+    public static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            final int nThreads = Defaults.BGZF_DECOMPRESSION_THREADS > 0 ?
+                    Defaults.BGZF_DECOMPRESSION_THREADS :
+                    Runtime.getRuntime().availableProcessors();
+            defaultExecutor = Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory());
+        }
+        return defaultExecutor;
+    }
+
+    private final ExecutorService executor;
+    private final int readAheadBlocks;
+    private final InflaterFactory inflaterFactory;
+    private volatile boolean checkCrcs = false;
+
+    /**
+     * Blocks (in stream order) that have been read and are being, or have been, inflated.
+     */
+    private final Deque<Future<DecompressedBlock>> pendingBlocks = new ArrayDeque<>();
+    /**
+     * Set once the end of the input, or an unreadable block, has been queued; no block is read past it.
+     */
+    private boolean endOfInputQueued = false;
+
+    // Gunzippers and buffers are recycled between blocks, and are shared with the inflating threads
+    private final Queue<BlockGunzipper> idleGunzippers = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> idleCompressedBuffers = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> idleDecompressedBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param stream source of bytes
+     * @param executor executor on which blocks are inflated. It is not shut down when this stream is closed.
+     * @param readAheadBlocks maximum number of blocks read ahead of the current block
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final ExecutorService executor, final int readAheadBlocks) {
+        this(stream, BlockGunzipper.getDefaultInflaterFactory(), executor, readAheadBlocks);
+    }
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param stream source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper}s
+     * @param executor executor on which blocks are inflated. It is not shut down when this stream is closed.
+     * @param readAheadBlocks maximum number of blocks read ahead of the current block
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final InflaterFactory inflaterFactory,
+                                              final ExecutorService executor, final int readAheadBlocks) {
+        super(stream, true, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.executor = ValidationUtils.nonNull(executor, "executor");
+        this.readAheadBlocks = validateReadAheadBlocks(readAheadBlocks);
+    }
+
+    /**
+     * Uses the shared executor and the default read-ahead depth.
+     * @param file source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper}s
+     */
+    public ParallelBlockCompressedInputStream(final File file, final InflaterFactory inflaterFactory) throws IOException {
+        this(new SeekableFileStream(file), inflaterFactory, getDefaultExecutor(), DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * Uses the shared executor and the default read-ahead depth.
+     * @param strm source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper}s
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory) {
+        this(strm, inflaterFactory, getDefaultExecutor(), DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * @param strm source of bytes
+     * @param executor executor on which blocks are inflated. It is not shut down when this stream is closed.
+     * @param readAheadBlocks maximum number of blocks read ahead of the current block
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final ExecutorService executor, final int readAheadBlocks) {
+        this(strm, BlockGunzipper.getDefaultInflaterFactory(), executor, readAheadBlocks);
+    }
+
+    /**
+     * @param strm source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper}s
+     * @param executor executor on which blocks are inflated. It is not shut down when this stream is closed.
+     * @param readAheadBlocks maximum number of blocks read ahead of the current block
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory,
+                                              final ExecutorService executor, final int readAheadBlocks) {
+        super(strm, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.executor = ValidationUtils.nonNull(executor, "executor");
+        this.readAheadBlocks = validateReadAheadBlocks(readAheadBlocks);
+    }
+
+    private static int validateReadAheadBlocks(final int readAheadBlocks) {
+        ValidationUtils.validateArg(readAheadBlocks > 0, () -> "readAheadBlocks must be positive: " + readAheadBlocks);
+        return readAheadBlocks;
+    }
+
+    @Override
+    public void setCheckCrcs(final boolean check) {
+        super.setCheckCrcs(check);
+        this.checkCrcs = check;
+    }
+
+    @Override
+    protected DecompressedBlock nextBlock(final byte[] bufferAvailableForReuse) {
+        if (bufferAvailableForReuse != null) {
+            idleDecompressedBuffers.offer(bufferAvailableForReuse);
+        }
+        fillReadAhead();
+        final DecompressedBlock next = await(pendingBlocks.removeFirst());
+        // keep the executor busy while the caller consumes this block
+        fillReadAhead();
+        return next;
+    }
+
+    @Override
+    protected void prepareForSeek() {
+        discardReadAhead();
+        super.prepareForSeek();
+    }
+
+    @Override
+    public void close() throws IOException {
+        discardReadAhead();
+        super.close();
+    }
+
+    /**
+     * Reads compressed blocks and submits them for inflation until readAheadBlocks blocks are pending, or the end
+     * of the input has been reached.
+     */
+    private void fillReadAhead() {
+        if (pendingBlocks.isEmpty()) {
+            // the end of input has been handed to the reader; reading again behaves as the serial stream would
+            endOfInputQueued = false;
+        }
+        while (!endOfInputQueued && pendingBlocks.size() < readAheadBlocks) {
+            final byte[] idleBuffer = idleCompressedBuffers.poll();
+            final byte[] compressedBlock = idleBuffer != null ? idleBuffer : new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+            final long blockAddress = getCompressedStreamOffset();
+            final DecompressedBlock unreadable = readCompressedBlock(compressedBlock);
+            if (unreadable != null) {
+                idleCompressedBuffers.offer(compressedBlock);
+                pendingBlocks.add(CompletableFuture.completedFuture(unreadable));
+                endOfInputQueued = true;
+            } else {
+                final int compressedLength = (int) (getCompressedStreamOffset() - blockAddress);
+                final byte[] decompressedBuffer = idleDecompressedBuffers.poll();
+                pendingBlocks.add(executor.submit(() -> inflate(blockAddress, compressedBlock, compressedLength, decompressedBuffer)));
+            }
+        }
+    }
+
+    /**
+     * Inflates a single block. Runs on the executor.
+     */
+    private DecompressedBlock inflate(final long blockAddress, final byte[] compressedBlock, final int compressedLength,
+                                      final byte[] decompressedBuffer) {
+        BlockGunzipper gunzipper = idleGunzippers.poll();
+        if (gunzipper == null) {
+            gunzipper = new BlockGunzipper(inflaterFactory);
+        }
+        gunzipper.setCheckCrcs(checkCrcs);
+        try {
+            return inflateCompressedBlock(blockAddress, compressedBlock, compressedLength, decompressedBuffer, gunzipper);
+        } catch (final RuntimeException e) {
+            return new DecompressedBlock(blockAddress, compressedLength, e);
+        } finally {
+            idleGunzippers.offer(gunzipper);
+            idleCompressedBuffers.offer(compressedBlock);
+        }
+    }
+
+    private static DecompressedBlock await(final Future<DecompressedBlock> pending) {
+        try {
+            return pending.get();
+        } catch (final InterruptedException e) {
+            // the block reports the interruption to the reader, which is still interrupted afterwards
+            Thread.currentThread().interrupt();
+            return new DecompressedBlock(0, 0, e);
+        } catch (final ExecutionException e) {
+            return new DecompressedBlock(0, 0, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    /**
+     * Abandons all read-ahead. Blocks still being inflated finish in the background and their results are dropped.
+     */
+    private void discardReadAhead() {
+        for (final Future<DecompressedBlock> pending : pendingBlocks) {
+            pending.cancel(false);
+        }
+        pendingBlocks.clear();
+        endOfInputQueued = false;
+    }
+}
@@ -54,6 +54,10 @@ import java.util.TreeSet;
  * <p>
  * If Snappy DLL is available and snappy.disable system property is not set to true, then Snappy is used
  * to compress temporary files.
+ * <p>
+ * If {@link Defaults#SORTING_COLLECTION_OFF_HEAP} is set and the comparator is a {@link KeyedComparator}, e.g.
+ * {@link htsjdk.samtools.SAMRecordCoordinateComparator}, the factory methods return an implementation that keeps
+ * records encoded in off-heap buffers instead of holding them as objects.
  */
 public class SortingCollection<T> implements Iterable<T> {
     private static final Log log = Log.getInstance(SortingCollection.class);
@@ -96,6 +100,19 @@ public class SortingCollection<T> implements Iterable<T> {
         Codec<T> clone();
     }
 
+    /**
+     * A comparator whose order is, for the most part, captured by a primitive key.  When
+     * {@link Defaults#SORTING_COLLECTION_OFF_HEAP} is set, collections created with such a comparator keep their
+     * records encoded in off-heap buffers, and only decode records whose keys are equal in order to compare them.
+     */
+    public interface KeyedComparator<T> extends Comparator<T> {
+        /**
+         * @return a key such that, for any two records a and b, {@code sortKey(a) < sortKey(b)} implies
+         * {@code compare(a, b) < 0}.  Records with equal keys are ordered by {@link #compare(Object, Object)}.
+         */
+        long sortKey(T val);
+    }
+
     /**
      * Directories where files of sorted records go.
      */
@@ -128,9 +145,9 @@ public class SortingCollection<T> implements Iterable<T> {
 
     private boolean destructiveIteration = true;
 
-    private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
+    final TempStreamFactory tempStreamFactory = new TempStreamFactory();
 
-    private final boolean printRecordSizeSampling;
+    final boolean printRecordSizeSampling;
 
     /**
      * Prepare to accumulate records to be sorted
@@ -163,6 +180,40 @@ public class SortingCollection<T> implements Iterable<T> {
         this.printRecordSizeSampling = printRecordSizeSampling;
     }
 
+    /**
+     * For subclasses that hold their records elsewhere; no in-memory array is allocated.
+     */
+    SortingCollection(final SortingCollection.Codec<T> codec, final Comparator<T> comparator,
+                      final int maxRecordsInRam, final boolean printRecordSizeSampling, final Path... tmpDir) {
+        if (maxRecordsInRam <= 0) {
+            throw new IllegalArgumentException("maxRecordsInRam must be > 0");
+        }
+
+        if (tmpDir == null || tmpDir.length == 0) {
+            throw new IllegalArgumentException("At least one temp directory must be provided.");
+        }
+
+        this.tmpDirs = tmpDir;
+        this.codec = codec;
+        this.comparator = comparator;
+        this.maxRecordsInRam = maxRecordsInRam;
+        this.ramRecords = null;
+        this.printRecordSizeSampling = printRecordSizeSampling;
+    }
+
+    /**
+     * Creates the off-heap implementation if it is enabled and supported by the comparator, otherwise this class.
+     */
+    private static <T> SortingCollection<T> create(final Class<T> componentType, final SortingCollection.Codec<T> codec,
+                                                   final Comparator<T> comparator, final int maxRecordsInRam,
+                                                   final boolean printRecordSizeSampling, final Path... tmpDir) {
+        if (Defaults.SORTING_COLLECTION_OFF_HEAP && comparator instanceof KeyedComparator) {
+            return new OffHeapSortingCollection<>(codec, (KeyedComparator<T>) comparator, maxRecordsInRam,
+                    printRecordSizeSampling, tmpDir);
+        }
+        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRam, printRecordSizeSampling, tmpDir);
+    }
+
     public void add(final T rec) {
         if (doneAdding) {
             throw new IllegalStateException("Cannot add after calling doneAdding()");
@@ -273,7 +324,7 @@ public class SortingCollection<T> implements Iterable<T> {
      * Creates a new tmp file on one of the available temp filesystems, registers it for deletion
      * on JVM exit and then returns it.
      */
-    private Path newTempFile() throws IOException {
+    Path newTempFile() throws IOException {
         /* The minimum amount of space free on a temp filesystem to write a file there. */
         return IOUtil.newTempPath("sortingcollection.", ".tmp", this.tmpDirs, IOUtil.FIVE_GBS);
     }
@@ -323,7 +374,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final Comparator<T> comparator,
                                                        final int maxRecordsInRAM,
                                                        final File... tmpDir) {
-        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRAM, false, Arrays.stream(tmpDir).map(File::toPath).toArray(Path[]::new));
+        return create(componentType, codec, comparator, maxRecordsInRAM, false, Arrays.stream(tmpDir).map(File::toPath).toArray(Path[]::new));
 
     }
 
@@ -343,7 +394,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final Comparator<T> comparator,
                                                        final int maxRecordsInRAM,
                                                        final Collection<File> tmpDirs) {
-        return new SortingCollection<>(componentType,
+        return create(componentType,
                 codec,
                 comparator,
                 maxRecordsInRAM,
@@ -367,7 +418,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final int maxRecordsInRAM,
                                                        final boolean printRecordSizeSampling) {
         final Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
-        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRAM, printRecordSizeSampling, tmpDir);
+        return create(componentType, codec, comparator, maxRecordsInRAM, printRecordSizeSampling, tmpDir);
     }
 
     /**
@@ -386,7 +437,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final int maxRecordsInRAM,
                                                        final boolean printRecordSizeSampling,
                                                        final Path... tmpDir) {
-        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRAM, printRecordSizeSampling, tmpDir);
+        return create(componentType, codec, comparator, maxRecordsInRAM, printRecordSizeSampling, tmpDir);
     }
 
     /**
@@ -402,7 +453,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final Comparator<T> comparator,
                                                        final int maxRecordsInRAM) {
         final Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
-        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRAM, false, tmpDir);
+        return create(componentType, codec, comparator, maxRecordsInRAM, false, tmpDir);
     }
 
     /**
@@ -419,7 +470,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                        final Comparator<T> comparator,
                                                        final int maxRecordsInRAM,
                                                        final Path... tmpDir) {
-        return new SortingCollection<>(componentType, codec, comparator, maxRecordsInRAM, false, tmpDir);
+        return create(componentType, codec, comparator, maxRecordsInRAM, false, tmpDir);
     }
 
     /**
@@ -436,7 +487,7 @@ public class SortingCollection<T> implements Iterable<T> {
                                                                 final Comparator<T> comparator,
                                                                 final int maxRecordsInRAM,
                                                                 final Collection<Path> tmpDirs) {
-        return new SortingCollection<>(componentType,
+        return create(componentType,
                 codec,
                 comparator,
                 maxRecordsInRAM,
@@ -444,6 +495,38 @@ public class SortingCollection<T> implements Iterable<T> {
                 tmpDirs.toArray(new Path[tmpDirs.size()]));
     }
 
+    // Since we need to open and buffer all temp files in the sorting collection at once it is important
+    // to have enough memory left to do this. This method checks to make sure that, given the number of files and
+    // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
+    // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
+    // enough memory for buffering it will return zero and all reading will be unbuffered.
+    static int checkMemoryAndAdjustBuffer(int numFiles) {
+        int bufferSize = Defaults.BUFFER_SIZE;
+
+        // garbage collect so that our calculation is accurate.
+        final Runtime rt = Runtime.getRuntime();
+        rt.gc();
+
+        //                             free in heap       space available to expand heap
+        final long allocatableMemory = rt.freeMemory() + (rt.maxMemory() - rt.totalMemory());
+
+        // There is ~20k in overhead per file.
+        final long freeMemory = allocatableMemory - (numFiles * 20 * 1024);
+        // use the floor value from the divide
+        final int memoryPerFile = (int) (freeMemory / numFiles);
+
+        if (memoryPerFile < 0) {
+            log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
+            bufferSize = 0;
+        } else if (bufferSize > memoryPerFile) {
+            log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
+                    StringUtil.humanReadableByteCount(bufferSize),
+                    StringUtil.humanReadableByteCount(memoryPerFile)));
+            bufferSize = memoryPerFile;
+        }
+        return bufferSize;
+    }
+
     /**
      * For iteration when number of records added is less than the threshold for spilling to disk.
      */
@@ -517,38 +600,6 @@ public class SortingCollection<T> implements Iterable<T> {
             }
         }
 
-        // Since we need to open and buffer all temp files in the sorting collection at once it is important
-        // to have enough memory left to do this. This method checks to make sure that, given the number of files and
-        // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
-        // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
-        // enough memory for buffering it will return zero and all reading will be unbuffered.
-        private int checkMemoryAndAdjustBuffer(int numFiles) {
-            int bufferSize = Defaults.BUFFER_SIZE;
-
-            // garbage collect so that our calculation is accurate.
-            final Runtime rt = Runtime.getRuntime();
-            rt.gc();
-
-            //                             free in heap       space available to expand heap
-            final long allocatableMemory = rt.freeMemory() + (rt.maxMemory() - rt.totalMemory());
-
-            // There is ~20k in overhead per file.
-            final long freeMemory = allocatableMemory - (numFiles * 20 * 1024);
-            // use the floor value from the divide
-            final int memoryPerFile = (int) (freeMemory / numFiles);
-
-            if (memoryPerFile < 0) {
-                log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
-                bufferSize = 0;
-            } else if (bufferSize > memoryPerFile) {
-                log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
-                        StringUtil.humanReadableByteCount(bufferSize),
-                        StringUtil.humanReadableByteCount(memoryPerFile)));
-                bufferSize = memoryPerFile;
-            }
-            return bufferSize;
-        }
-
         @Override
         public boolean hasNext() {
             return !this.queue.isEmpty();
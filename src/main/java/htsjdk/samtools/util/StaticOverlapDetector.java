@@ -0,0 +1,299 @@
+package htsjdk.samtools.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, build-once alternative to {@link OverlapDetector}, with the same query semantics, for large sets of
+ * intervals that are queried many times, such as the targets of an exome against the reads of a BAM file.
+ *
+ * The intervals of each sequence are sorted by start into primitive arrays, over which an implicit interval tree is
+ * laid out: the node of the tree at index i has level the number of trailing 1 bits of i, and the array of the
+ * largest end of each subtree is all the tree stores. Queries therefore walk contiguous arrays rather than the nodes
+ * of an {@link IntervalTree}, and {@link #overlapsAny(Locatable)} and {@link #forEachOverlap(Locatable, Consumer)}
+ * do not allocate.
+ * <pre>{@code
+ *    StaticOverlapDetector<Interval> detector = StaticOverlapDetector.create(intervalList);
+ *    boolean anyOverlap = detector.overlapsAny(read);
+ *    detector.forEachOverlap(read, target -> ...);
+ * }</pre>
+ */
+public final class StaticOverlapDetector<T> {
+    // subtrees of at most this level are scanned rather than walked
+    private static final int SCAN_LEVEL = 3;
+
+    private final Map<String, SequenceIntervals<T>> sequences;
+    private final int rhsBuffer;
+
+    private StaticOverlapDetector(final Map<String, SequenceIntervals<T>> sequences, final int rhsBuffer) {
+        this.sequences = sequences;
+        this.rhsBuffer = rhsBuffer;
+    }
+
+    /**
+     * Creates a detector with no trim of the given intervals.
+     */
+    public static <T extends Locatable> StaticOverlapDetector<T> create(final List<T> intervals) {
+        return create(intervals, intervals, 0, 0);
+    }
+
+    /**
+     * Creates a detector with no trim of the intervals of an interval list.
+     */
+    public static StaticOverlapDetector<Interval> create(final IntervalList intervals) {
+        if (intervals == null) {
+            throw new IllegalArgumentException("null intervals");
+        }
+        return create(intervals.getIntervals());
+    }
+
+    /**
+     * Creates a detector of the given objects, each located at the interval with the same index.
+     *
+     * @param lhsBuffer the amount by which to "trim" coordinates of the intervals when calculating overlaps, as for
+     *                  {@link OverlapDetector#OverlapDetector(int, int)}
+     * @param rhsBuffer the amount by which to "trim" coordinates of the queried locatables when calculating overlaps
+     */
+    public static <T> StaticOverlapDetector<T> create(final List<T> objects, final List<? extends Locatable> intervals,
+                                                      final int lhsBuffer, final int rhsBuffer) {
+        if (objects == null) {
+            throw new IllegalArgumentException("null objects");
+        }
+        if (intervals == null) {
+            throw new IllegalArgumentException("null intervals");
+        }
+        if (objects.size() != intervals.size()) {
+            throw new IllegalArgumentException("Objects and intervals must be the same size but were " + objects.size() + " and " + intervals.size());
+        }
+
+        // count the intervals of each sequence, so that their arrays are allocated once
+        final Map<String, int[]> counts = new HashMap<>();
+        for (int i = 0; i < objects.size(); i++) {
+            if (objects.get(i) == null) {
+                throw new IllegalArgumentException("null object");
+            }
+            final Locatable interval = intervals.get(i);
+            if (interval == null) {
+                throw new IllegalArgumentException("null interval");
+            }
+            // Don't put in sequences that have no overlappable bases
+            if (interval.getStart() + lhsBuffer <= interval.getEnd() - lhsBuffer) {
+                counts.computeIfAbsent(interval.getContig(), contig -> new int[1])[0]++;
+            }
+        }
+
+        final Map<String, long[]> keys = new HashMap<>(counts.size() * 2);
+        for (int i = 0; i < objects.size(); i++) {
+            final Locatable interval = intervals.get(i);
+            final int start = interval.getStart() + lhsBuffer;
+            if (start <= interval.getEnd() - lhsBuffer) {
+                final int[] count = counts.get(interval.getContig());
+                final long[] sequenceKeys = keys.computeIfAbsent(interval.getContig(), contig -> new long[count[0]]);
+                // sort by start, and then in the order of the intervals
+                sequenceKeys[sequenceKeys.length - count[0]--] = ((long) start << 32) | i;
+            }
+        }
+
+        final Map<String, SequenceIntervals<T>> sequences = new HashMap<>(keys.size() * 2);
+        for (final Map.Entry<String, long[]> entry : keys.entrySet()) {
+            final long[] sequenceKeys = entry.getValue();
+            Arrays.sort(sequenceKeys);
+            final int n = sequenceKeys.length;
+            final int[] starts = new int[n];
+            final int[] ends = new int[n];
+            final Object[] values = new Object[n];
+            for (int j = 0; j < n; j++) {
+                final int i = (int) sequenceKeys[j];
+                starts[j] = (int) (sequenceKeys[j] >> 32);
+                ends[j] = intervals.get(i).getEnd() - lhsBuffer;
+                values[j] = objects.get(i);
+            }
+            sequences.put(entry.getKey(), new SequenceIntervals<>(starts, ends, values));
+        }
+        return new StaticOverlapDetector<>(sequences, rhsBuffer);
+    }
+
+    /**
+     * Gets all the objects that could be returned by the overlap detector.
+     */
+    public Set<T> getAll() {
+        final Set<T> all = new HashSet<>();
+        for (final SequenceIntervals<T> intervals : sequences.values()) {
+            for (int i = 0; i < intervals.values.length; i++) {
+                all.add(intervals.value(i));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Returns true iff the given locatable overlaps any locatable in this detector, as
+     * {@link OverlapDetector#overlapsAny(Locatable)}.
+     */
+    public boolean overlapsAny(final Locatable locatable) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        return overlapsAny(locatable.getContig(), locatable.getStart(), locatable.getEnd());
+    }
+
+    /**
+     * Returns true iff the interval from start to end, both included, of the given sequence overlaps any locatable in
+     * this detector.
+     */
+    public boolean overlapsAny(final String contig, final int start, final int end) {
+        final SequenceIntervals<T> intervals = sequences.get(contig);
+        final int queryStart = start + rhsBuffer;
+        final int queryEnd = end - rhsBuffer;
+        return intervals != null && queryStart <= queryEnd && !intervals.visit(queryStart, queryEnd, null);
+    }
+
+    /**
+     * Gets the Set of objects that overlap the provided locatable, as {@link OverlapDetector#getOverlaps(Locatable)}.
+     * The returned set may not be modifiable.
+     */
+    public Set<T> getOverlaps(final Locatable locatable) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        final SequenceIntervals<T> intervals = sequences.get(locatable.getContig());
+        final int queryStart = locatable.getStart() + rhsBuffer;
+        final int queryEnd = locatable.getEnd() - rhsBuffer;
+        if (intervals == null || queryStart > queryEnd) {
+            return Collections.emptySet();
+        }
+        final Set<T> matches = new HashSet<>();
+        intervals.visit(queryStart, queryEnd, matches::add);
+        return matches;
+    }
+
+    /**
+     * Gives the objects that overlap the provided locatable to the visitor, in the order of the starts of their
+     * intervals, without allocating. An object located at several overlapping intervals is given once for each of them.
+     */
+    public void forEachOverlap(final Locatable locatable, final Consumer<? super T> visitor) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("null visitor");
+        }
+        final SequenceIntervals<T> intervals = sequences.get(locatable.getContig());
+        final int queryStart = locatable.getStart() + rhsBuffer;
+        final int queryEnd = locatable.getEnd() - rhsBuffer;
+        if (intervals != null && queryStart <= queryEnd) {
+            intervals.visit(queryStart, queryEnd, visitor);
+        }
+    }
+
+    /**
+     * The intervals of a sequence, sorted by start, laid out as an implicit interval tree.
+     */
+    private static final class SequenceIntervals<T> {
+        private final int[] starts;
+        private final int[] ends;
+        private final Object[] values;
+        // the largest end of the subtree of each node
+        private final int[] maxEnds;
+        private final int maxLevel;
+
+        private SequenceIntervals(final int[] starts, final int[] ends, final Object[] values) {
+            this.starts = starts;
+            this.ends = ends;
+            this.values = values;
+            this.maxEnds = new int[starts.length];
+            this.maxLevel = index();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T value(final int i) {
+            return (T) values[i];
+        }
+
+        /**
+         * Computes the largest end of each subtree, leaves first. The last node whose subtree is cut at the end of the
+         * arrays is tracked so that the nodes above it get the largest end of what remains of their right subtree.
+         *
+         * @return the level of the root
+         */
+        private int index() {
+            final int n = starts.length;
+            int lastIndex = 0;
+            int last = 0;
+            for (int i = 0; i < n; i += 2) {
+                lastIndex = i;
+                last = maxEnds[i] = ends[i];
+            }
+            int k;
+            for (k = 1; 1L << k <= n; k++) {
+                final int x = 1 << (k - 1);
+                final long step = (long) x << 2;
+                for (long i = (x << 1) - 1; i < n; i += step) {
+                    final int node = (int) i;
+                    final int leftEnd = maxEnds[node - x];
+                    final int rightEnd = node + x < n ? maxEnds[node + x] : last;
+                    maxEnds[node] = Math.max(ends[node], Math.max(leftEnd, rightEnd));
+                }
+                lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+                if (lastIndex < n && maxEnds[lastIndex] > last) {
+                    last = maxEnds[lastIndex];
+                }
+            }
+            return k - 1;
+        }
+
+        /**
+         * Gives the objects of the intervals that overlap queryStart to queryEnd to the visitor, in order.
+         *
+         * @param visitor the visitor, or null to stop at the first overlapping interval
+         * @return false if there was an overlapping interval and the visitor is null, otherwise true
+         */
+        private boolean visit(final int queryStart, final int queryEnd, final Consumer<? super T> visitor) {
+            return starts.length == 0 || visit((1 << maxLevel) - 1, maxLevel, queryStart, queryEnd, visitor);
+        }
+
+        private boolean visit(final int node, final int level, final int queryStart, final int queryEnd,
+                              final Consumer<? super T> visitor) {
+            final int n = starts.length;
+            if (level <= SCAN_LEVEL) {
+                // small subtree: scan its intervals rather than walk its nodes
+                final int first = node >> level << level;
+                final int last = (int) Math.min(n, first + (1L << (level + 1)) - 1);
+                for (int i = first; i < last && starts[i] <= queryEnd; i++) {
+                    if (ends[i] >= queryStart && !accept(i, visitor)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            final int half = 1 << (level - 1);
+            final int left = node - half;
+            // the largest end of a left subtree cut at the end of the arrays is unknown
+            if ((left >= n || maxEnds[left] >= queryStart) &&
+                    !visit(left, level - 1, queryStart, queryEnd, visitor)) {
+                return false;
+            }
+            if (node < n && starts[node] <= queryEnd) {
+                if (ends[node] >= queryStart && !accept(node, visitor)) {
+                    return false;
+                }
+                return visit(node + half, level - 1, queryStart, queryEnd, visitor);
+            }
+            return true;
+        }
+
+        private boolean accept(final int i, final Consumer<? super T> visitor) {
+            if (visitor == null) {
+                return false;
+            }
+            visitor.accept(value(i));
+            return true;
+        }
+    }
+}
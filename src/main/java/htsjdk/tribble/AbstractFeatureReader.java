@@ -21,11 +21,14 @@ package htsjdk.tribble;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.index.Index;
+import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.tribble.util.TabixUtils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
@@ -34,6 +37,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 /**
  * jrobinso
@@ -215,6 +219,34 @@ public abstract class AbstractFeatureReader<T extends Feature, SOURCE> implement
         return header.getHeaderValue();
     }
 
+    /**
+     * Opens the data file to read its features sequentially: with the wrapper of this reader, decompressing
+     * block-compressed files, and skipping the header if the codec reported where it ends.  Codecs of text formats
+     * that do not report where their header ends leave the header lines at the start of the stream.
+     *
+     * @return a new stream, which the caller must close
+     * @throws IOException if the file cannot be opened
+     */
+    public InputStream openFeatureStream() throws IOException {
+        final InputStream inputStream = ParsingUtils.openInputStream(path, wrapper);
+
+        final PositionalBufferedStream pbs;
+        if (IOUtil.hasBlockCompressedExtension(path)) {
+            // Gzipped -- we need to buffer the GZIPInputStream methods as this class makes read() calls,
+            // and seekableStream does not support single byte reads
+            final InputStream is = new GZIPInputStream(new BufferedInputStream(inputStream, 512000));
+            pbs = new PositionalBufferedStream(is, 1000);  // Small buffer as this is buffered already.
+        } else {
+            pbs = new PositionalBufferedStream(inputStream, 512000);
+        }
+        /*
+         * The header was already read from the original source in the constructor; don't read it again, since some codecs keep state
+         * about its initialization.  Instead, skip that part of the stream.
+         */
+        pbs.skip(header.getHeaderEnd());
+        return pbs;
+    }
+
     static class EmptyIterator<T extends Feature> implements CloseableTribbleIterator<T> {
         @Override public Iterator<T> iterator() { return this; }
         @Override public boolean hasNext() { return false; }
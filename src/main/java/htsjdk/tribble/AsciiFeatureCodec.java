@@ -73,6 +73,17 @@ public abstract class AsciiFeatureCodec<T extends Feature> extends AbstractFeatu
     /** @see AsciiFeatureCodec#decode(htsjdk.tribble.readers.LineIterator) */
     public abstract T decode(String s);
 
+    /**
+     * Decode a line only as much as is needed to get the contig, start and end of its feature, as when indexing.
+     * Codecs that can do it faster than {@link #decode(String)} override this method.
+     *
+     * @param line the line of text for the record
+     * @return a feature, (not guaranteed complete) that has the correct location, or null if the line has no feature
+     */
+    public Feature decodeLoc(final String line) {
+        return decode(line);
+    }
+
     @Override
     public FeatureCodecHeader readHeader(final LineIterator lineIterator) throws IOException {
         // TODO: Track header end here, rather than assuming there isn't one.
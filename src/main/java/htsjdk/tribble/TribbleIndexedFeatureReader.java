@@ -324,23 +324,7 @@ public class TribbleIndexedFeatureReader<T extends Feature, SOURCE> extends Abst
          * @throws IOException
          */
         public WFIterator() throws IOException {
-            final InputStream inputStream = ParsingUtils.openInputStream(path, wrapper);
-
-            final PositionalBufferedStream pbs;
-            if (IOUtil.hasBlockCompressedExtension(path)) {
-                // Gzipped -- we need to buffer the GZIPInputStream methods as this class makes read() calls,
-                // and seekableStream does not support single byte reads
-                final InputStream is = new GZIPInputStream(new BufferedInputStream(inputStream, 512000));
-                pbs = new PositionalBufferedStream(is, 1000);  // Small buffer as this is buffered already.
-            } else {
-                pbs = new PositionalBufferedStream(inputStream, 512000);
-            }
-            /*
-             * The header was already read from the original source in the constructor; don't read it again, since some codecs keep state
-             * about its initialization.  Instead, skip that part of the stream.
-             */
-            pbs.skip(header.getHeaderEnd());
-            source = codec.makeSourceFromStream(pbs);
+            source = codec.makeSourceFromStream(openFeatureStream());
             readNextRecord();
         }
 
@@ -32,6 +32,7 @@ import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.LocationAware;
+import htsjdk.tribble.AsciiFeatureCodec;
 import htsjdk.tribble.CloseableTribbleIterator;
 import htsjdk.tribble.Feature;
 import htsjdk.tribble.FeatureCodec;
@@ -40,6 +41,7 @@ import htsjdk.tribble.index.interval.IntervalIndexCreator;
 import htsjdk.tribble.index.interval.IntervalTreeIndex;
 import htsjdk.tribble.index.linear.LinearIndex;
 import htsjdk.tribble.index.linear.LinearIndexCreator;
+import htsjdk.tribble.index.tabix.ParallelTabixIndexCreator;
 import htsjdk.tribble.index.tabix.TabixFormat;
 import htsjdk.tribble.index.tabix.TabixIndex;
 import htsjdk.tribble.index.tabix.TabixIndexCreator;
@@ -61,6 +63,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -502,6 +505,27 @@ public class IndexFactory {
         return createTabixIndex(inputPath, codec, codec.getTabixFormat(), sequenceDictionary);
     }
 
+    /**
+     * Creates the same index as {@link #createTabixIndex(Path, FeatureCodec, TabixFormat, SAMSequenceDictionary)},
+     * decoding the parts of a block compressed file in parallel with a {@link ParallelTabixIndexCreator}.
+     *
+     * @param inputPath The path to be indexed.
+     * @param codecSupplier supplies a new codec for each part of inputPath decoded in parallel.
+     * @param tabixFormat Header fields for TabixIndex to be produced.
+     * @param sequenceDictionary May be null, but if present may reduce memory footprint for index creation.  Features
+     *                           in inputFile must be in the order defined by sequenceDictionary, if it is present.
+     * @param parallelism the number of threads on which inputPath is decoded.
+     */
+    public static TabixIndex createTabixIndex(final Path inputPath,
+                                              final Supplier<? extends AsciiFeatureCodec<?>> codecSupplier,
+                                              final TabixFormat tabixFormat,
+                                              final SAMSequenceDictionary sequenceDictionary,
+                                              final int parallelism) {
+        return new ParallelTabixIndexCreator(codecSupplier, tabixFormat, sequenceDictionary)
+                .setParallelism(parallelism)
+                .createIndex(inputPath);
+    }
+
     private static Index createIndex(final Path inputPath, final FeatureIterator iterator, final IndexCreator creator) {
         Feature lastFeature = null;
         Feature currentFeature;
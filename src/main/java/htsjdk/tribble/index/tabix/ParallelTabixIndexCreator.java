@@ -0,0 +1,554 @@
+package htsjdk.tribble.index.tabix;
+
+import htsjdk.samtools.Bin;
+import htsjdk.samtools.BinningIndexBuilder;
+import htsjdk.samtools.BinningIndexContent;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.GenomicIndexUtil;
+import htsjdk.samtools.LinearIndex;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.seekablestream.SeekableStreamFactory;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.LocationAware;
+import htsjdk.tribble.AsciiFeatureCodec;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Creates the {@link TabixIndex} of a block compressed text file in parallel. The index is the same as the one
+ * {@link IndexFactory#createTabixIndex(Path, htsjdk.tribble.FeatureCodec, TabixFormat, SAMSequenceDictionary)}
+ * creates, and is written to the same bytes.
+ *
+ * The file is split at BGZF block boundaries into shards of about the same number of compressed bytes. Each shard is
+ * inflated and decoded with its own stream and codec, obtained from the given supplier, on a pool of
+ * {@link #setParallelism(int)} threads. A line belongs to the shard its line terminator is in, so that each line is
+ * decoded by exactly one shard. Only the location of each line is decoded, with
+ * {@link AsciiFeatureCodec#decodeLoc(String)}, and the locations are indexed as they are decoded: each shard builds
+ * the coalesced chunks of the bins and the linear index of each run of features on the same reference sequence, so
+ * that the memory needed grows with the number of bins rather than with the number of features. The runs of all the
+ * shards are then checked and merged in file order, as {@link IndexFactory} would have built them.
+ *
+ * Files that are not block compressed are indexed serially by {@link IndexFactory}.
+ */
+public final class ParallelTabixIndexCreator {
+    // shards per thread by default, so that shards with more lines than others do not leave threads idle
+    private static final int DEFAULT_SHARDS_PER_THREAD = 4;
+    // smallest default shard, so that small files are not split into shards that each read the header for nothing
+    private static final long MIN_DEFAULT_SHARD_SIZE = 1L << 20;
+
+    private final Supplier<? extends AsciiFeatureCodec<?>> codecSupplier;
+    private final TabixFormat formatSpec;
+    private final SAMSequenceDictionary sequenceDictionary;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long shardSize = 0;
+
+    /**
+     * @param codecSupplier supplies a new codec for each shard, for example {@code VCFCodec::new}
+     * @param formatSpec header fields of the index
+     * @param sequenceDictionary may be null, but if present all features must refer to sequences in the dictionary, in
+     *                           its order. It is used to reduce the memory needed to build the index.
+     */
+    public ParallelTabixIndexCreator(final Supplier<? extends AsciiFeatureCodec<?>> codecSupplier,
+                                     final TabixFormat formatSpec,
+                                     final SAMSequenceDictionary sequenceDictionary) {
+        ValidationUtils.nonNull(codecSupplier, "codecSupplier");
+        ValidationUtils.nonNull(formatSpec, "formatSpec");
+        this.codecSupplier = codecSupplier;
+        this.formatSpec = formatSpec.clone();
+        this.sequenceDictionary = sequenceDictionary;
+    }
+
+    /**
+     * @param parallelism the number of threads on which shards are decoded. Defaults to the number of processors.
+     * @return this creator
+     */
+    public ParallelTabixIndexCreator setParallelism(final int parallelism) {
+        ValidationUtils.validateArg(parallelism > 0, () -> "parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param shardSize the number of compressed bytes of each shard, or 0 to split files into about 4 shards per
+     *                  thread, of at least 1MB
+     * @return this creator
+     */
+    public ParallelTabixIndexCreator setShardSize(final long shardSize) {
+        ValidationUtils.validateArg(shardSize >= 0, () -> "shardSize must not be negative: " + shardSize);
+        this.shardSize = shardSize;
+        return this;
+    }
+
+    /**
+     * @param inputPath the file to index
+     * @return the index of the file
+     * @throws TribbleException.MalformedFeatureFile if the features of the file are not sorted, their sequences are
+     * not contiguous, or a sequence is not in the sequence dictionary
+     */
+    public TabixIndex createIndex(final Path inputPath) {
+        ValidationUtils.nonNull(inputPath, "input path must be non-null");
+        final AsciiFeatureCodec<?> firstCodec = codecSupplier.get();
+        // as IndexFactory, work with codecs that store their configuration and data separately
+        final Path dataPath;
+        try {
+            dataPath = IOUtil.getPath(firstCodec.getPathToDataFile(inputPath.toUri().toString()));
+        } catch (final IOException e) {
+            throw new TribbleException("Failed while creating an index due to a problem converting String to Path", e);
+        }
+        if (!IOUtil.hasBlockCompressedExtension(dataPath)) {
+            return IndexFactory.createTabixIndex(inputPath, firstCodec, formatSpec, sequenceDictionary);
+        }
+
+        // the first shard starts after the header, and continues reading the stream the header is read from
+        final BlockCompressedInputStream firstStream = openStream(dataPath);
+        final LocationAware firstSource;
+        final long headerEnd;
+        final long[] shardStarts;
+        try {
+            firstSource = firstCodec.makeIndexableSourceFromStream(firstStream);
+            readHeader(firstCodec, firstSource);
+            headerEnd = firstSource.getPosition();
+            shardStarts = findShardStarts(dataPath, headerEnd);
+        } catch (final RuntimeException e) {
+            CloserUtil.close(firstStream);
+            throw e;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, shardStarts.length)), new DaemonThreadFactory());
+        try {
+            final List<Future<Shard>> shardFutures = new ArrayList<>(shardStarts.length);
+            for (int i = 0; i < shardStarts.length; i++) {
+                final long shardEnd = i + 1 < shardStarts.length ? shardStarts[i + 1] : Long.MAX_VALUE;
+                if (i == 0) {
+                    shardFutures.add(executor.submit(() -> {
+                        try {
+                            return readShard(dataPath, firstCodec, firstSource, false, shardEnd);
+                        } finally {
+                            firstCodec.close((LineIterator) firstSource);
+                        }
+                    }));
+                } else {
+                    final long shardStart = shardStarts[i];
+                    shardFutures.add(executor.submit(() -> readShard(dataPath, shardStart, shardEnd)));
+                }
+            }
+            return buildIndex(dataPath, getAll(shardFutures, dataPath), headerEnd);
+        } finally {
+            executor.shutdownNow();
+            CloserUtil.close(firstStream);
+        }
+    }
+
+    private static BlockCompressedInputStream openStream(final Path path) {
+        try {
+            if (!IOUtil.isBlockCompressed(path, true)) {
+                throw new TribbleException.MalformedFeatureFile("Input file is not in valid block compressed format.",
+                        path.toString());
+            }
+            return new BlockCompressedInputStream(openSeekableStream(path));
+        } catch (final FileNotFoundException e) {
+            throw new TribbleException.FeatureFileDoesntExist("Unable to open the input file, most likely the file doesn't exist.",
+                    path.toString());
+        } catch (final IOException e) {
+            throw new TribbleException.MalformedFeatureFile("Error initializing stream", path.toString(), e);
+        }
+    }
+
+    private static SeekableStream openSeekableStream(final Path path) throws IOException {
+        return SeekableStreamFactory.getInstance().getStreamFor(path.toUri().toString());
+    }
+
+    private static void readHeader(final AsciiFeatureCodec<?> codec, final LocationAware source) {
+        try {
+            codec.readHeader((LineIterator) source);
+        } catch (final IOException e) {
+            throw new TribbleException.InvalidHeader("Error reading header " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the virtual file pointers at which the shards start: the end of the header, followed by the addresses of
+     * the blocks after the header at which the file is split
+     */
+    private long[] findShardStarts(final Path path, final long headerEnd) {
+        final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        final List<Long> starts = new ArrayList<>();
+        starts.add(headerEnd);
+        try (final SeekableStream stream = openSeekableStream(path)) {
+            final long length = stream.length();
+            final long size = shardSize > 0 ? shardSize :
+                    Math.max(MIN_DEFAULT_SHARD_SIZE, length / ((long) parallelism * DEFAULT_SHARDS_PER_THREAD));
+            long blockAddress = BlockCompressedFilePointerUtil.getBlockAddress(headerEnd);
+            long nextShardAddress = blockAddress + size;
+            while (blockAddress < length) {
+                stream.seek(blockAddress);
+                int count = 0;
+                while (count < header.length) {
+                    final int n = stream.read(header, count, header.length - count);
+                    if (n <= 0) {
+                        break;
+                    }
+                    count += n;
+                }
+                if (count < header.length ||
+                        header[0] != BlockCompressedStreamConstants.GZIP_ID1 ||
+                        (header[1] & 0xFF) != BlockCompressedStreamConstants.GZIP_ID2 ||
+                        header[12] != BlockCompressedStreamConstants.BGZF_ID1 ||
+                        header[13] != BlockCompressedStreamConstants.BGZF_ID2) {
+                    throw new TribbleException.MalformedFeatureFile("Invalid BGZF block at " + blockAddress, path.toString());
+                }
+                final int blockLength = ((header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET] & 0xFF) |
+                        ((header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET + 1] & 0xFF) << 8)) + 1;
+                // empty blocks, such as the terminator block, have no lines to start a shard with
+                if (blockAddress >= nextShardAddress && blockLength != BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length) {
+                    starts.add(BlockCompressedFilePointerUtil.makeFilePointer(blockAddress));
+                    nextShardAddress = blockAddress + size;
+                }
+                blockAddress += blockLength;
+            }
+        } catch (final IOException e) {
+            throw new TribbleException.MalformedFeatureFile("Unable to read the blocks of the file", path.toString(), e);
+        }
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private Shard readShard(final Path path, final long shardStart, final long shardEnd) throws IOException {
+        final AsciiFeatureCodec<?> codec = codecSupplier.get();
+        final BlockCompressedInputStream headerStream = openStream(path);
+        try {
+            readHeader(codec, codec.makeIndexableSourceFromStream(headerStream));
+        } finally {
+            CloserUtil.close(headerStream);
+        }
+        final BlockCompressedInputStream stream = openStream(path);
+        try {
+            stream.seek(shardStart);
+            final LocationAware source = codec.makeIndexableSourceFromStream(stream);
+            try {
+                return readShard(path, codec, source, true, shardEnd);
+            } finally {
+                codec.close((LineIterator) source);
+            }
+        } finally {
+            CloserUtil.close(stream);
+        }
+    }
+
+    /**
+     * Decodes and indexes the locations of the lines of a shard, from the one after the line the shard starts in,
+     * unless it starts at the end of the header, to the one that ends after shardEnd, included. The chunk of the first
+     * feature starts where the shard does, since the end of the line of the previous feature is not known yet. A
+     * feature that starts before the previous one, or is on a sequence missing from the sequence dictionary, stops the
+     * shard, with the error to report if the features before it are valid.
+     */
+    private Shard readShard(final Path path, final AsciiFeatureCodec<?> codec, final LocationAware source,
+                            final boolean skipFirstLine, final long shardEnd) {
+        final LineIterator lines = (LineIterator) source;
+        final Shard shard = new Shard();
+        if (skipFirstLine && !codec.isDone(lines)) {
+            lines.next();
+        }
+        long position = source.getPosition();
+        shard.firstChunkStart = position;
+        long chunkStart = position;
+        Run run = null;
+        while (position <= shardEnd && !codec.isDone(lines)) {
+            final Feature feature = codec.decodeLoc(lines.next());
+            position = source.getPosition();
+            if (feature == null) {
+                continue;
+            }
+            final String contig = feature.getContig();
+            if (run == null || !run.contig.equals(contig)) {
+                final SAMSequenceRecord sequenceRecord = sequenceDictionary == null ? null :
+                        sequenceDictionary.getSequence(contig);
+                if (sequenceDictionary != null && sequenceRecord == null) {
+                    shard.error = new TribbleException.MalformedFeatureFile("Sequence " + contig +
+                            " of the record starting at " + feature.getStart() + " is not in the sequence dictionary",
+                            path.toString());
+                    break;
+                }
+                if (run != null) {
+                    run.finish();
+                }
+                final int sequenceLength = sequenceRecord == null ? 0 : sequenceRecord.getSequenceLength();
+                run = new Run(contig, feature.getStart(), feature.getEnd(), sequenceLength);
+                shard.runs.add(run);
+            } else if (feature.getStart() < run.lastStart) {
+                shard.error = new TribbleException.MalformedFeatureFile("Input file is not sorted by start position. \n" +
+                        "We saw a record with a start of " + contig + ":" + feature.getStart() +
+                        " after a record with a start of " + contig + ":" + run.lastStart, path.toString());
+                break;
+            }
+            run.add(feature.getStart(), feature.getEnd(), chunkStart, position);
+            chunkStart = position;
+        }
+        if (run != null) {
+            run.finish();
+        }
+        shard.lastChunkEnd = chunkStart;
+        shard.endPosition = position;
+        return shard;
+    }
+
+    /**
+     * Checks the runs of the shards in file order, and merges the index content of each reference sequence.
+     */
+    private TabixIndex buildIndex(final Path path, final List<Shard> shards, final long headerEnd) {
+        final List<String> sequenceNames = new ArrayList<>();
+        final List<BinningIndexContent> contents = new ArrayList<>();
+        final Map<String, String> firstFeatures = new HashMap<>();
+        String lastContig = null;
+        int lastStart = 0;
+        int lastEnd = 0;
+        // the end of the line of the last feature of the previous shards, where the chunk of the first feature starts
+        long previousChunkEnd = headerEnd;
+        ContentMerger merger = null;
+        for (final Shard shard : shards) {
+            for (final Run run : shard.runs) {
+                if (run.contig.equals(lastContig)) {
+                    if (run.firstStart < lastStart) {
+                        throw new TribbleException.MalformedFeatureFile("Input file is not sorted by start position. \n" +
+                                "We saw a record with a start of " + run.contig + ":" + run.firstStart +
+                                " after a record with a start of " + lastContig + ":" + lastStart, path.toString());
+                    }
+                } else {
+                    final String current = run.contig + ":" + run.firstStart + "-" + run.firstEnd;
+                    if (firstFeatures.containsKey(run.contig)) {
+                        throw new TribbleException.MalformedFeatureFile("Input file must have contiguous chromosomes." +
+                                " Saw feature " + firstFeatures.get(run.contig) +
+                                " followed later by " + lastContig + ":" + lastStart + "-" + lastEnd +
+                                " and then " + current, path.toString());
+                    }
+                    firstFeatures.put(run.contig, current);
+                    if (merger != null) {
+                        contents.add(merger.generateIndexContent());
+                    }
+                    merger = new ContentMerger(sequenceNames.size());
+                    sequenceNames.add(run.contig);
+                }
+                merger.add(run.content, shard.firstChunkStart, previousChunkEnd);
+                lastContig = run.contig;
+                lastStart = run.lastStart;
+                lastEnd = run.lastEnd;
+            }
+            if (shard.error != null) {
+                throw shard.error;
+            }
+            if (!shard.runs.isEmpty()) {
+                previousChunkEnd = shard.lastChunkEnd;
+            }
+        }
+        if (merger != null) {
+            // the chunk of the last feature ends at the end of the file, after any lines without a feature
+            merger.setLastChunkEnd(lastStart, lastEnd, shards.get(shards.size() - 1).endPosition);
+            contents.add(merger.generateIndexContent());
+        }
+        return new TabixIndex(formatSpec, sequenceNames, contents.toArray(new BinningIndexContent[0]));
+    }
+
+    private static <T> List<T> getAll(final List<Future<T>> futures, final Path path) {
+        final List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (final Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TribbleException("Interrupted while indexing " + path, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new TribbleException("Error indexing " + path, e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * The runs of features on the same reference sequence of a shard, in file order.
+     */
+    private static final class Shard {
+        private final List<Run> runs = new ArrayList<>();
+        // where the chunk of the first feature was started, to be replaced with the end of the previous chunk
+        private long firstChunkStart;
+        // the end of the line of the last feature of the shard
+        private long lastChunkEnd;
+        // position after the last line of the shard
+        private long endPosition;
+        // the error that stopped the shard, if any
+        private TribbleException error;
+    }
+
+    /**
+     * A run of features on the same reference sequence, and the bins and linear index built from them.
+     */
+    private static final class Run {
+        private final String contig;
+        private final int firstStart;
+        private final int firstEnd;
+        private int lastStart;
+        private int lastEnd;
+        private BinningIndexBuilder indexBuilder;
+        private final LocusToBeIndexed locus = new LocusToBeIndexed();
+        private BinningIndexContent content;
+
+        private Run(final String contig, final int firstStart, final int firstEnd, final int sequenceLength) {
+            this.contig = contig;
+            this.firstStart = firstStart;
+            this.firstEnd = firstEnd;
+            // uninitialized windows of the linear index are left as -1, so that the runs can be merged
+            this.indexBuilder = new BinningIndexBuilder(0, sequenceLength, false);
+        }
+
+        private void add(final int start, final int end, final long startPosition, final long endPosition) {
+            locus.start = start;
+            locus.end = end;
+            locus.startPosition = startPosition;
+            locus.endPosition = endPosition;
+            indexBuilder.processFeature(locus);
+            lastStart = start;
+            lastEnd = end;
+        }
+
+        private void finish() {
+            content = indexBuilder.generateIndexContent();
+            indexBuilder = null;
+        }
+    }
+
+    /**
+     * Merges the index contents of the runs of a reference sequence, in file order, into the content
+     * {@link BinningIndexBuilder} would have built from all their features: the first chunk of each bin of a run is
+     * coalesced with the last chunk of the bin so far if they are in the same or adjacent blocks, and the linear
+     * index keeps the smallest offset of each window.
+     */
+    private static final class ContentMerger {
+        private final int referenceIndex;
+        private Bin[] bins;
+        private int binsSeen = 0;
+        private final long[] index = new long[LinearIndex.MAX_LINEAR_INDEX_SIZE];
+        private int largestIndexSeen = -1;
+
+        private ContentMerger(final int referenceIndex) {
+            this.referenceIndex = referenceIndex;
+            Arrays.fill(index, -1);
+        }
+
+        /**
+         * @param content the content of a run
+         * @param firstChunkStart the start of the chunk of the first feature of the shard of the run
+         * @param previousChunkEnd the actual start of that chunk, the end of the chunk of the previous feature
+         */
+        private void add(final BinningIndexContent content, final long firstChunkStart, final long previousChunkEnd) {
+            final BinningIndexContent.BinList runBins = content.getBins();
+            if (bins == null) {
+                bins = new Bin[runBins.maxBinNumber + 1];
+            }
+            for (final Bin runBin : runBins) {
+                Bin bin = bins[runBin.getBinNumber()];
+                if (bin == null) {
+                    bin = new Bin(referenceIndex, runBin.getBinNumber());
+                    bins[runBin.getBinNumber()] = bin;
+                    binsSeen++;
+                }
+                for (final Chunk chunk : runBin.getChunkList()) {
+                    bin.addChunk(chunk.getChunkStart() == firstChunkStart ?
+                            new Chunk(previousChunkEnd, chunk.getChunkEnd()) : chunk);
+                }
+            }
+            final long[] entries = content.getLinearIndex().getIndexEntries();
+            for (int i = 0; i < entries.length; i++) {
+                final long offset = entries[i] == firstChunkStart ? previousChunkEnd : entries[i];
+                if (offset != -1 && (index[i] == -1 || offset < index[i])) {
+                    index[i] = offset;
+                }
+            }
+            largestIndexSeen = Math.max(largestIndexSeen, entries.length - 1);
+        }
+
+        /**
+         * Ends the chunk of the last feature, which is the last chunk of its bin, at the given position.
+         */
+        private void setLastChunkEnd(final int start, final int end, final long chunkEnd) {
+            final Bin bin = bins[GenomicIndexUtil.regionToBin(start - 1, end <= 0 ? start : end)];
+            final List<Chunk> chunks = bin.getChunkList();
+            final Chunk lastChunk = new Chunk(bin.getLastChunk().getChunkStart(), chunkEnd);
+            chunks.set(chunks.size() - 1, lastChunk);
+            bin.setLastChunk(lastChunk);
+        }
+
+        /**
+         * @return the content, with the uninitialized windows of the linear index filled in as by
+         * {@link BinningIndexBuilder#generateIndexContent()}
+         */
+        private BinningIndexContent generateIndexContent() {
+            final long[] linearIndex = new long[largestIndexSeen + 1];
+            long lastNonZeroOffset = 0;
+            for (int i = 0; i <= largestIndexSeen; i++) {
+                if (index[i] == -1) {
+                    linearIndex[i] = lastNonZeroOffset;
+                } else {
+                    linearIndex[i] = index[i];
+                    lastNonZeroOffset = index[i];
+                }
+            }
+            return new BinningIndexContent(referenceIndex, new BinningIndexContent.BinList(bins, binsSeen),
+                    new LinearIndex(referenceIndex, 0, linearIndex));
+        }
+    }
+
+    /**
+     * The location of a feature, reused for all the features given to a {@link BinningIndexBuilder}.
+     */
+    private static final class LocusToBeIndexed implements BinningIndexBuilder.FeatureToBeIndexed {
+        private int start;
+        private int end;
+        private long startPosition;
+        private long endPosition;
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public Integer getIndexingBin() {
+            return null;
+        }
+
+        @Override
+        public Chunk getChunk() {
+            return new Chunk(startPosition, endPosition);
+        }
+    }
+}
@@ -25,6 +25,7 @@
 
 package htsjdk.variant.bcf2;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.BinaryFeatureCodec;
 import htsjdk.tribble.Feature;
@@ -42,6 +43,7 @@ import htsjdk.variant.vcf.VCFCodec;
 import htsjdk.variant.vcf.VCFCompoundHeaderLine;
 import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFContigHeaderLine;
+import htsjdk.variant.vcf.VCFFieldSelection;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 
@@ -102,6 +104,21 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
      */
     private GenotypeBuilder[] builders = null;
 
+    /**
+     * Should genotypes be decoded into {@link htsjdk.variant.variantcontext.GenotypeColumns} rather than with the builders?
+     */
+    private boolean columnarGenotypes = Defaults.COLUMNAR_GENOTYPES;
+
+    /**
+     * If non-null, only the fields it selects are decoded from the records
+     */
+    private VCFFieldSelection fieldSelection = null;
+
+    /**
+     * The builders of the samples of the last sample subset genotypes were decoded for
+     */
+    private BCF2LazyGenotypesDecoder.BuilderRuns builderRuns = null;
+
     // for error handling
     private int recordNo = 0;
     private int pos = 0;
@@ -131,8 +148,12 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
             decodeSiteLoc(builder);
             final SitesInfoForDecoding info = decodeSitesExtendedInfo(builder);
 
-            decoder.readNextBlock(genotypeBlockSize, inputStream);
-            createLazyGenotypesDecoder(info, builder);
+            if ( fieldSelection == null || fieldSelection.includesGenotypes() ) {
+                decoder.readNextBlock(genotypeBlockSize, inputStream);
+                createLazyGenotypesDecoder(info, builder);
+            } else {
+                decoder.skipNextBlock(genotypeBlockSize, inputStream);
+            }
             return builder.fullyDecoded(true).make();
         } catch ( IOException e ) {
             throw new TribbleException("Failed to read BCF file", e);
@@ -407,6 +428,12 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         final Map<String, Object> infoFieldEntries = new HashMap<String, Object>(numInfoFields);
         for ( int i = 0; i < numInfoFields; i++ ) {
             final String key = getDictionaryString();
+            if ( fieldSelection != null && !fieldSelection.isInfoKeySelected(key) ) {
+                // skip the bytes of the values without decoding them
+                final byte typeDescriptor = decoder.readTypeDescriptor();
+                decoder.skipTypedValues(typeDescriptor, decoder.decodeNumberOfElements(typeDescriptor));
+                continue;
+            }
             Object value = decoder.decodeTypedValue();
             final VCFCompoundHeaderLine metaData = VariantContextUtils.getMetaDataForField(header, key);
             if ( metaData.getType() == VCFHeaderLineType.Flag ) value = true; // special case for flags
@@ -433,10 +460,13 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
                                              final VariantContextBuilder builder ) {
         if (siteInfo.nSamples > 0) {
             final LazyGenotypesContext.LazyParser lazyParser =
-                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, builders);
+                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, builders, columnarGenotypes);
 
-            final LazyData lazyData = new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes());
-            final LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, lazyData, header.getNGenotypeSamples());
+            final boolean allFields = fieldSelection == null || fieldSelection.selectsAllGenotypeData();
+            final LazyData lazyData = new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes(), allFields);
+            final VCFFieldSelection.SampleSubset sampleSubset = fieldSelection == null ? null : fieldSelection.getSampleSubset(header);
+            final int nGenotypes = sampleSubset == null ? header.getNGenotypeSamples() : sampleSubset.size();
+            final LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, lazyData, nGenotypes);
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -450,11 +480,20 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         final public VCFHeader header;
         final public int nGenotypeFields;
         final public byte[] bytes;
+        /**
+         * Are all the genotype fields of all samples in bytes decoded from them?  Only then may bytes be written as is.
+         */
+        final public boolean allFieldsDecoded;
 
         public LazyData(final VCFHeader header, final int nGenotypeFields, final byte[] bytes) {
+            this(header, nGenotypeFields, bytes, true);
+        }
+
+        public LazyData(final VCFHeader header, final int nGenotypeFields, final byte[] bytes, final boolean allFieldsDecoded) {
             this.header = header;
             this.nGenotypeFields = nGenotypeFields;
             this.bytes = bytes;
+            this.allFieldsDecoded = allFieldsDecoded;
         }
     }
 
@@ -494,6 +533,47 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         return header;
     }
 
+    /**
+     * Sets whether genotypes are decoded into packed, per-sample columns, from which {@link htsjdk.variant.variantcontext.Genotype}s
+     * are only created when they are accessed one by one, rather than into a list of genotypes.  Defaults to
+     * {@link Defaults#COLUMNAR_GENOTYPES}.
+     *
+     * @see htsjdk.variant.variantcontext.GenotypesContext#getColumns()
+     */
+    public void setColumnarGenotypes(final boolean columnarGenotypes) {
+        this.columnarGenotypes = columnarGenotypes;
+    }
+
+    public boolean isColumnarGenotypes() {
+        return columnarGenotypes;
+    }
+
+    /**
+     * Only decode the fields and samples selected by fieldSelection from the records.  The values of the other fields
+     * and samples are skipped without being decoded, as are the genotypes of all samples if they are not included.
+     *
+     * @param fieldSelection the fields to decode, or null to decode all of them
+     */
+    public void setFieldSelection(final VCFFieldSelection fieldSelection) {
+        this.fieldSelection = fieldSelection;
+    }
+
+    /**
+     * @return the fields decoded from the records, or null if all of them are
+     */
+    public VCFFieldSelection getFieldSelection() {
+        return fieldSelection;
+    }
+
+    /**
+     * @return the builders of the samples of sampleSubset, grouped in runs of consecutive samples
+     */
+    BCF2LazyGenotypesDecoder.BuilderRuns getBuilderRuns(final VCFFieldSelection.SampleSubset sampleSubset) {
+        if ( builderRuns == null || builderRuns.sampleSubset != sampleSubset )
+            builderRuns = new BCF2LazyGenotypesDecoder.BuilderRuns(sampleSubset, builders);
+        return builderRuns;
+    }
+
     protected BCF2GenotypeFieldDecoders.Decoder getGenotypeFieldDecoder(final String field) {
         return gtFieldDecoders.getDecoder(field);
     }
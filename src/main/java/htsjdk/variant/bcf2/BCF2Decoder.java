@@ -199,6 +199,21 @@ public final class BCF2Decoder {
         }
     }
 
+    /**
+     * Skip the size values of the given type, whose type descriptor and number of elements were already read,
+     * without decoding them
+     *
+     * @param typeDescriptor the type descriptor of the values
+     * @param size the number of values
+     */
+    public final void skipTypedValues(final byte typeDescriptor, final int size) {
+        if ( size == 0 )
+            return;
+        final long nBytes = (long) size * BCF2Utils.decodeType(typeDescriptor).getSizeInBytes();
+        if ( recordStream.skip(nBytes) != nBytes )
+            throw new TribbleException("Failed to skip " + nBytes + " bytes of typed values, at the end of the record");
+    }
+
     public final int decodeNumberOfElements(final byte typeDescriptor) throws IOException {
         if ( BCF2Utils.sizeIsOverflow(typeDescriptor) )
             // -1 ensures we explode immediately with a bad size if the result is missing
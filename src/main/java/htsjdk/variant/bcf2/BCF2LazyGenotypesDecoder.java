@@ -29,10 +29,15 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFFieldSelection;
+import htsjdk.variant.vcf.VCFHeader;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -50,14 +55,28 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
     private final int nSamples;
     private final int nFields;
     private final GenotypeBuilder[] builders;
+    // decode into GenotypeColumns rather than with the builders?
+    private final boolean columnar;
+    // the fields to decode, or null to decode all of them
+    private final VCFFieldSelection fieldSelection;
+    // the samples whose genotypes are decoded, or null to decode those of all samples
+    private final VCFFieldSelection.SampleSubset sampleSubset;
 
     BCF2LazyGenotypesDecoder(final BCF2Codec codec, final List<Allele> alleles, final int nSamples,
                              final int nFields, final GenotypeBuilder[] builders) {
+        this(codec, alleles, nSamples, nFields, builders, false);
+    }
+
+    BCF2LazyGenotypesDecoder(final BCF2Codec codec, final List<Allele> alleles, final int nSamples,
+                             final int nFields, final GenotypeBuilder[] builders, final boolean columnar) {
         this.codec = codec;
         this.siteAlleles = alleles;
         this.nSamples = nSamples;
         this.nFields = nFields;
         this.builders = builders;
+        this.columnar = columnar;
+        this.fieldSelection = codec.getFieldSelection();
+        this.sampleSubset = fieldSelection == null ? null : fieldSelection.getSampleSubset(codec.getHeader());
     }
 
     @Override
@@ -67,6 +86,12 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
             // load our byte[] data into the decoder
             final BCF2Decoder decoder = new BCF2Decoder(((BCF2Codec.LazyData)data).bytes);
 
+            if ( columnar )
+                return parseColumns(decoder);
+
+            if ( sampleSubset != null )
+                return parseSampleSubset(decoder);
+
             for ( int i = 0; i < nSamples; i++ )
                 builders[i].reset(true);
 
@@ -78,6 +103,8 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
                 // the type of each element
                 final byte typeDescriptor = decoder.readTypeDescriptor();
                 final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+                if ( skipUnselectedField(decoder, field, typeDescriptor, numElements) )
+                    continue;
                 final BCF2GenotypeFieldDecoders.Decoder fieldDecoder = codec.getGenotypeFieldDecoder(field);
                 try {
                     fieldDecoder.decode(siteAlleles, field, decoder, typeDescriptor, numElements, builders);
@@ -96,4 +123,201 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
             throw new TribbleException("Unexpected IOException parsing already read genotypes data block", e);
         }
     }
+
+    /**
+     * Decodes the genotypes of the samples of the subset only, skipping over the values of the others
+     */
+    private LazyGenotypesContext.LazyData parseSampleSubset(final BCF2Decoder decoder) throws IOException {
+        final int[] offsets = sampleSubset.getOffsets();
+        for ( final int offset : offsets )
+            builders[offset].reset(true);
+        final BuilderRuns runs = codec.getBuilderRuns(sampleSubset);
+
+        for ( int i = 0; i < nFields; i++ ) {
+            final int offset = (Integer) decoder.decodeTypedValue();
+            final String field = codec.getDictionaryString(offset);
+
+            final byte typeDescriptor = decoder.readTypeDescriptor();
+            final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+            if ( skipUnselectedField(decoder, field, typeDescriptor, numElements) )
+                continue;
+            final BCF2GenotypeFieldDecoders.Decoder fieldDecoder = codec.getGenotypeFieldDecoder(field);
+            try {
+                // the samples of each run are consecutive, so are decoded together
+                int next = 0;
+                for ( int r = 0; r < runs.starts.length; r++ ) {
+                    decoder.skipTypedValues(typeDescriptor, (runs.starts[r] - next) * numElements);
+                    fieldDecoder.decode(siteAlleles, field, decoder, typeDescriptor, numElements, runs.builders[r]);
+                    next = runs.starts[r] + runs.builders[r].length;
+                }
+                decoder.skipTypedValues(typeDescriptor, (nSamples - next) * numElements);
+            } catch ( ClassCastException e ) {
+                throw new TribbleException("BUG: expected encoding of field " + field
+                        + " inconsistent with the value observed in the decoded value");
+            }
+        }
+
+        final ArrayList<Genotype> genotypes = new ArrayList<Genotype>(offsets.length);
+        for ( final int offset : offsets )
+            genotypes.add(builders[offset].make());
+
+        return new LazyGenotypesContext.LazyData(genotypes, sampleSubset.getSampleNamesInOrder(), sampleSubset.getSampleNameToOffset());
+    }
+
+    /**
+     * Decodes the genotypes straight into columns, with the same values as the builders would be given by the
+     * {@link BCF2GenotypeFieldDecoders}
+     */
+    private LazyGenotypesContext.LazyData parseColumns(final BCF2Decoder decoder) throws IOException {
+        final VCFHeader header = codec.getHeader();
+        final GenotypeColumns columns = new GenotypeColumns(
+                sampleSubset == null ? header.getGenotypeSamples() : sampleSubset.getSampleNames(), siteAlleles);
+        // the offsets of the samples of the columns, or null if they are all the samples
+        final int[] offsets = sampleSubset == null ? null : sampleSubset.getOffsets();
+        final int nColumns = columns.getSampleNames().size();
+
+        for ( int i = 0; i < nFields; i++ ) {
+            final int offset = (Integer) decoder.decodeTypedValue();
+            final String field = codec.getDictionaryString(offset);
+
+            final byte typeDescriptor = decoder.readTypeDescriptor();
+            final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+            if ( skipUnselectedField(decoder, field, typeDescriptor, numElements) )
+                continue;
+            final BCF2Type type = BCF2Utils.decodeType(typeDescriptor);
+            // a single cache for the decoded vectors, which the columns copy
+            final int[] tmp = new int[numElements];
+            try {
+                switch ( field ) {
+                    case VCFConstants.GENOTYPE_KEY:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            final int[] encoded = decoder.decodeIntArray(numElements, type, tmp);
+                            final int ploidy = vectorLength(encoded, tmp, numElements);
+                            if ( ploidy > 0 ) {
+                                // as in the GT decoder, the phase is that of the second allele
+                                final boolean phased = ((ploidy > 1 ? encoded[1] : encoded[0]) & 0x01) == 1;
+                                for ( int a = 0; a < ploidy; a++ )
+                                    encoded[a] = (encoded[a] >> 1) - 1; // 0 is NO_CALL, so that it becomes NO_CALL_INDEX
+                                columns.setAlleles(s, encoded, ploidy, phased);
+                            }
+                        }
+                        break;
+                    case VCFConstants.DEPTH_KEY:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            columns.setDP(s, decoder.decodeInt(typeDescriptor, -1));
+                        }
+                        break;
+                    case VCFConstants.GENOTYPE_QUALITY_KEY:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            columns.setGQ(s, decoder.decodeInt(typeDescriptor, -1));
+                        }
+                        break;
+                    case VCFConstants.GENOTYPE_ALLELE_DEPTHS:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            final int[] values = decoder.decodeIntArray(numElements, type, tmp);
+                            columns.setAD(s, values, vectorLength(values, tmp, numElements));
+                        }
+                        break;
+                    case VCFConstants.GENOTYPE_PL_KEY:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            final int[] values = decoder.decodeIntArray(numElements, type, tmp);
+                            columns.setPL(s, values, vectorLength(values, tmp, numElements));
+                        }
+                        break;
+                    case VCFConstants.GENOTYPE_FILTER_KEY:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            columns.setFilter(s, (String) decoder.decodeTypedValue(typeDescriptor, numElements));
+                        }
+                        break;
+                    default:
+                        for ( int s = 0; s < nColumns; s++ ) {
+                            skipToSample(decoder, typeDescriptor, numElements, offsets, s);
+                            Object value = decoder.decodeTypedValue(typeDescriptor, numElements);
+                            if ( value != null ) { // don't add missing values
+                                // as in the generic decoder, vectors pruned down to a single value are atomic
+                                if ( value instanceof List && ((List<?>)value).size() == 1 )
+                                    value = ((List<?>)value).get(0);
+                                columns.setAttribute(s, field, value);
+                            }
+                        }
+                }
+                skipToSample(decoder, typeDescriptor, numElements, offsets, nColumns);
+            } catch ( ClassCastException e ) {
+                throw new TribbleException("BUG: expected encoding of field " + field
+                        + " inconsistent with the value observed in the decoded value");
+            }
+        }
+
+        if ( sampleSubset != null )
+            return new LazyGenotypesContext.LazyData(columns, sampleSubset.getSampleNamesInOrder(), sampleSubset.getSampleNameToOffset());
+        return new LazyGenotypesContext.LazyData(columns, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
+    }
+
+    /**
+     * Skips the values of the samples that are not selected, from the one after the sample of column - 1 up to the
+     * sample of column, or the last sample if column is the number of columns
+     */
+    private void skipToSample(final BCF2Decoder decoder, final byte typeDescriptor, final int numElements,
+                              final int[] offsets, final int column) {
+        if ( offsets == null )
+            return;
+        final int from = column == 0 ? 0 : offsets[column - 1] + 1;
+        final int to = column == offsets.length ? nSamples : offsets[column];
+        decoder.skipTypedValues(typeDescriptor, (to - from) * numElements);
+    }
+
+    /**
+     * Skips the values of all samples for field if it is not selected, without decoding them
+     *
+     * @return true if the field was skipped
+     */
+    private boolean skipUnselectedField(final BCF2Decoder decoder, final String field, final byte typeDescriptor, final int numElements) {
+        if ( fieldSelection == null || fieldSelection.isFormatKeySelected(field) )
+            return false;
+        decoder.skipTypedValues(typeDescriptor, nSamples * numElements);
+        return true;
+    }
+
+    /**
+     * @return the number of values decoded by {@link BCF2Decoder#decodeIntArray(int, BCF2Type, int[])} into values,
+     * which is tmp unless the values were pruned or missing, or 0 if they were missing
+     */
+    private static int vectorLength(final int[] values, final int[] tmp, final int numElements) {
+        if ( values == null ) return 0;
+        return values == tmp ? numElements : values.length;
+    }
+
+    /**
+     * The builders of the samples of a subset, in runs of samples that are consecutive in the records, with the offset
+     * of the first sample of each run
+     */
+    static final class BuilderRuns {
+        final VCFFieldSelection.SampleSubset sampleSubset;
+        final int[] starts;
+        final GenotypeBuilder[][] builders;
+
+        BuilderRuns(final VCFFieldSelection.SampleSubset sampleSubset, final GenotypeBuilder[] allBuilders) {
+            this.sampleSubset = sampleSubset;
+            final int[] offsets = sampleSubset.getOffsets();
+            final List<Integer> runStarts = new ArrayList<>();
+            final List<GenotypeBuilder[]> runs = new ArrayList<>();
+            int i = 0;
+            while ( i < offsets.length ) {
+                int j = i + 1;
+                while ( j < offsets.length && offsets[j] == offsets[j - 1] + 1 )
+                    j++;
+                runStarts.add(offsets[i]);
+                runs.add(Arrays.copyOfRange(allBuilders, offsets[i], offsets[j - 1] + 1));
+                i = j;
+            }
+            this.starts = runStarts.stream().mapToInt(Integer::intValue).toArray();
+            this.builders = runs.toArray(new GenotypeBuilder[0][]);
+        }
+    }
 }
@@ -0,0 +1,447 @@
+package htsjdk.variant.variantcontext;
+
+import htsjdk.utils.ValidationUtils;
+import htsjdk.variant.vcf.VCFConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The genotypes of the samples at a site, stored as columns rather than as one {@link Genotype} per sample.
+ *
+ * GT allele indices, DP, GQ, AD and PL are packed into primitive arrays across samples, so that a site with many
+ * samples holds a handful of arrays rather than a {@link Genotype} and its arrays per sample. Filters and extended
+ * attributes are kept per sample. A {@link Genotype} is only created for a sample when it is asked for, by
+ * {@link #getGenotype(int)}, and is then kept, so that the same object is returned each time it is asked for.
+ *
+ * Values are set by sample index, in the order of the sample names given to the constructor, and follow the
+ * conventions of {@link GenotypeBuilder}: a DP or GQ of -1, and AD or PL of null, are missing.
+ *
+ * @see GenotypesContext#create(GenotypeColumns, Map, List)
+ */
+public final class GenotypeColumns {
+    /** Allele index of no-call alleles, see {@link #setAlleles}. */
+    public static final int NO_CALL_INDEX = -1;
+
+    private final List<String> sampleNames;
+    private final List<Allele> alleles;
+
+    private final IntVectors gt;
+    private final boolean[] phased;
+    private int[] dp = null;
+    private int[] gq = null;
+    private final IntVectors ad;
+    private final IntVectors pl;
+    private String[] filters = null;
+    private Map<String, Object>[] attributes = null;
+
+    private Genotype[] genotypes = null;
+
+    /**
+     * @param sampleNames the names of the samples, in the order of their indices
+     * @param alleles the alleles of the site, to which GT allele indices refer
+     */
+    public GenotypeColumns(final List<String> sampleNames, final List<Allele> alleles) {
+        ValidationUtils.nonNull(sampleNames, "sampleNames");
+        ValidationUtils.nonNull(alleles, "alleles");
+        this.sampleNames = sampleNames;
+        this.alleles = alleles;
+        final int nSamples = sampleNames.size();
+        gt = new IntVectors(nSamples);
+        phased = new boolean[nSamples];
+        ad = new IntVectors(nSamples);
+        pl = new IntVectors(nSamples);
+    }
+
+    public int getNSamples() {
+        return sampleNames.size();
+    }
+
+    public List<String> getSampleNames() {
+        return Collections.unmodifiableList(sampleNames);
+    }
+
+    /**
+     * @return the alleles of the site, to which GT allele indices refer
+     */
+    public List<Allele> getAlleles() {
+        return Collections.unmodifiableList(alleles);
+    }
+
+    // ---------------------------------------------------------------------------
+    //
+    // setters
+    //
+    // ---------------------------------------------------------------------------
+
+    /**
+     * Sets the GT of a sample.
+     *
+     * @param sample the index of the sample
+     * @param alleleIndices the indices, in {@link #getAlleles()}, of the alleles of the sample, or
+     * {@link #NO_CALL_INDEX} for no-calls, in the first ploidy elements. Not kept.
+     * @param ploidy the number of alleles of the sample, 0 if it has no GT
+     * @param isPhased is the GT phased?
+     */
+    public void setAlleles(final int sample, final int[] alleleIndices, final int ploidy, final boolean isPhased) {
+        for (int i = 0; i < ploidy; i++) {
+            final int index = alleleIndices[i];
+            if (index < NO_CALL_INDEX || index >= alleles.size()) {
+                throw new IllegalArgumentException("Allele index " + index + " of sample " + sampleNames.get(sample) +
+                        " is out of range for a site with " + alleles.size() + " alleles");
+            }
+        }
+        gt.set(sample, alleleIndices, ploidy);
+        phased[sample] = isPhased;
+        invalidate(sample);
+    }
+
+    public void setDP(final int sample, final int DP) {
+        dp = setInt(dp, sample, DP);
+    }
+
+    public void setGQ(final int sample, final int GQ) {
+        gq = setInt(gq, sample, GQ);
+    }
+
+    /**
+     * @param AD the first length values are the AD of the sample, or null if it has none. Not kept.
+     */
+    public void setAD(final int sample, final int[] AD, final int length) {
+        ad.set(sample, AD, AD == null ? -1 : length);
+        invalidate(sample);
+    }
+
+    /**
+     * @param PL the first length values are the PL of the sample, or null if it has none. Not kept.
+     */
+    public void setPL(final int sample, final int[] PL, final int length) {
+        pl.set(sample, PL, PL == null ? -1 : length);
+        invalidate(sample);
+    }
+
+    /**
+     * @param filter the filters of the sample, as given to {@link GenotypeBuilder#filter(String)}
+     */
+    public void setFilter(final int sample, final String filter) {
+        // as in the builder, PASS is unfiltered
+        final String value = VCFConstants.PASSES_FILTERS_v4.equals(filter) ? null : filter;
+        if (value != null && filters == null) {
+            filters = new String[getNSamples()];
+        }
+        if (filters != null) {
+            filters[sample] = value;
+        }
+        invalidate(sample);
+    }
+
+    /**
+     * Sets an extended attribute of a sample, which must not be one of the inline attributes GT, DP, GQ, AD, PL or FT.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setAttribute(final int sample, final String key, final Object value) {
+        if (attributes == null) {
+            attributes = new Map[getNSamples()];
+        }
+        if (attributes[sample] == null) {
+            attributes[sample] = new HashMap<>(5);
+        }
+        attributes[sample].put(key, value);
+        invalidate(sample);
+    }
+
+    private int[] setInt(int[] column, final int sample, final int value) {
+        if (column == null && value != -1) {
+            column = new int[getNSamples()];
+            Arrays.fill(column, -1);
+        }
+        if (column != null) {
+            column[sample] = value;
+        }
+        invalidate(sample);
+        return column;
+    }
+
+    private void invalidate(final int sample) {
+        if (genotypes != null) {
+            genotypes[sample] = null;
+        }
+    }
+
+    // ---------------------------------------------------------------------------
+    //
+    // per sample getters
+    //
+    // ---------------------------------------------------------------------------
+
+    /**
+     * @return the number of alleles of the sample, 0 if it has no GT
+     */
+    public int getPloidy(final int sample) {
+        return Math.max(0, gt.length(sample));
+    }
+
+    /**
+     * @return the index in {@link #getAlleles()} of the i-th allele of the sample, or {@link #NO_CALL_INDEX}
+     */
+    public int getAlleleIndex(final int sample, final int i) {
+        return gt.get(sample, i);
+    }
+
+    public boolean isPhased(final int sample) {
+        return phased[sample];
+    }
+
+    /**
+     * @return the DP of the sample, -1 if it is missing
+     */
+    public int getDP(final int sample) {
+        return dp == null ? -1 : dp[sample];
+    }
+
+    /**
+     * @return the GQ of the sample, -1 if it is missing
+     */
+    public int getGQ(final int sample) {
+        return gq == null ? -1 : gq[sample];
+    }
+
+    /**
+     * @return the number of AD values of the sample, 0 if it has none
+     */
+    public int getADLength(final int sample) {
+        return Math.max(0, ad.length(sample));
+    }
+
+    public int getAD(final int sample, final int i) {
+        return ad.get(sample, i);
+    }
+
+    /**
+     * @return the number of PL values of the sample, 0 if it has none
+     */
+    public int getPLLength(final int sample) {
+        return Math.max(0, pl.length(sample));
+    }
+
+    public int getPL(final int sample, final int i) {
+        return pl.get(sample, i);
+    }
+
+    /**
+     * @return the filters of the sample, or null if it is unfiltered
+     */
+    public String getFilter(final int sample) {
+        return filters == null ? null : filters[sample];
+    }
+
+    /**
+     * @return the extended attributes of the sample, never null
+     */
+    public Map<String, Object> getAttributes(final int sample) {
+        final Map<String, Object> sampleAttributes = attributes == null ? null : attributes[sample];
+        return sampleAttributes == null ? Collections.emptyMap() : Collections.unmodifiableMap(sampleAttributes);
+    }
+
+    /**
+     * @return the genotype of the sample, created the first time it is asked for
+     */
+    public Genotype getGenotype(final int sample) {
+        if (genotypes == null) {
+            genotypes = new Genotype[getNSamples()];
+        }
+        Genotype g = genotypes[sample];
+        if (g == null) {
+            g = makeGenotype(sample);
+            genotypes[sample] = g;
+        }
+        return g;
+    }
+
+    private Genotype makeGenotype(final int sample) {
+        final GenotypeBuilder gb = new GenotypeBuilder(sampleNames.get(sample));
+        final int ploidy = getPloidy(sample);
+        if (ploidy > 0) {
+            final List<Allele> sampleAlleles = new ArrayList<>(ploidy);
+            for (int i = 0; i < ploidy; i++) {
+                final int index = gt.get(sample, i);
+                sampleAlleles.add(index == NO_CALL_INDEX ? Allele.NO_CALL : alleles.get(index));
+            }
+            gb.alleles(sampleAlleles);
+        }
+        gb.phased(phased[sample]);
+        gb.DP(getDP(sample));
+        gb.GQ(getGQ(sample));
+        gb.AD(ad.toArray(sample));
+        gb.PL(pl.toArray(sample));
+        gb.filter(getFilter(sample));
+        if (attributes != null && attributes[sample] != null) {
+            gb.attributes(attributes[sample]);
+        }
+        return gb.make();
+    }
+
+    /**
+     * @return the genotypes of all samples, in the order of their indices
+     */
+    public ArrayList<Genotype> toGenotypes() {
+        final ArrayList<Genotype> list = new ArrayList<>(getNSamples());
+        for (int i = 0; i < getNSamples(); i++) {
+            list.add(getGenotype(i));
+        }
+        return list;
+    }
+
+    // ---------------------------------------------------------------------------
+    //
+    // summaries across samples
+    //
+    // ---------------------------------------------------------------------------
+
+    /**
+     * @return the largest ploidy of the samples, 0 if none of them has a GT
+     */
+    public int getMaxPloidy() {
+        return Math.max(0, gt.maxLength());
+    }
+
+    /** @return true if any sample has a GT, i.e. any genotype {@link Genotype#isAvailable()} */
+    public boolean hasAnyAlleles() {
+        return gt.maxLength() > 0;
+    }
+
+    public boolean hasAnyDP() {
+        return hasAny(dp);
+    }
+
+    public boolean hasAnyGQ() {
+        return hasAny(gq);
+    }
+
+    public boolean hasAnyAD() {
+        return ad.maxLength() >= 0;
+    }
+
+    public boolean hasAnyPL() {
+        return pl.maxLength() >= 0;
+    }
+
+    /** @return the largest number of AD values of the samples */
+    public int getMaxADLength() {
+        return Math.max(0, ad.maxLength());
+    }
+
+    /** @return the largest number of PL values of the samples */
+    public int getMaxPLLength() {
+        return Math.max(0, pl.maxLength());
+    }
+
+    public boolean hasAnyFilter() {
+        if (filters != null) {
+            for (final String filter : filters) {
+                if (filter != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the keys of the extended attributes of all samples
+     */
+    public Set<String> getAttributeKeys() {
+        final Set<String> keys = new LinkedHashSet<>();
+        if (attributes != null) {
+            for (final Map<String, Object> sampleAttributes : attributes) {
+                if (sampleAttributes != null) {
+                    keys.addAll(sampleAttributes.keySet());
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static boolean hasAny(final int[] column) {
+        if (column != null) {
+            for (final int value : column) {
+                if (value != -1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Vectors of ints, one per sample, packed in one array at the stride of the longest of them.
+     */
+    private static final class IntVectors {
+        // -1 for samples without a vector
+        private final int[] lengths;
+        private int stride = 0;
+        private int[] values = new int[0];
+        private int maxLength = -1;
+
+        IntVectors(final int nSamples) {
+            lengths = new int[nSamples];
+            Arrays.fill(lengths, -1);
+        }
+
+        void set(final int sample, final int[] vector, final int length) {
+            if (length > stride) {
+                repack(length);
+            }
+            if (length > 0) {
+                System.arraycopy(vector, 0, values, sample * stride, length);
+            }
+            final int previous = lengths[sample];
+            lengths[sample] = length;
+            if (length > maxLength) {
+                maxLength = length;
+            } else if (previous == maxLength && length < previous) {
+                maxLength = -1;
+                for (final int l : lengths) {
+                    maxLength = Math.max(maxLength, l);
+                }
+            }
+        }
+
+        private void repack(final int newStride) {
+            final int[] repacked = new int[Math.multiplyExact(lengths.length, newStride)];
+            for (int sample = 0; sample < lengths.length; sample++) {
+                if (lengths[sample] > 0) {
+                    System.arraycopy(values, sample * stride, repacked, sample * newStride, lengths[sample]);
+                }
+            }
+            values = repacked;
+            stride = newStride;
+        }
+
+        int length(final int sample) {
+            return lengths[sample];
+        }
+
+        int get(final int sample, final int i) {
+            if (i < 0 || i >= lengths[sample]) {
+                throw new IndexOutOfBoundsException("Index " + i + " is out of range for a vector of length " + Math.max(0, lengths[sample]));
+            }
+            return values[sample * stride + i];
+        }
+
+        int maxLength() {
+            return maxLength;
+        }
+
+        int[] toArray(final int sample) {
+            final int length = lengths[sample];
+            return length < 0 ? null : Arrays.copyOfRange(values, sample * stride, sample * stride + length);
+        }
+    }
+}
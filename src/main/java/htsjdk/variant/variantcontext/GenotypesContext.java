@@ -37,6 +37,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -72,6 +73,17 @@ public class GenotypesContext implements List<Genotype>, Serializable {
      */
     protected ArrayList<Genotype> notToBeDirectlyAccessedGenotypes;
 
+    /**
+     * The genotypes stored as columns, from which genotypes are only created when they are accessed one by one,
+     * or null.  When the genotypes are needed as a list they are all created in notToBeDirectlyAccessedGenotypes,
+     * and the columns are only kept if this context is immutable, as they would otherwise diverge from the list.
+     *
+     * WARNING: AS FOR notToBeDirectlyAccessedGenotypes, USE getColumns() INSTEAD.
+     *
+     * Transient since the genotypes are always created before serializing them.
+     */
+    protected transient GenotypeColumns notToBeDirectlyAccessedColumns = null;
+
     /**
      * Cached value of the maximum ploidy observed among all samples
      */
@@ -96,6 +108,7 @@ public class GenotypesContext implements List<Genotype>, Serializable {
         if ( getClass() == LazyGenotypesContext.class ) {
             ((LazyGenotypesContext)this).decode();
         }
+        getGenotypes(); // creates the genotypes of columnar contexts
 
         out.defaultWriteObject();
     }
@@ -147,6 +160,19 @@ public class GenotypesContext implements List<Genotype>, Serializable {
         this.sampleNamesInOrder = sampleNamesInOrder;
     }
 
+    /**
+     * Create a fully resolved GenotypeContext containing genotypes stored as columns, sample lookup table,
+     * and sorted sample names
+     */
+    protected GenotypesContext(final GenotypeColumns columns,
+                               final Map<String, Integer> sampleNameToOffset,
+                               final List<String> sampleNamesInOrder) {
+        this.notToBeDirectlyAccessedGenotypes = null;
+        this.notToBeDirectlyAccessedColumns = columns;
+        this.sampleNameToOffset = sampleNameToOffset;
+        this.sampleNamesInOrder = sampleNamesInOrder;
+    }
+
     // ---------------------------------------------------------------------------
     //
     // public static factory methods
@@ -187,6 +213,21 @@ public class GenotypesContext implements List<Genotype>, Serializable {
         return new GenotypesContext(genotypes, sampleNameToOffset, sampleNamesInOrder);
     }
 
+    /**
+     * Create a fully resolved GenotypeContext containing genotypes stored as columns, sample lookup table,
+     * and sorted sample names.  Genotypes are only created when they are accessed.
+     *
+     * @param columns our genotypes, one for each sample of columns
+     * @param sampleNameToOffset map from each sample name of columns to its index in columns
+     * @param sampleNamesInOrder the sample names of columns, sorted in alphabetical order.
+     * @return an mutable GenotypeContext containing the genotypes of columns with already present lookup data
+     */
+    public static final GenotypesContext create(final GenotypeColumns columns,
+                                                final Map<String, Integer> sampleNameToOffset,
+                                                final List<String> sampleNamesInOrder) {
+        return new GenotypesContext(columns, sampleNameToOffset, sampleNamesInOrder);
+    }
+
     /**
      * Create a fully resolved GenotypeContext containing genotypes
      *
@@ -267,7 +308,7 @@ public class GenotypesContext implements List<Genotype>, Serializable {
             sampleNamesInOrder = new ArrayList<String>(size());
 
             for ( int i = 0; i < size(); i++ ) {
-                sampleNamesInOrder.add(getGenotypes().get(i).getSampleName());
+                sampleNamesInOrder.add(getSampleName(i));
             }
             Collections.sort(sampleNamesInOrder);
         }
@@ -278,11 +319,16 @@ public class GenotypesContext implements List<Genotype>, Serializable {
             sampleNameToOffset = new HashMap<String, Integer>(size());
 
             for ( int i = 0; i < size(); i++ ) {
-                sampleNameToOffset.put(getGenotypes().get(i).getSampleName(), i);
+                sampleNameToOffset.put(getSampleName(i), i);
             }
         }
     }
 
+    private String getSampleName(final int i) {
+        final GenotypeColumns columns = getColumns();
+        return columns != null ? columns.getSampleNames().get(i) : getGenotypes().get(i).getSampleName();
+    }
+
     // ---------------------------------------------------------------------------
     //
     // Lazy methods
@@ -301,9 +347,24 @@ public class GenotypesContext implements List<Genotype>, Serializable {
     // ---------------------------------------------------------------------------
 
     protected ArrayList<Genotype> getGenotypes() {
+        if ( notToBeDirectlyAccessedColumns != null ) {
+            if ( notToBeDirectlyAccessedGenotypes == null ) {
+                notToBeDirectlyAccessedGenotypes = notToBeDirectlyAccessedColumns.toGenotypes();
+            }
+            // the list may be modified from now on
+            if ( ! immutable ) notToBeDirectlyAccessedColumns = null;
+        }
         return notToBeDirectlyAccessedGenotypes;
     }
 
+    /**
+     * @return the genotypes stored as columns, from which they can be read without creating {@link Genotype}s, or
+     * null if this context holds a list of genotypes. The columns must not be modified.
+     */
+    public GenotypeColumns getColumns() {
+        return notToBeDirectlyAccessedColumns;
+    }
+
     @Override
     public void clear() {
         checkImmutability();
@@ -314,12 +375,13 @@ public class GenotypesContext implements List<Genotype>, Serializable {
 
     @Override
     public int size() {
-        return getGenotypes().size();
+        final GenotypeColumns columns = getColumns();
+        return columns != null ? columns.getNSamples() : getGenotypes().size();
     }
 
     @Override
     public boolean isEmpty() {
-        return getGenotypes().isEmpty();
+        return size() == 0;
     }
 
     /**
@@ -414,7 +476,8 @@ public class GenotypesContext implements List<Genotype>, Serializable {
 
     @Override
     public Genotype get(final int i) {
-        return getGenotypes().get(i);
+        final GenotypeColumns columns = getColumns();
+        return columns != null ? columns.getGenotype(i) : getGenotypes().get(i);
     }
 
     /**
@@ -428,8 +491,13 @@ public class GenotypesContext implements List<Genotype>, Serializable {
 
         if ( maxPloidy == -1 ) {
             maxPloidy = 0; // necessary in the case where there are no genotypes
-            for ( final Genotype g : getGenotypes() ) {
-                maxPloidy = Math.max(g.getPloidy(), maxPloidy);
+            final GenotypeColumns columns = getColumns();
+            if ( columns != null ) {
+                maxPloidy = columns.getMaxPloidy();
+            } else {
+                for ( final Genotype g : getGenotypes() ) {
+                    maxPloidy = Math.max(g.getPloidy(), maxPloidy);
+                }
             }
 
             // everything is no called so we return the default ploidy
@@ -447,7 +515,7 @@ public class GenotypesContext implements List<Genotype>, Serializable {
      */
     public Genotype get(final String sampleName) {
         Integer offset = getSampleI(sampleName);
-        return offset == null ? null : getGenotypes().get(offset);
+        return offset == null ? null : get(offset);
     }
 
     private Integer getSampleI(final String sampleName) {
@@ -462,7 +530,25 @@ public class GenotypesContext implements List<Genotype>, Serializable {
 
     @Override
     public Iterator<Genotype> iterator() {
-        return getGenotypes().iterator();
+        final GenotypeColumns columns = getColumns();
+        if ( columns == null ) {
+            return getGenotypes().iterator();
+        }
+        // genotypes are created as they are iterated over
+        return new Iterator<Genotype>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < columns.getNSamples();
+            }
+
+            @Override
+            public Genotype next() {
+                if ( ! hasNext() ) throw new NoSuchElementException();
+                return columns.getGenotype(i++);
+            }
+        };
     }
 
     @Override
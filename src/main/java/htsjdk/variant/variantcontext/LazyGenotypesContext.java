@@ -108,6 +108,7 @@ public class LazyGenotypesContext extends GenotypesContext {
      */
     public static class LazyData {
         final ArrayList<Genotype> genotypes;
+        final GenotypeColumns columns;
         final Map<String, Integer> sampleNameToOffset;
         final List<String> sampleNamesInOrder;
 
@@ -115,6 +116,19 @@ public class LazyGenotypesContext extends GenotypesContext {
                         final List<String> sampleNamesInOrder,
                         final Map<String, Integer> sampleNameToOffset) {
             this.genotypes = genotypes;
+            this.columns = null;
+            this.sampleNamesInOrder = sampleNamesInOrder;
+            this.sampleNameToOffset = sampleNameToOffset;
+        }
+
+        /**
+         * Data for genotypes decoded into columns, see {@link GenotypesContext#create(GenotypeColumns, Map, List)}
+         */
+        public LazyData(final GenotypeColumns columns,
+                        final List<String> sampleNamesInOrder,
+                        final Map<String, Integer> sampleNameToOffset) {
+            this.genotypes = null;
+            this.columns = columns;
             this.sampleNamesInOrder = sampleNamesInOrder;
             this.sampleNameToOffset = sampleNameToOffset;
         }
@@ -146,7 +160,13 @@ public class LazyGenotypesContext extends GenotypesContext {
     @Override
     protected ArrayList<Genotype> getGenotypes() {
         decode();
-        return notToBeDirectlyAccessedGenotypes;
+        return super.getGenotypes();
+    }
+
+    @Override
+    public GenotypeColumns getColumns() {
+        decode();
+        return super.getColumns();
     }
 
     /**
@@ -157,6 +177,7 @@ public class LazyGenotypesContext extends GenotypesContext {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
             LazyData parsed = parser.parse(unparsedGenotypeData);
             notToBeDirectlyAccessedGenotypes = parsed.genotypes;
+            notToBeDirectlyAccessedColumns = parsed.columns;
             sampleNamesInOrder = parsed.sampleNamesInOrder;
             sampleNameToOffset = parsed.sampleNameToOffset;
             loaded = true;
@@ -280,14 +280,26 @@ public class VariantContext implements HtsRecord, Feature, Serializable {
         boolean sawDP = false;
         boolean sawAD = false;
         boolean sawPL = false;
-        for (final Genotype g : this.getGenotypes()) {
-            keys.addAll(g.getExtendedAttributes().keySet());
-            if ( g.isAvailable() ) sawGoodGT = true;
-            if ( g.hasGQ() ) sawGoodQual = true;
-            if ( g.hasDP() ) sawDP = true;
-            if ( g.hasAD() ) sawAD = true;
-            if ( g.hasPL() ) sawPL = true;
-            if (g.isFiltered()) sawGenotypeFilter = true;
+        final GenotypeColumns columns = this.getGenotypes().getColumns();
+        if ( columns != null ) {
+            // summarized from the columns, without creating the genotypes
+            keys.addAll(columns.getAttributeKeys());
+            sawGoodGT = columns.hasAnyAlleles();
+            sawGoodQual = columns.hasAnyGQ();
+            sawDP = columns.hasAnyDP();
+            sawAD = columns.hasAnyAD();
+            sawPL = columns.hasAnyPL();
+            sawGenotypeFilter = columns.hasAnyFilter();
+        } else {
+            for (final Genotype g : this.getGenotypes()) {
+                keys.addAll(g.getExtendedAttributes().keySet());
+                if ( g.isAvailable() ) sawGoodGT = true;
+                if ( g.hasGQ() ) sawGoodQual = true;
+                if ( g.hasDP() ) sawDP = true;
+                if ( g.hasAD() ) sawAD = true;
+                if ( g.hasPL() ) sawPL = true;
+                if (g.isFiltered()) sawGenotypeFilter = true;
+            }
         }
 
         if ( sawGoodQual ) keys.add(VCFConstants.GENOTYPE_QUALITY_KEY);
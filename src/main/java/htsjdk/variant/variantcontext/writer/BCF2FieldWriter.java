@@ -29,6 +29,7 @@ import htsjdk.variant.bcf2.BCF2Type;
 import htsjdk.variant.bcf2.BCF2Utils;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFHeader;
 
@@ -124,6 +125,14 @@ public abstract class BCF2FieldWriter {
 
         @Override
         public void start(final BCF2Encoder encoder, final VariantContext vc) throws IOException {
+            start(encoder, vc, null);
+        }
+
+        /**
+         * Writes the key and the type of the field, reading the values from columns rather than from the genotypes
+         * of vc if columns isn't null
+         */
+        final void start(final BCF2Encoder encoder, final VariantContext vc, final GenotypeColumns columns) throws IOException {
             // writes the key information
             super.start(encoder, vc);
 
@@ -132,6 +141,8 @@ public abstract class BCF2FieldWriter {
                 if ( getFieldEncoder().hasContextDeterminedNumElements() )
                     // we are cheap -- just depends on genotype of allele counts
                     nValuesPerGenotype = getFieldEncoder().numElements(vc);
+                else if ( columns != null )
+                    nValuesPerGenotype = computeMaxSizeOfGenotypeFieldFromColumns(columns);
                 else
                     // we have to go fishing through the values themselves (expensive)
                     nValuesPerGenotype = computeMaxSizeOfGenotypeFieldFromValues(vc);
@@ -145,10 +156,37 @@ public abstract class BCF2FieldWriter {
             getFieldEncoder().encodeValue(encoder, fieldValue, encodingType, nValuesPerGenotype);
         }
 
+        /**
+         * @return true if this writer can write genotypes stored as columns, without creating them, with
+         * {@link #startColumns} and {@link #addGenotype(BCF2Encoder, GenotypeColumns, int)}
+         */
+        public boolean writesColumns() {
+            return false;
+        }
+
+        /**
+         * As {@link #start(BCF2Encoder, VariantContext)}, for genotypes stored as columns, the samples of which are
+         * those of the header in the same order, and the alleles of which are those of vc
+         */
+        public void startColumns(final BCF2Encoder encoder, final VariantContext vc, final GenotypeColumns columns) throws IOException {
+            throw new UnsupportedOperationException("BUG: " + getClass().getSimpleName() + " cannot write genotypes stored as columns");
+        }
+
+        /**
+         * As {@link #addGenotype(BCF2Encoder, VariantContext, Genotype)}, for a sample of columns
+         */
+        public void addGenotype(final BCF2Encoder encoder, final GenotypeColumns columns, final int sample) throws IOException {
+            throw new UnsupportedOperationException("BUG: " + getClass().getSimpleName() + " cannot write genotypes stored as columns");
+        }
+
         protected int numElements(final VariantContext vc, final Genotype g) {
             return getFieldEncoder().numElements(vc, g.getExtendedAttribute(getField()));
         }
 
+        protected int numElements(final GenotypeColumns columns, final int sample) {
+            throw new UnsupportedOperationException("BUG: " + getClass().getSimpleName() + " cannot write genotypes stored as columns");
+        }
+
         private final int computeMaxSizeOfGenotypeFieldFromValues(final VariantContext vc) {
             int size = -1;
 
@@ -158,6 +196,16 @@ public abstract class BCF2FieldWriter {
 
             return size;
         }
+
+        private final int computeMaxSizeOfGenotypeFieldFromColumns(final GenotypeColumns columns) {
+            int size = -1;
+
+            for ( int sample = 0; sample < columns.getNSamples(); sample++ ) {
+                size = Math.max(size, numElements(columns, sample));
+            }
+
+            return size;
+        }
     }
 
     public static class StaticallyTypeGenotypesWriter extends GenotypesWriter {
@@ -224,6 +272,43 @@ public abstract class BCF2FieldWriter {
         protected int numElements(final VariantContext vc, final Genotype g) {
             return ige.getSize(g);
         }
+
+        @Override
+        public boolean writesColumns() {
+            return true;
+        }
+
+        @Override
+        public void startColumns(final BCF2Encoder encoder, final VariantContext vc, final GenotypeColumns columns) throws IOException {
+            // the same type as start() determines from the values of each genotype
+            encodingType = BCF2Type.INT8;
+            for ( int sample = 0; sample < columns.getNSamples() && encodingType != BCF2Type.INT32; sample++ ) {
+                BCF2Type sampleType = getFieldEncoder().getStaticType();
+                if ( getFieldEncoder().isDynamicallyTyped() ) {
+                    sampleType = BCF2Type.INT8;
+                    final int size = ige.getSize(columns, sample);
+                    for ( int i = 0; i < size; i++ ) {
+                        sampleType = BCF2Utils.maxIntegerType(sampleType, BCF2Utils.determineIntegerType(ige.getValue(columns, sample, i)));
+                    }
+                }
+                encodingType = BCF2Utils.maxIntegerType(encodingType, sampleType);
+            }
+
+            start(encoder, vc, columns);
+        }
+
+        @Override
+        public void addGenotype(final BCF2Encoder encoder, final GenotypeColumns columns, final int sample) throws IOException {
+            final int size = ige.getSize(columns, sample);
+            int count = 0;
+            for ( ; count < size; count++ ) encoder.encodeRawInt(ige.getValue(columns, sample, count), encodingType);
+            for ( ; count < nValuesPerGenotype; count++ ) encoder.encodeRawMissingValue(encodingType);
+        }
+
+        @Override
+        protected int numElements(final GenotypeColumns columns, final int sample) {
+            return ige.getSize(columns, sample);
+        }
     }
 
     public static class FTGenotypesWriter extends StaticallyTypeGenotypesWriter {
@@ -265,6 +350,33 @@ public abstract class BCF2FieldWriter {
             super.start(encoder, vc);
         }
 
+        @Override
+        public boolean writesColumns() {
+            return true;
+        }
+
+        @Override
+        public void startColumns(final BCF2Encoder encoder, final VariantContext vc, final GenotypeColumns columns) throws IOException {
+            // the allele offsets are the indices in the columns, which have the alleles of vc
+            start(encoder, vc);
+        }
+
+        @Override
+        public void addGenotype(final BCF2Encoder encoder, final GenotypeColumns columns, final int sample) throws IOException {
+            final int samplePloidy = columns.getPloidy(sample);
+            final boolean phased = columns.isPhased(sample);
+            for ( int i = 0; i < nValuesPerGenotype; i++ ) {
+                if ( i < samplePloidy ) {
+                    final int offset = columns.getAlleleIndex(sample, i);
+                    final int encoded = ((offset+1) << 1) | ((phased && i!=0) ? 0x01 : 0x00);
+                    encoder.encodeRawBytes(encoded, encodingType);
+                } else {
+                    // we need to pad with missing as we have ploidy < max for this sample
+                    encoder.encodeRawBytes(encodingType.getMissingBytes(), encodingType);
+                }
+            }
+        }
+
         @Override
         public void addGenotype(final BCF2Encoder encoder, final VariantContext vc, final Genotype g) throws IOException {
             final int samplePloidy = g.getPloidy();
@@ -37,6 +37,7 @@ import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
@@ -52,6 +53,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -324,6 +326,7 @@ class BCF2Writer extends IndexingVariantContextWriter {
             final LazyGenotypesContext lgc = (LazyGenotypesContext)vc.getGenotypes();
 
             if ( lgc.getUnparsedGenotypeData() instanceof BCF2Codec.LazyData &&
+                    ((BCF2Codec.LazyData) lgc.getUnparsedGenotypeData()).allFieldsDecoded &&
                     canSafelyWriteRawGenotypesBytes((BCF2Codec.LazyData) lgc.getUnparsedGenotypeData())) {
                 return (BCF2Codec.LazyData)lgc.getUnparsedGenotypeData();
             } else {
@@ -391,17 +394,28 @@ class BCF2Writer extends IndexingVariantContextWriter {
 
         // we have to do work to convert the VC into a BCF2 byte stream
         final List<String> genotypeFields = vc.calcVCFGenotypeKeys(header);
+        // genotypes stored as columns are written without creating them, if they are in the order of the header
+        GenotypeColumns columns = vc.getGenotypes().getColumns();
+        if ( columns != null && ! (columns.getSampleNames().equals(Arrays.asList(sampleNames)) && columns.getAlleles().equals(vc.getAlleles())) )
+            columns = null;
         for ( final String field : genotypeFields ) {
             final BCF2FieldWriter.GenotypesWriter writer = fieldManager.getGenotypeFieldWriter(field);
             if ( writer == null ) errorUnexpectedFieldToWrite(vc, field, "FORMAT");
 
             assert writer != null;
 
-            writer.start(encoder, vc);
-            for ( final String name : sampleNames ) {
-                Genotype g = vc.getGenotype(name);
-                if ( g == null ) g = GenotypeBuilder.createMissing(name, writer.nValuesPerGenotype);
-                writer.addGenotype(encoder, vc, g);
+            if ( columns != null && writer.writesColumns() ) {
+                writer.startColumns(encoder, vc, columns);
+                for ( int sample = 0; sample < columns.getNSamples(); sample++ ) {
+                    writer.addGenotype(encoder, columns, sample);
+                }
+            } else {
+                writer.start(encoder, vc);
+                for ( final String name : sampleNames ) {
+                    Genotype g = vc.getGenotype(name);
+                    if ( g == null ) g = GenotypeBuilder.createMissing(name, writer.nValuesPerGenotype);
+                    writer.addGenotype(encoder, vc, g);
+                }
             }
             writer.done(encoder, vc);
         }
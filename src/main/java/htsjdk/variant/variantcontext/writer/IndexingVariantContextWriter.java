@@ -26,9 +26,12 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.LocationAware;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.SimpleFeature;
 import htsjdk.tribble.index.DynamicIndexCreator;
 import htsjdk.tribble.index.Index;
 import htsjdk.tribble.index.IndexCreator;
@@ -42,6 +45,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * this class writes VCF files
@@ -54,6 +59,9 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     private OutputStream outputStream;
     private LocationAware locationSource = null;
     private IndexCreator indexer = null;
+    // when writing BGZF, the records not yet added to the index, with their unresolved file pointers
+    private BlockCompressedOutputStream blockCompressedLocationSource = null;
+    private final Queue<UnindexedFeature> unindexedFeatures = new ArrayDeque<>();
 
     private IndexingVariantContextWriter(final String name, final Path location, final OutputStream output, final SAMSequenceDictionary refDict) {
         this.name = name;
@@ -135,6 +143,9 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
         indexer = idxCreator;
         if (outputStream instanceof LocationAware) {
             locationSource = (LocationAware)outputStream;
+            if (outputStream instanceof BlockCompressedOutputStream) {
+                blockCompressedLocationSource = (BlockCompressedOutputStream) outputStream;
+            }
         } else {
             final PositionalOutputStream positionalOutputStream = new PositionalOutputStream(outputStream);
             locationSource = positionalOutputStream;
@@ -173,6 +184,7 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
             // close the index stream (keep it separate to help debugging efforts)
             if (indexer != null) {
+                addResolvableFeatures();
                 indexer.setIndexSequenceDictionary(refDict);
                 final Index index = indexer.finalizeIndex(locationSource.getPosition());
                 index.writeBasedOnFeaturePath(location);
@@ -199,8 +211,27 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     @Override
     public void add(final VariantContext vc) {
         // if we are doing on the fly indexing, add the record ***before*** we write any bytes
-        if ( indexer != null )
-            indexer.addFeature(vc, locationSource.getPosition());
+        if ( indexer != null ) {
+            if ( blockCompressedLocationSource != null ) {
+                // the position is resolved once its block has been written, so that it doesn't wait for
+                // blocks being compressed in parallel. Only the coordinates of the record are kept, since the caller
+                // may reuse the record once it has been written
+                unindexedFeatures.add(new UnindexedFeature(
+                        new SimpleFeature(vc.getContig(), vc.getStart(), vc.getEnd()),
+                        blockCompressedLocationSource.getUnresolvedFilePointer()));
+                addResolvableFeatures();
+            } else {
+                indexer.addFeature(vc, locationSource.getPosition());
+            }
+        }
+    }
+
+    private void addResolvableFeatures() {
+        while ( !unindexedFeatures.isEmpty() &&
+                blockCompressedLocationSource.isResolvable(unindexedFeatures.peek().position) ) {
+            final UnindexedFeature feature = unindexedFeatures.poll();
+            indexer.addFeature(feature.feature, blockCompressedLocationSource.resolveFilePointer(feature.position));
+        }
     }
 
     /**
@@ -224,4 +255,14 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     protected static final String writerName(final Path location, final OutputStream stream) {
         return location == null ? stream == null ? DEFAULT_READER_NAME : stream.toString() : location.toAbsolutePath().toUri().toString();
     }
+
+    private static final class UnindexedFeature {
+        private final Feature feature;
+        private final long position;
+
+        private UnindexedFeature(final Feature feature, final long position) {
+            this.feature = feature;
+            this.position = position;
+        }
+    }
 }
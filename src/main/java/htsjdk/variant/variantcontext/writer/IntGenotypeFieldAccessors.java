@@ -26,6 +26,7 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.vcf.VCFConstants;
 
 import java.util.HashMap;
@@ -65,6 +66,22 @@ public class IntGenotypeFieldAccessors {
             final int[] v = getValues(g);
             return v == null ? 0 : v.length;
         }
+
+        /**
+         * @return the number of values of the sample in columns, as {@link #getSize(Genotype)} of its genotype.
+         * Accessors override this to read the columns without creating the genotype.
+         */
+        public int getSize(final GenotypeColumns columns, final int sample) {
+            return getSize(columns.getGenotype(sample));
+        }
+
+        /**
+         * @return the i-th value of the sample in columns, as in {@link #getValues(Genotype)} of its genotype.
+         * Accessors override this to read the columns without creating the genotype.
+         */
+        public int getValue(final GenotypeColumns columns, final int sample, final int i) {
+            return getValues(columns.getGenotype(sample))[i];
+        }
     }
 
     private static abstract class AtomicAccessor extends Accessor {
@@ -77,21 +94,32 @@ public class IntGenotypeFieldAccessors {
         }
 
         public abstract int getValue(final Genotype g);
+
+        @Override
+        public int getSize(final GenotypeColumns columns, final int sample) {
+            return getValue(columns, sample, 0) == -1 ? 0 : 1;
+        }
     }
 
     public static class GQAccessor extends AtomicAccessor {
         @Override public int getValue(final Genotype g) { return Math.min(g.getGQ(), VCFConstants.MAX_GENOTYPE_QUAL); }
+        @Override public int getValue(final GenotypeColumns columns, final int sample, final int i) { return Math.min(columns.getGQ(sample), VCFConstants.MAX_GENOTYPE_QUAL); }
     }
 
     public static class DPAccessor extends AtomicAccessor {
         @Override public int getValue(final Genotype g) { return g.getDP(); }
+        @Override public int getValue(final GenotypeColumns columns, final int sample, final int i) { return columns.getDP(sample); }
     }
 
     public static class ADAccessor extends Accessor {
         @Override public int[] getValues(final Genotype g) { return g.getAD(); }
+        @Override public int getSize(final GenotypeColumns columns, final int sample) { return columns.getADLength(sample); }
+        @Override public int getValue(final GenotypeColumns columns, final int sample, final int i) { return columns.getAD(sample, i); }
     }
 
     public static class PLAccessor extends Accessor {
         @Override public int[] getValues(final Genotype g) { return g.getPL(); }
+        @Override public int getSize(final GenotypeColumns columns, final int sample) { return columns.getPLLength(sample); }
+        @Override public int getValue(final GenotypeColumns columns, final int sample, final int i) { return columns.getPL(sample, i); }
     }
 }
@@ -94,6 +94,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     protected String remappedSampleName = null;
 
+    /**
+     * If non-null, only the fields it selects are decoded from the records.
+     */
+    protected VCFFieldSelection fieldSelection = null;
+
     protected AbstractVCFCodec() {
         super(VariantContext.class);
     }
@@ -118,7 +123,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         @Override
         public LazyGenotypesContext.LazyData parse(final Object data) {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
-            return createGenotypeMap((String) data, alleles, contig, start);
+            // genotypes may be decoded on another thread than the one decoding lines with this codec, as
+            // by ParallelVCFIterator, and decoding them uses the same scratch state, so lock the codec
+            synchronized (AbstractVCFCodec.this) {
+                return createGenotypeMap(data.toString(), alleles, contig, start);
+            }
         }
     }
 
@@ -325,7 +334,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     @Override
     public VariantContext decode(String line) {
-        return decodeLine(line, true);
+        return decodeLine(line, fieldSelection == null || fieldSelection.includesGenotypes());
     }
 
     /**
@@ -362,7 +371,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                 passThruTextTransformer;
     }
 
-    private VariantContext decodeLine(final String line, final boolean includeGenotypes) {
+    private synchronized VariantContext decodeLine(final String line, final boolean includeGenotypes) {
         // the same line reader is not used for parsing the header and parsing lines, if we see a #, we've seen a header line
         if (line.startsWith(VCFHeader.HEADER_INDICATOR)) return null;
 
@@ -426,7 +435,6 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             builder.filters(new HashSet<>(filters));
         }
         final Map<String, Object> attrs = parseInfo(parts[7]);
-        builder.attributes(attrs);
 
         if ( attrs.containsKey(VCFConstants.END_KEY) ) {
             // update stop with the end key if provided
@@ -435,9 +443,13 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             } catch (Exception e) {
                 generateException("the END value in the INFO field is not valid");
             }
+            // END is always decoded for the stop, but only kept if it was selected
+            if ( fieldSelection != null && !fieldSelection.isInfoKeySelected(VCFConstants.END_KEY) )
+                attrs.remove(VCFConstants.END_KEY);
         } else {
             builder.stop(pos + ref.length() - 1);
         }
+        builder.attributes(attrs);
 
         // get our alleles, filters, and setup an attribute map
         final List<Allele> alleles = parseAlleles(ref, alts, lineNo);
@@ -446,8 +458,13 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         // do we have genotyping data
         if (parts.length > NUM_STANDARD_FIELDS && includeGenotypes) {
             final LazyGenotypesContext.LazyParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos);
-            final int nGenotypes = header.getNGenotypeSamples();
-            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, parts[8], nGenotypes);
+            final VCFFieldSelection.SampleSubset sampleSubset = fieldSelection == null ? null : fieldSelection.getSampleSubset(header);
+            final int nGenotypes = sampleSubset == null ? header.getNGenotypeSamples() : sampleSubset.size();
+            // the text of genotypes of which only some fields or samples are decoded must not be written back as is,
+            // as by VCFEncoder, so it is only given as a String when all of them are
+            final Object unparsedGenotypes = fieldSelection == null || fieldSelection.selectsAllGenotypeData() ?
+                    parts[8] : new SelectedGenotypesText(parts[8]);
+            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, unparsedGenotypes, nGenotypes);
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -514,52 +531,72 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             if ( infoField.indexOf('\t') != -1 || infoField.indexOf(' ') != -1 )
                 generateException("The VCF specification does not allow for whitespace in the INFO field. Offending field value was \"" + infoField + "\"");
 
-            List<String> infoFields = ParsingUtils.split(infoField, VCFConstants.INFO_FIELD_SEPARATOR_CHAR);
-            for (int i = 0; i < infoFields.size(); i++) {
-                String key;
-                Object value;
-
-                int eqI = infoFields.get(i).indexOf("=");
-                if ( eqI != -1 ) {
-                    key = infoFields.get(i).substring(0, eqI);
-                    String valueString = infoFields.get(i).substring(eqI + 1);
-
-                    // split on the INFO field separator
-                    List<String> infoValueSplit = ParsingUtils.split(valueString, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
-                    if ( infoValueSplit.size() == 1 ) {
-                        value = vcfTextTransformer.decodeText(infoValueSplit.get(0));
-                        final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
-                        if ( headerLine != null && headerLine.getType() == VCFHeaderLineType.Flag && value.equals("0") ) {
-                            // deal with the case where a flag field has =0, such as DB=0, by skipping the add
-                            continue;
-                        }
-                    } else {
-                        value = vcfTextTransformer.decodeText(infoValueSplit);
-                    }
-                } else {
-                    key = infoFields.get(i);
-                    final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
-                    if ( headerLine != null && headerLine.getType() != VCFHeaderLineType.Flag ) {
-                        if ( GeneralUtils.DEBUG_MODE_ENABLED && ! warnedAboutNoEqualsForNonFlag ) {
-                            System.err.println("Found info key " + key + " without a = value, but the header says the field is of type "
-                                               + headerLine.getType() + " but this construct is only value for FLAG type fields");
-                            warnedAboutNoEqualsForNonFlag = true;
-                        }
-
-                        value = VCFConstants.MISSING_VALUE_v4;
-                    } else {
-                        value = true;
-                    }
+            if ( fieldSelection == null || fieldSelection.selectsAllInfoKeys() ) {
+                for ( final String entry : ParsingUtils.split(infoField, VCFConstants.INFO_FIELD_SEPARATOR_CHAR) )
+                    parseInfoEntry(entry, attributes);
+            } else {
+                // find the keys of the entries in place, so that the unselected ones are skipped without being split
+                int start = 0;
+                while ( start <= infoField.length() ) {
+                    int end = infoField.indexOf(VCFConstants.INFO_FIELD_SEPARATOR_CHAR, start);
+                    if ( end == -1 ) end = infoField.length();
+                    int keyEnd = infoField.indexOf('=', start);
+                    if ( keyEnd == -1 || keyEnd > end ) keyEnd = end;
+                    if ( fieldSelection.isInfoKeySelected(infoField, start, keyEnd) ||
+                            (keyEnd - start == VCFConstants.END_KEY.length() && infoField.startsWith(VCFConstants.END_KEY, start)) )
+                        parseInfoEntry(infoField.substring(start, end), attributes);
+                    start = end + 1;
                 }
+            }
+        }
 
-                // this line ensures that key/value pairs that look like key=; are parsed correctly as MISSING
-                if ( "".equals(value) ) value = VCFConstants.MISSING_VALUE_v4;
+        return attributes;
+    }
 
-                attributes.put(key, value);
+    /**
+     * parse out one key or key=value entry of the info field into attributes
+     */
+    private void parseInfoEntry(final String entry, final Map<String, Object> attributes) {
+        String key;
+        Object value;
+
+        int eqI = entry.indexOf("=");
+        if ( eqI != -1 ) {
+            key = entry.substring(0, eqI);
+            String valueString = entry.substring(eqI + 1);
+
+            // split on the INFO field separator
+            List<String> infoValueSplit = ParsingUtils.split(valueString, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
+            if ( infoValueSplit.size() == 1 ) {
+                value = vcfTextTransformer.decodeText(infoValueSplit.get(0));
+                final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
+                if ( headerLine != null && headerLine.getType() == VCFHeaderLineType.Flag && value.equals("0") ) {
+                    // deal with the case where a flag field has =0, such as DB=0, by skipping the add
+                    return;
+                }
+            } else {
+                value = vcfTextTransformer.decodeText(infoValueSplit);
+            }
+        } else {
+            key = entry;
+            final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
+            if ( headerLine != null && headerLine.getType() != VCFHeaderLineType.Flag ) {
+                if ( GeneralUtils.DEBUG_MODE_ENABLED && ! warnedAboutNoEqualsForNonFlag ) {
+                    System.err.println("Found info key " + key + " without a = value, but the header says the field is of type "
+                                       + headerLine.getType() + " but this construct is only value for FLAG type fields");
+                    warnedAboutNoEqualsForNonFlag = true;
+                }
+
+                value = VCFConstants.MISSING_VALUE_v4;
+            } else {
+                value = true;
             }
         }
 
-        return attributes;
+        // this line ensures that key/value pairs that look like key=; are parsed correctly as MISSING
+        if ( "".equals(value) ) value = VCFConstants.MISSING_VALUE_v4;
+
+        attributes.put(key, value);
     }
 
     /**
@@ -754,26 +791,39 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         if (genotypeParts == null)
             genotypeParts = new String[header.getColumnCount() - NUM_STANDARD_FIELDS];
 
-        int nParts = ParsingUtils.split(str, genotypeParts, VCFConstants.FIELD_SEPARATOR_CHAR);
+        // with a subset of the samples, only their columns are split out, after the FORMAT column
+        final VCFFieldSelection.SampleSubset sampleSubset = fieldSelection == null ? null : fieldSelection.getSampleSubset(header);
+        int nParts = sampleSubset == null ?
+                ParsingUtils.split(str, genotypeParts, VCFConstants.FIELD_SEPARATOR_CHAR) :
+                splitSelectedColumns(str, sampleSubset.getOffsets(), genotypeParts);
         if ( nParts != genotypeParts.length )
             generateException("there are " + (nParts-1) + " genotypes while the header requires that " + (genotypeParts.length-1) + " genotypes be present for all records at " + chr + ":" + pos, lineNo);
+        final int nDecodedParts = sampleSubset == null ? nParts : sampleSubset.size() + 1;
 
-        ArrayList<Genotype> genotypes = new ArrayList<Genotype>(nParts);
+        ArrayList<Genotype> genotypes = new ArrayList<Genotype>(nDecodedParts);
 
         // get the format keys
         List<String> genotypeKeys = ParsingUtils.split(genotypeParts[0], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+        // which of them are decoded, or null if all of them are
+        final boolean[] selectedKeys = selectFormatKeys(genotypeKeys);
+        final List<String> selectedValues = selectedKeys == null ? null : new ArrayList<>(genotypeKeys.size());
 
         // cycle through the sample names
-        Iterator<String> sampleNameIterator = header.getGenotypeSamples().iterator();
+        Iterator<String> sampleNameIterator = (sampleSubset == null ? header.getGenotypeSamples() : sampleSubset.getSampleNames()).iterator();
 
         // clear out our allele mapping
         alleleMap.clear();
 
         // cycle through the genotype strings
         boolean PlIsSet = false;
-        for (int genotypeOffset = 1; genotypeOffset < nParts; genotypeOffset++) {
-            List<String> genotypeValues = ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
-            genotypeValues = vcfTextTransformer.decodeText(genotypeValues);
+        for (int genotypeOffset = 1; genotypeOffset < nDecodedParts; genotypeOffset++) {
+            List<String> genotypeValues;
+            if ( selectedKeys == null ) {
+                genotypeValues = ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+                genotypeValues = vcfTextTransformer.decodeText(genotypeValues);
+            } else {
+                genotypeValues = splitSelectedValues(genotypeParts[genotypeOffset], selectedKeys, selectedValues);
+            }
 
             final String sampleName = sampleNameIterator.next();
             final GenotypeBuilder gb = new GenotypeBuilder(sampleName);
@@ -795,6 +845,8 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                         genotypeAlleleLocation = i;
                     } else if ( missing ) {
                         // if its truly missing (there no provided value) skip adding it to the attributes
+                    } else if ( genotypeValues.get(i) == null ) {
+                        // the field is not selected
                     } else if (gtKey.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
                         final List<String> filters = parseFilters(getCachedString(genotypeValues.get(i)));
                         if ( filters != null ) gb.filters(filters);
@@ -811,7 +863,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                         } else if (gtKey.equals(VCFConstants.GENOTYPE_PL_KEY)) {
                             gb.PL(decodeInts(genotypeValues.get(i)));
                             PlIsSet = true;
-                        } else if (gtKey.equals(VCFConstants.GENOTYPE_LIKELIHOODS_KEY)) {
+                        } else if (isDecodedIntoPL(gtKey)) {
                             // Do not overwrite PL with data from GL
                             if (!PlIsSet) {
                                 gb.PL(GenotypeLikelihoods.fromGLField(genotypeValues.get(i)).getAsPLs());
@@ -831,9 +883,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             if ( genotypeAlleleLocation > 0 )
                 generateException("Saw GT field at position " + genotypeAlleleLocation + ", but it must be at the first position for genotypes when present");
 
-            final List<Allele> GTalleles = (genotypeAlleleLocation == -1 ? new ArrayList<Allele>(0) : parseGenotypeAlleles(genotypeValues.get(genotypeAlleleLocation), alleles, alleleMap));
+            // GT is located even when it is not selected, to validate its position
+            final String gtValue = genotypeAlleleLocation == -1 ? null : genotypeValues.get(genotypeAlleleLocation);
+            final List<Allele> GTalleles = (gtValue == null ? new ArrayList<Allele>(0) : parseGenotypeAlleles(gtValue, alleles, alleleMap));
             gb.alleles(GTalleles);
-            gb.phased(genotypeAlleleLocation != -1 && genotypeValues.get(genotypeAlleleLocation).indexOf(VCFConstants.PHASED) != -1);
+            gb.phased(gtValue != null && gtValue.indexOf(VCFConstants.PHASED) != -1);
 
             // add it to the list
             try {
@@ -843,9 +897,84 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             }
         }
 
+        if ( sampleSubset != null )
+            return new LazyGenotypesContext.LazyData(genotypes, sampleSubset.getSampleNamesInOrder(), sampleSubset.getSampleNameToOffset());
         return new LazyGenotypesContext.LazyData(genotypes, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
     }
 
+    /**
+     * Splits the FORMAT column and the columns of the given samples out of the genotype columns of a record, into
+     * columns, without creating the strings of the other columns.
+     *
+     * @param str the genotype columns, from the FORMAT column on
+     * @param sampleOffsets the offsets of the samples to split out, in increasing order
+     * @param columns receives the FORMAT column, then the column of each sample of sampleOffsets
+     * @return the number of columns in str
+     */
+    private static int splitSelectedColumns(final String str, final int[] sampleOffsets, final String[] columns) {
+        int nColumns = 0;
+        int nextSample = 0;
+        int start = 0;
+        while ( true ) {
+            final int end = str.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR, start);
+            final int sampleOffset = nColumns - 1;
+            if ( sampleOffset == -1 ) {
+                columns[0] = str.substring(start, end == -1 ? str.length() : end);
+            } else if ( nextSample < sampleOffsets.length && sampleOffsets[nextSample] == sampleOffset ) {
+                columns[++nextSample] = str.substring(start, end == -1 ? str.length() : end);
+            }
+            nColumns++;
+            if ( end == -1 )
+                return nColumns;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return which of the keys of the FORMAT field of a record are selected by the field selection, or null if all
+     * of them are
+     */
+    private boolean[] selectFormatKeys(final List<String> genotypeKeys) {
+        if ( fieldSelection == null || fieldSelection.selectsAllFormatKeys() )
+            return null;
+        final boolean[] selected = new boolean[genotypeKeys.size()];
+        for ( int i = 0; i < selected.length; i++ ) {
+            final String key = genotypeKeys.get(i);
+            selected[i] = fieldSelection.isFormatKeySelected(key) ||
+                    (isDecodedIntoPL(key) && fieldSelection.isFormatKeySelected(VCFConstants.GENOTYPE_PL_KEY));
+        }
+        return selected;
+    }
+
+    /**
+     * @return true if the values of the given FORMAT key are genotype likelihoods that are decoded into PL, i.e. GL
+     */
+    private static boolean isDecodedIntoPL(final String key) {
+        return key.equals(VCFConstants.GENOTYPE_LIKELIHOODS_KEY);
+    }
+
+    /**
+     * Splits the values of a sample into values, creating the strings of the selected ones only, and leaving null in
+     * place of the others.
+     *
+     * @return values, cleared and then holding as many values as there are in the sample
+     */
+    private List<String> splitSelectedValues(final String sample, final boolean[] selectedKeys, final List<String> values) {
+        values.clear();
+        int start = 0;
+        while ( true ) {
+            final int end = sample.indexOf(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR, start);
+            final int i = values.size();
+            if ( i < selectedKeys.length && selectedKeys[i] )
+                values.add(vcfTextTransformer.decodeText(sample.substring(start, end == -1 ? sample.length() : end)));
+            else
+                values.add(null);
+            if ( end == -1 )
+                return values;
+            start = end + 1;
+        }
+    }
+
     private static final int[] decodeInts(final String string) {
         List<String> split = ParsingUtils.split(string, ',');
         int [] values = new int[split.size()];
@@ -879,6 +1008,39 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         this.remappedSampleName = remappedSampleName;
     }
 
+    /**
+     * Only decode the fields selected by fieldSelection from the records.
+     *
+     * @param fieldSelection the fields to decode, or null to decode all of them
+     */
+    public void setFieldSelection(final VCFFieldSelection fieldSelection) {
+        this.fieldSelection = fieldSelection;
+    }
+
+    /**
+     * @return the fields decoded from the records, or null if all of them are
+     */
+    public VCFFieldSelection getFieldSelection() {
+        return fieldSelection;
+    }
+
+    /**
+     * The text of the genotypes of a record of which only some fields are decoded. It is not a String, so that it is
+     * not mistaken for the text of all of them.
+     */
+    private static final class SelectedGenotypesText {
+        private final String text;
+
+        SelectedGenotypesText(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
     protected void generateException(String message) {
         throw new TribbleException(String.format("The provided VCF file is malformed at approximately line number %d: %s", lineNo, message));
     }
@@ -0,0 +1,316 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.util.AbstractIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
+import htsjdk.samtools.util.Log;
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.utils.ValidationUtils;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A {@link VCFIterator} that decodes the lines of a VCF text file in parallel.
+ *
+ * The lines are read on a dedicated background thread, which is also the one inflating the stream if it is
+ * compressed, and are grouped into batches that are decoded concurrently on an executor, while variants are still
+ * returned in the order of the lines. At most readAheadBatches batches are queued ahead of the consumer.
+ *
+ * Each batch is decoded by a codec that is not decoding any other batch, created as needed by the given factory and
+ * given the header of the codec that read the header of the file. Genotypes are still decoded lazily, on whichever
+ * thread first asks for them, since codecs lock themselves while decoding either lines or genotypes.
+ */
+public final class ParallelVCFIterator extends AbstractIterator<VariantContext> implements VCFIterator {
+    private static final Log log = Log.getInstance(ParallelVCFIterator.class);
+
+    public static final int DEFAULT_LINES_PER_BATCH = 1000;
+    // batches of very long lines, as in files with many samples, are closed early to bound the memory they hold
+    private static final long MAX_BATCH_LENGTH = 4L * 1024 * 1024;
+
+    private static ExecutorService defaultDecodingExecutor = null;
+
+    /**
+     * @return the shared daemon thread pool, of {@link Defaults#VCF_DECODING_THREADS} threads or of one thread if that
+     * is 0, used to decode lines by iterators that are not given an executor
+     */
+    static synchronized ExecutorService getDefaultDecodingExecutor() {
+        if (defaultDecodingExecutor == null) {
+            defaultDecodingExecutor = Executors.newFixedThreadPool(Math.max(1, Defaults.VCF_DECODING_THREADS), new DaemonThreadFactory());
+        }
+        return defaultDecodingExecutor;
+    }
+
+    private final LineIterator lineIterator;
+    private final AbstractVCFCodec codec;
+    private final Supplier<? extends AbstractVCFCodec> codecFactory;
+    private final ExecutorService executor;
+    private final int linesPerBatch;
+    private final BlockingQueue<PendingBatch> queue;
+    // codecs that are not decoding a batch, ready to decode the next one
+    private final Queue<AbstractVCFCodec> idleCodecs = new ConcurrentLinkedQueue<>();
+    private final Thread readerThread;
+
+    private Iterator<VariantContext> batchIterator = Collections.emptyIterator();
+    // the failure to decode the line after the last variant of the batch being iterated over
+    private RuntimeException batchError = null;
+    /** The last batch taken, once it is the end of the stream or a failure. */
+    private PendingBatch last = null;
+
+    /**
+     * @param lineIterator the lines of the file, positioned after the header
+     * @param codec the codec that read the header from lineIterator
+     * @param codecFactory creates codecs of the same kind as codec, to decode batches concurrently
+     * @param executor executor on which batches are decoded. It is not shut down when this iterator is closed.
+     * @param readAheadBatches maximum number of batches read ahead of the batch being iterated over
+     * @param linesPerBatch maximum number of lines in each batch
+     */
+    public ParallelVCFIterator(final LineIterator lineIterator,
+                               final AbstractVCFCodec codec,
+                               final Supplier<? extends AbstractVCFCodec> codecFactory,
+                               final ExecutorService executor,
+                               final int readAheadBatches,
+                               final int linesPerBatch) {
+        ValidationUtils.nonNull(lineIterator, "lineIterator");
+        ValidationUtils.nonNull(codec, "codec");
+        ValidationUtils.nonNull(codec.getHeader(), "the header read by codec");
+        ValidationUtils.nonNull(codecFactory, "codecFactory");
+        ValidationUtils.nonNull(executor, "executor");
+        ValidationUtils.validateArg(readAheadBatches > 0, () -> "readAheadBatches must be positive: " + readAheadBatches);
+        ValidationUtils.validateArg(linesPerBatch > 0, () -> "linesPerBatch must be positive: " + linesPerBatch);
+        this.lineIterator = lineIterator;
+        this.codec = codec;
+        this.codecFactory = codecFactory;
+        this.executor = executor;
+        this.linesPerBatch = linesPerBatch;
+        this.queue = new ArrayBlockingQueue<>(readAheadBatches);
+        idleCodecs.add(codec);
+
+        readerThread = new Thread(this::readLines, ParallelVCFIterator.class.getSimpleName() + "-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Decodes lines on the shared pool of {@link Defaults#VCF_DECODING_THREADS} threads, or on a pool of one thread
+     * if that is 0.
+     *
+     * @param lineIterator the lines of the file, positioned after the header
+     * @param codec the codec that read the header from lineIterator
+     * @param codecFactory creates codecs of the same kind as codec, to decode batches concurrently
+     */
+    public ParallelVCFIterator(final LineIterator lineIterator,
+                               final AbstractVCFCodec codec,
+                               final Supplier<? extends AbstractVCFCodec> codecFactory) {
+        this(lineIterator, codec, codecFactory, getDefaultDecodingExecutor(),
+                2 * Math.max(1, Defaults.VCF_DECODING_THREADS), DEFAULT_LINES_PER_BATCH);
+    }
+
+    @Override
+    public VCFHeader getHeader() {
+        return codec.getHeader();
+    }
+
+    @Override
+    protected VariantContext advance() {
+        while (!batchIterator.hasNext()) {
+            if (batchError != null) {
+                last = new PendingBatch(null, batchError);
+                throw batchError;
+            }
+            final PendingBatch pending = take();
+            if (pending.isEndOfStream()) {
+                return null;
+            }
+            final DecodedBatch batch;
+            try {
+                batch = pending.getDecodedBatch();
+            } catch (final RuntimeException | Error e) {
+                last = new PendingBatch(null, e);
+                throw e;
+            }
+            batchIterator = batch.variants.iterator();
+            batchError = batch.error;
+        }
+        return batchIterator.next();
+    }
+
+    private PendingBatch take() {
+        if (last != null) {
+            return last;
+        }
+        final PendingBatch next;
+        try {
+            next = queue.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for VCF lines to be read", e);
+        }
+        if (next.isEndOfStream() || next.error != null) {
+            last = next;
+        }
+        return next;
+    }
+
+    private void readLines() {
+        // lines are numbered as the codec would have numbered them, having counted the lines of the header
+        int lineNumber = codec.lineNo;
+        try {
+            while (true) {
+                final List<String> lines = new ArrayList<>(linesPerBatch);
+                long length = 0;
+                while (lines.size() < linesPerBatch && length < MAX_BATCH_LENGTH && lineIterator.hasNext()) {
+                    final String line = lineIterator.next();
+                    lines.add(line);
+                    length += line.length();
+                }
+                if (lines.isEmpty()) {
+                    queue.put(new PendingBatch(null, null));
+                    return;
+                }
+                final int firstLineNumber = lineNumber;
+                lineNumber += lines.size();
+                queue.put(new PendingBatch(executor.submit(() -> decode(lines, firstLineNumber)), null));
+            }
+        } catch (final InterruptedException e) {
+            // the iterator is being closed
+        } catch (final Throwable t) {
+            try {
+                queue.put(new PendingBatch(null, t));
+            } catch (final InterruptedException e) {
+                // the iterator is being closed
+            }
+        }
+    }
+
+    /**
+     * Decodes the lines of a batch, up to the first line that fails to be decoded, so that the variants before it
+     * are returned before the failure is thrown, as when decoding serially.
+     */
+    private DecodedBatch decode(final List<String> lines, final int firstLineNumber) {
+        AbstractVCFCodec batchCodec = idleCodecs.poll();
+        if (batchCodec == null) {
+            batchCodec = newCodec();
+        }
+        try {
+            synchronized (batchCodec) {
+                batchCodec.lineNo = firstLineNumber;
+            }
+            final List<VariantContext> variants = new ArrayList<>(lines.size());
+            for (final String line : lines) {
+                final VariantContext vc;
+                try {
+                    vc = batchCodec.decode(line);
+                } catch (final RuntimeException e) {
+                    return new DecodedBatch(variants, e);
+                }
+                if (vc != null) {
+                    variants.add(vc);
+                }
+            }
+            return new DecodedBatch(variants, null);
+        } finally {
+            idleCodecs.add(batchCodec);
+        }
+    }
+
+    private AbstractVCFCodec newCodec() {
+        final AbstractVCFCodec batchCodec = codecFactory.get();
+        // the header was already repaired, if need be, when it was read, so it is shared as is
+        batchCodec.disableOnTheFlyModifications();
+        batchCodec.setVCFHeader(codec.getHeader(), codec.getVersion());
+        batchCodec.setName(codec.getName());
+        batchCodec.setFieldSelection(codec.getFieldSelection());
+        return batchCodec;
+    }
+
+    @Override
+    public void close() {
+        readerThread.interrupt();
+        try {
+            readerThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted waiting for the VCF line reader thread to finish");
+        }
+        for (final PendingBatch pending : queue) {
+            if (pending.variants != null) {
+                pending.variants.cancel(false);
+            }
+        }
+        queue.clear();
+        batchIterator = Collections.emptyIterator();
+        batchError = null;
+        last = new PendingBatch(null, null);
+        CloserUtil.close(lineIterator);
+    }
+
+    /**
+     * The variants decoded from a batch of lines, and the failure to decode the line after the last of them, if any.
+     */
+    private static final class DecodedBatch {
+        private final List<VariantContext> variants;
+        private final RuntimeException error;
+
+        DecodedBatch(final List<VariantContext> variants, final RuntimeException error) {
+            this.variants = variants;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A batch of lines being decoded, a failure to read lines, or the end of the stream.
+     */
+    private static final class PendingBatch {
+        private final Future<DecodedBatch> variants;
+        private final Throwable error;
+
+        PendingBatch(final Future<DecodedBatch> variants, final Throwable error) {
+            this.variants = variants;
+            this.error = error;
+        }
+
+        boolean isEndOfStream() {
+            return variants == null && error == null;
+        }
+
+        /**
+         * Waits for the batch to be decoded, and rethrows any failure on the calling thread.
+         */
+        DecodedBatch getDecodedBatch() {
+            rethrow(error);
+            try {
+                return variants.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for VCF lines to be decoded", e);
+            } catch (final ExecutionException e) {
+                rethrow(e.getCause());
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void rethrow(final Throwable t) {
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
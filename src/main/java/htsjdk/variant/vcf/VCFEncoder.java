@@ -5,6 +5,7 @@ import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.GenotypesContext;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -310,7 +311,14 @@ public class VCFEncoder {
      * @param vcfoutput VCF output
      * @throws IOException
      */
-    private void appendGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {final int ploidy = vc.getMaxPloidy(2);
+    private void appendGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {
+        final GenotypeColumns columns = vc.getGenotypes().getColumns();
+        if (columns != null && columns.getSampleNames().equals(this.header.getGenotypeSamples()) && columns.getAlleles().equals(vc.getAlleles())) {
+            appendColumnarGenotypeData(columns, genotypeFormatKeys, vcfoutput);
+            return;
+        }
+
+        final int ploidy = vc.getMaxPloidy(2);
 
         for (final String sample : this.header.getGenotypeSamples()) {
             vcfoutput.append(VCFConstants.FIELD_SEPARATOR);
@@ -363,24 +371,98 @@ public class VCFEncoder {
                 }
             }
 
-            // strip off trailing missing values
-            if (!outputTrailingFormatFields) {
-                for (int i = attrs.size() - 1; i >= 0; i--) {
-                    if (isMissingValue(attrs.get(i))) {
-                        attrs.remove(i);
+            appendGenotypeFields(attrs, genotypeFormatKeys, vcfoutput);
+        }
+    }
+
+    /**
+     * Writes the genotypes of samples in the same order as in the header straight from columns, whose alleles are
+     * those of the variant context, without creating {@link Genotype}s.
+     */
+    private void appendColumnarGenotypeData(final GenotypeColumns columns, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {
+        final String[] alleleStrings = new String[columns.getAlleles().size()];
+        for (int i = 0; i < alleleStrings.length; i++) {
+            alleleStrings[i] = String.valueOf(i);
+        }
+
+        for (int sample = 0; sample < columns.getNSamples(); sample++) {
+            vcfoutput.append(VCFConstants.FIELD_SEPARATOR);
+
+            final List<String> attrs = new ArrayList<>(genotypeFormatKeys.size());
+            for (final String field : genotypeFormatKeys) {
+                if (field.equals(VCFConstants.GENOTYPE_KEY)) {
+                    final int samplePloidy = columns.getPloidy(sample);
+                    if (samplePloidy == 0) {
+                        throw new IllegalStateException("GTs cannot be missing for some samples if they are available for others in the record");
+                    }
+                    for (int i = 0; i < samplePloidy; i++) {
+                        if (i > 0) {
+                            vcfoutput.append(columns.isPhased(sample) ? VCFConstants.PHASED : VCFConstants.UNPHASED);
+                        }
+                        final int index = columns.getAlleleIndex(sample, i);
+                        vcfoutput.append(index == GenotypeColumns.NO_CALL_INDEX ? VCFConstants.EMPTY_ALLELE : alleleStrings[index]);
+                    }
+                    continue;
+                }
+
+                final String outputValue;
+                if (field.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
+                    final String filter = columns.getFilter(sample);
+                    outputValue = filter != null ? filter : VCFConstants.PASSES_FILTERS_v4;
+                } else {
+                    final IntGenotypeFieldAccessors.Accessor accessor = GENOTYPE_FIELD_ACCESSORS.getAccessor(field);
+                    if (accessor != null) {
+                        final int size = accessor.getSize(columns, sample);
+                        if (size == 0) {
+                            outputValue = VCFConstants.MISSING_VALUE_v4;
+                        } else if (size == 1) { // fast path
+                            outputValue = Integer.toString(accessor.getValue(columns, sample, 0));
+                        } else {
+                            final StringBuilder sb = new StringBuilder();
+                            sb.append(accessor.getValue(columns, sample, 0));
+                            for (int i = 1; i < size; i++) {
+                                sb.append(',');
+                                sb.append(accessor.getValue(columns, sample, i));
+                            }
+                            outputValue = sb.toString();
+                        }
                     } else {
-                        break;
+                        final Map<String, Object> attributes = columns.getAttributes(sample);
+                        final Object val = attributes.containsKey(field) ? attributes.get(field) : VCFConstants.MISSING_VALUE_v4;
+                        outputValue = formatVCFField(val);
                     }
                 }
+
+                if (outputValue != null) {
+                    attrs.add(outputValue);
+                }
             }
 
-            for (int i = 0; i < attrs.size(); i++) {
-                if ( i > 0 || genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY)) {
-                    vcfoutput.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR);
+            appendGenotypeFields(attrs, genotypeFormatKeys, vcfoutput);
+        }
+    }
+
+    /**
+     * Appends the fields of a genotype after its GT, if any.
+     */
+    private void appendGenotypeFields(final List<String> attrs, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {
+        // strip off trailing missing values
+        if (!outputTrailingFormatFields) {
+            for (int i = attrs.size() - 1; i >= 0; i--) {
+                if (isMissingValue(attrs.get(i))) {
+                    attrs.remove(i);
+                } else {
+                    break;
                 }
-                vcfoutput.append(attrs.get(i));
             }
         }
+
+        for (int i = 0; i < attrs.size(); i++) {
+            if ( i > 0 || genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY)) {
+                vcfoutput.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR);
+            }
+            vcfoutput.append(attrs.get(i));
+        }
     }
 
     /**
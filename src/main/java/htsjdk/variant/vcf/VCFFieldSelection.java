@@ -0,0 +1,264 @@
+package htsjdk.variant.vcf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The INFO and FORMAT fields, and the samples, to decode from the records of a VCF or BCF file, for readers that only
+ * need some of them. The fields and samples that are not selected are skipped where they are found in each record,
+ * without creating the strings or objects of their values, and are absent from the decoded
+ * {@link htsjdk.variant.variantcontext.VariantContext}s, which only hold the genotypes of the selected samples.
+ *
+ * By default all fields are decoded. The END INFO field is always used to compute the end of a record, but is only
+ * kept as an attribute if it is selected. Since the VCF codecs decode GL into PL, GL is decoded from VCF files if
+ * either GL or PL is selected.
+ *
+ * Selections are given to codecs and readers, as with {@link AbstractVCFCodec#setFieldSelection(VCFFieldSelection)},
+ * and should not be modified while they decode records.
+ */
+public final class VCFFieldSelection {
+    private Set<String> infoKeys = null;
+    private String[] infoKeyArray = null;
+    private Set<String> formatKeys = null;
+    private boolean includeGenotypes = true;
+    private Set<String> samples = null;
+    // the subset of the samples of the last header it was computed for
+    private volatile SampleSubset sampleSubset = null;
+
+    /**
+     * @param infoKeys the keys of the INFO fields to decode, or null to decode all of them
+     * @return this selection
+     */
+    public VCFFieldSelection setInfoKeys(final Collection<String> infoKeys) {
+        this.infoKeys = infoKeys == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(infoKeys));
+        this.infoKeyArray = infoKeys == null ? null : this.infoKeys.toArray(new String[0]);
+        return this;
+    }
+
+    /**
+     * @param formatKeys the keys of the FORMAT fields to decode, or null to decode all of them
+     * @return this selection
+     */
+    public VCFFieldSelection setFormatKeys(final Collection<String> formatKeys) {
+        this.formatKeys = formatKeys == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(formatKeys));
+        return this;
+    }
+
+    /**
+     * @param includeGenotypes false to skip the genotypes of all samples, as for a sites-only file
+     * @return this selection
+     */
+    public VCFFieldSelection setIncludeGenotypes(final boolean includeGenotypes) {
+        this.includeGenotypes = includeGenotypes;
+        return this;
+    }
+
+    /**
+     * @param samples the names of the samples whose genotypes are decoded, or null to decode the genotypes of all
+     *                samples. All of them must be samples of the files that are read.
+     * @return this selection
+     */
+    public VCFFieldSelection setSamples(final Collection<String> samples) {
+        this.samples = samples == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(samples));
+        this.sampleSubset = null;
+        return this;
+    }
+
+    /**
+     * @return the keys of the INFO fields to decode, or null if all of them are decoded
+     */
+    public Set<String> getInfoKeys() {
+        return infoKeys;
+    }
+
+    /**
+     * @return the keys of the FORMAT fields to decode, or null if all of them are decoded
+     */
+    public Set<String> getFormatKeys() {
+        return formatKeys;
+    }
+
+    /**
+     * @return the names of the samples whose genotypes are decoded, or null if those of all samples are decoded
+     */
+    public Set<String> getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return true if the genotypes of the samples are decoded
+     */
+    public boolean includesGenotypes() {
+        return includeGenotypes;
+    }
+
+    /**
+     * @return true if all the INFO fields are decoded
+     */
+    public boolean selectsAllInfoKeys() {
+        return infoKeys == null;
+    }
+
+    /**
+     * @return true if all the FORMAT fields are decoded
+     */
+    public boolean selectsAllFormatKeys() {
+        return formatKeys == null;
+    }
+
+    /**
+     * @return true if the genotypes of all samples are decoded
+     */
+    public boolean selectsAllSamples() {
+        return samples == null;
+    }
+
+    /**
+     * @return true if all the FORMAT fields of all samples are decoded, so that the genotypes of a record hold
+     * everything that was encoded for them
+     */
+    public boolean selectsAllGenotypeData() {
+        return formatKeys == null && samples == null;
+    }
+
+    /**
+     * @return the selected samples of header, or null if all samples are selected
+     * @throws IllegalArgumentException if some selected samples are not in header
+     */
+    public SampleSubset getSampleSubset(final VCFHeader header) {
+        if (samples == null) {
+            return null;
+        }
+        SampleSubset subset = sampleSubset;
+        if (subset == null || subset.header != header) {
+            subset = new SampleSubset(header, samples);
+            sampleSubset = subset;
+        }
+        return subset;
+    }
+
+    /**
+     * @return true if the INFO field with the given key is decoded
+     */
+    public boolean isInfoKeySelected(final String key) {
+        return infoKeys == null || infoKeys.contains(key);
+    }
+
+    /**
+     * @return true if the FORMAT field with the given key is decoded
+     */
+    public boolean isFormatKeySelected(final String key) {
+        return formatKeys == null || formatKeys.contains(key);
+    }
+
+    /**
+     * @return true if the INFO field whose key is in text from start (inclusive) to end (exclusive) is decoded, without
+     * creating the string of the key
+     */
+    boolean isInfoKeySelected(final String text, final int start, final int end) {
+        if (infoKeyArray == null) {
+            return true;
+        }
+        final int length = end - start;
+        for (final String key : infoKeyArray) {
+            if (key.length() == length && text.regionMatches(start, key, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "VCFFieldSelection{infoKeys=" + (infoKeys == null ? "all" : infoKeys) +
+                ", formatKeys=" + (formatKeys == null ? "all" : formatKeys) +
+                ", includeGenotypes=" + includeGenotypes +
+                ", samples=" + (samples == null ? "all" : samples.size()) + '}';
+    }
+
+    /**
+     * The selected samples of a header, in the order of the header, with the lookups codecs need to decode only
+     * their genotypes.
+     */
+    public static final class SampleSubset {
+        private final VCFHeader header;
+        private final int[] offsets;
+        private final List<String> sampleNames;
+        private final List<String> sampleNamesInOrder;
+        private final Map<String, Integer> sampleNameToOffset;
+
+        private SampleSubset(final VCFHeader header, final Set<String> samples) {
+            this.header = header;
+            final List<String> headerSamples = header.getGenotypeSamples();
+            final Map<String, Integer> headerOffsets = header.getSampleNameToOffset();
+            final List<String> missing = samples.stream()
+                    .filter(sample -> !headerOffsets.containsKey(sample))
+                    .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("The selected samples are not in the header: " + missing);
+            }
+
+            final int[] selectedOffsets = new int[samples.size()];
+            int i = 0;
+            for (final String sample : samples) {
+                selectedOffsets[i++] = headerOffsets.get(sample);
+            }
+            Arrays.sort(selectedOffsets);
+            this.offsets = selectedOffsets;
+
+            final List<String> names = new ArrayList<>(offsets.length);
+            final Map<String, Integer> nameToOffset = new HashMap<>(offsets.length * 2);
+            for (final int offset : offsets) {
+                nameToOffset.put(headerSamples.get(offset), names.size());
+                names.add(headerSamples.get(offset));
+            }
+            this.sampleNames = Collections.unmodifiableList(names);
+            this.sampleNameToOffset = Collections.unmodifiableMap(nameToOffset);
+            this.sampleNamesInOrder = Collections.unmodifiableList(
+                    names.stream().sorted().collect(Collectors.toList()));
+        }
+
+        /**
+         * @return the number of selected samples
+         */
+        public int size() {
+            return offsets.length;
+        }
+
+        /**
+         * @return the offsets of the selected samples among the samples of the header, in increasing order
+         */
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        /**
+         * @return the names of the selected samples, in the order of the header
+         */
+        public List<String> getSampleNames() {
+            return sampleNames;
+        }
+
+        /**
+         * @return the names of the selected samples, sorted
+         */
+        public List<String> getSampleNamesInOrder() {
+            return sampleNamesInOrder;
+        }
+
+        /**
+         * @return the offset of each selected sample among the selected samples
+         */
+        public Map<String, Integer> getSampleNameToOffset() {
+            return sampleNameToOffset;
+        }
+    }
+}
@@ -24,15 +24,18 @@
 
 package htsjdk.variant.vcf;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.FeatureCodec;
-import htsjdk.tribble.FeatureReader;
 import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.utils.ValidationUtils;
 import htsjdk.variant.bcf2.BCF2Codec;
 import htsjdk.variant.variantcontext.VariantContext;
 
@@ -40,6 +43,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -47,7 +51,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class VCFFileReader implements VCFReader {
 
-    private final FeatureReader<VariantContext> reader;
+    private final AbstractFeatureReader<VariantContext, ?> reader;
+    private final FeatureCodec<VariantContext, ?> codec;
+    private final boolean isBCF;
+
+    private ExecutorService decodingExecutor = null;
+    private int readAheadBatches = 0;
+    private VCFFieldSelection fieldSelection = null;
 
     /**
      * Returns true if the given file appears to be a BCF file.
@@ -142,21 +152,72 @@ public class VCFFileReader implements VCFReader {
      * Allows construction of a VCFFileReader that will or will not assert the presence of an index as desired.
      */
     public VCFFileReader(final Path path, final boolean requireIndex) {
+        this.codec = getCodecForPath(path);
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().toString(),
-                getCodecForPath(path),
+                codec,
                 requireIndex);
+        this.isBCF = isBCF(path);
+        initDefaultDecodingExecutor();
     }
 
     /**
      * Allows construction of a VCFFileReader with a specified index path.
      */
     public VCFFileReader(final Path path, final Path indexPath, final boolean requireIndex) {
+        this.codec = getCodecForPath(path);
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().toString(),
                 indexPath.toUri().toString(),
-                getCodecForPath(path),
+                codec,
                 requireIndex);
+        this.isBCF = isBCF(path);
+        initDefaultDecodingExecutor();
+    }
+
+    private void initDefaultDecodingExecutor() {
+        if (Defaults.VCF_DECODING_THREADS > 0) {
+            setDecodingExecutor(ParallelVCFIterator.getDefaultDecodingExecutor(), 2 * Defaults.VCF_DECODING_THREADS);
+        }
+    }
+
+    /**
+     * Decode the lines of the file concurrently on the given executor when iterating over all of its records with
+     * {@link #iterator()}, reading them ahead on a dedicated background thread, as a {@link ParallelVCFIterator}.
+     * Has no effect on queries, nor on BCF files.
+     *
+     * @param executor executor on which lines are decoded, or null to decode lines on the calling thread. It is not
+     *                 shut down when this reader is closed.
+     * @param readAheadBatches maximum number of batches of lines read ahead of the batch being iterated over
+     */
+    public void setDecodingExecutor(final ExecutorService executor, final int readAheadBatches) {
+        ValidationUtils.validateArg(executor == null || readAheadBatches > 0,
+                () -> "readAheadBatches must be positive: " + readAheadBatches);
+        this.decodingExecutor = executor;
+        this.readAheadBatches = readAheadBatches;
+    }
+
+    /**
+     * Only decode the INFO and FORMAT fields, and the genotypes of the samples, selected by fieldSelection from the
+     * records returned by iterators and queries created after this call, skipping the others without decoding them.
+     * The header is still that of the file, with all of its samples.
+     *
+     * @param fieldSelection the fields to decode, or null to decode all of them
+     */
+    public void setFieldSelection(final VCFFieldSelection fieldSelection) {
+        this.fieldSelection = fieldSelection;
+        if (codec instanceof AbstractVCFCodec) {
+            ((AbstractVCFCodec) codec).setFieldSelection(fieldSelection);
+        } else {
+            ((BCF2Codec) codec).setFieldSelection(fieldSelection);
+        }
+    }
+
+    /**
+     * @return the fields decoded from the records, or null if all of them are
+     */
+    public VCFFieldSelection getFieldSelection() {
+        return fieldSelection;
     }
 
     /**
@@ -326,12 +387,42 @@ public class VCFFileReader implements VCFReader {
     @Override
     public CloseableIterator<VariantContext> iterator() {
         try {
+            if (decodingExecutor != null && !isBCF) {
+                return openParallelIterator();
+            }
             return reader.iterator();
         } catch (final IOException ioe) {
             throw new TribbleException("Could not create an iterator from a feature reader.", ioe);
         }
     }
 
+    /**
+     * Opens the file as the iterators of the underlying reader do, and decodes its lines with the header already
+     * read by this reader, rather than parsing it again.
+     */
+    private ParallelVCFIterator openParallelIterator() throws IOException {
+        final AbstractVCFCodec readerCodec = (AbstractVCFCodec) codec;
+        final VCFCodec iteratorCodec = new VCFCodec();
+        // the header was already repaired, if need be, when it was read, so it is shared as is
+        iteratorCodec.disableOnTheFlyModifications();
+        iteratorCodec.setVCFHeader(getHeader(), readerCodec.getVersion());
+        iteratorCodec.setName(readerCodec.getName());
+        iteratorCodec.setFieldSelection(fieldSelection);
+        final LineIterator lineIterator = iteratorCodec.makeSourceFromStream(reader.openFeatureStream());
+        try {
+            // skip the header lines, counting them as the codec would have
+            while (lineIterator.hasNext() && lineIterator.peek().startsWith(VCFHeader.HEADER_INDICATOR)) {
+                lineIterator.next();
+                iteratorCodec.lineNo++;
+            }
+        } catch (final RuntimeException e) {
+            CloserUtil.close(lineIterator);
+            throw e;
+        }
+        return new ParallelVCFIterator(lineIterator, iteratorCodec, VCFCodec::new, decodingExecutor,
+                readAheadBatches, ParallelVCFIterator.DEFAULT_LINES_PER_BATCH);
+    }
+
     /**
      * Queries for records overlapping the region specified.
      * Note that this method requires VCF files with an associated index.  If no index exists a TribbleException will be thrown.
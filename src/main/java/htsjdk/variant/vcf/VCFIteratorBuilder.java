@@ -29,9 +29,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.util.AbstractIterator;
 import htsjdk.samtools.util.CloserUtil;
@@ -39,6 +41,7 @@ import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.readers.LineIterator;
 import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.tribble.util.ParsingUtils;
+import htsjdk.utils.ValidationUtils;
 import htsjdk.variant.bcf2.BCF2Codec;
 import htsjdk.variant.bcf2.BCFVersion;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -63,6 +66,45 @@ import htsjdk.variant.variantcontext.VariantContext;
 
 public class VCFIteratorBuilder {
 
+    private ExecutorService decodingExecutor = null;
+    private int readAheadBatches = 0;
+    private VCFFieldSelection fieldSelection = null;
+
+    public VCFIteratorBuilder() {
+        if (Defaults.VCF_DECODING_THREADS > 0) {
+            setDecodingExecutor(ParallelVCFIterator.getDefaultDecodingExecutor(), 2 * Defaults.VCF_DECODING_THREADS);
+        }
+    }
+
+    /**
+     * Decode the lines of VCF text files concurrently on the given executor, reading them ahead on a dedicated
+     * background thread, as a {@link ParallelVCFIterator}. BCF files are always decoded on the calling thread.
+     *
+     * @param executor executor on which lines are decoded, or null to decode lines on the calling thread. It is not
+     *                 shut down when the iterators are closed.
+     * @param readAheadBatches maximum number of batches of lines read ahead of the batch being iterated over
+     * @return this builder
+     */
+    public VCFIteratorBuilder setDecodingExecutor(final ExecutorService executor, final int readAheadBatches) {
+        ValidationUtils.validateArg(executor == null || readAheadBatches > 0,
+                () -> "readAheadBatches must be positive: " + readAheadBatches);
+        this.decodingExecutor = executor;
+        this.readAheadBatches = readAheadBatches;
+        return this;
+    }
+
+    /**
+     * Only decode the INFO and FORMAT fields, and the genotypes of the samples, selected by fieldSelection from the
+     * records of the iterators, skipping the others without decoding them.
+     *
+     * @param fieldSelection the fields to decode, or null to decode all of them
+     * @return this builder
+     */
+    public VCFIteratorBuilder setFieldSelection(final VCFFieldSelection fieldSelection) {
+        this.fieldSelection = fieldSelection;
+        return this;
+    }
+
     /**
      * creates a VCF iterator from an input stream It detects if the stream is a
      * BCF stream or a GZipped stream.
@@ -71,7 +113,6 @@ public class VCFIteratorBuilder {
      * @return the VCFIterator
      * @throws IOException
      */
-    @SuppressWarnings("static-method")
     public VCFIterator open(final InputStream in) throws IOException {
         if (in == null) {
             throw new IllegalArgumentException("input stream is null");
@@ -91,10 +132,23 @@ public class VCFIteratorBuilder {
 
         if (bcfVersion != null) {
             //this is BCF
-            return new BCFInputStreamIterator(bufferedinput);
+            return new BCFInputStreamIterator(bufferedinput, fieldSelection);
+        } else if (decodingExecutor != null) {
+            //this is VCF, decoded in parallel
+            final VCFCodec codec = new VCFCodec();
+            codec.setFieldSelection(fieldSelection);
+            final LineIterator lineIterator = codec.makeSourceFromStream(bufferedinput);
+            try {
+                codec.readActualHeader(lineIterator);
+            } catch (final RuntimeException e) {
+                CloserUtil.close(lineIterator);
+                throw e;
+            }
+            return new ParallelVCFIterator(lineIterator, codec, VCFCodec::new, decodingExecutor,
+                    readAheadBatches, ParallelVCFIterator.DEFAULT_LINES_PER_BATCH);
         } else {
             //this is VCF
-            return new VCFReaderIterator(bufferedinput);
+            return new VCFReaderIterator(bufferedinput, fieldSelection);
         }
     }
 
@@ -171,8 +225,9 @@ public class VCFIteratorBuilder {
         /** Iterator over the lines of the VCF */
         private final LineIterator lineIterator;
 
-        VCFReaderIterator(final InputStream inputStream) {
+        VCFReaderIterator(final InputStream inputStream, final VCFFieldSelection fieldSelection) {
             this.inputStream = inputStream;
+            this.codec.setFieldSelection(fieldSelection);
             this.lineIterator = this.codec.makeSourceFromStream(this.inputStream);
             this.vcfHeader = (VCFHeader) this.codec.readActualHeader(this.lineIterator);
         }
@@ -205,7 +260,8 @@ public class VCFIteratorBuilder {
         /** the VCF header */
         private final VCFHeader vcfHeader;
 
-        BCFInputStreamIterator(final InputStream inputStream) {
+        BCFInputStreamIterator(final InputStream inputStream, final VCFFieldSelection fieldSelection) {
+            this.codec.setFieldSelection(fieldSelection);
             this.inputStream = this.codec.makeSourceFromStream(inputStream);
             this.vcfHeader = (VCFHeader) this.codec.readHeader(this.inputStream).getHeaderValue();
         }
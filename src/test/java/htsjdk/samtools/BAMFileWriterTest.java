@@ -35,8 +35,10 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Test that BAM writing doesn't blow up.  For presorted writing, the resulting BAM file is read and contents are
@@ -542,6 +544,62 @@ public class BAMFileWriterTest extends HtsjdkTest {
         }
     }
 
+    private SAMRecordSetBuilder getManyRecordsBuilder() {
+        // enough records to span many BGZF blocks, so that some are in flight when compressed in parallel
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 10000; i++) {
+            builder.addFrag("read" + i, i % 3, 1 + i * 10, i % 2 == 0);
+        }
+        builder.addUnmappedFragment("unmapped");
+        return builder;
+    }
+
+    // the records are copied as they are written and the copies are then altered, as a caller that reuses a
+    // record would, which must not affect the index
+    private byte[] writeBAMIndex(final SAMRecordSetBuilder builder, final boolean reuseRecords) throws IOException {
+        final File bamFile = File.createTempFile("test.", FileExtensions.BAM);
+        bamFile.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true)
+                .makeBAMWriter(builder.getHeader(), true, bamFile)) {
+            for (final SAMRecord rec : builder) {
+                writeAndAlter(writer::addAlignment, rec, reuseRecords);
+            }
+        }
+        final File indexFile = SamFiles.findIndex(bamFile);
+        indexFile.deleteOnExit();
+        return Files.readAllBytes(indexFile.toPath());
+    }
+
+    private byte[] writeBAMStreamIndex(final SAMRecordSetBuilder builder, final boolean reuseRecords) {
+        final ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+        final BAMStreamWriter writer = new BAMStreamWriter(new ByteArrayOutputStream(), indexStream, null, 0, builder.getHeader());
+        writer.writeHeader(builder.getHeader());
+        for (final SAMRecord rec : builder) {
+            writeAndAlter(writer::writeAlignment, rec, reuseRecords);
+        }
+        writer.finish(true);
+        return indexStream.toByteArray();
+    }
+
+    private static void writeAndAlter(final Consumer<SAMRecord> writer, final SAMRecord rec, final boolean alter) {
+        if (alter) {
+            final SAMRecord copy = rec.deepCopy();
+            writer.accept(copy);
+            copy.setReferenceIndex(0);
+            copy.setAlignmentStart(1);
+            copy.setReadUnmappedFlag(!copy.getReadUnmappedFlag());
+        } else {
+            writer.accept(rec);
+        }
+    }
+
+    @Test
+    public void testIndexUnaffectedByAlteringWrittenRecords() throws IOException {
+        final SAMRecordSetBuilder builder = getManyRecordsBuilder();
+        Assert.assertEquals(writeBAMIndex(builder, true), writeBAMIndex(builder, false));
+        Assert.assertEquals(writeBAMStreamIndex(builder, true), writeBAMStreamIndex(builder, false));
+    }
+
     @Test
     public void testWriteHeader() throws IOException {
         final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
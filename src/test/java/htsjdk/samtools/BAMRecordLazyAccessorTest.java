@@ -0,0 +1,216 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.filter.OverclippedReadFilter;
+import htsjdk.samtools.filter.TagFilter;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class BAMRecordLazyAccessorTest extends HtsjdkTest {
+    private static final String[] TAGS = {"XA", "XC", "XS", "XI", "XU", "XF", "XZ", "XH", "XB", "RG", "NM"};
+
+    /**
+     * Round trips records through the BAM codec, so that they are decoded lazily as they are when read from a file.
+     */
+    private static List<BAMRecord> toBAMRecords(final SAMFileHeader header, final List<SAMRecord> records) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.setOutputStream(out);
+        records.forEach(codec::encode);
+        codec.setInputStream(new ByteArrayInputStream(out.toByteArray()));
+        final List<BAMRecord> bamRecords = new ArrayList<>();
+        for (SAMRecord record = codec.decode(); record != null; record = codec.decode()) {
+            bamRecords.add((BAMRecord) record);
+        }
+        Assert.assertEquals(bamRecords.size(), records.size());
+        return bamRecords;
+    }
+
+    private static SAMRecordSetBuilder createRecords() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        builder.setReadLength(20);
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        final String[] cigars = {"20M", "5S15M", "2H3S10M2D5M5S", "10M1000N10M", "4S2I8M2P5=1X", "20S1N", "1S19M1H"};
+        for (int i = 0; i < 100; i++) {
+            final SAMRecord record = builder.addFrag("read" + i, 0, 1 + random.nextInt(1000), random.nextBoolean(),
+                    i % 10 == 0, i % 10 == 0 ? null : cigars[i % cigars.length], null, 30);
+            // a varied subset of tags of each type, in varied orders
+            for (int t = 0; t < TAGS.length; t++) {
+                if (random.nextBoolean()) {
+                    continue;
+                }
+                switch (TAGS[t]) {
+                    case "XA": record.setAttribute("XA", (char) ('A' + random.nextInt(26))); break;
+                    case "XC": record.setAttribute("XC", random.nextInt(256) - 128); break;
+                    case "XS": record.setAttribute("XS", random.nextInt(65536)); break;
+                    case "XI": record.setAttribute("XI", random.nextInt()); break;
+                    case "XU": record.setAttribute("XU", 0x80000000L + random.nextInt(1000)); break;
+                    case "XF": record.setAttribute("XF", random.nextFloat()); break;
+                    case "XZ": record.setAttribute("XZ", "value" + random.nextInt(10)); break;
+                    case "XH": record.setAttribute("XH", new byte[]{1, 2, (byte) random.nextInt()}); break;
+                    case "XB": record.setAttribute("XB", new int[random.nextInt(5)]); break;
+                    case "RG": record.setAttribute("RG", "rg" + random.nextInt(3)); break;
+                    case "NM": record.setAttribute("NM", random.nextInt(10)); break;
+                    default: throw new IllegalStateException();
+                }
+            }
+        }
+        return builder;
+    }
+
+    @DataProvider(name = "readsWithAccessors")
+    public Object[][] readsWithAccessors() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "readsWithAccessors")
+    public void testAccessorsMatchDecodedRecord(final boolean accessAttributesFirst) {
+        final SAMRecordSetBuilder builder = createRecords();
+        final List<SAMRecord> expectedRecords = new ArrayList<>(builder.getRecords());
+        final List<BAMRecord> bamRecords = toBAMRecords(builder.getHeader(), expectedRecords);
+        for (int i = 0; i < bamRecords.size(); i++) {
+            final SAMRecord expected = expectedRecords.get(i);
+            final BAMRecord actual = bamRecords.get(i);
+            if (!accessAttributesFirst) {
+                // decode everything, so that the fallback paths are exercised
+                actual.getCigar();
+                actual.getAttributes();
+            }
+            for (final String tag : TAGS) {
+                Assert.assertEquals(actual.hasAttribute(tag), expected.hasAttribute(tag), tag);
+                final Object expectedValue = expected.getAttribute(tag);
+                final Object actualValue = actual.getAttribute(tag);
+                if (expectedValue instanceof byte[]) {
+                    Assert.assertEquals((byte[]) actualValue, (byte[]) expectedValue, tag);
+                } else if (expectedValue instanceof int[]) {
+                    Assert.assertEquals((int[]) actualValue, (int[]) expectedValue, tag);
+                } else {
+                    Assert.assertEquals(actualValue, expectedValue, tag);
+                }
+            }
+
+            Assert.assertEquals(actual.getCigarLength(), expected.getCigarLength());
+            for (int e = 0; e < expected.getCigarLength(); e++) {
+                Assert.assertEquals(actual.getCigarElementOperator(e), expected.getCigar().getCigarElement(e).getOperator());
+                Assert.assertEquals(actual.getCigarElementLength(e), expected.getCigar().getCigarElement(e).getLength());
+            }
+            Assert.assertEquals(actual.getAlignmentEnd(), expected.getAlignmentEnd());
+            if (!expected.getReadUnmappedFlag()) {
+                Assert.assertEquals(actual.getUnclippedStart(), expected.getUnclippedStart());
+                Assert.assertEquals(actual.getUnclippedEnd(), expected.getUnclippedEnd());
+            }
+            Assert.assertEquals(actual.getSAMString(), expected.getSAMString());
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testCigarElementOutOfBounds() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        builder.addFrag("read", 0, 1, false, false, "10M", null, 30);
+        final BAMRecord record = toBAMRecords(builder.getHeader(), new ArrayList<>(builder.getRecords())).get(0);
+        record.getCigarElementLength(1);
+    }
+
+    @Test
+    public void testAccessorsAfterChanges() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final SAMRecord original = builder.addFrag("read", 0, 100, false, false, "2S8M", null, 30);
+        original.setAttribute("XB", new byte[]{1, 2, 3});
+        original.setAttribute("NM", 1);
+        final BAMRecord record = toBAMRecords(builder.getHeader(), new ArrayList<>(builder.getRecords())).get(0);
+
+        Assert.assertEquals(record.getAlignmentEnd(), 107);
+        record.setCigarString("4S6M");
+        Assert.assertEquals(record.getCigarElementOperator(0), CigarOperator.S);
+        Assert.assertEquals(record.getCigarElementLength(0), 4);
+        Assert.assertEquals(record.getAlignmentEnd(), 105);
+        Assert.assertEquals(record.getUnclippedStart(), 96);
+
+        // arrays changed in place are retained, as for records that are not lazily decoded
+        ((byte[]) record.getAttribute("XB"))[0] = 7;
+        Assert.assertEquals((byte[]) record.getAttribute("XB"), new byte[]{7, 2, 3});
+
+        record.setAttribute("NM", 2);
+        Assert.assertEquals(record.getAttribute("NM"), 2);
+        record.setAttribute("NM", null);
+        Assert.assertFalse(record.hasAttribute("NM"));
+        Assert.assertNull(record.getAttribute("NM"));
+    }
+
+    @Test
+    public void testAlignmentEndFollowsChanges() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        builder.addFrag("read", 0, 100, false, false, "2S8M", null, 30);
+        final BAMRecord record = toBAMRecords(builder.getHeader(), new ArrayList<>(builder.getRecords())).get(0);
+
+        Assert.assertEquals(record.getAlignmentEnd(), 107);
+        Assert.assertEquals(record.getAlignmentEnd(), 107);
+        record.setAlignmentStart(200);
+        Assert.assertEquals(record.getAlignmentEnd(), 207);
+        record.setCigarString("2S4M2D4M");
+        Assert.assertEquals(record.getAlignmentEnd(), 209);
+    }
+
+    @DataProvider(name = "invalidCigarAccessors")
+    public Object[][] invalidCigarAccessors() {
+        return new Object[][]{
+                {(Consumer<BAMRecord>) BAMRecord::getAlignmentEnd},
+                {(Consumer<BAMRecord>) BAMRecord::getUnclippedStart},
+                {(Consumer<BAMRecord>) BAMRecord::getUnclippedEnd},
+                {(Consumer<BAMRecord>) r -> r.getCigarElementOperator(0)},
+                {(Consumer<BAMRecord>) r -> r.getCigarElementLength(0)},
+        };
+    }
+
+    @Test(dataProvider = "invalidCigarAccessors", expectedExceptions = SAMFormatException.class)
+    public void testAccessorsValidateCigar(final Consumer<BAMRecord> accessor) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        builder.setReadLength(10);
+        // a hard clip can only be at either end of the cigar
+        builder.addFrag("read", 0, 100, false, false, "5M2H5M", null, 30);
+        final BAMRecord record = toBAMRecords(builder.getHeader(), new ArrayList<>(builder.getRecords())).get(0);
+        record.setValidationStringency(ValidationStringency.STRICT);
+        accessor.accept(record);
+    }
+
+    @Test
+    public void testLongCigar() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final StringBuilder cigar = new StringBuilder();
+        for (int i = 0; i < BAMRecord.MAX_CIGAR_OPERATORS; i++) {
+            cigar.append("1M1D");
+        }
+        cigar.append("1M");
+        builder.setReadLength(BAMRecord.MAX_CIGAR_OPERATORS + 1);
+        final SAMRecord original = builder.addFrag("read", 0, 1, false, false, cigar.toString(), null, 30);
+        final BAMRecord record = toBAMRecords(builder.getHeader(), new ArrayList<>(builder.getRecords())).get(0);
+
+        // the CG tag holding the real cigar is hidden, and the sentinel cigar is not exposed by the accessors
+        Assert.assertFalse(record.hasAttribute(SAMTag.CG.name()));
+        Assert.assertEquals(record.getAlignmentEnd(), original.getAlignmentEnd());
+        Assert.assertEquals(record.getCigarElementOperator(1), CigarOperator.D);
+        Assert.assertEquals(record.getCigarLength(), original.getCigarLength());
+    }
+
+    @Test
+    public void testFilters() {
+        final SAMRecordSetBuilder builder = createRecords();
+        final List<SAMRecord> expectedRecords = new ArrayList<>(builder.getRecords());
+        final List<BAMRecord> bamRecords = toBAMRecords(builder.getHeader(), expectedRecords);
+        final OverclippedReadFilter overclippedReadFilter = new OverclippedReadFilter(12, true);
+        final TagFilter tagFilter = new TagFilter("RG", "rg1");
+        for (int i = 0; i < bamRecords.size(); i++) {
+            Assert.assertEquals(overclippedReadFilter.filterOut(bamRecords.get(i)), overclippedReadFilter.filterOut(expectedRecords.get(i)));
+            Assert.assertEquals(tagFilter.filterOut(bamRecords.get(i)), tagFilter.filterOut(expectedRecords.get(i)));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class BAMRecordPoolTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static List<String> readAll(final SamReaderFactory factory, final String contig, final int start, final int end) throws IOException {
+        final List<String> samStrings = new ArrayList<>();
+        try (final SamReader reader = factory.open(BAM_FILE);
+             final CloseableIterator<SAMRecord> iterator = contig == null ? reader.iterator() : reader.queryOverlapping(contig, start, end)) {
+            while (iterator.hasNext()) {
+                samStrings.add(iterator.next().getSAMString());
+            }
+        }
+        return samStrings;
+    }
+
+    @Test
+    public void testReusedRecordsMatchNewRecords() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault();
+        final SamReaderFactory reusingFactory = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.REUSE_RECORDS);
+        final List<String> expected = readAll(factory, null, 0, 0);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(readAll(reusingFactory, null, 0, 0), expected);
+        // queries skip records that do not overlap, which are released straight away
+        Assert.assertEquals(readAll(reusingFactory, "chr1", 10000, 30000), readAll(factory, "chr1", 10000, 30000));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRecordRetainedAfterNextIsDetected() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.REUSE_RECORDS).open(BAM_FILE);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            final SAMRecord first = iterator.next();
+            iterator.next();
+            first.getReadName();
+        }
+    }
+
+    @DataProvider(name = "guardedAccessors")
+    public Object[][] guardedAccessors() {
+        return new Object[][]{
+                {(Consumer<SAMRecord>) SAMRecord::getReadName},
+                {(Consumer<SAMRecord>) SAMRecord::getReadNameLength},
+                {(Consumer<SAMRecord>) SAMRecord::getReadBases},
+                {(Consumer<SAMRecord>) SAMRecord::getBaseQualities},
+                {(Consumer<SAMRecord>) SAMRecord::getReadLength},
+                {(Consumer<SAMRecord>) SAMRecord::getCigar},
+                {(Consumer<SAMRecord>) SAMRecord::getCigarString},
+                {(Consumer<SAMRecord>) SAMRecord::getCigarLength},
+                {(Consumer<SAMRecord>) r -> r.getCigarElementOperator(0)},
+                {(Consumer<SAMRecord>) r -> r.getCigarElementLength(0)},
+                {(Consumer<SAMRecord>) SAMRecord::getAlignmentEnd},
+                {(Consumer<SAMRecord>) SAMRecord::getUnclippedStart},
+                {(Consumer<SAMRecord>) SAMRecord::getUnclippedEnd},
+                {(Consumer<SAMRecord>) r -> r.getAttribute("RG")},
+                {(Consumer<SAMRecord>) r -> r.hasAttribute("RG")},
+                {(Consumer<SAMRecord>) SAMRecord::getAttributes},
+                {(Consumer<SAMRecord>) SAMRecord::getAttributesBinarySize},
+                {(Consumer<SAMRecord>) SAMRecord::getVariableBinaryRepresentation},
+        };
+    }
+
+    @Test(dataProvider = "guardedAccessors", expectedExceptions = IllegalStateException.class)
+    public void testGuardedAccessorsOfReleasedRecord(final Consumer<SAMRecord> accessor) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.REUSE_RECORDS).open(BAM_FILE);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            SAMRecord first = iterator.next();
+            while (first.getReadUnmappedFlag()) {
+                first = iterator.next();
+            }
+            iterator.next();
+            accessor.accept(first);
+        }
+    }
+
+    @Test
+    public void testDeepCopyCanBeRetained() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.REUSE_RECORDS).open(BAM_FILE);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            final SAMRecord first = iterator.next();
+            final String expected = first.getSAMString();
+            final SAMRecord copy = first.deepCopy();
+            iterator.next();
+            Assert.assertEquals(copy.getSAMString(), expected);
+        }
+    }
+
+    @Test
+    public void testQueryMateWithReusedRecords() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE);
+             final SamReader reusingReader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.REUSE_RECORDS).open(BAM_FILE)) {
+            final SAMRecord record;
+            try (final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+                SAMRecord next = iterator.next();
+                while (!next.getReadPairedFlag() || next.getMateUnmappedFlag()) {
+                    next = iterator.next();
+                }
+                record = next;
+            }
+            Assert.assertEquals(reusingReader.queryMate(record).getSAMString(), reader.queryMate(record).getSAMString());
+        }
+    }
+
+    @Test
+    public void testExplicitRelease() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.RECYCLE_RELEASED_RECORDS).open(BAM_FILE);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            final SAMRecord first = iterator.next();
+            final SAMRecord second = iterator.next();
+            // records that have not been released stay valid
+            Assert.assertNotNull(first.getReadName());
+            ((BAMRecord) first).release();
+            Assert.assertThrows(IllegalStateException.class, first::getReadBases);
+            Assert.assertThrows(IllegalStateException.class, ((BAMRecord) first)::release);
+            Assert.assertNotNull(second.getReadName());
+        }
+    }
+
+    @Test
+    public void testReleaseOfUnpooledRecordIsIgnored() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            final BAMRecord record = (BAMRecord) reader.iterator().next();
+            record.release();
+            record.release();
+            Assert.assertNotNull(record.getReadName());
+        }
+    }
+
+    @Test
+    public void testCodecRecyclesRecordsAndBuffers() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        for (int i = 0; i < 20; i++) {
+            // alternate long and short records, so that buffers are recycled for records of both lengths
+            builder.setReadLength(i % 2 == 0 ? 150 : 20);
+            final SAMRecord record = builder.addFrag("read" + i, 0, 100 + i, false);
+            if (i % 3 == 0) {
+                record.setAttribute("XZ", "value" + i);
+            }
+        }
+        final List<SAMRecord> expected = new ArrayList<>(builder.getRecords());
+        final BAMRecordCodec codec = new BAMRecordCodec(builder.getHeader());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.setOutputStream(out);
+        expected.forEach(codec::encode);
+        final byte[] encoded = out.toByteArray();
+
+        final BAMRecordPool pool = new BAMRecordPool(true, false);
+        codec.setRecordPool(pool);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        final ByteArrayOutputStream reencoded = new ByteArrayOutputStream();
+        final BAMRecordCodec writingCodec = new BAMRecordCodec(builder.getHeader());
+        writingCodec.setOutputStream(reencoded);
+        BAMRecord previous = null;
+        for (final SAMRecord expectedRecord : expected) {
+            final BAMRecord record = (BAMRecord) codec.decode();
+            if (previous != null) {
+                Assert.assertSame(record, previous);
+            }
+            Assert.assertEquals(record.getSAMString(), expectedRecord.getSAMString());
+            writingCodec.encode(record);
+            record.release();
+            previous = record;
+        }
+        Assert.assertNull(codec.decode());
+        Assert.assertEquals(reencoded.toByteArray(), encoded);
+    }
+}
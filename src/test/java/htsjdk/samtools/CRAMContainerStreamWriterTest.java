@@ -1,10 +1,14 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMEncodingStrategy;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
 import htsjdk.samtools.util.CloseableIterator;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
@@ -17,11 +21,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CRAMContainerStreamWriterTest extends HtsjdkTest {
 
     final static int SEQUENCE_LENGTH = 1024 * 1024;
 
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
     private List<SAMRecord> createRecords(int count) {
         final List<SAMRecord> list = new ArrayList<>(count);
         final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
@@ -203,4 +216,86 @@ public class CRAMContainerStreamWriterTest extends HtsjdkTest {
         Assert.assertEquals(count, 2);
     }
 
+    @DataProvider(name = "parallelEncoding")
+    public Object[][] parallelEncoding() {
+        return new Object[][]{{1}, {2}, {16}};
+    }
+
+    @Test(dataProvider = "parallelEncoding")
+    public void testParallelEncodingMatchesSerial(final int maxContainersInFlight) throws IOException {
+        final File samFile = new File("src/test/resources/htsjdk/samtools/cram/ce#1000.sam");
+        final CRAMReferenceSource ceReferenceSource = new ReferenceSource(new File("src/test/resources/htsjdk/samtools/cram/ce.fa"));
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+            final SAMFileHeader header = reader.getFileHeader().clone();
+            header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+            final List<SAMRecord> records = new ArrayList<>();
+            reader.forEach(records::add);
+            assertParallelEncodingMatchesSerial(records, header, ceReferenceSource, maxContainersInFlight);
+        }
+
+        // vary the tags between containers, so that tag encodings accumulate in the shared encoding map
+        final List<SAMRecord> records = createRecords(1000);
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).setAttribute("X" + (i / 70) % 10, i % 2 == 0 ? Integer.toString(i) : i);
+        }
+        assertParallelEncodingMatchesSerial(records, createSAMHeader(SAMFileHeader.SortOrder.coordinate),
+                createReferenceSource(), maxContainersInFlight);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCannotSetEncodingExecutorAfterWriting() {
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+        final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(
+                new ByteArrayOutputStream(), null, createReferenceSource(), header, "test");
+        containerStream.writeHeader();
+        containerStream.writeAlignment(createRecords(2).get(0));
+        containerStream.setEncodingExecutor(executor, 2);
+    }
+
+    private void assertParallelEncodingMatchesSerial(
+            final List<SAMRecord> records,
+            final SAMFileHeader header,
+            final CRAMReferenceSource referenceSource,
+            final int maxContainersInFlight) {
+        final ByteArrayOutputStream serialCRAM = new ByteArrayOutputStream();
+        final ByteArrayOutputStream serialBAI = new ByteArrayOutputStream();
+        final ByteArrayOutputStream serialCRAI = new ByteArrayOutputStream();
+        writeWithExecutor(records, header, referenceSource, null, 0, serialCRAM, serialBAI, serialCRAI);
+
+        final ByteArrayOutputStream parallelCRAM = new ByteArrayOutputStream();
+        final ByteArrayOutputStream parallelBAI = new ByteArrayOutputStream();
+        final ByteArrayOutputStream parallelCRAI = new ByteArrayOutputStream();
+        writeWithExecutor(records, header, referenceSource, executor, maxContainersInFlight, parallelCRAM, parallelBAI, parallelCRAI);
+
+        Assert.assertEquals(parallelCRAM.toByteArray(), serialCRAM.toByteArray());
+        Assert.assertEquals(parallelBAI.toByteArray(), serialBAI.toByteArray());
+        Assert.assertEquals(parallelCRAI.toByteArray(), serialCRAI.toByteArray());
+    }
+
+    private static void writeWithExecutor(
+            final List<SAMRecord> records,
+            final SAMFileHeader header,
+            final CRAMReferenceSource referenceSource,
+            final ExecutorService executor,
+            final int maxContainersInFlight,
+            final ByteArrayOutputStream cramStream,
+            final ByteArrayOutputStream baiStream,
+            final ByteArrayOutputStream craiStream) {
+        // small slices and containers, so that many containers are in flight
+        final CRAMEncodingStrategy encodingStrategy = new CRAMEncodingStrategy()
+                .setMinimumSingleReferenceSliceSize(20)
+                .setReadsPerSlice(20)
+                .setSlicesPerContainer(3);
+        // write the stream twice, since a writer only supports a single indexer
+        final OutputStream[] cramStreams = {cramStream, new ByteArrayOutputStream()};
+        final CRAMIndexer[] indexers = {new CRAMBAIIndexer(baiStream, header), new CRAMCRAIIndexer(craiStream, header)};
+        for (int i = 0; i < indexers.length; i++) {
+            final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(
+                    encodingStrategy, referenceSource, header, cramStreams[i], indexers[i], "test");
+            containerStream.setEncodingExecutor(executor, maxContainersInFlight);
+            containerStream.writeHeader();
+            records.forEach(containerStream::writeAlignment);
+            containerStream.finish(true);
+        }
+    }
 }
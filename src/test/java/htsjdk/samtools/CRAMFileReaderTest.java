@@ -24,16 +24,24 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -241,4 +249,87 @@ public class CRAMFileReaderTest extends HtsjdkTest {
         Assert.assertNotNull(iterator.next());
         Assert.assertThrows(NoSuchElementException.class, iterator::next);
     }
+
+    private static final File CRAM_DATA_DIR = new File(TEST_DATA_DIR, "cram");
+
+    // fails the test if reference bases are requested
+    private static final CRAMReferenceSource NO_REFERENCE = new CRAMReferenceSource() {
+        @Override
+        public byte[] getReferenceBases(final SAMSequenceRecord sequenceRecord, final boolean tryNameVariants) {
+            throw new AssertionError("reference bases requested for " + sequenceRecord.getSequenceName());
+        }
+
+        @Override
+        public byte[] getReferenceBasesByRegion(final SAMSequenceRecord sequenceRecord, final int zeroBasedStart, final int requestedRegionLength) {
+            throw new AssertionError("reference bases requested for " + sequenceRecord.getSequenceName());
+        }
+    };
+
+    private static List<SAMRecord> readAll(final File cram, final CRAMReferenceSource referenceSource, final SamReaderFactory.Option... options) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault()
+                .validationStringency(ValidationStringency.SILENT)
+                .referenceSource(referenceSource)
+                .enable(options)
+                .open(cram)) {
+            final List<SAMRecord> records = new ArrayList<>();
+            reader.iterator().forEachRemaining(records::add);
+            return records;
+        }
+    }
+
+    @DataProvider
+    public Object[][] getCramsAndReferences() {
+        return new Object[][]{
+                {new File(CRAM_DATA_DIR, "ce#1000.3.0.cram"), new File(CRAM_DATA_DIR, "ce.fa")},
+                {new File(CRAM_DATA_DIR, "ce#5b.3.0.cram"), new File(CRAM_DATA_DIR, "ce.fa")},
+                {new File(CRAM_DATA_DIR, "c1#clip.3.0.cram"), new File(CRAM_DATA_DIR, "c1.fa")},
+                {new File(CRAM_DATA_DIR, "c1#pad1.3.0.cram"), new File(CRAM_DATA_DIR, "c1.fa")},
+                {new File(CRAM_DATA_DIR, "NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram"), new File(CRAM_DATA_DIR, "human_g1k_v37.20.21.1-100.fasta")},
+        };
+    }
+
+    @Test(dataProvider = "getCramsAndReferences")
+    public void testSkipReadBasesAndBaseQualities(final File cram, final File fasta) throws IOException {
+        final List<SAMRecord> expected = readAll(cram, new ReferenceSource(fasta));
+        final List<SAMRecord> actual = readAll(cram, NO_REFERENCE,
+                SamReaderFactory.Option.CRAM_SKIP_READ_BASES, SamReaderFactory.Option.CRAM_SKIP_BASE_QUALITIES);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final SAMRecord record = actual.get(i);
+            Assert.assertSame(record.getReadBases(), SAMRecord.NULL_SEQUENCE);
+            Assert.assertSame(record.getBaseQualities(), SAMRecord.NULL_QUALS);
+            // everything else is decoded as usual
+            record.setReadBases(expected.get(i).getReadBases());
+            record.setBaseQualities(expected.get(i).getBaseQualities());
+            Assert.assertEquals(record, expected.get(i));
+        }
+    }
+
+    @Test(dataProvider = "getCramsAndReferences")
+    public void testSkipBaseQualities(final File cram, final File fasta) throws IOException {
+        final List<SAMRecord> expected = readAll(cram, new ReferenceSource(fasta));
+        final List<SAMRecord> actual = readAll(cram, new ReferenceSource(fasta), SamReaderFactory.Option.CRAM_SKIP_BASE_QUALITIES);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final SAMRecord record = actual.get(i);
+            Assert.assertSame(record.getBaseQualities(), SAMRecord.NULL_QUALS);
+            record.setBaseQualities(expected.get(i).getBaseQualities());
+            Assert.assertEquals(record, expected.get(i));
+        }
+    }
+
+    @Test
+    public void testSkippedFieldsApplyToQueries() throws IOException {
+        final File cram = new File(CRAM_DATA_DIR, "NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram");
+        try (final CRAMFileReader reader = new CRAMFileReader(cram, (File) null, NO_REFERENCE, ValidationStringency.SILENT)) {
+            reader.setSkippedFields(EnumSet.allOf(CRAMRecordField.class));
+            Assert.assertEquals(reader.getSkippedFields(), EnumSet.allOf(CRAMRecordField.class));
+            try (final CloseableIterator<SAMRecord> iterator = reader.queryAlignmentStart("20", 1)) {
+                Assert.assertTrue(iterator.hasNext());
+                iterator.forEachRemaining(record -> Assert.assertSame(record.getReadBases(), SAMRecord.NULL_SEQUENCE));
+            }
+            reader.setSkippedFields(Collections.emptySet());
+            Assert.assertTrue(reader.getSkippedFields().isEmpty());
+        }
+    }
 }
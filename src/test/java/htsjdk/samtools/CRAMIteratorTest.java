@@ -1,12 +1,31 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.CRAIIndex;
+import htsjdk.samtools.cram.build.CramContainerIterator;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMEncodingStrategy;
+import htsjdk.samtools.seekablestream.SeekableMemoryStream;
+import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.FileExtensions;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -16,6 +35,15 @@ import java.io.File;
  **/
 
 public class CRAMIteratorTest extends HtsjdkTest {
+    private static final File REF_FILE = new File("src/test/resources/htsjdk/samtools/cram/ce.fa");
+    private static final File SAM_FILE = new File("src/test/resources/htsjdk/samtools/cram/ce#1000.sam");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
 
     @Test(description = "This test checks that records validation is deferred until they are retrieved")
     public void noValidationFailureOnContainerOpen() {
@@ -42,4 +70,201 @@ public class CRAMIteratorTest extends HtsjdkTest {
         cramFileReader.setValidationStringency(valStringency);
         return cramFileReader.getIterator();
     }
+
+    @DataProvider(name = "readAheadContainers")
+    public Object[][] readAheadContainers() {
+        return new Object[][]{{1}, {2}, {8}};
+    }
+
+    @Test(dataProvider = "readAheadContainers")
+    public void testParallelDecodingMatchesSerial(final int readAheadContainers) {
+        final byte[] cram = writeMultiSliceCRAM();
+        final List<String> expected = readRecords(cram, null, 0);
+        Assert.assertEquals(expected.size(), 1000);
+        Assert.assertEquals(readRecords(cram, executor, readAheadContainers), expected);
+    }
+
+    @DataProvider(name = "queryIntervals")
+    public Object[][] queryIntervals() {
+        return new Object[][]{{1, 20}, {80, 100}, {150, 400}};
+    }
+
+    @Test(dataProvider = "queryIntervals")
+    public void testParallelDecodingQueryMatchesSerial(final int start, final int end) {
+        final byte[] cram = writeMultiSliceCRAM(true);
+        final ByteArrayOutputStream crai = new ByteArrayOutputStream();
+        CRAMCRAIIndexer.writeIndex(new SeekableMemoryStream(cram, "cram"), crai);
+        final SAMSequenceDictionary dictionary;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(SAM_FILE)) {
+            dictionary = reader.getFileHeader().getSequenceDictionary();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        final BAMIndex index = new CachingBAMFileIndex(
+                CRAIIndex.openCraiFileAsBaiStream(new ByteArrayInputStream(crai.toByteArray()), dictionary), dictionary);
+        final QueryInterval[] intervals = {new QueryInterval(0, start, end)};
+        final long[] coordinates = index.getSpanOverlapping(0, start, end).toCoordinateArray();
+
+        final List<String> expected = queryRecords(cram, intervals, coordinates, null, Integer.MAX_VALUE);
+        Assert.assertFalse(expected.isEmpty());
+        // stop a query part way through, so that the next one starts while its slices may still be decoding
+        Assert.assertEquals(queryRecords(cram, intervals, coordinates, executor, 1), expected.subList(0, 1));
+        Assert.assertEquals(queryRecords(cram, intervals, coordinates, executor, Integer.MAX_VALUE), expected);
+    }
+
+    @Test
+    public void testClosingWhileReadingAheadLeavesStreamOpen() throws IOException, InterruptedException {
+        final File cramFile = File.createTempFile("multiSlice.", FileExtensions.CRAM);
+        cramFile.deleteOnExit();
+        Files.write(cramFile.toPath(), writeMultiSliceCRAM());
+        final long secondContainerOffset;
+        try (final CramContainerIterator containers = new CramContainerIterator(new FileInputStream(cramFile))) {
+            Assert.assertTrue(containers.hasNext());
+            containers.next();
+            Assert.assertTrue(containers.hasNext());
+            secondContainerOffset = containers.next().getContainerByteOffset();
+        }
+
+        final SlowReadAheadStream stream = new SlowReadAheadStream(cramFile, secondContainerOffset);
+        try {
+            final CRAMIterator iterator = new CRAMIterator(stream, new ReferenceSource(REF_FILE), ValidationStringency.STRICT);
+            iterator.setDecodingExecutor(executor, 1);
+            iterator.next();
+            stream.readingAhead.await();
+            iterator.close();
+            // the channel of the stream must not have been closed by interrupting a read on it
+            stream.seek(0);
+            Assert.assertEquals(stream.read(), 'C');
+        } finally {
+            stream.closeChannel();
+        }
+    }
+
+    @Test
+    public void testCannotContinueAfterQueryRepositionsSharedStream() throws IOException {
+        final byte[] cram = writeMultiSliceCRAM(true);
+        final ByteArrayOutputStream crai = new ByteArrayOutputStream();
+        CRAMCRAIIndexer.writeIndex(new SeekableMemoryStream(cram, "cram"), crai);
+        final CRAMFileReader reader = new CRAMFileReader(new SeekableMemoryStream(cram, "cram"),
+                new SeekableMemoryStream(crai.toByteArray(), "crai"), new ReferenceSource(REF_FILE),
+                ValidationStringency.STRICT);
+        try {
+            final CRAMIterator iterator = (CRAMIterator) reader.getIterator();
+            iterator.setDecodingExecutor(executor, 2);
+            iterator.next();
+            try (final CloseableIterator<SAMRecord> query =
+                         reader.query(new QueryInterval[]{new QueryInterval(0, 150, 400)}, false)) {
+                Assert.assertTrue(query.hasNext());
+            }
+            // the containers the first iterator read ahead are gone, and the stream is no longer where they ended
+            Assert.assertThrows(IllegalStateException.class, () -> iterator.forEachRemaining(record -> { }));
+        } finally {
+            reader.close();
+        }
+    }
+
+    // a stream that the iterator does not close, and whose reads from the given offset take long enough for the
+    // iterator to be closed while the first of them is in progress
+    private static final class SlowReadAheadStream extends SeekablePathStream {
+        private final long slowReadOffset;
+        private final CountDownLatch readingAhead = new CountDownLatch(1);
+
+        SlowReadAheadStream(final File file, final long slowReadOffset) throws IOException {
+            super(file.toPath());
+            this.slowReadOffset = slowReadOffset;
+        }
+
+        private void delayFirstReadAhead() throws IOException {
+            if (position() >= slowReadOffset && readingAhead.getCount() > 0) {
+                readingAhead.countDown();
+                // busy-wait, so that an interrupt would only be noticed by the channel read that follows
+                final long end = System.nanoTime() + 200_000_000L;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            delayFirstReadAhead();
+            return super.read(buffer, offset, length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            delayFirstReadAhead();
+            return super.read();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void closeChannel() throws IOException {
+            super.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCannotSetDecodingExecutorAfterIterating() {
+        try (final CRAMIterator iterator = new CRAMIterator(new ByteArrayInputStream(writeMultiSliceCRAM()),
+                new ReferenceSource(REF_FILE), ValidationStringency.STRICT)) {
+            iterator.next();
+            iterator.setDecodingExecutor(executor, 2);
+        }
+    }
+
+    private static byte[] writeMultiSliceCRAM() {
+        return writeMultiSliceCRAM(false);
+    }
+
+    private static byte[] writeMultiSliceCRAM(final boolean coordinateSorted) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        // small slices and containers so that decoding is spread over many containers of several slices each
+        final CRAMEncodingStrategy encodingStrategy = new CRAMEncodingStrategy()
+                .setMinimumSingleReferenceSliceSize(50)
+                .setReadsPerSlice(50)
+                .setSlicesPerContainer(2);
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(SAM_FILE);
+             final CRAMFileWriter writer = new CRAMFileWriter(encodingStrategy, os, null, true,
+                     new ReferenceSource(REF_FILE), getHeader(reader, coordinateSorted), SAM_FILE.getName())) {
+            reader.forEach(writer::addAlignment);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return os.toByteArray();
+    }
+
+    private static SAMFileHeader getHeader(final SamReader reader, final boolean coordinateSorted) {
+        final SAMFileHeader header = reader.getFileHeader().clone();
+        if (coordinateSorted) {
+            // the records are sorted, so that the file can be indexed, but the header doesn't say so
+            header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        }
+        return header;
+    }
+
+    private static List<String> readRecords(final byte[] cram, final ExecutorService executor, final int readAheadContainers) {
+        final List<String> records = new ArrayList<>();
+        try (final CRAMIterator iterator = new CRAMIterator(new ByteArrayInputStream(cram), new ReferenceSource(REF_FILE),
+                ValidationStringency.STRICT)) {
+            iterator.setDecodingExecutor(executor, readAheadContainers);
+            iterator.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+
+    private static List<String> queryRecords(final byte[] cram, final QueryInterval[] intervals, final long[] coordinates,
+                                             final ExecutorService executor, final int maxRecords) {
+        final List<String> records = new ArrayList<>();
+        try (final CRAMIterator iterator = new CRAMIterator(new SeekableMemoryStream(cram, "cram"),
+                new ReferenceSource(REF_FILE), ValidationStringency.STRICT, intervals, coordinates)) {
+            iterator.setDecodingExecutor(executor, 2);
+            while (records.size() < maxRecords && iterator.hasNext()) {
+                records.add(iterator.next().getSAMString());
+            }
+        }
+        return records;
+    }
 }
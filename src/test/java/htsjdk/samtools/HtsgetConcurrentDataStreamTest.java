@@ -0,0 +1,220 @@
+package htsjdk.samtools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.htsget.HtsgetClass;
+import htsjdk.samtools.util.htsget.HtsgetResponse;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link HtsgetConcurrentDataStream} and {@link HtsgetBAMFileReader} against a local stand-in for an htsget
+ * server, which answers every ticket request with the whole of a BAM file, split into byte ranges.
+ */
+public class HtsgetConcurrentDataStreamTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final int NUM_RANGES = 12;
+    private static final long RESPONSE_DELAY_MILLIS = 50;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private byte[] bamBytes;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        bamBytes = Files.readAllBytes(BAM_FILE.toPath());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/reads/", this::handleTicket);
+        server.createContext("/data", this::handleData);
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0]));
+        // requests are handled concurrently, as by a real server
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private URI serverUri(final String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleTicket(final HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, new byte[0]);
+            return;
+        }
+        // the first range is inlined as a data URL, and the others are served by this server
+        final List<HtsgetResponse.Block> blocks = rangeBlocks(bamBytes.length / 100, bamBytes.length);
+        final StringBuilder json = new StringBuilder("{\"htsget\": {\"format\": \"BAM\", \"urls\": [");
+        json.append("{\"url\": \"data:application/vnd.ga4gh.bam;base64,")
+                .append(Base64.getEncoder().encodeToString(Arrays.copyOf(bamBytes, bamBytes.length / 100)))
+                .append("\", \"class\": \"header\"}");
+        for (final HtsgetResponse.Block block : blocks) {
+            json.append(", {\"url\": \"").append(block.getUri())
+                    .append("\", \"headers\": {\"Range\": \"").append(block.getHeaders().get("Range"))
+                    .append("\"}, \"class\": \"body\"}");
+        }
+        json.append("]}}");
+        respond(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleData(final HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(RESPONSE_DELAY_MILLIS);
+            final String[] range = exchange.getRequestHeaders().getFirst("Range").replace("bytes=", "").split("-");
+            final int start = Integer.parseInt(range[0]);
+            final int end = Integer.parseInt(range[1]);
+            respond(exchange, 206, Arrays.copyOfRange(bamBytes, start, end + 1));
+        } catch (final InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return blocks for NUM_RANGES ranges of the BAM file, of unequal lengths, from start to end
+     */
+    private List<HtsgetResponse.Block> rangeBlocks(final int start, final int end) {
+        final List<HtsgetResponse.Block> blocks = new ArrayList<>();
+        int rangeStart = start;
+        for (int i = 0; i < NUM_RANGES; i++) {
+            final int rangeEnd = i == NUM_RANGES - 1 ? end : rangeStart + (end - rangeStart) / (NUM_RANGES - i) + 37 * i;
+            blocks.add(new HtsgetResponse.Block(serverUri("/data"),
+                    Collections.singletonMap("Range", "bytes=" + rangeStart + "-" + (rangeEnd - 1)), HtsgetClass.body));
+            rangeStart = rangeEnd;
+        }
+        return blocks;
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @DataProvider(name = "limits")
+    public Object[][] limits() {
+        return new Object[][]{
+                {1, HtsgetConcurrentDataStream.DEFAULT_MAX_BUFFERED_BYTES},
+                {4, HtsgetConcurrentDataStream.DEFAULT_MAX_BUFFERED_BYTES},
+                {4, 1},
+                {32, 10_000},
+        };
+    }
+
+    @Test(dataProvider = "limits")
+    public void testBlocksAreSplicedInOrder(final int parallelism, final long maxBufferedBytes) throws IOException {
+        try (final InputStream in = new HtsgetConcurrentDataStream(rangeBlocks(0, bamBytes.length), parallelism, maxBufferedBytes)) {
+            Assert.assertEquals(readAll(in), bamBytes);
+        }
+    }
+
+    @Test
+    public void testBlocksAreDownloadedConcurrently() throws IOException {
+        maxInFlight.set(0);
+        try (final InputStream in = new HtsgetConcurrentDataStream(rangeBlocks(0, bamBytes.length), 4, HtsgetConcurrentDataStream.DEFAULT_MAX_BUFFERED_BYTES)) {
+            Assert.assertEquals(readAll(in), bamBytes);
+        }
+        Assert.assertTrue(maxInFlight.get() > 1, "Blocks were downloaded one at a time");
+    }
+
+    @Test
+    public void testFailedBlockIsReportedAfterPreviousData() throws IOException {
+        final List<HtsgetResponse.Block> blocks = new ArrayList<>(rangeBlocks(0, bamBytes.length).subList(0, 2));
+        blocks.add(new HtsgetResponse.Block(serverUri("/missing"), Collections.emptyMap(), HtsgetClass.body));
+        final String firstRanges = blocks.get(1).getHeaders().get("Range").replace("bytes=", "").split("-")[1];
+        try (final InputStream in = new HtsgetConcurrentDataStream(blocks, 3, 1)) {
+            final byte[] expected = Arrays.copyOf(bamBytes, Integer.parseInt(firstRanges) + 1);
+            final byte[] actual = new byte[expected.length];
+            int length = 0;
+            while (length < actual.length) {
+                length += in.read(actual, length, actual.length - length);
+            }
+            Assert.assertEquals(actual, expected);
+            Assert.assertThrows(RuntimeIOException.class, in::read);
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws IOException {
+        final InputStream in = new HtsgetConcurrentDataStream(rangeBlocks(0, bamBytes.length), 4, 1);
+        Assert.assertEquals(in.read(), bamBytes[0] & 0xFF);
+        in.close();
+        Assert.assertThrows(IOException.class, in::read);
+    }
+
+    @Test
+    public void testReaderMatchesLocalFile() throws IOException {
+        final HtsgetBAMFileReader htsgetReader = new HtsgetBAMFileReader(serverUri("/reads/index_test.bam"), false,
+                ValidationStringency.SILENT, DefaultSAMRecordFactory.getInstance(), false);
+        htsgetReader.setDownloadParallelism(4);
+        Assert.assertFalse(htsgetReader.isUsingPOST());
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            Assert.assertEquals(htsgetReader.getFileHeader(), reader.getFileHeader());
+            assertSameRecords(htsgetReader.getIterator(), reader.iterator());
+            assertSameRecords(htsgetReader.query("chrM", 10_000, 12_000, false), reader.queryOverlapping("chrM", 10_000, 12_000));
+        } finally {
+            htsgetReader.close();
+        }
+    }
+
+    private static void assertSameRecords(final CloseableIterator<SAMRecord> actual, final CloseableIterator<SAMRecord> expected) {
+        try {
+            int count = 0;
+            while (expected.hasNext()) {
+                Assert.assertTrue(actual.hasNext());
+                Assert.assertEquals(actual.next().getSAMString(), expected.next().getSAMString());
+                count++;
+            }
+            Assert.assertFalse(actual.hasNext());
+            Assert.assertTrue(count > 0);
+        } finally {
+            actual.close();
+            expected.close();
+        }
+    }
+}
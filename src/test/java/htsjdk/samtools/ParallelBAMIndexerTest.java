@@ -0,0 +1,139 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class ParallelBAMIndexerTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+    private static final File INDEX_TEST_BAM = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+    private static final File LARGE_BAM = new File(TEST_DATA_DIR, "cram/CEUTrio.HiSeq.WGS.b37.NA12878.20.first.8000.bam");
+    private static final File UNMAPPED_BAM = new File(TEST_DATA_DIR, "cram/NA12878.20.21.unmapped.orig.bam");
+    private static final File EXAMPLE_BAM = new File(TEST_DATA_DIR, "example.bam");
+
+    private static byte[] serialIndex(final File bam) throws IOException {
+        final File output = File.createTempFile("serial.", FileExtensions.BAI_INDEX);
+        output.deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault()
+                .validationStringency(ValidationStringency.SILENT)
+                .enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS)
+                .open(bam)) {
+            BAMIndexer.createIndex(reader, output);
+        }
+        return Files.readAllBytes(output.toPath());
+    }
+
+    private static byte[] parallelIndex(final Path bam, final int parallelism) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelBAMIndexer.createIndex(bam, out, parallelism, 0);
+        return out.toByteArray();
+    }
+
+    @DataProvider(name = "bams")
+    public Object[][] bams() {
+        return new Object[][]{
+                {INDEX_TEST_BAM, 1},
+                {INDEX_TEST_BAM, 2},
+                {INDEX_TEST_BAM, 7},
+                {INDEX_TEST_BAM, 32},
+                {LARGE_BAM, 5},
+                {LARGE_BAM, 64},
+                {UNMAPPED_BAM, 8},
+                {EXAMPLE_BAM, 3},
+        };
+    }
+
+    @Test(dataProvider = "bams")
+    public void testGuessedSplitsMatchSerialIndex(final File bam, final int parallelism) throws IOException {
+        Assert.assertEquals(parallelIndex(bam.toPath(), parallelism), serialIndex(bam));
+    }
+
+    @Test(dataProvider = "bams")
+    public void testSplittingIndexSplitsMatchSerialIndex(final File bam, final int parallelism) throws IOException {
+        final File directory = Files.createTempDirectory("parallelBAMIndexer").toFile();
+        directory.deleteOnExit();
+        final Path copy = new File(directory, bam.getName()).toPath();
+        Files.copy(bam.toPath(), copy);
+        copy.toFile().deleteOnExit();
+        BAMSBIIndexer.createIndex(copy, 10);
+        IOUtil.addExtension(copy, FileExtensions.SBI).toFile().deleteOnExit();
+        Assert.assertEquals(parallelIndex(copy, parallelism), serialIndex(bam));
+    }
+
+    @Test
+    public void testBadSplitsFallBackToSerialIndex() throws IOException {
+        final File directory = Files.createTempDirectory("parallelBAMIndexer").toFile();
+        directory.deleteOnExit();
+        final Path copy = new File(directory, LARGE_BAM.getName()).toPath();
+        Files.copy(LARGE_BAM.toPath(), copy);
+        copy.toFile().deleteOnExit();
+
+        // a splitting index whose offsets, after the first, are one byte into a record
+        final ByteArrayOutputStream sbi = new ByteArrayOutputStream();
+        try (final SeekableFileStream in = new SeekableFileStream(LARGE_BAM)) {
+            BAMSBIIndexer.createIndex(in, sbi, 1);
+        }
+        final SBIIndex recordStarts = SBIIndex.load(new ByteArrayInputStream(sbi.toByteArray()));
+        final long[] offsets = recordStarts.getVirtualOffsets();
+        final Path sbiFile = IOUtil.addExtension(copy, FileExtensions.SBI);
+        sbiFile.toFile().deleteOnExit();
+        try (final OutputStream out = Files.newOutputStream(sbiFile)) {
+            final SBIIndexWriter writer = new SBIIndexWriter(out, 1);
+            writer.processRecord(offsets[0]);
+            for (int i = 1; i < offsets.length - 1; i++) {
+                writer.processRecord(offsets[i] + 1);
+            }
+            writer.finish(offsets[offsets.length - 1], recordStarts.dataFileLength());
+        }
+        Assert.assertEquals(parallelIndex(copy, 8), serialIndex(LARGE_BAM));
+    }
+
+    @Test
+    public void testGuessedSplitsAreRecordStarts() throws IOException {
+        final ByteArrayOutputStream sbi = new ByteArrayOutputStream();
+        try (final SeekableFileStream in = new SeekableFileStream(LARGE_BAM)) {
+            BAMSBIIndexer.createIndex(in, sbi, 1);
+        }
+        final long[] recordStarts = SBIIndex.load(new ByteArrayInputStream(sbi.toByteArray())).getVirtualOffsets();
+        final int numReferences = SamReaderFactory.makeDefault().getFileHeader(LARGE_BAM).getSequenceDictionary().size();
+        try (final SeekableFileStream in = new SeekableFileStream(LARGE_BAM)) {
+            final BAMSplitGuesser guesser = new BAMSplitGuesser(in, numReferences);
+            for (long position = 1000; position < LARGE_BAM.length(); position += 9973) {
+                final long guess = guesser.guessNextRecordStart(position);
+                if (position < LARGE_BAM.length() - 2 * BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE) {
+                    Assert.assertTrue(Arrays.binarySearch(recordStarts, guess) >= 0, "Not a record start: " + guess);
+                } else {
+                    // there may be no record that starts in the blocks after the position
+                    Assert.assertTrue(guess == -1 || Arrays.binarySearch(recordStarts, guess) >= 0, "Not a record start: " + guess);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexWrittenNextToBam() throws IOException {
+        final File directory = Files.createTempDirectory("parallelBAMIndexer").toFile();
+        directory.deleteOnExit();
+        final Path copy = new File(directory, INDEX_TEST_BAM.getName()).toPath();
+        Files.copy(INDEX_TEST_BAM.toPath(), copy);
+        copy.toFile().deleteOnExit();
+        ParallelBAMIndexer.createIndex(copy, 4);
+        final Path index = IOUtil.addExtension(copy, FileExtensions.BAI_INDEX);
+        index.toFile().deleteOnExit();
+        Assert.assertEquals(Files.readAllBytes(index), serialIndex(INDEX_TEST_BAM));
+    }
+}
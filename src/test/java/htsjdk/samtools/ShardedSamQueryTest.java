@@ -0,0 +1,134 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ShardedSamQueryTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+    private static final File BAM_FILE = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+    private static final File CSI_FILE = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam.csi");
+    private static final File CRAM_FILE = new File(TEST_DATA_DIR, "cram/cramQueryWithCRAI.cram");
+    private static final File CRAM_REFERENCE = new File(TEST_DATA_DIR, "cram/human_g1k_v37.20.21.10M-10M200k.fasta");
+
+    private static final Supplier<SamReader> BAI_READER = () -> SamReaderFactory.makeDefault().open(BAM_FILE);
+    private static final Supplier<SamReader> CSI_READER = () -> SamReaderFactory.makeDefault().open(SamInputResource.of(BAM_FILE).index(CSI_FILE));
+    private static final Supplier<SamReader> CRAM_READER = () -> SamReaderFactory.makeDefault().referenceSequence(CRAM_REFERENCE).open(CRAM_FILE);
+
+    private static List<String> toStrings(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        try {
+            iterator.forEachRemaining(r -> records.add(r.getSAMString()));
+        } finally {
+            iterator.close();
+        }
+        return records;
+    }
+
+    private static List<String> expected(final Supplier<SamReader> readerSupplier, final QueryInterval[] intervals, final boolean contained) throws IOException {
+        try (final SamReader reader = readerSupplier.get()) {
+            return toStrings(intervals == null ? reader.iterator() : reader.query(intervals, contained));
+        }
+    }
+
+    private static List<String> sharded(final ShardedSamQuery query) {
+        try (final Stream<SAMRecord> records = query.stream()) {
+            return records.map(SAMRecord::getSAMString).collect(Collectors.toList());
+        }
+    }
+
+    @DataProvider(name = "shardCounts")
+    public Object[][] shardCounts() {
+        return new Object[][]{{1}, {3}, {16}, {200}};
+    }
+
+    @Test(dataProvider = "shardCounts")
+    public void testWholeGenomeMatchesIterator(final int numberOfShards) throws IOException {
+        final ShardedSamQuery query = ShardedSamQuery.wholeGenome(BAI_READER, true).setNumberOfShards(numberOfShards);
+        Assert.assertEquals(sharded(query), expected(BAI_READER, null, false));
+        Assert.assertTrue(query.getShards().get(query.getShards().size() - 1).isUnmapped());
+    }
+
+    @Test
+    public void testShardsAreBalanced() {
+        final ShardedSamQuery query = ShardedSamQuery.wholeGenome(BAI_READER, false).setNumberOfShards(16);
+        final List<ShardedSamQuery.Shard> shards = query.getShards();
+        // intervals are split, so that there are about as many shards as requested
+        Assert.assertTrue(shards.size() >= 12 && shards.size() <= 20, shards.toString());
+        final long totalBytes = shards.stream().mapToLong(ShardedSamQuery.Shard::getEstimatedBytes).sum();
+        for (final ShardedSamQuery.Shard shard : shards.subList(0, shards.size() - 1)) {
+            Assert.assertTrue(shard.getEstimatedBytes() <= 2 * totalBytes / 16 + 1, shard.toString());
+        }
+    }
+
+    @DataProvider(name = "intervalQueries")
+    public Object[][] intervalQueries() {
+        final QueryInterval[] intervals = new QueryInterval[]{
+                new QueryInterval(0, 1, 5_000_000),
+                new QueryInterval(0, 5_000_002, 120_000_000),
+                new QueryInterval(1, 10_000, 10_000),
+                new QueryInterval(1, 100_000, 0),
+                new QueryInterval(3, 1_000_000, 30_000_000),
+                new QueryInterval(24, 1, 16_571),
+        };
+        final List<Object[]> tests = new ArrayList<>();
+        for (final Supplier<SamReader> reader : List.of(BAI_READER, CSI_READER)) {
+            for (final boolean contained : new boolean[]{false, true}) {
+                for (final int numberOfShards : new int[]{1, 5, 64}) {
+                    tests.add(new Object[]{reader, intervals, contained, numberOfShards});
+                }
+            }
+        }
+        return tests.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "intervalQueries")
+    public void testIntervalsMatchQuery(final Supplier<SamReader> readerSupplier, final QueryInterval[] intervals,
+                                        final boolean contained, final int numberOfShards) throws IOException {
+        final ShardedSamQuery query = new ShardedSamQuery(readerSupplier, intervals, contained).setNumberOfShards(numberOfShards);
+        final List<String> expected = expected(readerSupplier, intervals, contained);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(sharded(query), expected);
+    }
+
+    @Test
+    public void testCramWithCraiMatchesQuery() throws IOException {
+        final QueryInterval[] intervals = new QueryInterval[]{new QueryInterval(0, 100009, 100011)};
+        final ShardedSamQuery query = new ShardedSamQuery(CRAM_READER, intervals, false).setNumberOfShards(4);
+        Assert.assertEquals(sharded(query), expected(CRAM_READER, intervals, false));
+    }
+
+    @Test
+    public void testProcessShards() throws IOException {
+        final ShardedSamQuery query = ShardedSamQuery.wholeGenome(BAI_READER, true).setNumberOfShards(10).setParallelism(3);
+        final List<List<String>> perShard = query.processShards((shard, records) -> {
+            final List<String> names = new ArrayList<>();
+            records.forEachRemaining(r -> names.add(r.getSAMString()));
+            return names;
+        });
+        Assert.assertEquals(perShard.size(), query.getShards().size());
+        Assert.assertEquals(perShard.stream().flatMap(List::stream).collect(Collectors.toList()), expected(BAI_READER, null, false));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testProcessorExceptionIsRethrown() {
+        ShardedSamQuery.wholeGenome(BAI_READER, false).setNumberOfShards(4).processShards((shard, records) -> {
+            throw new IllegalStateException("failed");
+        });
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testUnindexedFileIsRejected() {
+        ShardedSamQuery.wholeGenome(() -> SamReaderFactory.makeDefault().open(new File(TEST_DATA_DIR, "example.bam")), false).getShards();
+    }
+}
@@ -2,6 +2,7 @@ package htsjdk.samtools.cram.compression.nametokenisation;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.compression.CompressionUtils;
+import htsjdk.samtools.util.StringUtil;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -79,6 +80,18 @@ public class NameTokenisationTest extends HtsjdkTest {
                 "H0164ALXX140820:2:1101:10003:23460" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
                 "H0164ALXX140820:2:1101:15118:25288" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE);
 
+        // names with more tokens than the previous name, duplicates, and numeric tokens with leading zeros
+        readNamesList.add(
+                "a" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b:001" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b:002" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b:002" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b:010:1234567890123" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                LOCAL_NAME_SEPARATOR_CHARSEQUENCE +
+                "a:b:011:1234567890124" + LOCAL_NAME_SEPARATOR_CHARSEQUENCE);
+
         final List<Object[]> testCases = new ArrayList<>();
         for (final String readName : readNamesList) {
             for (boolean useArith : Arrays.asList(true, false)) {
@@ -105,4 +118,71 @@ public class NameTokenisationTest extends HtsjdkTest {
         Assert.assertEquals(decompressedNames, uncompressedBuffer);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testEncoderReuse() {
+        // an encoder reuses its buffers from one call to the next, so its output must not depend on earlier calls
+        final List<Object[]> testCases = Arrays.asList(getNameTokenisationTestData());
+        final NameTokenisationEncode reusedEncode = new NameTokenisationEncode();
+        for (final Object[] testCase : testCases) {
+            final TestDataEnvelope td = (TestDataEnvelope) testCase[0];
+            final ByteBuffer expected = new NameTokenisationEncode().compress(
+                    ByteBuffer.wrap(td.testArray),
+                    td.useArith,
+                    NameTokenisationDecode.NAME_SEPARATOR);
+            final ByteBuffer actual = reusedEncode.compress(
+                    ByteBuffer.wrap(td.testArray),
+                    td.useArith,
+                    NameTokenisationDecode.NAME_SEPARATOR);
+            Assert.assertEquals(actual, expected, td.toString());
+        }
+    }
+
+    @DataProvider(name="encodedNames")
+    public Object[][] getEncodedNamesTestData() {
+        // the output of the encoder before it tokenised names in place
+        return new Object[][] {
+            { false,
+                "a10000000500000000801800050506000001070094040000940000009400000094000005180004000100000301000c02" +
+                "0000a8000000a8000000a8000006180010000100000d03004b5e0000190100001901000019010080170004010a000103" +
+                "0000020000ac000000ac000000ac00000123000a00303241464b555800010101070101010300b2af0200712401005a12" +
+                "0000fc2a0080170004070a0001030000020000ac000000ac000000ac0000071b80040400016a87011e00010080000000" +
+                "800000008000000080000080170004020a0001030000020000ac000000ac000000ac0000021500013a00010080000000" +
+                "800000008000000080000080170004070a00030100a80000000c020000a8000000a80000071a000c00050600000d0102" +
+                "006f070200e6000000e6000000e6000080170004020a0001030000020000ac000000ac000000ac0000021500013a0001" +
+                "0080000000800000008000000080000080170004070a00030100a80000000c020000a8000000a80000071b000c00171b" +
+                "3e000d01010100fe0d0800e6000000e6000000e6000080170004020a0001030000020000ac000000ac000000ac000002" +
+                "1500013a0001008000000080000000800000008000008018000407080000030100a80000000c020000a8000000a80000" +
+                "0721000c0013191b232a68000a01010101010100cf0e0800da0b08000002000000020008150001120001008000000080" +
+                "0000008000000080000080170004020a0001030000020000ac000000ac000000ac0000021500013a0001008000000080" +
+                "00000080000000800000801500040700040080000000800000008000000080000007280010000100075d8992bfc1e900" +
+                "060201010101010102098d0000007e2e2000b6e00000e0180000ac801500040c00040080000000800000008000000080" +
+                "0000" },
+            { true,
+                "a10000000500000001800900050700fb7d37f400050800040200fc71c71606090010020072243f2907800900040b002e" +
+                "52c0e1910110000a59009128910ae5e5ce5d23940000800900040b00b9f5a99991070b00048800c9664281f7c2008009" +
+                "00040b004598925591020800013b00fba93836800900040b00b978117087070a000c0700dbd6f262a1d2800900040b00" +
+                "4598925591020800013b00fba93836800900040b00b978117087070c000c3f006db78d6732002100800900040b004598" +
+                "925591020800013b00fba93836800900040900e2a02b7a79070f000c6900fdf1db298a71f4cb099000080800011300f2" +
+                "86bc9c800900040b004598925591020800013b00fba93836800800040800ec2b46a307140010ea00d43c25e060b7dae5" +
+                "a234c28ce60a0000800800040d00f7976a5a" },
+        };
+    }
+
+    @Test(dataProvider = "encodedNames")
+    public void testEncodedBytes(final boolean useArith, final String expectedHex) {
+        final String names = String.join(LOCAL_NAME_SEPARATOR_CHARSEQUENCE,
+                "20FUKAAXX100202:6:27:4968:125377",
+                "20FUKAAXX100202:6:27:4986:125375",
+                "20FUKAAXX100202:5:62:8987:1929",
+                "20FUKAAXX100202:6:23:6442:37469",
+                "20FUKAAXX100202:6:23:6442:37469") + LOCAL_NAME_SEPARATOR_CHARSEQUENCE;
+        final ByteBuffer compressedBuffer = new NameTokenisationEncode().compress(
+                ByteBuffer.wrap(names.getBytes()),
+                useArith,
+                NameTokenisationDecode.NAME_SEPARATOR);
+        final byte[] actual = new byte[compressedBuffer.remaining()];
+        compressedBuffer.get(actual);
+        Assert.assertEquals(actual, StringUtil.hexStringToBytes(expectedHex));
+    }
+
+}
@@ -19,6 +19,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
 import java.util.stream.Stream;
 
@@ -148,6 +151,16 @@ public class RansTest extends HtsjdkTest {
                 .toArray(Object[][]::new);
     }
 
+    @DataProvider(name="allRansEntropyCodecs")
+    public Object[][] getAllRansEntropyCodecs() {
+
+        // params: RANSEncode, RANSDecode, RANSParams
+        // the RANS codecs whose output is entropy coded, rather than stored uncompressed with the CAT flag
+        return Arrays.stream(getAllRansCodecs())
+                .filter(codec -> !(codec[2] instanceof RANSNx16Params && ((RANSNx16Params) codec[2]).isCAT()))
+                .toArray(Object[][]::new);
+    }
+
     @DataProvider(name="allRansAndData")
     public Object[][] getAllRansAndData() {
 
@@ -241,6 +254,82 @@ public class RansTest extends HtsjdkTest {
         ransRoundTrip(ransEncode, ransDecode, params, CompressionUtils.wrap(td.testArray));
     }
 
+    @Test(dataProvider="allRansAndData")
+    public void testRoundTripIntoOutputBuffer(
+            final RANSEncode ransEncode,
+            final RANSDecode ransDecode,
+            final RANSParams params,
+            final TestDataEnvelope td) {
+        final ByteBuffer data = CompressionUtils.wrap(td.testArray);
+        final ByteBuffer compressed = ransEncode.compress(data, params);
+        data.rewind();
+        final int size = td.testArray.length;
+        for (final ByteBuffer outBuffer : Arrays.asList(
+                CompressionUtils.allocateByteBuffer(2 * size + 10),
+                ByteBuffer.allocateDirect(2 * size + 10))) {
+            // decode twice into the same buffer, after some existing data
+            outBuffer.position(10);
+            for (int i = 0; i < 2; i++) {
+                compressed.rewind();
+                Assert.assertEquals(ransDecode.uncompress(compressed, outBuffer), size);
+                Assert.assertEquals(outBuffer.position(), 10 + (i + 1) * size);
+                final ByteBuffer uncompressed = outBuffer.duplicate();
+                uncompressed.position(10 + i * size).limit(10 + (i + 1) * size);
+                Assert.assertEquals(uncompressed, data);
+            }
+        }
+    }
+
+    @Test(dataProvider = "allRansEntropyCodecs")
+    public void testConcurrentCompression(
+            final RANSEncode ransEncode,
+            final RANSDecode ransDecode,
+            final RANSParams params) throws Exception {
+        final List<byte[]> inputs = new ArrayList<>();
+        final List<ByteBuffer> expected = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final byte[] data = randomBytesFromGeometricDistribution(10000, 0.01 * (i + 1));
+            inputs.add(data);
+            expected.add(ransEncode.compress(CompressionUtils.wrap(data), params));
+        }
+
+        // the encoder instance is shared by the threads, each of which borrows its own working memory
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<ByteBuffer>> compressed = new ArrayList<>();
+            for (final byte[] data : inputs) {
+                compressed.add(executor.submit(() -> ransEncode.compress(CompressionUtils.wrap(data), params)));
+            }
+            for (int i = 0; i < inputs.size(); i++) {
+                final ByteBuffer actual = compressed.get(i).get();
+                Assert.assertEquals(actual, expected.get(i));
+                Assert.assertEquals(ransDecode.uncompress(actual), CompressionUtils.wrap(inputs.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = CRAMException.class)
+    public void testRejectSmallOutputBuffer() {
+        final byte[] data = randomBytesFromGeometricDistribution(1000, 0.01);
+        final ByteBuffer compressed = new RANSNx16Encode().compress(CompressionUtils.wrap(data), new RANSNx16Params(0));
+        new RANSNx16Decode().uncompress(compressed, CompressionUtils.allocateByteBuffer(data.length - 1));
+    }
+
+    @Test(dataProvider = "allRansEntropyCodecs")
+    public void testRejectTruncatedStream(
+            final RANSEncode ransEncode,
+            final RANSDecode ransDecode,
+            final RANSParams params) {
+        final byte[] data = randomBytesFromGeometricDistribution(1000, 0.01);
+        final ByteBuffer compressed = ransEncode.compress(CompressionUtils.wrap(data), params);
+        // the decoding loops read the input array directly, so it must end where the stream is cut short
+        final byte[] truncated = new byte[compressed.limit() - 4];
+        compressed.get(truncated);
+        Assert.assertThrows(CRAMException.class, () -> ransDecode.uncompress(CompressionUtils.wrap(truncated)));
+    }
+
     @Test(
             dataProvider = "RansNx16RejectEncodeStripe",
             expectedExceptions = { CRAMException.class },
@@ -5,6 +5,9 @@ import htsjdk.samtools.SAMFlag;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.cram.build.CompressionHeaderFactory;
+import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.encoding.external.ExternalIntegerEncoding;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import htsjdk.samtools.cram.structure.*;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -35,6 +38,25 @@ public class CramRecordWriterReaderTest extends HtsjdkTest {
         Assert.assertEquals(roundTripRecords, unmappedRecords);
     }
 
+    @Test(dataProvider = "coordSortedTrueFalse")
+    public void roundTripSharedExternalBlockTest(final boolean coordinateSorted) {
+        final List<CRAMCompressionRecord> unmappedRecords = getUnmappedRecords();
+        final CompressionHeader header = new CompressionHeaderFactory(
+                new CRAMEncodingStrategy()).createCompressionHeader(unmappedRecords, coordinateSorted);
+
+        // interleave the read lengths with the bit flags in the same external block, so that neither can be
+        // decoded as a column
+        header.getEncodingMap().putExternalEncoding(
+                DataSeries.RL_ReadLength,
+                new ExternalIntegerEncoding(DataSeries.BF_BitFlags.getExternalBlockContentId()).toEncodingDescriptor(),
+                ExternalCompressor.getCompressorForMethod(BlockCompressionMethod.GZIP, -1));
+
+        final Slice slice = new Slice(unmappedRecords, header, 0L, 0L);
+        final List<CRAMCompressionRecord> roundTripRecords = slice.deserializeCRAMRecords(new CompressorCache(), ValidationStringency.STRICT);
+
+        Assert.assertEquals(roundTripRecords, unmappedRecords);
+    }
+
     public static List<CRAMCompressionRecord> getUnmappedRecords() {
         final List<CRAMCompressionRecord> cramCompressionRecords = new ArrayList<>();
 
@@ -38,4 +38,31 @@ public class ExternalIntegerCodecTest extends HtsjdkTest {
 
         Assert.assertEquals(actual, values);
     }
-}
\ No newline at end of file
+
+    @Test(dataProvider = "testInt32Lists", dataProviderClass = IOTestCases.class)
+    public void readIntegersTest(final List<Integer> values) throws IOException {
+        byte[] written;
+        try (final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            final CRAMCodec<Integer> writeCodec = new ExternalIntegerCodec(null, os);
+
+            for (final int value : values) {
+                writeCodec.write(value);
+            }
+            // a value of another data series after the column
+            writeCodec.write(12345);
+            os.flush();
+            written = os.toByteArray();
+        }
+
+        try (final ByteArrayInputStream is = new ByteArrayInputStream(written)) {
+            final CRAMCodec<Integer> readCodec = new ExternalIntegerCodec(is, null);
+
+            final int[] actual = new int[values.size()];
+            readCodec.readIntegers(actual, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Assert.assertEquals(actual[i], values.get(i).intValue());
+            }
+            Assert.assertEquals(readCodec.read().intValue(), 12345);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package htsjdk.samtools.cram.ref;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.SequenceUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CachingReferenceSourceTest extends HtsjdkTest {
+    private static final File REFERENCE_FILE = new File("src/test/resources/htsjdk/samtools/cram/ce.fa");
+    private static final File CRAM_FILE = new File("src/test/resources/htsjdk/samtools/cram/ce#1000.3.0.cram");
+
+    private static final int SEQUENCE_LENGTH = 10_000;
+
+    private static byte[] randomBases(final int length, final Random random) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = "acgtACGTN".getBytes()[random.nextInt(9)];
+        }
+        return bases;
+    }
+
+    private static InMemoryReferenceSequenceFile createReference(final byte[]... sequences) {
+        final InMemoryReferenceSequenceFile reference = new InMemoryReferenceSequenceFile();
+        for (int i = 0; i < sequences.length; i++) {
+            reference.add("chr" + (i + 1), sequences[i]);
+        }
+        return reference;
+    }
+
+    @DataProvider(name = "regionSizes")
+    public Object[][] regionSizes() {
+        return new Object[][]{{1}, {100}, {1000}, {SEQUENCE_LENGTH}, {CachingReferenceSource.DEFAULT_REGION_SIZE}};
+    }
+
+    @Test(dataProvider = "regionSizes")
+    public void testBasesMatchReferenceSource(final int regionSize) {
+        final Random random = new Random(42);
+        final byte[] bases = randomBases(SEQUENCE_LENGTH, random);
+        final ReferenceSource referenceSource = new ReferenceSource(createReference(Arrays.copyOf(bases, bases.length)));
+        final CachingReferenceSource fromFile = new CachingReferenceSource(createReference(Arrays.copyOf(bases, bases.length)), 1_000_000, regionSize);
+        final CachingReferenceSource fromSource = new CachingReferenceSource(referenceSource, 1_000_000, regionSize);
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chr1", SEQUENCE_LENGTH);
+
+        final byte[] expectedContig = referenceSource.getReferenceBases(sequenceRecord, false);
+        Assert.assertEquals(expectedContig, SequenceUtil.upperCase(Arrays.copyOf(bases, bases.length)));
+        Assert.assertEquals(fromFile.getReferenceBases(sequenceRecord, false), expectedContig);
+        Assert.assertEquals(fromSource.getReferenceBases(sequenceRecord, false), expectedContig);
+
+        for (int i = 0; i < 200; i++) {
+            final int start = random.nextInt(SEQUENCE_LENGTH);
+            // include requests that extend beyond the end of the sequence
+            final int length = 1 + random.nextInt(2000);
+            final byte[] expected = referenceSource.getReferenceBasesByRegion(sequenceRecord, start, length);
+            Assert.assertEquals(fromFile.getReferenceBasesByRegion(sequenceRecord, start, length), expected);
+            Assert.assertEquals(fromSource.getReferenceBasesByRegion(sequenceRecord, start, length), expected);
+        }
+    }
+
+    @Test
+    public void testUnknownSequence() {
+        final CachingReferenceSource source = new CachingReferenceSource(createReference(new byte[100]), 1_000_000, 10);
+        Assert.assertNull(source.getReferenceBases(new SAMSequenceRecord("chrUn", 100), false));
+        Assert.assertNull(source.getReferenceBasesByRegion(new SAMSequenceRecord("chrUn", 100), 10, 10));
+    }
+
+    @Test
+    public void testCountersAndEviction() {
+        final Random random = new Random(42);
+        final CachingReferenceSource source = new CachingReferenceSource(
+                createReference(randomBases(1000, random), randomBases(1000, random)), 250, 100);
+        final SAMSequenceRecord chr1 = new SAMSequenceRecord("chr1", 1000);
+        final SAMSequenceRecord chr2 = new SAMSequenceRecord("chr2", 1000);
+
+        // spans regions 0 and 1
+        source.getReferenceBasesByRegion(chr1, 50, 100);
+        Assert.assertEquals(source.getMissCount(), 2);
+        Assert.assertEquals(source.getHitCount(), 0);
+        Assert.assertEquals(source.getCachedByteCount(), 200);
+
+        source.getReferenceBasesByRegion(chr1, 150, 10);
+        Assert.assertEquals(source.getMissCount(), 2);
+        Assert.assertEquals(source.getHitCount(), 1);
+
+        // region 0 of chr2 fits in the budget, the next one evicts the least recently used region (chr1 region 0)
+        source.getReferenceBasesByRegion(chr2, 0, 10);
+        Assert.assertEquals(source.getEvictionCount(), 1);
+        Assert.assertEquals(source.getCachedByteCount(), 200);
+        source.getReferenceBasesByRegion(chr1, 150, 10);
+        Assert.assertEquals(source.getHitCount(), 2);
+        source.getReferenceBasesByRegion(chr1, 0, 10);
+        Assert.assertEquals(source.getMissCount(), 4);
+        Assert.assertEquals(source.getEvictionCount(), 2);
+        Assert.assertTrue(source.getCachedByteCount() <= 250);
+    }
+
+    @Test
+    public void testWholeSequenceRequests() {
+        final Random random = new Random(42);
+        final byte[] longBases = randomBases(1000, random);
+        final byte[] shortBases = randomBases(50, random);
+        final CachingReferenceSource source = new CachingReferenceSource(
+                createReference(Arrays.copyOf(longBases, longBases.length), Arrays.copyOf(shortBases, shortBases.length)), 250, 100);
+        final SAMSequenceRecord chr1 = new SAMSequenceRecord("chr1", 1000);
+        final SAMSequenceRecord chr2 = new SAMSequenceRecord("chr2", 50);
+
+        source.getReferenceBasesByRegion(chr1, 0, 200);
+        Assert.assertEquals(source.getMissCount(), 2);
+
+        // a sequence longer than a region bypasses the cache and leaves the cached regions in place
+        Assert.assertEquals(source.getReferenceBases(chr1, false), SequenceUtil.upperCase(longBases));
+        Assert.assertEquals(source.getMissCount(), 2);
+        Assert.assertEquals(source.getEvictionCount(), 0);
+        Assert.assertEquals(source.getCachedByteCount(), 200);
+        source.getReferenceBasesByRegion(chr1, 0, 200);
+        Assert.assertEquals(source.getHitCount(), 2);
+
+        // a sequence that fits in a region is cached
+        Assert.assertEquals(source.getReferenceBases(chr2, false), SequenceUtil.upperCase(shortBases));
+        Assert.assertEquals(source.getMissCount(), 3);
+        Assert.assertEquals(source.getReferenceBases(chr2, false), SequenceUtil.upperCase(shortBases));
+        Assert.assertEquals(source.getHitCount(), 3);
+    }
+
+    @Test
+    public void testLookupByMD5() {
+        final Random random = new Random(42);
+        final byte[] bases = randomBases(1000, random);
+        final CachingReferenceSource source = new CachingReferenceSource(createReference(bases), 1_000_000, 100);
+        final SAMSequenceRecord chr1 = new SAMSequenceRecord("chr1", 1000);
+        chr1.setMd5(SequenceUtil.calculateMD5String(bases));
+        final byte[] expected = source.getReferenceBasesByRegion(chr1, 0, 1000);
+        Assert.assertEquals(source.getMissCount(), 10);
+
+        // a differently named sequence with the same MD5 is served from the cache
+        final SAMSequenceRecord renamed = new SAMSequenceRecord("1", 1000);
+        renamed.setMd5(chr1.getMd5().toUpperCase());
+        Assert.assertEquals(source.getReferenceBasesByRegion(renamed, 0, 1000), expected);
+        Assert.assertEquals(source.getMissCount(), 10);
+        Assert.assertEquals(source.getHitCount(), 10);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final Random random = new Random(42);
+        final byte[] bases = randomBases(SEQUENCE_LENGTH, random);
+        final ReferenceSource referenceSource = new ReferenceSource(createReference(Arrays.copyOf(bases, bases.length)));
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chr1", SEQUENCE_LENGTH);
+        final byte[] expected = referenceSource.getReferenceBases(sequenceRecord, false);
+        // a budget smaller than the sequence, so that regions are evicted and reloaded concurrently
+        final CachingReferenceSource source = new CachingReferenceSource(createReference(bases), SEQUENCE_LENGTH / 4, 64);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    final Random threadRandom = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        final int start = threadRandom.nextInt(SEQUENCE_LENGTH);
+                        final int length = 1 + threadRandom.nextInt(500);
+                        final byte[] actual = source.getReferenceBasesByRegion(sequenceRecord, start, length);
+                        Assert.assertEquals(actual, Arrays.copyOfRange(expected, start, Math.min(SEQUENCE_LENGTH, start + length)));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(source.getCachedByteCount() <= SEQUENCE_LENGTH / 4);
+        Assert.assertTrue(source.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testCRAMDecodingMatchesReferenceSource() {
+        final List<String> expected = readCRAM(new ReferenceSource(REFERENCE_FILE));
+        final CachingReferenceSource cachingSource = new CachingReferenceSource(
+                ReferenceSequenceFileFactory.getReferenceSequenceFile(REFERENCE_FILE), 100_000, 10_000);
+        Assert.assertEquals(readCRAM(cachingSource), expected);
+        // a second reader reuses the cached regions
+        final long misses = cachingSource.getMissCount();
+        Assert.assertEquals(readCRAM(cachingSource), expected);
+        Assert.assertEquals(cachingSource.getMissCount(), misses);
+    }
+
+    private static List<String> readCRAM(final CRAMReferenceSource referenceSource) {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault()
+                .referenceSource(referenceSource)
+                .validationStringency(ValidationStringency.SILENT)
+                .open(CRAM_FILE)) {
+            reader.iterator().forEachRemaining(r -> records.add(r.getSAMString()));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,203 @@
+package htsjdk.samtools.cram.structure;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.CRAMTestUtils;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.compression.GZIPExternalCompressor;
+import htsjdk.samtools.cram.compression.rans.rans4x8.RANS4x8Params;
+import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.block.Block;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ExternalCompressorSelectorTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/cram");
+
+    // a compressor that counts its calls and takes a fixed time to "compress" to output of a fixed size
+    private static class FixedCompressor extends ExternalCompressor {
+        private final int compressedSize;
+        private final long sleepMillis;
+        private int calls;
+
+        FixedCompressor(final int compressedSize, final long sleepMillis) {
+            super(BlockCompressionMethod.RAW);
+            this.compressedSize = compressedSize;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public byte[] compress(final byte[] data) {
+            calls++;
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new byte[compressedSize];
+        }
+
+        @Override
+        public byte[] uncompress(final byte[] data) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static byte[] getTestData() {
+        // a skewed distribution of a few symbols, on which the compressors give different sizes
+        final Random random = new Random(42);
+        final byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('A' + Math.min(random.nextInt(8), random.nextInt(8)));
+        }
+        return data;
+    }
+
+    @Test
+    public void testChoosesSmallestOutput() {
+        final CompressorCache compressorCache = new CompressorCache();
+        final List<ExternalCompressor> candidates = Arrays.asList(
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.GZIP, 5),
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS4x8Params.ORDER.ZERO.ordinal()),
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS4x8Params.ORDER.ONE.ordinal()));
+        final ExternalCompressorSelector selector = new ExternalCompressorSelector(candidates, 0, 10);
+        final byte[] data = getTestData();
+
+        ExternalCompressor smallest = null;
+        int smallestSize = Integer.MAX_VALUE;
+        for (final ExternalCompressor candidate : candidates) {
+            final int size = candidate.compress(data).length;
+            if (size < smallestSize) {
+                smallest = candidate;
+                smallestSize = size;
+            }
+        }
+
+        Assert.assertNull(selector.getSelectedCompressor(7));
+        final Block block = selector.createCompressedBlock(7, data);
+        Assert.assertSame(selector.getSelectedCompressor(7), smallest);
+        Assert.assertEquals(block.getCompressionMethod(), smallest.getMethod());
+        Assert.assertEquals(block.getCompressedContentSize(), smallestSize);
+        Assert.assertEquals(block.getUncompressedContent(compressorCache), data);
+        // other content IDs have their own selection
+        Assert.assertNull(selector.getSelectedCompressor(8));
+    }
+
+    @Test
+    public void testTrialInterval() {
+        final FixedCompressor large = new FixedCompressor(100, 0);
+        final FixedCompressor small = new FixedCompressor(10, 0);
+        final ExternalCompressorSelector selector = new ExternalCompressorSelector(Arrays.asList(large, small), 0, 3);
+        final byte[] data = new byte[1000];
+
+        // blocks 1, 4 and 7 are trialled, the others use the selection
+        final int[] expectedLargeCalls = {1, 1, 1, 2, 2, 2, 3};
+        final int[] expectedSmallCalls = {1, 2, 3, 4, 5, 6, 7};
+        for (int i = 0; i < expectedLargeCalls.length; i++) {
+            final Block block = selector.createCompressedBlock(1, data);
+            Assert.assertEquals(block.getCompressedContentSize(), 10);
+            Assert.assertEquals(block.getUncompressedContentSize(), data.length);
+            Assert.assertEquals(large.calls, expectedLargeCalls[i], "block " + i);
+            Assert.assertEquals(small.calls, expectedSmallCalls[i], "block " + i);
+        }
+
+        // empty blocks are neither trialled nor counted
+        selector.createCompressedBlock(1, new byte[0]);
+        selector.createCompressedBlock(1, data);
+        Assert.assertEquals(large.calls, 3);
+    }
+
+    @Test
+    public void testTimeCost() {
+        final byte[] data = new byte[1000];
+        final FixedCompressor slowSmall = new FixedCompressor(10, 20);
+        final FixedCompressor fastLarge = new FixedCompressor(100, 0);
+        final List<ExternalCompressor> candidates = Arrays.asList(slowSmall, fastLarge);
+
+        final ExternalCompressorSelector sizeOnly = new ExternalCompressorSelector(candidates, 0, 1);
+        sizeOnly.createCompressedBlock(1, data);
+        Assert.assertSame(sizeOnly.getSelectedCompressor(1), slowSmall);
+
+        // 20ms of compression is worth at least 20000 bytes, far more than the 90 bytes saved
+        final ExternalCompressorSelector timeWeighted = new ExternalCompressorSelector(candidates, 1000, 1);
+        timeWeighted.createCompressedBlock(1, data);
+        Assert.assertSame(timeWeighted.getSelectedCompressor(1), fastLarge);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsNoCandidates() {
+        new ExternalCompressorSelector(new ArrayList<>(), 0, 1);
+    }
+
+    @Test
+    public void testEncodingStrategyCandidates() {
+        final CRAMEncodingStrategy encodingStrategy = new CRAMEncodingStrategy()
+                .setAdaptiveCompression(true)
+                .setAdaptiveCompressionTimeCost(2.5)
+                .setAdaptiveCompressionTrialInterval(7);
+        final ExternalCompressorSelector selector =
+                ExternalCompressorSelector.fromEncodingStrategy(encodingStrategy, new CompressorCache());
+        Assert.assertEquals(selector.getTimeCost(), 2.5);
+        Assert.assertEquals(selector.getTrialInterval(), 7);
+
+        final List<BlockCompressionMethod> methods = new ArrayList<>();
+        final List<Integer> gzipLevels = new ArrayList<>();
+        for (final ExternalCompressor candidate : selector.getCandidates()) {
+            methods.add(candidate.getMethod());
+            if (candidate instanceof GZIPExternalCompressor) {
+                gzipLevels.add(((GZIPExternalCompressor) candidate).getWriteCompressionLevel());
+            }
+        }
+        Assert.assertTrue(methods.containsAll(Arrays.asList(
+                BlockCompressionMethod.GZIP,
+                BlockCompressionMethod.RANS,
+                BlockCompressionMethod.BZIP2,
+                BlockCompressionMethod.LZMA)));
+        Assert.assertEquals(gzipLevels.get(0).intValue(), encodingStrategy.getGZIPCompressionLevel());
+        Assert.assertTrue(gzipLevels.containsAll(Arrays.asList(1, 9)));
+        Assert.assertEquals(gzipLevels.stream().distinct().count(), gzipLevels.size());
+    }
+
+    @Test
+    public void testAdaptiveCompressionRoundTrip() throws IOException {
+        final File sourceFile = new File(TEST_DATA_DIR, "ce#1000.3.0.cram");
+        final ReferenceSource referenceSource = new ReferenceSource(new File(TEST_DATA_DIR, "ce.fa"));
+        final File outputFile = File.createTempFile("adaptiveCompression", ".cram");
+        outputFile.deleteOnExit();
+
+        final CRAMEncodingStrategy encodingStrategy = new CRAMEncodingStrategy()
+                .setAdaptiveCompression(true)
+                .setAdaptiveCompressionTrialInterval(2)
+                .setMinimumSingleReferenceSliceSize(100)
+                .setReadsPerSlice(100);
+        CRAMTestUtils.writeToCRAMWithEncodingStrategy(encodingStrategy, sourceFile, outputFile, referenceSource);
+
+        final SamReaderFactory readerFactory = SamReaderFactory.makeDefault()
+                .referenceSource(referenceSource)
+                .validationStringency(ValidationStringency.SILENT);
+        try (final SamReader sourceReader = readerFactory.open(sourceFile);
+             final SamReader adaptiveReader = readerFactory.open(outputFile)) {
+            final List<SAMRecord> sourceRecords = new ArrayList<>();
+            sourceReader.forEach(sourceRecords::add);
+            final List<SAMRecord> adaptiveRecords = new ArrayList<>();
+            adaptiveReader.forEach(adaptiveRecords::add);
+            Assert.assertEquals(adaptiveRecords.size(), sourceRecords.size());
+            for (int i = 0; i < sourceRecords.size(); i++) {
+                Assert.assertEquals(adaptiveRecords.get(i).getSAMString(), sourceRecords.get(i).getSAMString());
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package htsjdk.samtools.reference;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MemoryMappedFastaSequenceFileTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/reference");
+    private static final Path SEQUENCE_FILE = new File(TEST_DATA_DIR, "Homo_sapiens_assembly18.trimmed.fasta").toPath();
+    private static final Path CRLF_FILE = new File(TEST_DATA_DIR, "crlf.fasta").toPath();
+
+    @DataProvider(name = "segments")
+    public Object[][] segments() {
+        return new Object[][]{
+                {SEQUENCE_FILE, MemoryMappedFastaSequenceFile.DEFAULT_SEGMENT_SIZE, MemoryMappedFastaSequenceFile.DEFAULT_SEGMENT_OVERLAP},
+                // runs of bases that cross segment boundaries
+                {SEQUENCE_FILE, 1000, 0},
+                {SEQUENCE_FILE, 997, 10},
+                {SEQUENCE_FILE, 4096, 100},
+                {CRLF_FILE, MemoryMappedFastaSequenceFile.DEFAULT_SEGMENT_SIZE, MemoryMappedFastaSequenceFile.DEFAULT_SEGMENT_OVERLAP},
+                {CRLF_FILE, 7, 3},
+        };
+    }
+
+    private static MemoryMappedFastaSequenceFile open(final Path path, final int segmentSize, final int segmentOverlap) throws IOException {
+        return new MemoryMappedFastaSequenceFile(path,
+                new FastaSequenceIndex(AbstractIndexedFastaSequenceFile.findRequiredFastaIndexFile(path)),
+                segmentSize,
+                segmentOverlap);
+    }
+
+    @Test(dataProvider = "segments")
+    public void testSubsequencesMatchIndexedFastaSequenceFile(final Path path, final int segmentSize, final int segmentOverlap) throws IOException {
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        try (final IndexedFastaSequenceFile expected = new IndexedFastaSequenceFile(path);
+             final MemoryMappedFastaSequenceFile actual = open(path, segmentSize, segmentOverlap)) {
+            for (final FastaSequenceIndexEntry entry : expected.getIndex()) {
+                final String contig = entry.getContig();
+                Assert.assertEquals(actual.getSequence(contig).getBases(), expected.getSequence(contig).getBases());
+                Assert.assertEquals(actual.getSequence(contig).getContigIndex(), expected.getSequence(contig).getContigIndex());
+
+                final int size = (int) entry.getSize();
+                for (int i = 0; i < 500; i++) {
+                    final int start = 1 + random.nextInt(size);
+                    // mostly short regions, which are more likely to lie on a single line
+                    final int length = random.nextBoolean() ? random.nextInt(entry.getBasesPerLine() + 1) : random.nextInt(5000);
+                    final int stop = Math.min(size, start + length - 1);
+                    final byte[] bases = expected.getSubsequenceAt(contig, start, stop).getBases();
+
+                    Assert.assertEquals(actual.getSubsequenceAt(contig, start, stop).getBases(), bases);
+
+                    final byte[] destination = new byte[bases.length + 2];
+                    Assert.assertEquals(actual.copySubsequence(contig, start, stop, destination, 1), bases.length);
+                    final byte[] copied = new byte[bases.length];
+                    System.arraycopy(destination, 1, copied, 0, bases.length);
+                    Assert.assertEquals(copied, bases);
+
+                    final ByteBuffer view = actual.getSubsequenceView(contig, start, stop);
+                    Assert.assertTrue(view.isReadOnly());
+                    final byte[] viewed = new byte[view.remaining()];
+                    view.get(viewed);
+                    Assert.assertEquals(viewed, bases);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingleLineViewIsMapped() throws IOException {
+        try (final MemoryMappedFastaSequenceFile fasta = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            final int basesPerLine = fasta.getIndex().getIndexEntry("chrM").getBasesPerLine();
+            Assert.assertTrue(fasta.getSubsequenceView("chrM", 1, basesPerLine).isDirect());
+            Assert.assertFalse(fasta.getSubsequenceView("chrM", 1, basesPerLine + 1).isDirect());
+            Assert.assertEquals(fasta.getSubsequenceView("chrM", 5, 4).remaining(), 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        try (final IndexedFastaSequenceFile expected = new IndexedFastaSequenceFile(SEQUENCE_FILE);
+             final MemoryMappedFastaSequenceFile actual = open(SEQUENCE_FILE, 1000, 10)) {
+            final byte[] chr20 = expected.getSequence("chr20").getBases();
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    final long seed = t;
+                    futures.add(executor.submit(() -> {
+                        final Random random = new Random(seed);
+                        for (int i = 0; i < 2000; i++) {
+                            final int start = 1 + random.nextInt(chr20.length);
+                            final int stop = Math.min(chr20.length, start + random.nextInt(200));
+                            final ByteBuffer view = actual.getSubsequenceView("chr20", start, stop);
+                            for (int j = 0; j < view.remaining(); j++) {
+                                Assert.assertEquals(view.get(view.position() + j), chr20[start - 1 + j]);
+                            }
+                            final byte[] bases = actual.getSubsequenceAt("chr20", start, stop).getBases();
+                            for (int j = 0; j < bases.length; j++) {
+                                Assert.assertEquals(bases[j], chr20[start - 1 + j]);
+                            }
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testQueryPastEndOfContig() throws IOException {
+        try (final MemoryMappedFastaSequenceFile fasta = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            final long size = fasta.getIndex().getIndexEntry("chrM").getSize();
+            fasta.getSubsequenceAt("chrM", size - 10, size + 1);
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testRejectsBlockCompressedFasta() throws IOException {
+        new MemoryMappedFastaSequenceFile(new File(TEST_DATA_DIR, "Homo_sapiens_assembly18.trimmed.fasta.gz"));
+    }
+}
@@ -0,0 +1,206 @@
+package htsjdk.samtools.seekablestream;
+
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SeekableCachingStreamTest extends HtsjdkTest {
+
+    /** Counts the reads made of the stream, each of which stands for a range request. */
+    private static class CountingSeekableStream extends ByteArraySeekableStream {
+        private int reads = 0;
+
+        private CountingSeekableStream(final byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            reads++;
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @DataProvider(name = "configurations")
+    public Object[][] configurations() {
+        return new Object[][]{
+                // length, page size, cache size, max read-ahead pages
+                {10_000, 100, 100, 0},
+                {10_000, 100, 1_000, 4},
+                {10_001, 128, 512, 16},
+                {100_000, 4096, 1 << 20, 16},
+                {5, 1024, 1024, 2},
+        };
+    }
+
+    @Test(dataProvider = "configurations")
+    public void testRandomReadsMatchData(final int length, final int pageSize, final long cacheSize, final int maxReadAheadPages) throws IOException {
+        final byte[] data = randomBytes(length);
+        final Random random = new Random(length);
+        try (final SeekableStream stream = new SeekableCachingStream(new ByteArraySeekableStream(data), pageSize, cacheSize, maxReadAheadPages)) {
+            Assert.assertEquals(stream.length(), length);
+            for (int i = 0; i < 1000; i++) {
+                final long position = random.nextInt(length + 10);
+                final byte[] buffer = new byte[random.nextInt(3 * pageSize) + 1];
+                stream.seek(position);
+                final int n = stream.read(buffer, 0, buffer.length);
+                if (position >= length) {
+                    Assert.assertEquals(n, -1);
+                    Assert.assertTrue(stream.eof());
+                } else {
+                    Assert.assertEquals(n, Math.min(buffer.length, length - position));
+                    Assert.assertEquals(Arrays.copyOf(buffer, n), Arrays.copyOfRange(data, (int) position, (int) position + n));
+                    Assert.assertEquals(stream.position(), position + n);
+                }
+                // interleave some single byte reads
+                if (random.nextInt(4) == 0 && !stream.eof()) {
+                    final long p = stream.position();
+                    Assert.assertEquals(stream.read(), data[(int) p] & 0xFF);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingPagesAreCoalesced() throws IOException {
+        final CountingSeekableStream wrapped = new CountingSeekableStream(randomBytes(10_000));
+        try (final SeekableStream stream = new SeekableCachingStream(wrapped, 100, 10_000, 0)) {
+            // one read of 5 pages
+            stream.seek(150);
+            stream.readFully(new byte[400]);
+            Assert.assertEquals(wrapped.reads, 1);
+            // within the cached pages
+            stream.seek(100);
+            stream.readFully(new byte[500]);
+            Assert.assertEquals(wrapped.reads, 1);
+            // pages 0 and 6-7 are missing, around the cached pages 1-5
+            stream.seek(0);
+            stream.readFully(new byte[800]);
+            Assert.assertEquals(wrapped.reads, 3);
+        }
+    }
+
+    @Test
+    public void testSequentialReadsReadAhead() throws IOException {
+        final byte[] data = randomBytes(100_000);
+        final CountingSeekableStream wrapped = new CountingSeekableStream(data);
+        try (final SeekableStream stream = new SeekableCachingStream(wrapped, 100, 100_000, 16)) {
+            final byte[] read = new byte[data.length];
+            for (int i = 0; i < data.length; i += 50) {
+                Assert.assertEquals(stream.read(read, i, 50), 50);
+            }
+            Assert.assertEquals(read, data);
+            // 1000 pages, almost all read 17 at a time
+            Assert.assertTrue(wrapped.reads < 80, "Too many reads: " + wrapped.reads);
+        }
+    }
+
+    @Test
+    public void testSeekResetsReadAhead() throws IOException {
+        final CountingSeekableStream wrapped = new CountingSeekableStream(randomBytes(100_000));
+        try (final SeekableStream stream = new SeekableCachingStream(wrapped, 100, 100_000, 16)) {
+            stream.seek(50_000);
+            stream.read(new byte[10]);
+            // a read that does not follow on from the last page does not read ahead, so the page after it is missing
+            stream.seek(70_000);
+            stream.read(new byte[10]);
+            final int reads = wrapped.reads;
+            stream.seek(70_100);
+            stream.read(new byte[10]);
+            Assert.assertEquals(wrapped.reads, reads + 1);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPagesAreEvicted() throws IOException {
+        final CountingSeekableStream wrapped = new CountingSeekableStream(randomBytes(10_000));
+        try (final SeekableStream stream = new SeekableCachingStream(wrapped, 100, 200, 0)) {
+            final byte[] buffer = new byte[10];
+            for (final long position : new long[]{0, 500, 0, 900}) {
+                stream.seek(position);
+                stream.readFully(buffer);
+            }
+            Assert.assertEquals(wrapped.reads, 3);
+            // page 0 was used more recently than page 5, which was evicted
+            stream.seek(0);
+            stream.readFully(buffer);
+            Assert.assertEquals(wrapped.reads, 3);
+            stream.seek(500);
+            stream.readFully(buffer);
+            Assert.assertEquals(wrapped.reads, 4);
+        }
+    }
+
+    @Test
+    public void testUnknownLengthIsPassedThrough() throws IOException {
+        final byte[] data = randomBytes(1000);
+        final CountingSeekableStream wrapped = new CountingSeekableStream(data) {
+            @Override
+            public long length() {
+                return -1;
+            }
+        };
+        try (final SeekableStream stream = new SeekableCachingStream(wrapped, 100, 1000, 4)) {
+            final byte[] buffer = new byte[10];
+            stream.seek(500);
+            Assert.assertEquals(stream.read(buffer, 0, 10), 10);
+            Assert.assertEquals(buffer, Arrays.copyOfRange(data, 500, 510));
+            Assert.assertEquals(stream.position(), 510);
+            Assert.assertEquals(wrapped.reads, 1);
+        }
+    }
+
+    @Test
+    public void testFactoryCachesHttpStreams() throws IOException {
+        final byte[] data = Files.readAllBytes(Paths.get("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam"));
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/index_test.bam", exchange -> {
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            byte[] body = data;
+            if (range != null) {
+                final String[] bounds = range.replace("bytes=", "").split("-");
+                body = Arrays.copyOfRange(data, Integer.parseInt(bounds[0]), Math.min(data.length, Integer.parseInt(bounds[1]) + 1));
+            }
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(range == null ? 200 : 206, body.length);
+                try (final OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try (final SeekableStream stream = SeekableStreamFactory.getInstance().getStreamFor(
+                "http://localhost:" + server.getAddress().getPort() + "/index_test.bam")) {
+            Assert.assertTrue(stream instanceof SeekableCachingStream);
+            Assert.assertEquals(stream.length(), data.length);
+            final byte[] buffer = new byte[1000];
+            for (final int position : new int[]{data.length - 1000, 0, 123_456, 5}) {
+                stream.seek(position);
+                stream.readFully(buffer);
+                Assert.assertEquals(buffer, Arrays.copyOfRange(data, position, position + buffer.length));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
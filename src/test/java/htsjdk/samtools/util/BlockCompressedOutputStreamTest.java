@@ -31,13 +31,18 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.Deflater;
 
 public class BlockCompressedOutputStreamTest extends HtsjdkTest {
@@ -253,4 +258,127 @@ public class BlockCompressedOutputStreamTest extends HtsjdkTest {
         Assert.assertEquals(deflateCalls[0], 3, "deflate calls");
         Assert.assertEquals(reader.readLine(), null);
     }
+
+    @DataProvider(name = "parallelCompressionData")
+    private Object[][] parallelCompressionData() {
+        return new Object[][]{
+                {1, 1},
+                {4, 1},
+                {4, 3},
+                {4, 16}
+        };
+    }
+
+    @Test(dataProvider = "parallelCompressionData")
+    public void testParallelCompressionMatchesSerial(final int nThreads, final int maxBlocksInFlight) throws Exception {
+        final Random random = new Random(42);
+        final byte[] input = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE * 10 + 1234];
+        // mix compressible text and incompressible noise so that both deflater paths are exercised
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i < input.length / 2 ? 'A' + (i % 7) : random.nextInt());
+        }
+        final int[] recordSizes = {1, 17, 4096, 70000, 333};
+
+        final ByteArrayOutputStream serialOut = new ByteArrayOutputStream();
+        final ByteArrayOutputStream serialGzi = new ByteArrayOutputStream();
+        final List<Long> serialPointers = writeRecords(new BlockCompressedOutputStream(serialOut, (File) null),
+                null, 0, serialGzi, input, recordSizes);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final ByteArrayOutputStream parallelOut = new ByteArrayOutputStream();
+            final ByteArrayOutputStream parallelGzi = new ByteArrayOutputStream();
+            final List<Long> parallelPointers = writeRecords(new BlockCompressedOutputStream(parallelOut, (File) null),
+                    executor, maxBlocksInFlight, parallelGzi, input, recordSizes);
+            Assert.assertEquals(parallelPointers, serialPointers);
+            Assert.assertEquals(parallelOut.toByteArray(), serialOut.toByteArray());
+            Assert.assertEquals(parallelGzi.toByteArray(), serialGzi.toByteArray());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Long> writeRecords(final BlockCompressedOutputStream bcos, final ExecutorService executor,
+                                           final int maxBlocksInFlight, final ByteArrayOutputStream gziOut, final byte[] input,
+                                           final int[] recordSizes) throws IOException {
+        bcos.addIndexer(gziOut);
+        if (executor != null) {
+            bcos.setCompressionExecutor(executor, maxBlocksInFlight);
+        }
+        final List<Long> pointers = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; offset < input.length; i++) {
+            final int size = Math.min(recordSizes[i % recordSizes.length], input.length - offset);
+            // only query the file pointer for some records, as an indexer skipping unmapped reads would
+            if (i % 3 == 0) {
+                pointers.add(bcos.getFilePointer());
+            }
+            bcos.write(input, offset, size);
+            offset += size;
+        }
+        bcos.close();
+        return pointers;
+    }
+
+    @Test(dataProvider = "parallelCompressionData")
+    public void testUnresolvedFilePointersMatchSerial(final int nThreads, final int maxBlocksInFlight) throws Exception {
+        final Random random = new Random(42);
+        final byte[] input = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE * 10 + 1234];
+        random.nextBytes(input);
+        final int[] recordSizes = {1, 17, 4096, 70000, 333};
+
+        final List<Long> serialPointers = writeRecords(new BlockCompressedOutputStream(new ByteArrayOutputStream(), (File) null),
+                null, 0, new ByteArrayOutputStream(), input, recordSizes);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(new ByteArrayOutputStream(), (File) null);
+            bcos.setCompressionExecutor(executor, maxBlocksInFlight);
+            final Deque<Long> unresolved = new ArrayDeque<>();
+            final List<Long> resolved = new ArrayList<>();
+            int offset = 0;
+            for (int i = 0; offset < input.length; i++) {
+                final int size = Math.min(recordSizes[i % recordSizes.length], input.length - offset);
+                if (i % 3 == 0) {
+                    unresolved.add(bcos.getUnresolvedFilePointer());
+                }
+                bcos.write(input, offset, size);
+                offset += size;
+                // resolve the pointers as soon as possible, as an indexer would
+                while (!unresolved.isEmpty() && bcos.isResolvable(unresolved.peek())) {
+                    resolved.add(bcos.resolveFilePointer(unresolved.poll()));
+                }
+            }
+            bcos.close();
+            for (final long pointer : unresolved) {
+                Assert.assertTrue(bcos.isResolvable(pointer));
+                resolved.add(bcos.resolveFilePointer(pointer));
+            }
+            Assert.assertEquals(resolved, serialPointers);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCannotResolveFilePointerOutOfOrder() throws Exception {
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(new ByteArrayOutputStream(), (File) null);
+        final long first = bcos.getUnresolvedFilePointer();
+        bcos.write(new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE * 2]);
+        final long second = bcos.getUnresolvedFilePointer();
+        bcos.resolveFilePointer(second);
+        bcos.resolveFilePointer(first);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testCannotSetCompressionExecutorAfterWriting() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(new ByteArrayOutputStream(), (File) null);
+            bcos.write(new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE + 1]);
+            bcos.setCompressionExecutor(executor, 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,260 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OffHeapSortingCollectionTest extends HtsjdkTest {
+    private File tmpDir() {
+        return new File(System.getProperty("java.io.tmpdir") + "/" + System.getProperty("user.name"), getClass().getSimpleName());
+    }
+
+    @BeforeMethod void setup() { resetTmpDir(); }
+    @AfterMethod void tearDown() { resetTmpDir(); }
+
+    private void resetTmpDir() {
+        IOUtil.deleteDirectoryTree(tmpDir());
+        if (!tmpDir().mkdirs()) throw new IllegalStateException("Could not create tmpdir: " + tmpDir().getAbsolutePath());
+    }
+
+    /**
+     * Orders strings lexicographically, keyed on their first character only, so that many records have equal keys
+     * and have to be decoded to be compared.
+     */
+    static class FirstCharKeyedStringComparator extends SortingCollectionTest.StringComparator
+            implements SortingCollection.KeyedComparator<String> {
+        @Override
+        public long sortKey(final String val) {
+            return val.isEmpty() ? -1 : val.charAt(0);
+        }
+    }
+
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][] {
+                {0, 100},
+                {1, 100},
+                {99, 100},
+                {100, 100},
+                {101, 100},
+                {550, 100},
+                {600, 100},
+                {20_000, 1_000},
+                // large enough for runs to be sorted in parallel
+                {50_000, 50_000},
+        };
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testStrings(final int numStrings, final int maxRecordsInRam) {
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new SortingCollectionTest.StringCodec(), new FirstCharKeyedStringComparator(), maxRecordsInRam, tmpDir().toPath());
+        final List<String> strings = new ArrayList<>();
+        for (final String s : new SortingCollectionTest.RandomStringGenerator(numStrings)) {
+            sortingCollection.add(s);
+            strings.add(s);
+        }
+        Collections.sort(strings);
+
+        Assert.assertEquals(tmpDir().list().length == 0, numStrings <= maxRecordsInRam);
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEquals(sortingCollection.iterator(), strings);
+        assertIteratorEquals(sortingCollection.iterator(), strings);
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @DataProvider(name = "recordSizes")
+    public Object[][] recordSizes() {
+        return new Object[][] {
+                {5_000, 100_000},
+                {5_000, 1_000},
+                {5_000, 37},
+        };
+    }
+
+    @Test(dataProvider = "recordSizes")
+    public void testSAMRecordsMatchHeapSortingCollection(final int numPairs, final int maxRecordsInRam) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        for (int i = 0; i < numPairs; i++) {
+            // a narrow range of starts, so that many records share a position and strand
+            final int start = 1 + random.nextInt(500);
+            if (i % 10 == 0) {
+                builder.addUnmappedPair("unmapped" + i);
+            } else if (i % 10 == 1) {
+                builder.addPair("pair" + i, random.nextInt(3), start, start + random.nextInt(100), false, true, "36M", "36M", true, false, 20);
+            } else {
+                builder.addPair("pair" + (i % 50), random.nextInt(3), start, start + random.nextInt(100));
+            }
+        }
+        final SAMFileHeader header = builder.getHeader();
+        final List<SAMRecord> records = new ArrayList<>(builder.getRecords());
+        Collections.shuffle(records, random);
+
+        final SortingCollection<SAMRecord> expected = SortingCollection.newInstance(SAMRecord.class,
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), maxRecordsInRam, tmpDir().toPath());
+        final SortingCollection<SAMRecord> actual = new OffHeapSortingCollection<>(
+                new BAMRecordCodec(header), new SAMRecordCoordinateComparator(), maxRecordsInRam, tmpDir().toPath());
+        for (final SAMRecord record : records) {
+            expected.add(record);
+            actual.add(record);
+        }
+
+        final List<String> expectedRecords = new ArrayList<>();
+        expected.iterator().forEachRemaining(r -> expectedRecords.add(r.getSAMString()));
+        final List<String> actualRecords = new ArrayList<>();
+        actual.iterator().forEachRemaining(r -> actualRecords.add(r.getSAMString()));
+        Assert.assertEquals(actualRecords, expectedRecords);
+
+        expected.cleanup();
+        actual.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testCoordinateSortKeyIsConsistentWithComparator() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        for (int i = 0; i < 500; i++) {
+            builder.addPair("pair" + i, random.nextInt(3), 1 + random.nextInt(50), 1 + random.nextInt(50));
+            builder.addUnmappedPair("unmapped" + i);
+        }
+        final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        final SAMRecord[] records = builder.getRecords().toArray(new SAMRecord[0]);
+        for (final SAMRecord lhs : records) {
+            for (int i = 0; i < 50; i++) {
+                final SAMRecord rhs = records[random.nextInt(records.length)];
+                final int keyCmp = Long.compare(comparator.sortKey(lhs), comparator.sortKey(rhs));
+                if (keyCmp != 0) {
+                    Assert.assertEquals(Integer.signum(comparator.compare(lhs, rhs)), keyCmp, lhs.getSAMString() + rhs.getSAMString());
+                }
+            }
+        }
+    }
+
+    /** Counts the records decoded by it and all its clones. */
+    static class CountingStringCodec extends SortingCollectionTest.StringCodec {
+        private final AtomicInteger decodes;
+
+        CountingStringCodec(final AtomicInteger decodes) {
+            this.decodes = decodes;
+        }
+
+        @Override
+        public SortingCollection.Codec<String> clone() {
+            return new CountingStringCodec(decodes);
+        }
+
+        @Override
+        public String decode() {
+            final String val = super.decode();
+            if (val != null) {
+                decodes.incrementAndGet();
+            }
+            return val;
+        }
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testRecordsWithEqualKeysAreDecodedOnceToSort(final int numStrings, final int maxRecordsInRam) {
+        final AtomicInteger decodes = new AtomicInteger();
+        // all the strings have the same key, as unmapped reads do
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new CountingStringCodec(decodes), new FirstCharKeyedStringComparator() {
+                    @Override
+                    public long sortKey(final String val) {
+                        return 0;
+                    }
+                }, maxRecordsInRam, tmpDir().toPath());
+        final List<String> strings = new ArrayList<>();
+        for (final String s : new SortingCollectionTest.RandomStringGenerator(numStrings)) {
+            sortingCollection.add(s);
+            strings.add(s);
+        }
+        Collections.sort(strings);
+
+        assertIteratorEquals(sortingCollection.iterator(), strings);
+        // at most once to sort in memory, and once to be merged or returned
+        Assert.assertTrue(decodes.get() <= 2 * numStrings, decodes.get() + " decodes");
+        sortingCollection.cleanup();
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testIdenticalRecordsAreNotDecodedToSort(final int numStrings, final int maxRecordsInRam) {
+        final AtomicInteger decodes = new AtomicInteger();
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new CountingStringCodec(decodes), new FirstCharKeyedStringComparator(), maxRecordsInRam, tmpDir().toPath());
+        final List<String> strings = Collections.nCopies(numStrings, "same");
+        strings.forEach(sortingCollection::add);
+
+        assertIteratorEquals(sortingCollection.iterator(), strings);
+        // only to be returned, neither to be sorted in memory nor to be merged
+        Assert.assertEquals(decodes.get(), numStrings);
+        sortingCollection.cleanup();
+    }
+
+    @Test
+    public void testDestructiveIteration() {
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new SortingCollectionTest.StringCodec(), new FirstCharKeyedStringComparator(), 100, tmpDir().toPath());
+        final List<String> strings = new ArrayList<>();
+        for (final String s : new SortingCollectionTest.RandomStringGenerator(50)) {
+            sortingCollection.add(s);
+            strings.add(s);
+        }
+        Collections.sort(strings);
+
+        Assert.assertTrue(sortingCollection.isDestructiveIteration());
+        assertIteratorEquals(sortingCollection.iterator(), strings);
+        Assert.assertThrows(IllegalStateException.class, sortingCollection::iterator);
+        sortingCollection.cleanup();
+    }
+
+    @Test
+    public void testClosingDestructiveIteratorReleasesRecords() {
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new SortingCollectionTest.StringCodec(), new FirstCharKeyedStringComparator(), 100, tmpDir().toPath());
+        sortingCollection.add("a");
+        sortingCollection.add("b");
+        final CloseableIterator<String> iterator = sortingCollection.iterator();
+        Assert.assertEquals(iterator.next(), "a");
+        iterator.close();
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertThrows(IllegalStateException.class, sortingCollection::iterator);
+        sortingCollection.cleanup();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCannotAddAfterIterating() {
+        final SortingCollection<String> sortingCollection = new OffHeapSortingCollection<>(
+                new SortingCollectionTest.StringCodec(), new FirstCharKeyedStringComparator(), 10, tmpDir().toPath());
+        sortingCollection.add("a");
+        sortingCollection.iterator();
+        sortingCollection.add("b");
+    }
+
+    private static void assertIteratorEquals(final CloseableIterator<String> iterator, final List<String> expected) {
+        final List<String> actual = new ArrayList<>();
+        iterator.forEachRemaining(actual::add);
+        iterator.close();
+        Assert.assertEquals(actual, expected);
+    }
+}
@@ -0,0 +1,119 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelBlockCompressedInputStreamTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @DataProvider(name = "readAheadBlocks")
+    public Object[][] readAheadBlocks() {
+        return new Object[][]{{1}, {2}, {16}};
+    }
+
+    @Test(dataProvider = "readAheadBlocks")
+    public void testReadMatchesSerial(final int readAheadBlocks) throws IOException {
+        final byte[] expected = readFully(new BlockCompressedInputStream(BAM_FILE));
+        Assert.assertEquals(readFully(new ParallelBlockCompressedInputStream(new SeekableFileStream(BAM_FILE), executor, readAheadBlocks)), expected);
+        Assert.assertEquals(readFully(new ParallelBlockCompressedInputStream(new FileInputStream(BAM_FILE), executor, readAheadBlocks)), expected);
+    }
+
+    @Test(dataProvider = "readAheadBlocks")
+    public void testSeekMatchesSerial(final int readAheadBlocks) throws IOException {
+        final List<Long> virtualOffsets = new ArrayList<>();
+        final List<Integer> bytes = new ArrayList<>();
+        try (final BlockCompressedInputStream sync = new BlockCompressedInputStream(BAM_FILE)) {
+            // record a file pointer every few KB, including positions at the very end of blocks
+            final byte[] buffer = new byte[3001];
+            int len;
+            do {
+                virtualOffsets.add(sync.getFilePointer());
+                len = sync.read(buffer);
+                bytes.add(len > 0 ? buffer[0] & 0xFF : -1);
+            } while (len > 0);
+        }
+
+        try (final BlockCompressedInputStream sync = new BlockCompressedInputStream(BAM_FILE);
+             final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(
+                     new SeekableFileStream(BAM_FILE), executor, readAheadBlocks)) {
+            // visit the recorded offsets backwards so that every seek discards read-ahead
+            for (int i = virtualOffsets.size() - 1; i >= 0; i -= 7) {
+                sync.seek(virtualOffsets.get(i));
+                parallel.seek(virtualOffsets.get(i));
+                Assert.assertEquals(parallel.getFilePointer(), sync.getFilePointer());
+                final int expectedByte = sync.read();
+                Assert.assertEquals(expectedByte, (int) bytes.get(i));
+                Assert.assertEquals(parallel.read(), expectedByte);
+                Assert.assertEquals(parallel.read(), sync.read());
+                Assert.assertEquals(parallel.getFilePointer(), sync.getFilePointer());
+            }
+        }
+    }
+
+    @Test
+    public void testCheckCrcs() throws IOException {
+        final byte[] expected = readFully(new BlockCompressedInputStream(BAM_FILE));
+        final ParallelBlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(new SeekableFileStream(BAM_FILE), executor, 8);
+        parallel.setCheckCrcs(true);
+        Assert.assertEquals(readFully(parallel), expected);
+    }
+
+    @Test
+    public void testInterruptedReadKeepsInterruptStatus() throws IOException {
+        // the only thread of the executor is busy, so that the reader waits for the first block
+        final ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        busyExecutor.submit(() -> {
+            release.await();
+            return null;
+        });
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(
+                new SeekableFileStream(BAM_FILE), busyExecutor, 2)) {
+            Thread.currentThread().interrupt();
+            final RuntimeException e = Assert.expectThrows(RuntimeException.class, parallel::read);
+            Assert.assertTrue(e.getCause() instanceof InterruptedException, e.toString());
+            Assert.assertTrue(Thread.interrupted(), "interrupt status was cleared");
+        } finally {
+            Thread.interrupted();
+            release.countDown();
+            busyExecutor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidReadAhead() throws IOException {
+        new ParallelBlockCompressedInputStream(new SeekableFileStream(BAM_FILE), executor, 0);
+    }
+
+    private static byte[] readFully(final BlockCompressedInputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE / 3];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,109 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class StaticOverlapDetectorTest extends HtsjdkTest {
+
+    private static List<Locatable> randomIntervals(final Random random, final int count, final int maxLength) {
+        final List<Locatable> intervals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int start = 1 + random.nextInt(100000);
+            intervals.add(new Interval(random.nextBoolean() ? "1" : "2", start, start + random.nextInt(maxLength)));
+        }
+        return intervals;
+    }
+
+    @DataProvider
+    public Object[][] getRandomIntervals() {
+        return new Object[][]{
+                {0, 100, 0, 0},
+                {1, 100, 0, 0},
+                {7, 100, 0, 0},
+                {1000, 100, 0, 0},
+                {1000, 10000, 0, 0},
+                {5000, 300, 0, 0},
+                {5000, 300, 20, 0},
+                {5000, 300, 0, 20},
+                {5000, 300, -10, 5},
+        };
+    }
+
+    @Test(dataProvider = "getRandomIntervals")
+    public void testSameOverlapsAsOverlapDetector(final int count, final int maxLength, final int lhsBuffer, final int rhsBuffer) {
+        final Random random = new Random(count + maxLength);
+        final List<Locatable> intervals = randomIntervals(random, count, maxLength);
+        // some objects are located at several intervals
+        final List<Integer> objects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            objects.add(random.nextInt(Math.max(1, count / 2)));
+        }
+        final OverlapDetector<Integer> expected = new OverlapDetector<>(lhsBuffer, rhsBuffer);
+        expected.addAll(objects, intervals);
+        final StaticOverlapDetector<Integer> actual = StaticOverlapDetector.create(objects, intervals, lhsBuffer, rhsBuffer);
+
+        Assert.assertEquals(actual.getAll(), expected.getAll());
+        for (final Locatable query : randomIntervals(random, 2000, 500)) {
+            final Set<Integer> overlaps = expected.getOverlaps(query);
+            Assert.assertEquals(actual.getOverlaps(query), overlaps, query.toString());
+            Assert.assertEquals(actual.overlapsAny(query), expected.overlapsAny(query), query.toString());
+
+            final Set<Integer> visited = new HashSet<>();
+            actual.forEachOverlap(query, visited::add);
+            Assert.assertEquals(visited, overlaps, query.toString());
+        }
+        Assert.assertFalse(actual.overlapsAny(new Interval("3", 1, 100000)));
+        Assert.assertTrue(actual.getOverlaps(new Interval("3", 1, 100000)).isEmpty());
+    }
+
+    @Test
+    public void testForEachOverlapInStartOrder() {
+        final List<Locatable> intervals = Arrays.asList(
+                new Interval("1", 50, 60),
+                new Interval("1", 10, 1000),
+                new Interval("1", 20, 30),
+                new Interval("1", 20, 25),
+                new Interval("1", 70, 80),
+                new Interval("2", 20, 30));
+        final StaticOverlapDetector<Locatable> detector = StaticOverlapDetector.create(intervals);
+
+        final List<Locatable> visited = new ArrayList<>();
+        detector.forEachOverlap(new Interval("1", 25, 55), visited::add);
+        Assert.assertEquals(visited, Arrays.asList(intervals.get(1), intervals.get(2), intervals.get(3), intervals.get(0)));
+        Assert.assertTrue(detector.overlapsAny("1", 61, 69));
+        Assert.assertFalse(detector.overlapsAny("1", 1001, 2000));
+    }
+
+    @Test
+    public void testIntervalList() {
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Collections.singletonList(new SAMSequenceRecord("1", 100000)));
+        final IntervalList intervalList = new IntervalList(new SAMFileHeader(dictionary));
+        intervalList.add(new Interval("1", 100, 200));
+        intervalList.add(new Interval("1", 150, 300));
+        intervalList.add(new Interval("1", 1000, 2000));
+        final StaticOverlapDetector<Interval> detector = StaticOverlapDetector.create(intervalList);
+
+        Assert.assertEquals(detector.getAll(), new HashSet<>(intervalList.getIntervals()));
+        Assert.assertEquals(detector.getOverlaps(new Interval("1", 180, 190)),
+                new HashSet<>(intervalList.getIntervals().subList(0, 2)));
+        Assert.assertTrue(detector.getOverlaps(new Interval("1", 301, 999)).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDifferentSizes() {
+        StaticOverlapDetector.create(Arrays.asList(1, 2), Collections.singletonList(new Interval("1", 1, 2)), 0, 0);
+    }
+}
@@ -0,0 +1,153 @@
+package htsjdk.tribble.index.tabix;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.tribble.AsciiFeatureCodec;
+import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.bed.BEDCodec;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.variant.vcf.VCFCodec;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class ParallelTabixIndexCreatorTest extends HtsjdkTest {
+    private static final Path TABIX_DIR = Paths.get("src/test/resources/htsjdk/tribble/tabix");
+
+    /**
+     * Writes a BED file of several BGZF blocks, with comment lines between features and lines longer than a block.
+     */
+    private static Path writeBed(final List<String> contigs, final boolean sorted) throws IOException {
+        final Path bed = Files.createTempFile("parallelTabix", ".bed.gz");
+        IOUtil.deleteOnExit(bed);
+        try (final Writer writer = new OutputStreamWriter(new BlockCompressedOutputStream(bed.toFile()), StandardCharsets.US_ASCII)) {
+            writer.write("#a header line\n");
+            final char[] longName = new char[150000];
+            Arrays.fill(longName, 'n');
+            for (final String contig : contigs) {
+                for (int i = 0; i < 20000; i++) {
+                    final int start = sorted ? i * 10 : (i * 7919) % 100000;
+                    writer.write(contig + "\t" + start + "\t" + (start + 5 + i % 100) + "\t");
+                    writer.write(i % 5000 == 17 ? new String(longName) : "feature" + i);
+                    writer.write("\n");
+                    if (i % 1000 == 999) {
+                        writer.write("# a comment\n");
+                    }
+                }
+            }
+            writer.write("# a trailing comment\n");
+        }
+        return bed;
+    }
+
+    private static void assertSameIndex(final Path path, final Supplier<? extends AsciiFeatureCodec<?>> codecSupplier,
+                                        final int parallelism, final long shardSize) throws IOException {
+        final TabixIndex expected = IndexFactory.createTabixIndex(path, codecSupplier.get(), null);
+        final TabixIndex actual = new ParallelTabixIndexCreator(codecSupplier, codecSupplier.get().getTabixFormat(), null)
+                .setParallelism(parallelism)
+                .setShardSize(shardSize)
+                .createIndex(path);
+        Assert.assertEquals(actual, expected);
+
+        final Path expectedFile = Files.createTempFile("expected", FileExtensions.TABIX_INDEX);
+        final Path actualFile = Files.createTempFile("actual", FileExtensions.TABIX_INDEX);
+        IOUtil.deleteOnExit(expectedFile);
+        IOUtil.deleteOnExit(actualFile);
+        expected.write(expectedFile);
+        actual.write(actualFile);
+        Assert.assertEquals(Files.readAllBytes(actualFile), Files.readAllBytes(expectedFile));
+    }
+
+    @DataProvider
+    public Object[][] getShards() {
+        return new Object[][]{
+                {1, 0},
+                {4, 0},
+                {4, 1},
+                {3, 20000},
+        };
+    }
+
+    @Test(dataProvider = "getShards")
+    public void testSameIndexAsSerial(final int parallelism, final long shardSize) throws IOException {
+        assertSameIndex(writeBed(Arrays.asList("chr1", "chr2", "chrX"), true), BEDCodec::new, parallelism, shardSize);
+    }
+
+    @DataProvider
+    public Object[][] getVcfs() {
+        return new Object[][]{
+                {TABIX_DIR.resolve("YRI.trio.2010_07.indel.sites.vcf.gz")},
+                {TABIX_DIR.resolve("4featuresHG38Header.vcf.gz")},
+                {Paths.get("src/test/resources/htsjdk/variant/NA12891.vcf.gz")},
+        };
+    }
+
+    @Test(dataProvider = "getVcfs")
+    public void testSameVcfIndexAsSerial(final Path vcf) throws IOException {
+        assertSameIndex(vcf, VCFCodec::new, 4, 1);
+    }
+
+    @Test
+    public void testNotBlockCompressed() throws IOException {
+        assertSameIndex(TABIX_DIR.resolve("testTabixIndex.vcf"), VCFCodec::new, 4, 1);
+    }
+
+    @Test(expectedExceptions = TribbleException.MalformedFeatureFile.class)
+    public void testUnsorted() throws IOException {
+        new ParallelTabixIndexCreator(BEDCodec::new, TabixFormat.BED, null)
+                .setShardSize(1)
+                .createIndex(writeBed(Arrays.asList("chr1", "chr2"), false));
+    }
+
+    @Test(expectedExceptions = TribbleException.MalformedFeatureFile.class)
+    public void testNotContiguous() throws IOException {
+        new ParallelTabixIndexCreator(BEDCodec::new, TabixFormat.BED, null)
+                .setShardSize(1)
+                .createIndex(writeBed(Arrays.asList("chr1", "chr2", "chr1"), true));
+    }
+
+    @Test
+    public void testSequenceNotInDictionary() throws IOException {
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("chr1", 300000), new SAMSequenceRecord("chr2", 300000)));
+        final Path bed = writeBed(Arrays.asList("chr1", "chr2", "chrX"), true);
+        final TribbleException e = Assert.expectThrows(TribbleException.MalformedFeatureFile.class,
+                () -> new ParallelTabixIndexCreator(BEDCodec::new, TabixFormat.BED, dictionary)
+                        .setShardSize(1)
+                        .createIndex(bed));
+        Assert.assertTrue(e.getMessage().contains("chrX"), e.getMessage());
+    }
+
+    @DataProvider
+    public Object[][] getMalformedBeds() {
+        return new Object[][]{
+                {Arrays.asList("chr1", "chr2"), false},
+                {Arrays.asList("chr1", "chr2", "chr1"), true},
+        };
+    }
+
+    @Test(dataProvider = "getMalformedBeds")
+    public void testSameErrorAsSerial(final List<String> contigs, final boolean sorted) throws IOException {
+        final Path bed = writeBed(contigs, sorted);
+        final TribbleException expected = Assert.expectThrows(TribbleException.MalformedFeatureFile.class,
+                () -> IndexFactory.createTabixIndex(bed, new BEDCodec(), null));
+        final TribbleException actual = Assert.expectThrows(TribbleException.MalformedFeatureFile.class,
+                () -> new ParallelTabixIndexCreator(BEDCodec::new, TabixFormat.BED, null).setShardSize(1).createIndex(bed));
+        Assert.assertEquals(actual.getMessage(), expected.getMessage());
+    }
+}
@@ -0,0 +1,231 @@
+package htsjdk.variant.variantcontext;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureReader;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFContigHeaderLine;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFFileReader;
+import htsjdk.variant.vcf.VCFFormatHeaderLine;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFHeaderLineCount;
+import htsjdk.variant.vcf.VCFHeaderLineType;
+import htsjdk.variant.vcf.VCFHeaderVersion;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GenotypeColumnsTest extends VariantBaseTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/variant");
+
+    private static final Allele A = Allele.create("A", true);
+    private static final Allele C = Allele.create("C");
+    private static final Allele G = Allele.create("G");
+
+    private static File writeBCF(final VCFHeader header, final List<VariantContext> variants) throws IOException {
+        final File bcf = File.createTempFile("genotypeColumns.", ".bcf");
+        bcf.deleteOnExit();
+        try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputFile(bcf)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header);
+            variants.forEach(writer::add);
+        }
+        return bcf;
+    }
+
+    private static List<VariantContext> readBCF(final File bcf, final boolean columnar) throws IOException {
+        final BCF2Codec codec = new BCF2Codec();
+        codec.setColumnarGenotypes(columnar);
+        final List<VariantContext> variants = new ArrayList<>();
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(bcf.getAbsolutePath(), codec, false)) {
+            for (final VariantContext vc : reader.iterator()) {
+                variants.add(vc);
+            }
+        }
+        return variants;
+    }
+
+    private static VCFHeader readHeader(final File bcf) throws IOException {
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(bcf.getAbsolutePath(), new BCF2Codec(), false)) {
+            return (VCFHeader) reader.getHeader();
+        }
+    }
+
+    /**
+     * Checks that genotypes decoded into columns are written as those decoded with builders, and are the same
+     * genotypes once created.
+     */
+    private static void assertColumnarMatchesBuilders(final File bcf) throws IOException {
+        final VCFHeader header = readHeader(bcf);
+        final List<VariantContext> columnar = readBCF(bcf, true);
+        final List<VariantContext> built = readBCF(bcf, false);
+        Assert.assertFalse(columnar.isEmpty());
+        Assert.assertEquals(columnar.size(), built.size());
+
+        final VCFEncoder encoder = new VCFEncoder(header, true, false);
+        for (int i = 0; i < columnar.size(); i++) {
+            final VariantContext vc = columnar.get(i);
+            final VariantContext expected = built.get(i);
+            Assert.assertNotNull(vc.getGenotypes().getColumns());
+            Assert.assertNull(expected.getGenotypes().getColumns());
+
+            Assert.assertEquals(vc.calcVCFGenotypeKeys(header), expected.calcVCFGenotypeKeys(header));
+            Assert.assertEquals(vc.getMaxPloidy(2), expected.getMaxPloidy(2));
+            // written straight from the columns
+            Assert.assertEquals(encoder.encode(vc), encoder.encode(expected));
+            for (int s = 0; s < vc.getNSamples(); s++) {
+                Assert.assertEquals(vc.getGenotype(s).toString(), expected.getGenotype(s).toString());
+                Assert.assertEquals(vc.getGenotype(s).getType(), expected.getGenotype(s).getType());
+            }
+            // the columns are kept, as variant contexts are immutable
+            Assert.assertNotNull(vc.getGenotypes().getColumns());
+        }
+
+        // written to BCF straight from the columns
+        Assert.assertEquals(Files.readAllBytes(writeBCF(header, columnar).toPath()), Files.readAllBytes(writeBCF(header, built).toPath()));
+    }
+
+    @DataProvider(name = "vcfFiles")
+    public Object[][] vcfFiles() {
+        return new Object[][]{
+                {"ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf"},
+                {"HiSeq.10000.vcf.bgz"},
+        };
+    }
+
+    @Test(dataProvider = "vcfFiles")
+    public void testColumnarDecodingMatchesBuilders(final String fileName) throws IOException {
+        final List<VariantContext> variants = new ArrayList<>();
+        final VCFHeader header;
+        try (final VCFFileReader reader = new VCFFileReader(new File(TEST_DATA_DIR, fileName), false)) {
+            header = reader.getHeader();
+            reader.iterator().forEachRemaining(variants::add);
+        }
+        assertColumnarMatchesBuilders(writeBCF(header, variants));
+    }
+
+    @Test
+    public void testColumnarDecodingOfMixedGenotypes() throws IOException {
+        final Set<VCFHeaderLine> lines = new LinkedHashSet<>();
+        lines.add(new VCFHeaderLine(VCFHeaderVersion.VCF4_2.getFormatString(), VCFHeaderVersion.VCF4_2.getVersionString()));
+        lines.add(new VCFContigHeaderLine("<ID=1,length=1000>", VCFHeaderVersion.VCF4_2, VCFHeader.CONTIG_KEY, 0));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_KEY, 1, VCFHeaderLineType.String, "Genotype"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.DEPTH_KEY, 1, VCFHeaderLineType.Integer, "Depth"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_QUALITY_KEY, 1, VCFHeaderLineType.Integer, "Quality"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_ALLELE_DEPTHS, VCFHeaderLineCount.R, VCFHeaderLineType.Integer, "Allele depths"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_PL_KEY, VCFHeaderLineCount.G, VCFHeaderLineType.Integer, "Likelihoods"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_FILTER_KEY, 1, VCFHeaderLineType.String, "Filter"));
+        lines.add(new VCFFormatHeaderLine("XX", VCFHeaderLineCount.UNBOUNDED, VCFHeaderLineType.Integer, "Extra"));
+        final VCFHeader header = new VCFHeader(lines, Arrays.asList("S1", "S2", "S3", "S4"));
+
+        final List<VariantContext> variants = new ArrayList<>();
+        variants.add(new VariantContextBuilder("test", "1", 10, 10, Arrays.asList(A, C, G)).genotypes(
+                new GenotypeBuilder("S1", Arrays.asList(A, C)).phased(true).DP(10).GQ(120).AD(new int[]{5, 5, 0}).PL(new int[]{10, 0, 100, 20, 200, 300}).filter("LowQual").make(),
+                new GenotypeBuilder("S2", Arrays.asList(Allele.NO_CALL, Allele.NO_CALL)).DP(3).make(),
+                new GenotypeBuilder("S3", Collections.singletonList(G)).AD(new int[]{0, 0, 70_000}).attribute("XX", 3).make(),
+                new GenotypeBuilder("S4", Arrays.asList(A, C, C)).GQ(5).attribute("XX", Arrays.asList(1, 2)).make()
+        ).make());
+        variants.add(new VariantContextBuilder("test", "1", 20, 20, Arrays.asList(A, C)).genotypes(
+                new GenotypeBuilder("S1", Arrays.asList(A, A)).make(),
+                new GenotypeBuilder("S2", Arrays.asList(A, C)).PL(new int[]{300, 0, 1000}).make(),
+                new GenotypeBuilder("S3", Arrays.asList(C, C)).phased(true).filter("PASS").make(),
+                new GenotypeBuilder("S4", Arrays.asList(Allele.NO_CALL, C)).DP(70_000).make()
+        ).make());
+        assertColumnarMatchesBuilders(writeBCF(header, variants));
+    }
+
+    @Test
+    public void testColumns() {
+        final GenotypeColumns columns = new GenotypeColumns(Arrays.asList("S1", "S2", "S3"), Arrays.asList(A, C));
+        columns.setAlleles(0, new int[]{0, 1}, 2, true);
+        columns.setAlleles(2, new int[]{GenotypeColumns.NO_CALL_INDEX, 1, 1}, 3, false);
+        columns.setDP(1, 12);
+        // the longer vector is repacked with the previous ones
+        columns.setAD(0, new int[]{3, 4}, 2);
+        columns.setAD(2, new int[]{1, 2, 3, 4, 99}, 4);
+        columns.setFilter(0, "PASS");
+        columns.setFilter(1, "q10");
+        columns.setAttribute(2, "XX", "value");
+
+        Assert.assertEquals(columns.getMaxPloidy(), 3);
+        Assert.assertEquals(columns.getPloidy(1), 0);
+        Assert.assertTrue(columns.hasAnyAlleles());
+        Assert.assertTrue(columns.hasAnyDP());
+        Assert.assertFalse(columns.hasAnyGQ());
+        Assert.assertTrue(columns.hasAnyAD());
+        Assert.assertFalse(columns.hasAnyPL());
+        Assert.assertTrue(columns.hasAnyFilter());
+        Assert.assertEquals(columns.getAttributeKeys(), Collections.singleton("XX"));
+        Assert.assertEquals(columns.getMaxADLength(), 4);
+
+        final Genotype g0 = columns.getGenotype(0);
+        Assert.assertEquals(g0.getAlleles(), Arrays.asList(A, C));
+        Assert.assertTrue(g0.isPhased());
+        Assert.assertEquals(g0.getAD(), new int[]{3, 4});
+        Assert.assertFalse(g0.isFiltered());
+        Assert.assertSame(columns.getGenotype(0), g0);
+
+        final Genotype g1 = columns.getGenotype(1);
+        Assert.assertFalse(g1.isAvailable());
+        Assert.assertEquals(g1.getDP(), 12);
+        Assert.assertEquals(g1.getFilters(), "q10");
+        Assert.assertNull(g1.getAD());
+
+        final Genotype g2 = columns.getGenotype(2);
+        Assert.assertEquals(g2.getAlleles(), Arrays.asList(Allele.NO_CALL, C, C));
+        Assert.assertEquals(g2.getAD(), new int[]{1, 2, 3, 4});
+        Assert.assertEquals(g2.getExtendedAttribute("XX"), "value");
+
+        // setting a value replaces the genotype
+        columns.setGQ(0, 40);
+        Assert.assertNotSame(columns.getGenotype(0), g0);
+        Assert.assertEquals(columns.getGenotype(0).getGQ(), 40);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAlleleIndexOutOfRange() {
+        new GenotypeColumns(Collections.singletonList("S1"), Arrays.asList(A, C)).setAlleles(0, new int[]{0, 2}, 2, false);
+    }
+
+    @Test
+    public void testGenotypesContextOfColumns() {
+        final List<String> samples = Arrays.asList("S2", "S1");
+        final GenotypeColumns columns = new GenotypeColumns(samples, Arrays.asList(A, C));
+        columns.setAlleles(0, new int[]{0, 1}, 2, false);
+        columns.setAlleles(1, new int[]{1}, 1, false);
+        final GenotypesContext context = GenotypesContext.create(columns, null, null);
+
+        Assert.assertEquals(context.size(), 2);
+        Assert.assertEquals(context.getMaxPloidy(2), 2);
+        Assert.assertEquals(context.get("S1").getAlleles(), Collections.singletonList(C));
+        Assert.assertEquals(context.getSampleNamesOrderedByName(), Arrays.asList("S1", "S2"));
+        final List<String> iterated = new ArrayList<>();
+        context.forEach(g -> iterated.add(g.getSampleName()));
+        Assert.assertEquals(iterated, samples);
+        Assert.assertSame(context.getColumns(), columns);
+
+        // modifying the context creates all of the genotypes, and drops the columns
+        context.add(new GenotypeBuilder("S3", Arrays.asList(A, A)).make());
+        Assert.assertNull(context.getColumns());
+        Assert.assertEquals(context.size(), 3);
+        Assert.assertSame(context.get("S2"), columns.getGenotype(0));
+    }
+}
@@ -0,0 +1,208 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelVCFIteratorTest extends VariantBaseTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/variant");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private static List<String> encode(final VCFHeader header, final CloseableIterator<VariantContext> iterator) {
+        final VCFEncoder encoder = new VCFEncoder(header, true, true);
+        final List<String> lines = new ArrayList<>();
+        try {
+            iterator.forEachRemaining(vc -> lines.add(encoder.encode(vc)));
+        } finally {
+            iterator.close();
+        }
+        return lines;
+    }
+
+    private static List<String> expected(final File file) {
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            return encode(reader.getHeader(), reader.iterator());
+        }
+    }
+
+    private ParallelVCFIterator open(final String vcf, final int linesPerBatch) {
+        final VCFCodec codec = new VCFCodec();
+        final LineIterator lineIterator = codec.makeSourceFromStream(new ByteArrayInputStream(vcf.getBytes(StandardCharsets.UTF_8)));
+        codec.readActualHeader(lineIterator);
+        return new ParallelVCFIterator(lineIterator, codec, VCFCodec::new, executor, 3, linesPerBatch);
+    }
+
+    @DataProvider(name = "files")
+    public Object[][] files() {
+        return new Object[][]{
+                {"ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf", 1},
+                {"ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf", 7},
+                {"HiSeq.10000.vcf.bgz", 100},
+                {"HiSeq.10000.vcf.bgz", ParallelVCFIterator.DEFAULT_LINES_PER_BATCH},
+                {"dbsnp_135.b37.1000.vcf", 64},
+                {"vcf43/all43Features.utf8.vcf", 2},
+                {"test_withGLandPL.vcf", 1},
+        };
+    }
+
+    @Test(dataProvider = "files")
+    public void testMatchesSerialDecoding(final String fileName, final int linesPerBatch) throws IOException {
+        final File file = new File(TEST_DATA_DIR, fileName);
+        final VCFIteratorBuilder builder = new VCFIteratorBuilder().setDecodingExecutor(executor, 4);
+        try (final VCFIterator iterator = builder.open(file)) {
+            Assert.assertTrue(iterator instanceof ParallelVCFIterator);
+            final List<String> actual = encode(iterator.getHeader(), iterator);
+            Assert.assertFalse(actual.isEmpty());
+            Assert.assertEquals(actual, expected(file));
+        }
+        // and with the given batch size
+        final String text = fileName.endsWith(".vcf") ? new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8) : null;
+        if (text != null) {
+            try (final ParallelVCFIterator iterator = open(text, linesPerBatch)) {
+                Assert.assertEquals(encode(iterator.getHeader(), iterator), expected(file));
+            }
+        }
+    }
+
+    @Test
+    public void testGenotypesAreDecodedLazily() {
+        final File file = new File(TEST_DATA_DIR, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            reader.setDecodingExecutor(executor, 2);
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                Assert.assertTrue(iterator instanceof ParallelVCFIterator);
+                final VariantContext vc = iterator.next();
+                Assert.assertTrue(vc.getGenotypes().isLazyWithData());
+                Assert.assertEquals(vc.getNSamples(), reader.getHeader().getNGenotypeSamples());
+            }
+            // queries, and iteration without an executor, are unchanged
+            reader.setDecodingExecutor(null, 0);
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                Assert.assertFalse(iterator instanceof ParallelVCFIterator);
+            }
+        }
+    }
+
+    @Test(dataProvider = "files")
+    public void testFileReaderSharesItsHeader(final String fileName, final int linesPerBatch) {
+        final File file = new File(TEST_DATA_DIR, fileName);
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            reader.setDecodingExecutor(executor, 2);
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                Assert.assertTrue(iterator instanceof ParallelVCFIterator);
+                // the iterator decodes with the header read by the reader, rather than with a header parsed again
+                Assert.assertSame(((ParallelVCFIterator) iterator).getHeader(), reader.getHeader());
+                Assert.assertEquals(encode(reader.getHeader(), iterator), expected(file));
+            }
+        }
+    }
+
+    @Test
+    public void testFileReaderReportsErrorAtLineOfFile() throws IOException {
+        final StringBuilder vcf = new StringBuilder(HEADER);
+        for (int i = 1; i <= 50; i++) {
+            vcf.append("1\t").append(i).append("\t.\tA\tC\t10\tPASS\tDP=").append(i).append('\n');
+        }
+        vcf.append("1\tnot_a_position\t.\tA\tC\t10\tPASS\tDP=1\n");
+        final File file = File.createTempFile("malformed", ".vcf");
+        file.deleteOnExit();
+        Files.write(file.toPath(), vcf.toString().getBytes(StandardCharsets.UTF_8));
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            reader.setDecodingExecutor(null, 0);
+            final Object[] serial = iterateUntilError(reader.iterator());
+            reader.setDecodingExecutor(executor, 2);
+            final Object[] parallel = iterateUntilError(reader.iterator());
+            Assert.assertEquals(parallel[0], serial[0]);
+            // the header lines skipped without being parsed are counted
+            Assert.assertTrue(((String) parallel[1]).contains("line number 54"), (String) parallel[1]);
+        }
+    }
+
+    @Test
+    public void testBCFIsDecodedSerially() throws IOException {
+        try (final VCFIterator iterator = new VCFIteratorBuilder().setDecodingExecutor(executor, 2)
+                .open(new File(TEST_DATA_DIR, "serialization_test.bcf"))) {
+            Assert.assertFalse(iterator instanceof ParallelVCFIterator);
+            Assert.assertTrue(iterator.hasNext());
+        }
+    }
+
+    private static final String HEADER = "##fileformat=VCFv4.2\n" +
+            "##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">\n" +
+            "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+
+    /**
+     * @return the number of variants returned before the malformed line is reported, and the message reporting it
+     */
+    private static Object[] iterateUntilError(final CloseableIterator<VariantContext> iterator) {
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            Assert.fail("The malformed line was not reported");
+        } catch (final TribbleException e) {
+            return new Object[]{count, e.getMessage()};
+        } finally {
+            iterator.close();
+        }
+        return null;
+    }
+
+    @Test
+    public void testErrorIsReportedInOrder() throws IOException {
+        final StringBuilder vcf = new StringBuilder(HEADER);
+        for (int i = 1; i <= 50; i++) {
+            vcf.append("1\t").append(i).append("\t.\tA\tC\t10\tPASS\tDP=").append(i).append('\n');
+        }
+        vcf.append("1\tnot_a_position\t.\tA\tC\t10\tPASS\tDP=1\n");
+        final Object[] serial = iterateUntilError(new VCFIteratorBuilder().setDecodingExecutor(null, 0)
+                .open(new ByteArrayInputStream(vcf.toString().getBytes(StandardCharsets.UTF_8))));
+        final Object[] parallel = iterateUntilError(open(vcf.toString(), 4));
+        Assert.assertEquals(parallel, serial);
+        // the line number is counted from the start of the file
+        Assert.assertTrue(((String) parallel[1]).contains("line number 54"), (String) parallel[1]);
+    }
+
+    @Test
+    public void testCloseBeforeEnd() {
+        final StringBuilder vcf = new StringBuilder(HEADER);
+        for (int i = 1; i <= 10_000; i++) {
+            vcf.append("1\t").append(i).append("\t.\tA\tC\t10\tPASS\tDP=").append(i).append('\n');
+        }
+        final ParallelVCFIterator iterator = open(vcf.toString(), 10);
+        Assert.assertEquals(iterator.next().getStart(), 1);
+        Assert.assertEquals(iterator.next().getStart(), 2);
+        iterator.close();
+        // only the variant already taken by the iterator is left
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Assert.assertTrue(count <= 1);
+    }
+}
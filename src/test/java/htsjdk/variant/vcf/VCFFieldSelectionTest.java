@@ -0,0 +1,272 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+public class VCFFieldSelectionTest extends VariantBaseTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/variant");
+    private static final File VCF = new File(TEST_DATA_DIR, "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private static List<VariantContext> read(final File file, final VCFFieldSelection selection) {
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            reader.setDecodingExecutor(null, 0);
+            reader.setFieldSelection(selection);
+            final List<VariantContext> variants = new ArrayList<>();
+            try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+                iterator.forEachRemaining(variants::add);
+            }
+            return variants;
+        }
+    }
+
+    private static VCFHeader readHeader(final File file) {
+        try (final VCFFileReader reader = new VCFFileReader(file, false)) {
+            return reader.getHeader();
+        }
+    }
+
+    private static File writeBCF(final File vcf) {
+        final File bcf = createTempFile("fieldSelection.", ".bcf");
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false);
+             final VariantContextWriter writer = new VariantContextWriterBuilder()
+                     .setOutputFile(bcf)
+                     .unsetOption(Options.INDEX_ON_THE_FLY)
+                     .build()) {
+            writer.writeHeader(reader.getHeader());
+            reader.iterator().forEachRemaining(writer::add);
+        }
+        return bcf;
+    }
+
+    /**
+     * @return vc with only the fields of selection
+     */
+    private static VariantContext select(final VariantContext vc, final VCFFieldSelection selection) {
+        final Map<String, Object> attributes = new LinkedHashMap<>(vc.getAttributes());
+        attributes.keySet().removeIf(key -> !selection.isInfoKeySelected(key));
+        final VariantContextBuilder builder = new VariantContextBuilder(vc).attributes(attributes);
+        if (!selection.includesGenotypes()) {
+            return builder.genotypes(GenotypesContext.NO_GENOTYPES).make();
+        }
+        final List<Genotype> genotypes = new ArrayList<>();
+        for (final Genotype g : vc.getGenotypes()) {
+            final GenotypeBuilder gb = new GenotypeBuilder(g);
+            if (!selection.isFormatKeySelected(VCFConstants.GENOTYPE_KEY)) gb.alleles(Collections.emptyList()).phased(false);
+            if (!selection.isFormatKeySelected(VCFConstants.DEPTH_KEY)) gb.noDP();
+            if (!selection.isFormatKeySelected(VCFConstants.GENOTYPE_QUALITY_KEY)) gb.noGQ();
+            if (!selection.isFormatKeySelected(VCFConstants.GENOTYPE_ALLELE_DEPTHS)) gb.noAD();
+            if (!selection.isFormatKeySelected(VCFConstants.GENOTYPE_PL_KEY)) gb.noPL();
+            if (!selection.isFormatKeySelected(VCFConstants.GENOTYPE_FILTER_KEY)) gb.unfiltered();
+            final Map<String, Object> extended = new LinkedHashMap<>(g.getExtendedAttributes());
+            extended.keySet().removeIf(key -> !selection.isFormatKeySelected(key));
+            genotypes.add(gb.noAttributes().attributes(extended).make());
+        }
+        return builder.genotypes(genotypes).make();
+    }
+
+    private static void assertSelected(final VCFHeader header, final List<VariantContext> actual,
+                                       final List<VariantContext> all, final VCFFieldSelection selection) {
+        Assert.assertFalse(actual.isEmpty());
+        Assert.assertEquals(actual.size(), all.size());
+        final VCFEncoder encoder = new VCFEncoder(header, true, false);
+        for (int i = 0; i < actual.size(); i++) {
+            final VariantContext vc = actual.get(i);
+            for (final String key : vc.getAttributes().keySet()) {
+                Assert.assertTrue(selection.isInfoKeySelected(key), key);
+            }
+            final List<String> genotypeKeys = vc.calcVCFGenotypeKeys(header);
+            if (genotypeKeys.equals(Collections.singletonList(VCFConstants.GENOTYPE_KEY)) &&
+                    !selection.isFormatKeySelected(VCFConstants.GENOTYPE_KEY)) {
+                // no field was decoded, and genotypes without any field cannot be encoded
+                for (final Genotype g : vc.getGenotypes()) {
+                    Assert.assertFalse(g.isAvailable() || g.hasDP() || g.hasGQ() || g.hasAD() || g.hasPL() || g.isFiltered());
+                    Assert.assertTrue(g.getExtendedAttributes().isEmpty());
+                }
+                continue;
+            }
+            for (final String key : genotypeKeys) {
+                Assert.assertTrue(selection.isFormatKeySelected(key), key);
+            }
+            // both are encoded from genotypes, rather than from the text of the lazy genotypes of those that have it
+            Assert.assertEquals(encoder.encode(select(vc, selection)), encoder.encode(select(all.get(i), selection)));
+        }
+    }
+
+    @DataProvider(name = "selections")
+    public Object[][] selections() {
+        return new Object[][]{
+                {new VCFFieldSelection()},
+                {new VCFFieldSelection().setInfoKeys(Arrays.asList("AF", "DP", "culprit"))},
+                {new VCFFieldSelection().setInfoKeys(Collections.emptyList()).setFormatKeys(Arrays.asList("GT", "GQ"))},
+                {new VCFFieldSelection().setInfoKeys(Collections.singletonList("DB")).setFormatKeys(Arrays.asList("AD", "PL"))},
+                {new VCFFieldSelection().setFormatKeys(Collections.emptyList())},
+                {new VCFFieldSelection().setInfoKeys(Collections.singletonList("AC")).setIncludeGenotypes(false)},
+        };
+    }
+
+    @Test(dataProvider = "selections")
+    public void testVCF(final VCFFieldSelection selection) throws IOException {
+        final List<VariantContext> all = read(VCF, null);
+        final VCFHeader header = readHeader(VCF);
+        assertSelected(header, read(VCF, selection), all, selection);
+
+        // and when decoding lines in parallel
+        final List<VariantContext> parallel = new ArrayList<>();
+        try (final VCFIterator iterator = new VCFIteratorBuilder()
+                .setDecodingExecutor(executor, 2)
+                .setFieldSelection(selection)
+                .open(VCF)) {
+            Assert.assertTrue(iterator instanceof ParallelVCFIterator);
+            iterator.forEachRemaining(parallel::add);
+        }
+        assertSelected(header, parallel, all, selection);
+    }
+
+    @Test(dataProvider = "selections")
+    public void testBCF(final VCFFieldSelection selection) {
+        final File bcf = writeBCF(VCF);
+        final List<VariantContext> all = read(bcf, null);
+        final List<VariantContext> selected = read(bcf, selection);
+        assertSelected(readHeader(bcf), selected, all, selection);
+
+        // only the selected fields are written back
+        final File rewritten = createTempFile("fieldSelection.rewritten.", ".bcf");
+        try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputFile(rewritten)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(readHeader(bcf));
+            selected.forEach(writer::add);
+        }
+        assertSelected(readHeader(bcf), read(rewritten, null), all, selection);
+    }
+
+    @Test
+    public void testSelectedGenotypesAreNotWrittenAsText() {
+        final VCFFieldSelection selection = new VCFFieldSelection().setFormatKeys(Collections.singletonList("GT"));
+        final VariantContext vc = read(VCF, selection).get(0);
+        Assert.assertTrue(vc.getGenotypes().isLazyWithData());
+        final String line = new VCFEncoder(readHeader(VCF), true, false).encode(vc);
+        Assert.assertEquals(line.split("\t")[8], "GT");
+    }
+
+    @Test
+    public void testEndIsUsedWithoutBeingSelected() {
+        final String vcf = "##fileformat=VCFv4.2\n" +
+                "##INFO=<ID=END,Number=1,Type=Integer,Description=\"End\">\n" +
+                "##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">\n" +
+                "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n" +
+                "1\t100\t.\tA\t<DEL>\t10\tPASS\tDP=5;END=150\n" +
+                "1\t200\t.\tA\tC\t10\tPASS\tEND=200;DP=6;\n";
+        final VCFCodec codec = new VCFCodec();
+        codec.readActualHeader(codec.makeSourceFromStream(new ByteArrayInputStream(vcf.getBytes(StandardCharsets.UTF_8))));
+        final String[] lines = vcf.split("\n");
+
+        codec.setFieldSelection(new VCFFieldSelection().setInfoKeys(Collections.singletonList("DP")));
+        VariantContext vc = codec.decode(lines[4]);
+        Assert.assertEquals(vc.getEnd(), 150);
+        Assert.assertEquals(vc.getAttributes().keySet(), Collections.singleton("DP"));
+        Assert.assertEquals(vc.getAttributeAsInt("DP", 0), 5);
+        vc = codec.decode(lines[5]);
+        Assert.assertEquals(vc.getEnd(), 200);
+        Assert.assertEquals(vc.getAttributeAsInt("DP", 0), 6);
+
+        codec.setFieldSelection(new VCFFieldSelection().setInfoKeys(Arrays.asList("END", "D")));
+        vc = codec.decode(lines[4]);
+        Assert.assertEquals(vc.getEnd(), 150);
+        Assert.assertEquals(vc.getAttributes().keySet(), Collections.singleton("END"));
+    }
+
+    @DataProvider(name = "sampleSubsets")
+    public Object[][] sampleSubsets() {
+        return new Object[][]{
+                {new int[]{0}, null},
+                {new int[]{0, 1, 2, 10, 50}, null},
+                {new int[]{3, 4, 5, 6, 99, 100}, Arrays.asList("GT", "PL")},
+                {new int[]{}, null},
+        };
+    }
+
+    @Test(dataProvider = "sampleSubsets")
+    public void testSampleSubset(final int[] sampleOffsets, final List<String> formatKeys) {
+        final VCFHeader header = readHeader(VCF);
+        final List<String> allSamples = header.getGenotypeSamples();
+        final List<String> samples = new ArrayList<>();
+        // in another order than that of the file
+        for (int i = sampleOffsets.length - 1; i >= 0; i--) {
+            samples.add(allSamples.get(sampleOffsets[i] == 100 ? allSamples.size() - 1 : sampleOffsets[i]));
+        }
+        final VCFFieldSelection selection = new VCFFieldSelection().setSamples(samples).setFormatKeys(formatKeys);
+        final VCFFieldSelection fieldsOnly = new VCFFieldSelection().setFormatKeys(formatKeys);
+
+        final File bcf = writeBCF(VCF);
+        for (final File file : Arrays.asList(VCF, bcf)) {
+            final List<VariantContext> all = read(file, fieldsOnly);
+            final List<VariantContext> subset = read(file, selection);
+            Assert.assertEquals(subset.size(), all.size());
+            for (int i = 0; i < subset.size(); i++) {
+                final VariantContext vc = subset.get(i);
+                // the genotypes are still decoded lazily
+                Assert.assertEquals(vc.getNSamples(), samples.size());
+                Assert.assertEquals(vc.getSampleNames(), new HashSet<>(samples));
+                Assert.assertEquals(vc.getSampleNamesOrderedByName(), samples.stream().sorted().collect(Collectors.toList()));
+                for (final String sample : samples) {
+                    Assert.assertEquals(vc.getGenotype(sample).toString(), all.get(i).getGenotype(sample).toString(), sample);
+                }
+                Assert.assertNull(vc.getGenotype(allSamples.get(7)));
+            }
+        }
+    }
+
+    @Test
+    public void testSampleSubsetIsWrittenInPlaceOfAllSamples() {
+        final VCFHeader header = readHeader(VCF);
+        final String sample = header.getGenotypeSamples().get(1);
+        final VCFFieldSelection selection = new VCFFieldSelection().setSamples(Collections.singleton(sample));
+        final VariantContext vc = read(VCF, selection).get(3);
+        final String[] columns = new VCFEncoder(header, true, false).encode(vc).split("\t");
+        Assert.assertEquals(columns.length, header.getColumnCount());
+        // the samples that were not decoded are written as missing
+        Assert.assertEquals(columns[9], "./.");
+        Assert.assertEquals(columns[11], "./.");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownSample() {
+        read(VCF, new VCFFieldSelection().setSamples(Collections.singleton("not a sample")));
+    }
+}